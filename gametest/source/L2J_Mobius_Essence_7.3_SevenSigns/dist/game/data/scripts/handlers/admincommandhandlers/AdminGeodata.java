@@ -55,6 +55,7 @@ public class AdminGeodata implements IAdminCommandHandler
 		"admin_geogrid",
 		"admin_geomap",
 		"admin_geocell",
+		"admin_geocache",
 		"admin_geosave",
 		"admin_geosaveall",
 		"admin_geoenablenorth",
@@ -187,6 +188,14 @@ public class AdminGeodata implements IAdminCommandHandler
 				activeChar.sendSysMessage("GeoCell: " + geoX + ", " + geoY + ". XYZ (" + worldX + ", " + worldY + ", " + geoZ + ")");
 				break;
 			}
+			case "admin_geocache":
+			{
+				for (String line : GeoEngine.getInstance().getCheckCacheStatistics().split(System.lineSeparator()))
+				{
+					activeChar.sendSysMessage(line);
+				}
+				break;
+			}
 			case "admin_geosave":
 			{
 				// Create the saves directory if it does not exist.
@@ -29,14 +29,21 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.l2jmobius.Config;
+import org.l2jmobius.commons.network.Client;
+import org.l2jmobius.commons.threads.ThreadPool;
 import org.l2jmobius.gameserver.GameServer;
 import org.l2jmobius.gameserver.cache.HtmCache;
 import org.l2jmobius.gameserver.data.xml.AdminData;
 import org.l2jmobius.gameserver.handler.IAdminCommandHandler;
 import org.l2jmobius.gameserver.model.World;
+import org.l2jmobius.gameserver.model.WorldObject;
 import org.l2jmobius.gameserver.model.actor.Player;
+import org.l2jmobius.gameserver.model.actor.stat.CreatureStat;
 import org.l2jmobius.gameserver.network.serverpackets.NpcHtmlMessage;
+import org.l2jmobius.gameserver.taskmanagers.CharInfoTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.GameTimeTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.MovementTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.WriteBehindTaskManager;
 
 /**
  * @author St3eT
@@ -49,7 +56,8 @@ public class AdminServerInfo implements IAdminCommandHandler
 	
 	private static final String[] ADMIN_COMMANDS =
 	{
-		"admin_serverinfo"
+		"admin_serverinfo",
+		"admin_perfstats"
 	};
 	
 	@Override
@@ -95,9 +103,42 @@ public class AdminServerInfo implements IAdminCommandHandler
 			}
 			activeChar.sendPacket(html);
 		}
+		else if (command.equals("admin_perfstats"))
+		{
+			sendStatistics(activeChar, "Movement", MovementTaskManager.getInstance().getStatistics());
+			sendStatistics(activeChar, "Stat recalculation", CreatureStat.getStatistics());
+			sendStatistics(activeChar, "CharInfo broadcasts", CharInfoTaskManager.getInstance().getStatistics());
+			sendStatistics(activeChar, "Network writes", Client.getStatistics());
+			if (activeChar.getClient() != null)
+			{
+				// All game clients share the resource pool of the game server connection.
+				sendStatistics(activeChar, "Buffer pools", activeChar.getClient().getResourcePool().stats());
+			}
+			sendStatistics(activeChar, "Thread pool", ThreadPool.getStatistics());
+			if (Config.WRITE_BEHIND_PERSISTENCE)
+			{
+				sendStatistics(activeChar, "Write-behind", WriteBehindTaskManager.getInstance().getStatistics());
+			}
+			
+			final WorldObject target = activeChar.getTarget();
+			final Player player = (target != null) && target.isPlayer() ? target.asPlayer() : activeChar;
+			if ((player.getClient() != null) && player.getClient().getConnection().orderedPacketExecution())
+			{
+				sendStatistics(activeChar, "Packet mailbox of " + player.getName(), player.getClient().getPacketMailbox().toString());
+			}
+		}
 		return true;
 	}
 	
+	private void sendStatistics(Player activeChar, String name, String statistics)
+	{
+		activeChar.sendSysMessage(name + ":");
+		for (String line : statistics.split(System.lineSeparator()))
+		{
+			activeChar.sendSysMessage(line);
+		}
+	}
+	
 	private String getServerUpTime()
 	{
 		long time = System.currentTimeMillis() - GameServer.getStartTime();
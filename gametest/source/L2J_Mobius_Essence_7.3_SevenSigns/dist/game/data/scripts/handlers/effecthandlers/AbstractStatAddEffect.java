@@ -47,6 +47,12 @@ public class AbstractStatAddEffect extends AbstractEffect
 		}
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return true;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
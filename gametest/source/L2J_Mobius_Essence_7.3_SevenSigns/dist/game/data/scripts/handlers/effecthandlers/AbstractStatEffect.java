@@ -141,6 +141,12 @@ public abstract class AbstractStatEffect extends AbstractEffect
 		}
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return _conditions.isEmpty();
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
@@ -51,6 +51,12 @@ public class AbstractStatPercentEffect extends AbstractEffect
 		}
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return true;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
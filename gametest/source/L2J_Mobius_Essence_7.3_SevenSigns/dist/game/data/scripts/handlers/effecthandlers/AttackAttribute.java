@@ -58,6 +58,12 @@ public class AttackAttribute extends AbstractEffect
 		}
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return true;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
@@ -36,6 +36,12 @@ public class ExpModify extends AbstractStatAddEffect
 		super(params, Stat.BONUS_EXP);
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return false;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
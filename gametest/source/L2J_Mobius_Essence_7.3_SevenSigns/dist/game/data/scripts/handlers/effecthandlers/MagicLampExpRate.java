@@ -37,6 +37,12 @@ public class MagicLampExpRate extends AbstractStatPercentEffect
 		super(params, Stat.MAGIC_LAMP_EXP_RATE);
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return false;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
@@ -36,6 +36,12 @@ public class ModifyBeastPointsMax extends AbstractStatAddEffect
 		super(params, Stat.BEAST_POINTS_ADD);
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return false;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
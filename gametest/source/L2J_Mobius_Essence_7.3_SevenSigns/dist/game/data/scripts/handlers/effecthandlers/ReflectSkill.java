@@ -37,6 +37,12 @@ public class ReflectSkill extends AbstractEffect
 		_amount = params.getDouble("amount", 0);
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return true;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
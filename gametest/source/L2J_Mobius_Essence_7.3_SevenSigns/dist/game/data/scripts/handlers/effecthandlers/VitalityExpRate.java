@@ -36,6 +36,12 @@ public class VitalityExpRate extends AbstractStatPercentEffect
 		super(params, Stat.VITALITY_EXP_RATE);
 	}
 	
+	@Override
+	public boolean isStaticPump()
+	{
+		return false;
+	}
+	
 	@Override
 	public void pump(Creature effected, Skill skill)
 	{
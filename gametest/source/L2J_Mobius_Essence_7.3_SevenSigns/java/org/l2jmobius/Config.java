@@ -209,7 +209,15 @@ public class Config
 	public static int SCHEDULED_THREAD_POOL_SIZE;
 	public static int HIGH_PRIORITY_SCHEDULED_THREAD_POOL_SIZE;
 	public static int INSTANT_THREAD_POOL_SIZE;
+	public static boolean VIRTUAL_THREADS;
+	public static long VIRTUAL_THREAD_PINNING_THRESHOLD;
+	public static boolean TIMING_WHEEL_SCHEDULER;
+	public static int TIMING_WHEEL_TICK;
 	public static boolean THREADS_FOR_LOADING;
+	public static boolean PARALLEL_STARTUP;
+	public static boolean DATAPACK_CACHE;
+	public static File DATAPACK_CACHE_PATH;
+	public static boolean SCRIPT_CACHE;
 	public static boolean DEADLOCK_WATCHER;
 	public static int DEADLOCK_CHECK_INTERVAL;
 	public static boolean RESTART_ON_DEADLOCK;
@@ -707,12 +715,15 @@ public class Config
 	public static int CLAN_VARIABLES_STORE_INTERVAL;
 	public static boolean LAZY_ITEMS_UPDATE;
 	public static boolean UPDATE_ITEMS_ON_CHAR_STORE;
+	public static boolean WRITE_BEHIND_PERSISTENCE;
+	public static int WRITE_BEHIND_INTERVAL;
 	public static boolean DESTROY_DROPPED_PLAYER_ITEM;
 	public static boolean DESTROY_EQUIPABLE_PLAYER_ITEM;
 	public static boolean DESTROY_ALL_ITEMS;
 	public static boolean SAVE_DROPPED_ITEM;
 	public static boolean EMPTY_DROPPED_ITEM_TABLE_AFTER_LOAD;
 	public static int SAVE_DROPPED_ITEM_INTERVAL;
+	public static Path SAVE_DROPPED_ITEM_JOURNAL_PATH;
 	public static boolean CLEAR_DROPPED_ITEM_TABLE;
 	public static boolean ORDER_QUEST_LIST_BY_QUESTID;
 	public static boolean AUTODELETE_INVALID_QUEST_DATA;
@@ -823,6 +834,8 @@ public class Config
 	public static boolean AVOID_ABSTRUCTED_PATH_NODES;
 	public static float DIAGONAL_WEIGHT;
 	public static int MAX_POSTFILTER_PASSES;
+	public static boolean HIERARCHICAL_PATHFINDING;
+	public static int GEO_CHECK_CACHE_SIZE;
 	
 	// --------------------------------------------------
 	// GrandBoss
@@ -1704,7 +1717,15 @@ public class Config
 			{
 				INSTANT_THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
 			}
+			VIRTUAL_THREADS = serverConfig.getBoolean("UseVirtualThreads", false);
+			VIRTUAL_THREAD_PINNING_THRESHOLD = serverConfig.getLong("VirtualThreadPinningThreshold", 0);
+			TIMING_WHEEL_SCHEDULER = serverConfig.getBoolean("TimingWheelScheduler", false);
+			TIMING_WHEEL_TICK = serverConfig.getInt("TimingWheelTick", 10);
 			THREADS_FOR_LOADING = serverConfig.getBoolean("ThreadsForLoading", false);
+			PARALLEL_STARTUP = serverConfig.getBoolean("ParallelStartup", false);
+			DATAPACK_CACHE = serverConfig.getBoolean("DatapackCache", false);
+			DATAPACK_CACHE_PATH = new File(DATAPACK_ROOT, serverConfig.getString("DatapackCachePath", "data/cache"));
+			SCRIPT_CACHE = serverConfig.getBoolean("ScriptCache", false);
 			DEADLOCK_WATCHER = serverConfig.getBoolean("DeadlockWatcher", true);
 			DEADLOCK_CHECK_INTERVAL = serverConfig.getInt("DeadlockCheckInterval", 20);
 			RESTART_ON_DEADLOCK = serverConfig.getBoolean("RestartOnDeadlock", false);
@@ -2431,12 +2452,15 @@ public class Config
 			CLAN_VARIABLES_STORE_INTERVAL = generalConfig.getInt("ClanVariablesStoreInterval", 15) * 60 * 1000;
 			LAZY_ITEMS_UPDATE = generalConfig.getBoolean("LazyItemsUpdate", false);
 			UPDATE_ITEMS_ON_CHAR_STORE = generalConfig.getBoolean("UpdateItemsOnCharStore", false);
+			WRITE_BEHIND_PERSISTENCE = generalConfig.getBoolean("WriteBehindPersistence", false);
+			WRITE_BEHIND_INTERVAL = generalConfig.getInt("WriteBehindInterval", 1000);
 			DESTROY_DROPPED_PLAYER_ITEM = generalConfig.getBoolean("DestroyPlayerDroppedItem", false);
 			DESTROY_EQUIPABLE_PLAYER_ITEM = generalConfig.getBoolean("DestroyEquipableItem", false);
 			DESTROY_ALL_ITEMS = generalConfig.getBoolean("DestroyAllItems", false);
 			SAVE_DROPPED_ITEM = generalConfig.getBoolean("SaveDroppedItem", false);
 			EMPTY_DROPPED_ITEM_TABLE_AFTER_LOAD = generalConfig.getBoolean("EmptyDroppedItemTableAfterLoad", false);
 			SAVE_DROPPED_ITEM_INTERVAL = generalConfig.getInt("SaveDroppedItemInterval", 60) * 60000;
+			SAVE_DROPPED_ITEM_JOURNAL_PATH = Paths.get(Config.DATAPACK_ROOT.getPath() + "/" + generalConfig.getString("SaveDroppedItemJournalPath", "journal"));
 			CLEAR_DROPPED_ITEM_TABLE = generalConfig.getBoolean("ClearDroppedItemTable", false);
 			ORDER_QUEST_LIST_BY_QUESTID = generalConfig.getBoolean("OrderQuestListByQuestId", true);
 			AUTODELETE_INVALID_QUEST_DATA = generalConfig.getBoolean("AutoDeleteInvalidQuestData", false);
@@ -2574,6 +2598,8 @@ public class Config
 			AVOID_ABSTRUCTED_PATH_NODES = geoEngineConfig.getBoolean("AvoidAbstructedPathNodes", true);
 			DIAGONAL_WEIGHT = geoEngineConfig.getFloat("DiagonalWeight", 0.707f);
 			MAX_POSTFILTER_PASSES = geoEngineConfig.getInt("MaxPostfilterPasses", 3);
+			HIERARCHICAL_PATHFINDING = geoEngineConfig.getBoolean("HierarchicalPathFinding", false);
+			GEO_CHECK_CACHE_SIZE = geoEngineConfig.getInt("GeoCheckCacheSize", 65536);
 			
 			// --------------------------------------------------
 			// GrandBoss
@@ -4255,6 +4281,10 @@ public class Config
 			{
 				INSTANT_THREAD_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
 			}
+			VIRTUAL_THREADS = false;
+			VIRTUAL_THREAD_PINNING_THRESHOLD = 0;
+			TIMING_WHEEL_SCHEDULER = false;
+			TIMING_WHEEL_TICK = 10;
 			SHOW_LICENCE = loginConfig.getBoolean("ShowLicence", true);
 			SHOW_PI_AGREEMENT = loginConfig.getBoolean("ShowPIAgreement", false);
 			AUTO_CREATE_ACCOUNTS = loginConfig.getBoolean("AutoCreateAccounts", true);
@@ -20,11 +20,15 @@
  */
 package org.l2jmobius.commons.network;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.l2jmobius.commons.network.internal.InternalWritableBuffer;
 
@@ -37,7 +41,11 @@ import org.l2jmobius.commons.network.internal.InternalWritableBuffer;
  */
 public abstract class Client<T extends Connection<?>>
 {
-	private static final ConcurrentLinkedQueue<Client<?>> PENDING_CLIENTS = new ConcurrentLinkedQueue<>();
+	private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0];
+	
+	private static final LongAdder WRITE_OPERATIONS = new LongAdder();
+	private static final LongAdder WRITTEN_PACKETS = new LongAdder();
+	private static final LongAdder WRITTEN_BYTES = new LongAdder();
 	
 	private final T _connection;
 	private final Queue<WritablePacket<? extends Client<T>>> _packetsToWrite = new ConcurrentLinkedQueue<>();
@@ -46,6 +54,8 @@ public abstract class Client<T extends Connection<?>>
 	private final AtomicBoolean _closing = new AtomicBoolean();
 	private final AtomicInteger _estimateQueueSize = new AtomicInteger();
 	private final AtomicInteger _dataSentSize = new AtomicInteger();
+	private final PacketMailbox _packetMailbox = new PacketMailbox();
+	private final List<ByteBuffer> _writingBuffers = new ArrayList<>();
 	private boolean _readingPayload;
 	private int _expectedReadSize;
 	
@@ -78,7 +88,7 @@ public abstract class Client<T extends Connection<?>>
 		
 		_estimateQueueSize.incrementAndGet();
 		_packetsToWrite.add(packet);
-		writeFairPacket();
+		startWriting();
 	}
 	
 	/**
@@ -109,23 +119,24 @@ public abstract class Client<T extends Connection<?>>
 		
 		_estimateQueueSize.addAndGet(packets.size());
 		_packetsToWrite.addAll(packets);
-		writeFairPacket();
+		startWriting();
 	}
 	
 	/**
-	 * Attempts to initiate a fair packet write operation, ensuring only one write operation occurs at a time.<br>
+	 * Attempts to initiate a packet write operation, ensuring only one write operation occurs at a time.<br>
 	 * This method starts the packet-sending process.
 	 */
-	private void writeFairPacket()
+	private void startWriting()
 	{
 		if (_writing.compareAndSet(false, true))
 		{
-			sendFairPacket();
+			writeNextPacket();
 		}
 	}
 	
 	/**
-	 * Writes the next packet in the queue.<br>
+	 * Writes the next packets in the queue.<br>
+	 * Each client drives its own writes. The next batch is written when the previous one completes, so the channel group threads serve the clients in turn.<br>
 	 * If no packets are left, releases resources associated with the write operation and disconnects if the client is closing.
 	 */
 	private void writeNextPacket()
@@ -138,6 +149,11 @@ public abstract class Client<T extends Connection<?>>
 			{
 				disconnect();
 			}
+			else if (!_packetsToWrite.isEmpty())
+			{
+				// A packet queued before the writing flag was released did not start a write by itself.
+				startWriting();
+			}
 		}
 		else
 		{
@@ -147,84 +163,120 @@ public abstract class Client<T extends Connection<?>>
 	}
 	
 	/**
-	 * Sends a packet fairly among pending clients, ensuring fair access to the network resources.<br>
-	 * This method takes the next client in the queue and initiates its packet sending.
+	 * Writes a specified packet to the connection, together with the packets queued after it.<br>
+	 * Queued packets are encrypted in order and sent with a single gathering write, until the packet or byte limit of the connection is reached.<br>
+	 * If nothing can be written, it handles resource release and retries.
+	 * @param packet The first packet to be written.
 	 */
-	private void sendFairPacket()
+	@SuppressWarnings(
+	{
+		"unchecked",
+		"rawtypes"
+	})
+	private void write(WritablePacket packet)
 	{
-		PENDING_CLIENTS.offer(this);
+		final int batchPackets = _connection.writeBatchPackets();
+		final int batchSize = _connection.writeBatchSize();
+		int packets = 0;
+		int dataSize = 0;
+		WritablePacket next = packet;
+		while (next != null)
+		{
+			final int size = writeToBuffers(next);
+			if (size > 0)
+			{
+				packets++;
+				dataSize += size;
+			}
+			
+			if ((packets >= batchPackets) || (dataSize >= batchSize))
+			{
+				break;
+			}
+			
+			next = _packetsToWrite.poll();
+			if (next != null)
+			{
+				_estimateQueueSize.decrementAndGet();
+			}
+		}
 		
-		final Client<?> nextClient = PENDING_CLIENTS.poll();
-		if (nextClient != null)
+		// The next write can start as soon as this one completes, so the buffer list must be cleared before writing.
+		final ByteBuffer[] buffers = _writingBuffers.toArray(EMPTY_BUFFERS);
+		_writingBuffers.clear();
+		if (dataSize > 0)
 		{
-			nextClient.writeNextPacket();
+			WRITE_OPERATIONS.increment();
+			WRITTEN_PACKETS.add(packets);
+			WRITTEN_BYTES.add(dataSize);
+			_dataSentSize.set(dataSize);
+			if (_connection.write(buffers))
+			{
+				return;
+			}
 		}
+		
+		for (ByteBuffer buffer : buffers)
+		{
+			getResourcePool().recycleBuffer(buffer);
+		}
+		handleNotWritten();
 	}
 	
 	/**
-	 * Writes a specified packet to the connection. Encrypts the data, writes headers and manages the buffer.<br>
-	 * If the packet cannot be written, it handles resource release and retries.
+	 * Writes and encrypts the data of a packet and adds its buffers to the buffers of the current write operation.
 	 * @param packet The packet to be written.
+	 * @return The number of bytes added, or 0 if the packet could not be written.
 	 */
 	@SuppressWarnings(
 	{
 		"unchecked",
 		"rawtypes"
 	})
-	private void write(WritablePacket packet)
+	private int writeToBuffers(WritablePacket packet)
 	{
-		boolean written = false;
 		InternalWritableBuffer buffer = null;
 		try
 		{
 			buffer = packet.writeData(this);
 			
 			final int payloadSize = buffer.limit() - ConnectionConfig.HEADER_SIZE;
-			if (payloadSize <= 0)
-			{
-				return;
-			}
-			
-			if (encrypt(buffer, ConnectionConfig.HEADER_SIZE, payloadSize))
+			if ((payloadSize > 0) && encrypt(buffer, ConnectionConfig.HEADER_SIZE, payloadSize))
 			{
 				final int bufferLimit = buffer.limit();
-				_dataSentSize.set(bufferLimit);
-				if (bufferLimit <= ConnectionConfig.HEADER_SIZE)
+				if (bufferLimit > ConnectionConfig.HEADER_SIZE)
 				{
-					return;
+					packet.writeHeader(buffer, bufferLimit);
+					for (ByteBuffer byteBuffer : buffer.toByteBuffers())
+					{
+						_writingBuffers.add(byteBuffer);
+					}
+					return bufferLimit;
 				}
-				
-				packet.writeHeader(buffer, bufferLimit);
-				written = _connection.write(buffer.toByteBuffers());
 			}
 		}
 		catch (Exception e)
 		{
 			// Placeholder for handling/logging Exception if needed.
 		}
-		finally
+		
+		if (buffer != null)
 		{
-			if (!written)
-			{
-				handleNotWritten(buffer);
-			}
+			buffer.releaseResources();
 		}
+		return 0;
 	}
 	
 	/**
-	 * Handles scenarios where a packet could not be written successfully.<br>
-	 * Releases any associated buffer resources and re-attempts the packet send if the client is still connected.
-	 * @param buffer The buffer containing packet data, which may need resource release.
+	 * Handles scenarios where no packet could be written successfully.<br>
+	 * Releases the writing resources and re-attempts the packet send if the client is still connected.
 	 */
-	private void handleNotWritten(InternalWritableBuffer buffer)
+	private void handleNotWritten()
 	{
-		if (!releaseWritingResource() && (buffer != null))
-		{
-			buffer.releaseResources();
-		}
+		releaseWritingResource();
 		if (isConnected())
 		{
-			writeFairPacket();
+			startWriting();
 		}
 	}
 	
@@ -277,7 +329,7 @@ public abstract class Client<T extends Connection<?>>
 		}
 		_closing.set(true);
 		
-		writeFairPacket();
+		startWriting();
 	}
 	
 	/**
@@ -287,6 +339,7 @@ public abstract class Client<T extends Connection<?>>
 	public void resumeSend(int result)
 	{
 		_dataSentSize.addAndGet(-result);
+		WRITE_OPERATIONS.increment();
 		_connection.write();
 	}
 	
@@ -296,7 +349,7 @@ public abstract class Client<T extends Connection<?>>
 	public void finishWriting()
 	{
 		_connection.releaseWritingBuffer();
-		sendFairPacket();
+		writeNextPacket();
 	}
 	
 	private boolean releaseWritingResource()
@@ -366,6 +419,16 @@ public abstract class Client<T extends Connection<?>>
 		return _estimateQueueSize.get();
 	}
 	
+	/**
+	 * Retrieves the mailbox holding the received packets waiting to be executed.<br>
+	 * The mailbox is only used when ordered packet execution is enabled.
+	 * @return The {@link PacketMailbox} of this client.
+	 */
+	public PacketMailbox getPacketMailbox()
+	{
+		return _packetMailbox;
+	}
+	
 	/**
 	 * Retrieves the resource pool associated with the client's connection.
 	 * @return The {@link ResourcePool} used by the connection.
@@ -403,6 +466,17 @@ public abstract class Client<T extends Connection<?>>
 		return _expectedReadSize;
 	}
 	
+	/**
+	 * @return the number of socket writes, the packets and bytes they carried and the average packets for each write.
+	 */
+	public static String getStatistics()
+	{
+		final long writes = WRITE_OPERATIONS.sum();
+		final long packets = WRITTEN_PACKETS.sum();
+		final long bytes = WRITTEN_BYTES.sum();
+		return "Writes: " + writes + ", packets: " + packets + ", bytes: " + bytes + ", packets per write: " + (writes == 0 ? 0 : String.format("%.2f", (double) packets / writes)) + ".";
+	}
+	
 	/**
 	 * Encrypts the specified data in-place.
 	 * @param data The data to be encrypted.
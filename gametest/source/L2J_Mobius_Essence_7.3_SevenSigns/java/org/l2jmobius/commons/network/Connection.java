@@ -243,6 +243,15 @@ public class Connection<T extends Client<Connection<T>>>
 		return _config.dropPackets;
 	}
 	
+	/**
+	 * Determines whether received packets are executed in order through the packet mailbox of the client.
+	 * @return {@code true} if ordered packet execution is enabled, {@code false} otherwise.
+	 */
+	public boolean orderedPacketExecution()
+	{
+		return _config.orderedPacketExecution;
+	}
+	
 	/**
 	 * Retrieves the packet drop threshold for this connection.
 	 * @return The packet drop threshold.
@@ -251,4 +260,22 @@ public class Connection<T extends Client<Connection<T>>>
 	{
 		return _config.dropPacketThreshold;
 	}
+	
+	/**
+	 * Retrieves the maximum number of packets sent with a single write operation.
+	 * @return The packet limit of a write operation.
+	 */
+	public int writeBatchPackets()
+	{
+		return _config.writeBatchPackets;
+	}
+	
+	/**
+	 * Retrieves the number of bytes after which no more packets are added to a write operation.
+	 * @return The byte limit of a write operation.
+	 */
+	public int writeBatchSize()
+	{
+		return _config.writeBatchSize;
+	}
 }
@@ -24,7 +24,6 @@ import java.net.SocketAddress;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.l2jmobius.commons.network.internal.BufferPool;
 import org.l2jmobius.commons.util.ConfigReader;
 
 /**
@@ -45,9 +44,13 @@ public class ConnectionConfig
 	public float initBufferPoolFactor;
 	public long shutdownWaitTime;
 	public int threadPoolSize;
+	public boolean orderedPacketExecution;
+	public boolean useVirtualThreads;
 	public boolean useNagle;
 	public boolean dropPackets;
 	public int dropPacketThreshold;
+	public int writeBatchPackets;
+	public int writeBatchSize;
 	public int threadPriority;
 	public boolean autoExpandPoolCapacity;
 	
@@ -62,7 +65,7 @@ public class ConnectionConfig
 		
 		// Initialize Resource Pool and default buffer settings.
 		resourcePool = new ResourcePool();
-		resourcePool.addBufferPool(HEADER_SIZE, new BufferPool(100, HEADER_SIZE));
+		resourcePool.addBufferPool(HEADER_SIZE, 100);
 		
 		// Read configuration properties.
 		final ConfigReader networkConfig = new ConfigReader("config/Network.ini");
@@ -75,10 +78,14 @@ public class ConnectionConfig
 		
 		// Other network and buffer configurations.
 		threadPriority = networkConfig.getInt("ThreadPriority", Thread.NORM_PRIORITY);
+		orderedPacketExecution = networkConfig.getBoolean("OrderedPacketExecution", false);
+		useVirtualThreads = networkConfig.getBoolean("UseVirtualThreads", false);
 		autoExpandPoolCapacity = networkConfig.getBoolean("BufferPool.AutoExpandCapacity", true);
 		initBufferPoolFactor = networkConfig.getFloat("BufferPool.InitFactor", 0);
 		dropPackets = networkConfig.getBoolean("DropPackets", dropPackets);
 		dropPacketThreshold = networkConfig.getInt("DropPacketThreshold", 250);
+		writeBatchPackets = Math.max(1, networkConfig.getInt("WriteBatchPackets", 64));
+		writeBatchSize = Math.max(1, networkConfig.getInt("WriteBatchSize", 32768));
 		resourcePool.setBufferSegmentSize(networkConfig.getInt("BufferSegmentSize", resourcePool.getSegmentSize()));
 		
 		// Set up custom buffer pools from properties.
@@ -89,19 +96,19 @@ public class ConnectionConfig
 			{
 				final int size = networkConfig.getInt(property, 10);
 				final int bufferSize = networkConfig.getInt(matcher.group(1) + "BufferSize", 1024);
-				resourcePool.addBufferPool(bufferSize, new BufferPool(size, bufferSize));
+				resourcePool.addBufferPool(bufferSize, size);
 			}
 		});
 		
 		// Add additional buffer pool for segment size.
-		resourcePool.addBufferPool(resourcePool.getSegmentSize(), new BufferPool(100, resourcePool.getSegmentSize()));
+		resourcePool.addBufferPool(resourcePool.getSegmentSize(), 100);
 		
 		// Ensure minimum pool groups.
 		final int missingPools = MINIMUM_POOL_GROUPS - resourcePool.bufferPoolSize();
 		for (int i = 0; i < missingPools; i++)
 		{
 			final int bufferSize = 256 << i;
-			resourcePool.addBufferPool(bufferSize, new BufferPool(10, bufferSize));
+			resourcePool.addBufferPool(bufferSize, 10);
 		}
 		
 		// Initialize resource pool buffers.
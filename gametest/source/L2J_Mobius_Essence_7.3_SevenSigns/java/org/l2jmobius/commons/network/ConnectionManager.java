@@ -28,6 +28,8 @@ import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -65,7 +67,16 @@ public class ConnectionManager<T extends Client<Connection<T>>>
 		_writeHandler = new WriteHandler<>();
 		
 		// Initialize channel group with a custom thread pool.
-		_group = AsynchronousChannelGroup.withCachedThreadPool(new ThreadPoolExecutor(_config.threadPoolSize, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<>(), new MMOThreadFactory("Server", _config.threadPriority)), 0);
+		final ExecutorService executor;
+		if (_config.useVirtualThreads)
+		{
+			executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Server-virtual-thread-", 1).factory());
+		}
+		else
+		{
+			executor = new ThreadPoolExecutor(_config.threadPoolSize, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<>(), new MMOThreadFactory("Server", _config.threadPriority));
+		}
+		_group = AsynchronousChannelGroup.withCachedThreadPool(executor, 0);
 		
 		// Configure and bind server socket.
 		_socketChannel = _group.provider().openAsynchronousServerSocketChannel(_group);
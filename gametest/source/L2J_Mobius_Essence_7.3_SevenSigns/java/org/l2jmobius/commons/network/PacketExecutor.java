@@ -21,6 +21,10 @@
 package org.l2jmobius.commons.network;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -30,7 +34,10 @@ import org.l2jmobius.commons.network.internal.MMOThreadFactory;
 
 /**
  * Defines a class for executing incoming network packets.<br>
- * Handles the processing of packets, ideally offloading long-running or blocking operations to separate threads.
+ * Handles the processing of packets, ideally offloading long-running or blocking operations to separate threads.<br>
+ * When ordered packet execution is enabled, packets are queued to the {@link PacketMailbox} of their client and the mailboxes are drained by a work stealing pool,<br>
+ * keeping the packets of each client in order without a shared executor queue.<br>
+ * When virtual threads are enabled, each packet (or each mailbox drain, in ordered mode) runs on its own virtual thread.
  * @param <T> The type of Client associated with the packet to be executed.
  * @author Mobius
  */
@@ -38,18 +45,45 @@ public class PacketExecutor<T extends Client<Connection<T>>>
 {
 	private static final Logger LOGGER = Logger.getLogger(PacketExecutor.class.getName());
 	
-	private final ThreadPoolExecutor _executor;
+	private final ExecutorService _executor;
+	private final boolean _ordered;
 	
 	public PacketExecutor(ConnectionConfig config)
 	{
-		_executor = new ThreadPoolExecutor(config.threadPoolSize, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new MMOThreadFactory("PacketExecutor", config.threadPriority));
+		_ordered = config.orderedPacketExecution;
+		if (config.useVirtualThreads)
+		{
+			_executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("PacketExecutor-virtual-thread-", 1).factory());
+		}
+		else if (_ordered)
+		{
+			final MMOThreadFactory threadFactory = new MMOThreadFactory("PacketExecutor", config.threadPriority);
+			_executor = new ForkJoinPool(config.threadPoolSize, pool ->
+			{
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(threadFactory.newThreadName());
+				thread.setPriority(config.threadPriority);
+				return thread;
+			}, null, true);
+		}
+		else
+		{
+			_executor = new ThreadPoolExecutor(config.threadPoolSize, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new MMOThreadFactory("PacketExecutor", config.threadPriority));
+		}
 	}
 	
 	public void execute(ReadablePacket<T> packet)
 	{
 		try
 		{
-			_executor.execute(new PacketRunnable<>(packet));
+			if (_ordered)
+			{
+				packet.getClient().getPacketMailbox().offer(packet, _executor);
+			}
+			else
+			{
+				_executor.execute(new PacketRunnable<>(packet));
+			}
 		}
 		catch (Exception e)
 		{
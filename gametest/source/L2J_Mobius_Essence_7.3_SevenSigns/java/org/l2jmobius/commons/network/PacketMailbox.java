@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.commons.network;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the received packets of a single client.<br>
+ * The mailbox is drained by only one worker at a time, so packets of the same client are executed in the order they were received,<br>
+ * while packets of different clients are executed concurrently.
+ * @author Mobius
+ */
+public class PacketMailbox implements Runnable
+{
+	/** Maximum packets executed before the worker is released to other clients. */
+	private static final int EXECUTION_BATCH_SIZE = 32;
+	
+	private final Queue<ReadablePacket<?>> _packets = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean _scheduled = new AtomicBoolean();
+	private final AtomicInteger _size = new AtomicInteger();
+	private volatile Executor _executor;
+	
+	// Statistics, only written by the worker that currently drains the mailbox.
+	private volatile long _executedCount;
+	private volatile long _totalLatency;
+	private volatile long _maxLatency;
+	
+	/**
+	 * Adds a packet to this mailbox and schedules the mailbox to be drained if it is not already.
+	 * @param packet the packet to execute
+	 * @param executor the executor that drains the mailbox
+	 */
+	void offer(ReadablePacket<?> packet, Executor executor)
+	{
+		packet.setQueuedTime(System.nanoTime());
+		_executor = executor;
+		_size.incrementAndGet();
+		_packets.offer(packet);
+		schedule();
+	}
+	
+	private void schedule()
+	{
+		if (_scheduled.compareAndSet(false, true))
+		{
+			_executor.execute(this);
+		}
+	}
+	
+	@Override
+	public void run()
+	{
+		for (int i = 0; i < EXECUTION_BATCH_SIZE; i++)
+		{
+			final ReadablePacket<?> packet = _packets.poll();
+			if (packet == null)
+			{
+				break;
+			}
+			
+			_size.decrementAndGet();
+			
+			final long latency = System.nanoTime() - packet.getQueuedTime();
+			_totalLatency += latency;
+			_executedCount++;
+			if (latency > _maxLatency)
+			{
+				_maxLatency = latency;
+			}
+			
+			try
+			{
+				packet.run();
+			}
+			catch (Throwable e)
+			{
+				final Thread t = Thread.currentThread();
+				final UncaughtExceptionHandler h = t.getUncaughtExceptionHandler();
+				if (h != null)
+				{
+					h.uncaughtException(t, e);
+				}
+			}
+		}
+		
+		// Release the mailbox and make sure packets added meanwhile are not left behind.
+		_scheduled.set(false);
+		if (!_packets.isEmpty())
+		{
+			schedule();
+		}
+	}
+	
+	/**
+	 * @return the number of packets waiting to be executed.
+	 */
+	public int size()
+	{
+		return _size.get();
+	}
+	
+	/**
+	 * @return the number of packets executed through this mailbox.
+	 */
+	public long getExecutedCount()
+	{
+		return _executedCount;
+	}
+	
+	/**
+	 * @return the average time in nanoseconds a packet waited in this mailbox before being executed.
+	 */
+	public long getAverageLatency()
+	{
+		final long executedCount = _executedCount;
+		return executedCount == 0 ? 0 : _totalLatency / executedCount;
+	}
+	
+	/**
+	 * @return the maximum time in nanoseconds a packet waited in this mailbox before being executed.
+	 */
+	public long getMaxLatency()
+	{
+		return _maxLatency;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "PacketMailbox {size=" + _size.get() + ", executed=" + _executedCount + ", avgLatency=" + (getAverageLatency() / 1000) + "us, maxLatency=" + (_maxLatency / 1000) + "us}";
+	}
+}
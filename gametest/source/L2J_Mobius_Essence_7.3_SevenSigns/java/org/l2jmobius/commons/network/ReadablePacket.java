@@ -33,6 +33,7 @@ public abstract class ReadablePacket<T extends Client<Connection<T>>> implements
 {
 	private ReadableBuffer _buffer;
 	private T _client;
+	private long _queuedTime;
 	
 	protected ReadablePacket()
 	{
@@ -221,6 +222,19 @@ public abstract class ReadablePacket<T extends Client<Connection<T>>> implements
 		return _client;
 	}
 	
+	/**
+	 * @return the {@link System#nanoTime()} this packet was queued for execution.
+	 */
+	long getQueuedTime()
+	{
+		return _queuedTime;
+	}
+	
+	void setQueuedTime(long queuedTime)
+	{
+		_queuedTime = queuedTime;
+	}
+	
 	/**
 	 * Reads the data from the buffer and processes it.<br>
 	 * This method must be implemented to define the packet's reading logic.
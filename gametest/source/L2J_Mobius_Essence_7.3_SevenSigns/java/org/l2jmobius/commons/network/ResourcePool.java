@@ -22,29 +22,31 @@ package org.l2jmobius.commons.network;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Map.Entry;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.l2jmobius.commons.network.internal.BufferPool;
 
 /**
  * Manages pools of ByteBuffers for efficient resource allocation and reuse.<br>
- * This class maintains a collection of buffer pools, each optimized for different buffer sizes, to reduce the overhead of buffer allocation.
+ * Buffers are kept in fixed power-of-two size classes, from 1 byte up to 64 KiB, each served by its own {@link BufferPool}.<br>
+ * The size classes never change after construction, so buffers can be taken and returned from any thread without locking.
  * @author JoeAlisson, Mobius
  */
 public class ResourcePool
 {
-	// private static final Logger LOGGER = Logger.getLogger(ResourcePool.class.getName());
+	private static final int MAXIMUM_SIZE_CLASS = 16;
+	private static final int DEFAULT_POOL_SIZE = 10;
 	
-	private final NavigableMap<Integer, BufferPool> _bufferPools = new TreeMap<>();
-	private boolean _autoExpandCapacity = true;
-	private boolean _initBufferPools = false;
-	private float _initBufferPoolFactor = 0;
+	private final BufferPool[] _bufferPools = new BufferPool[MAXIMUM_SIZE_CLASS + 1];
+	private final LongAdder _unpooled = new LongAdder();
 	private int _bufferSegmentSize = 64;
 	
 	public ResourcePool()
 	{
+		for (int sizeClass = 0; sizeClass <= MAXIMUM_SIZE_CLASS; sizeClass++)
+		{
+			_bufferPools[sizeClass] = new BufferPool(0, 1 << sizeClass);
+		}
 	}
 	
 	/**
@@ -53,7 +55,7 @@ public class ResourcePool
 	 */
 	public ByteBuffer getHeaderBuffer()
 	{
-		return getSizedBuffer(ConnectionConfig.HEADER_SIZE);
+		return getBuffer(ConnectionConfig.HEADER_SIZE);
 	}
 	
 	/**
@@ -63,7 +65,14 @@ public class ResourcePool
 	 */
 	public ByteBuffer getBuffer(int size)
 	{
-		return getSizedBuffer(determineBufferSize(size));
+		final int sizeClass = sizeClass(size);
+		if (sizeClass > MAXIMUM_SIZE_CLASS)
+		{
+			_unpooled.increment();
+			return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		return _bufferPools[sizeClass].get();
 	}
 	
 	/**
@@ -74,114 +83,44 @@ public class ResourcePool
 	 */
 	public ByteBuffer recycleAndGetNew(ByteBuffer buffer, int newSize)
 	{
-		final int bufferSize = determineBufferSize(newSize);
 		if (buffer != null)
 		{
-			if (buffer.clear().limit() == bufferSize)
+			final int sizeClass = sizeClass(newSize);
+			if ((sizeClass <= MAXIMUM_SIZE_CLASS) && (buffer.capacity() == (1 << sizeClass)))
 			{
-				return buffer.limit(newSize);
+				return buffer.clear().limit(newSize);
 			}
 			
 			recycleBuffer(buffer);
 		}
 		
-		return getSizedBuffer(bufferSize).limit(newSize);
+		return getBuffer(newSize).limit(newSize);
 	}
 	
 	/**
-	 * Retrieves a ByteBuffer of the specified size from the pool, expanding capacity if necessary.
-	 * @param size the size of the buffer to retrieve.
-	 * @return a ByteBuffer with at least the specified size.
+	 * Recycles a buffer by returning it to the pool of its size class.<br>
+	 * Buffers larger than the biggest size class are left to the garbage collector.
+	 * @param buffer the ByteBuffer to recycle.
 	 */
-	private ByteBuffer getSizedBuffer(int size)
+	public void recycleBuffer(ByteBuffer buffer)
 	{
-		ByteBuffer buffer = null;
-		BufferPool pool = null;
-		
-		final Entry<Integer, BufferPool> entry = _bufferPools.ceilingEntry(size);
-		if (entry != null)
-		{
-			pool = entry.getValue();
-			if (pool != null)
-			{
-				if (_autoExpandCapacity)
-				{
-					if (_initBufferPools)
-					{
-						if (pool.isEmpty())
-						{
-							// LOGGER.info("ResourcePool: Buffer pool for size " + size + " is empty. Expanding capacity by a factor of " + _initBufferPoolFactor + ".");
-							pool.expandCapacity(_initBufferPoolFactor, pool.getMaxSize());
-						}
-					}
-					else if (pool.isFull())
-					{
-						// LOGGER.info("ResourcePool: Buffer pool for size " + entry.getKey() + " is full. Doubling the capacity from " + pool.getMaxSize() + " to " + (pool.getMaxSize() * 2) + ".");
-						pool.expandCapacity(_initBufferPoolFactor, pool.getMaxSize());
-					}
-				}
-				
-				buffer = pool.get();
-			}
-		}
-		
-		if (buffer == null)
+		if (buffer != null)
 		{
-			if (pool == null)
+			final int capacity = buffer.capacity();
+			if ((Integer.bitCount(capacity) == 1) && (capacity <= (1 << MAXIMUM_SIZE_CLASS)))
 			{
-				// LOGGER.warning("ResourcePool: There is no buffer pool handling buffer size " + size + ". Creating a new pool.");
-				pool = new BufferPool(10, size);
-				if (_initBufferPools)
-				{
-					pool.initialize(_initBufferPoolFactor);
-				}
-				_bufferPools.put(size, pool);
+				_bufferPools[Integer.numberOfTrailingZeros(capacity)].recycle(buffer);
 			}
-			
-			buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
 		}
-		
-		return buffer;
 	}
 	
 	/**
-	 * Determines the appropriate buffer size for a given request.
 	 * @param size the requested buffer size.
-	 * @return the size of the closest matching buffer pool.
-	 */
-	private int determineBufferSize(int size)
-	{
-		final Entry<Integer, BufferPool> entry = _bufferPools.ceilingEntry(size);
-		if (entry != null)
-		{
-			return entry.getKey();
-		}
-		
-		// LOGGER.warning("ResourcePool: There is no buffer pool handling buffer size " + size + ". Creating a new pool.");
-		final BufferPool pool = new BufferPool(10, size);
-		if (_initBufferPools)
-		{
-			pool.initialize(_initBufferPoolFactor);
-		}
-		_bufferPools.put(size, pool);
-		
-		return size;
-	}
-	
-	/**
-	 * Recycles a buffer by returning it to the appropriate pool.
-	 * @param buffer the ByteBuffer to recycle.
+	 * @return the index of the smallest power-of-two size class that can hold the given size.
 	 */
-	public void recycleBuffer(ByteBuffer buffer)
+	private static int sizeClass(int size)
 	{
-		if (buffer != null)
-		{
-			final BufferPool pool = _bufferPools.get(buffer.capacity());
-			if ((pool == null) || !pool.recycle(buffer))
-			{
-				// LOGGER.warning("ResourcePool: Buffer was not recycled " + buffer + " in pool " + pool);
-			}
-		}
+		return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
 	}
 	
 	/**
@@ -194,37 +133,60 @@ public class ResourcePool
 	}
 	
 	/**
-	 * Adds a new buffer pool to the resource pool.
-	 * @param bufferSize the size of buffers managed by this pool.
-	 * @param bufferPool the BufferPool to add.
+	 * Adds room for buffers of the given size to the resource pool.<br>
+	 * The size is rounded up to its size class, pools of the same size class keep the largest of their maximum sizes.
+	 * @param bufferSize the size of the buffers.
+	 * @param maxSize the number of buffers that can be kept.
 	 */
-	public void addBufferPool(int bufferSize, BufferPool bufferPool)
+	public void addBufferPool(int bufferSize, int maxSize)
 	{
-		_bufferPools.putIfAbsent(bufferSize, bufferPool);
+		final int sizeClass = sizeClass(bufferSize);
+		if (sizeClass <= MAXIMUM_SIZE_CLASS)
+		{
+			final BufferPool pool = _bufferPools[sizeClass];
+			if (maxSize > pool.getMaxSize())
+			{
+				pool.expandCapacity(maxSize - pool.getMaxSize());
+			}
+		}
 	}
 	
 	/**
-	 * Returns the number of buffer pools in the resource pool.
-	 * @return the number of buffer pools.
+	 * Returns the number of configured buffer pools in the resource pool.
+	 * @return the number of size classes that can keep buffers.
 	 */
 	public int bufferPoolSize()
 	{
-		return _bufferPools.size();
+		int count = 0;
+		for (BufferPool pool : _bufferPools)
+		{
+			if (pool.getMaxSize() > 0)
+			{
+				count++;
+			}
+		}
+		return count;
 	}
 	
 	/**
-	 * Initializes buffer pools with the specified parameters.
+	 * Initializes buffer pools with the specified parameters.<br>
+	 * Size classes without a configured pool keep {@value #DEFAULT_POOL_SIZE} buffers.
 	 * @param autoExpandCapacity whether buffer pools should automatically expand capacity.
-	 * @param initBufferPoolFactor the factor by which buffer pools expand.
+	 * @param initBufferPoolFactor the factor by which buffer pools are pre-initialized.
 	 */
 	public void initializeBuffers(boolean autoExpandCapacity, float initBufferPoolFactor)
 	{
-		_autoExpandCapacity = autoExpandCapacity;
-		_initBufferPoolFactor = initBufferPoolFactor;
-		_initBufferPools = initBufferPoolFactor > 0;
-		if (_initBufferPools)
+		for (BufferPool pool : _bufferPools)
 		{
-			_bufferPools.values().forEach(pool -> pool.initialize(initBufferPoolFactor));
+			if (pool.getMaxSize() == 0)
+			{
+				pool.expandCapacity(DEFAULT_POOL_SIZE);
+				pool.initialize(0, autoExpandCapacity);
+			}
+			else
+			{
+				pool.initialize(initBufferPoolFactor, autoExpandCapacity);
+			}
 		}
 	}
 	
@@ -238,17 +200,22 @@ public class ResourcePool
 	}
 	
 	/**
-	 * Provides statistics of the buffer pools in this resource pool.
+	 * Provides statistics of the buffer pools in this resource pool.<br>
+	 * A growing number of buffers in use, without more traffic, means that buffers are not returned to the pool.
 	 * @return a string containing statistics of the buffer pools.
 	 */
 	public String stats()
 	{
 		final StringBuilder sb = new StringBuilder();
-		for (BufferPool pool : _bufferPools.values())
+		for (BufferPool pool : _bufferPools)
 		{
 			sb.append(pool.toString());
 			sb.append(System.lineSeparator());
 		}
+		sb.append("Unpooled {allocated=");
+		sb.append(_unpooled.sum());
+		sb.append('}');
+		sb.append(System.lineSeparator());
 		return sb.toString();
 	}
 }
@@ -33,7 +33,7 @@ import org.l2jmobius.commons.network.internal.InternalWritableBuffer;
 public abstract class WritablePacket<T extends Client<Connection<T>>>
 {
 	private volatile boolean _broadcast;
-	private ArrayPacketBuffer _broadcastCacheBuffer;
+	private volatile byte[] _broadcastCache;
 	
 	protected WritablePacket()
 	{
@@ -61,26 +61,35 @@ public abstract class WritablePacket<T extends Client<Connection<T>>>
 	
 	/**
 	 * Writes the packet data to the buffer for the specified client.<br>
-	 * If the packet is marked as broadcast, it will attempt to use a cached buffer.
+	 * If the packet is marked as broadcast, the packet is written only once into an immutable byte array shared by all recipients.<br>
+	 * Each recipient gets its own copy, so it can be encrypted independently.
 	 * @param client The client to whom the packet data is being written.
 	 * @return An {@link InternalWritableBuffer} containing the packet data.
 	 * @throws Exception If an error occurs during writing.
 	 */
-	private synchronized InternalWritableBuffer writeDataWithCache(T client) throws Exception
+	private InternalWritableBuffer writeDataWithCache(T client) throws Exception
 	{
-		if (_broadcastCacheBuffer != null)
+		byte[] cache = _broadcastCache;
+		if (cache == null)
 		{
-			return InternalWritableBuffer.dynamicOf(_broadcastCacheBuffer, client.getResourcePool(), getClass());
+			synchronized (this)
+			{
+				cache = _broadcastCache;
+				if (cache == null)
+				{
+					final InternalWritableBuffer buffer = writeDataToBuffer(client);
+					if (!(buffer instanceof ArrayPacketBuffer))
+					{
+						return buffer;
+					}
+					
+					cache = ((ArrayPacketBuffer) buffer).toByteArray();
+					_broadcastCache = cache;
+				}
+			}
 		}
 		
-		InternalWritableBuffer buffer = writeDataToBuffer(client);
-		if (buffer instanceof ArrayPacketBuffer)
-		{
-			_broadcastCacheBuffer = (ArrayPacketBuffer) buffer;
-			buffer = InternalWritableBuffer.dynamicOf(_broadcastCacheBuffer, client.getResourcePool(), getClass());
-		}
-		
-		return buffer;
+		return InternalWritableBuffer.dynamicOf(cache, client.getResourcePool(), getClass());
 	}
 	
 	/**
@@ -132,8 +141,8 @@ public abstract class WritablePacket<T extends Client<Connection<T>>>
 	/**
 	 * Mark this packet as broadcast. A broadcast packet is sent to more than one client.<br>
 	 * Caution: This method should be called before {@link Client#writePacket(WritablePacket)}.<br>
-	 * A broadcast packet will create a Buffer cache where the data is written once and only the copy is sent to the client.
-	 * @implNote Each copy will be encrypted to each client.
+	 * A broadcast packet will create a byte array cache where the data is written once and only the copy is sent to the client.
+	 * @implNote Each copy will be encrypted to each client. The cache is never modified after it has been written, so it can be shared without locking.
 	 */
 	public void sendInBroadcast()
 	{
@@ -131,6 +131,14 @@ public class ArrayPacketBuffer extends InternalWritableBuffer implements Readabl
 		_data[index] = (byte) (value >>> 24);
 	}
 	
+	@Override
+	public void writeLong(int index, long value)
+	{
+		ensureSize(index + 8);
+		writeInt(index, (int) value);
+		writeInt(index + 4, (int) (value >>> 32));
+	}
+	
 	@Override
 	public void writeFloat(float value)
 	{
@@ -255,6 +263,12 @@ public class ArrayPacketBuffer extends InternalWritableBuffer implements Readabl
 		return readUnsigned(index++) | (readUnsigned(index++) << 8) | (readUnsigned(index++) << 16) | (readUnsigned(index) << 24);
 	}
 	
+	@Override
+	public long readLong(int index)
+	{
+		return (readInt(index) & 0xFFFFFFFFL) | ((readInt(index + 4) & 0xFFFFFFFFL) << 32);
+	}
+	
 	@Override
 	public int limit()
 	{
@@ -285,17 +299,31 @@ public class ArrayPacketBuffer extends InternalWritableBuffer implements Readabl
 	
 	public ByteBuffer toByteBuffer()
 	{
-		// Update maximum packet size if needed.
-		if (_limit > _initialSize)
-		{
-			MAXIMUM_PACKET_SIZE.put(_packetClass, Math.min(_limit, 65535));
-		}
+		updateMaximumPacketSize();
 		
 		final ByteBuffer buffer = _resourcePool.getBuffer(_limit);
 		buffer.put(_data, 0, _limit);
 		return buffer.flip();
 	}
 	
+	/**
+	 * @return a copy of the written data, from index 0 to the limit of this buffer.
+	 */
+	public byte[] toByteArray()
+	{
+		updateMaximumPacketSize();
+		
+		return Arrays.copyOf(_data, _limit);
+	}
+	
+	private void updateMaximumPacketSize()
+	{
+		if (_limit > _initialSize)
+		{
+			MAXIMUM_PACKET_SIZE.put(_packetClass, Math.min(_limit, 65535));
+		}
+	}
+	
 	@Override
 	public void releaseResources()
 	{
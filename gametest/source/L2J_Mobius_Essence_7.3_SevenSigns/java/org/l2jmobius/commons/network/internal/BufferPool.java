@@ -25,18 +25,31 @@ import java.nio.ByteOrder;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Represents a pool of ByteBuffer objects for reuse, to avoid frequent allocation and deallocation.<br>
- * Buffers are managed in a concurrent queue with a maximum size limit.
+ * Represents a pool of ByteBuffer objects of one size for reuse, to avoid frequent allocation and deallocation.<br>
+ * Each platform thread keeps a small magazine of buffers, so most buffers are taken and returned without touching shared state.<br>
+ * Full magazines are exchanged with a lock-free depot that is bounded by the maximum size of the pool. Virtual threads do not keep magazines, they return single buffers to the depot and break up full magazines when no single buffer is left.
  * @author JoeAlisson, Mobius
  */
 public class BufferPool
 {
+	private static final int MAXIMUM_MAGAZINE_SIZE = 16;
+	
+	private final Queue<ByteBuffer[]> _magazines = new ConcurrentLinkedQueue<>();
 	private final Queue<ByteBuffer> _buffers = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Magazine> _threadMagazines = ThreadLocal.withInitial(Magazine::new);
 	private final AtomicInteger _maxSize = new AtomicInteger();
 	private final AtomicInteger _estimateSize = new AtomicInteger();
 	private final int _bufferSize;
+	private int _magazineSize = 1;
+	private boolean _autoExpandCapacity = true;
+	
+	private final LongAdder _acquired = new LongAdder();
+	private final LongAdder _released = new LongAdder();
+	private final LongAdder _allocated = new LongAdder();
+	private final LongAdder _discarded = new LongAdder();
 	
 	/**
 	 * Create a Buffer Pool
@@ -51,117 +64,268 @@ public class BufferPool
 	
 	/**
 	 * Initializes the buffer pool by pre-allocating a certain number of ByteBuffers.<br>
-	 * The number of buffers allocated is determined by the specified factor and the maximum size of the pool.
+	 * The number of buffers allocated is determined by the specified factor and the maximum size of the pool.<br>
+	 * Must be called before the pool is used.
 	 * @param factor The factor used to determine the initial number of ByteBuffers to allocate.
+	 * @param autoExpandCapacity whether the maximum size grows when more buffers are in use than the pool can keep.
 	 */
-	public void initialize(float factor)
+	public void initialize(float factor, boolean autoExpandCapacity)
 	{
 		final int maxSize = _maxSize.get();
+		_magazineSize = Math.max(1, Math.min(MAXIMUM_MAGAZINE_SIZE, maxSize / 4));
+		_autoExpandCapacity = autoExpandCapacity;
+		
 		final int amount = (int) Math.min(maxSize, maxSize * factor);
 		for (int i = 0; i < amount; i++)
 		{
-			_buffers.offer(ByteBuffer.allocateDirect(_bufferSize).order(ByteOrder.LITTLE_ENDIAN));
+			_buffers.offer(allocate());
 		}
 		_estimateSize.set(amount);
 	}
 	
 	/**
-	 * Retrieves a ByteBuffer from the pool.<br>
-	 * Returns a ByteBuffer if available, or null if the pool is empty.
-	 * @return A ByteBuffer from the pool, or null if none are available.
+	 * Retrieves a cleared ByteBuffer from the pool.<br>
+	 * A new ByteBuffer is allocated if the pool is empty.
+	 * @return A ByteBuffer with the buffer size of this pool.
 	 */
 	public ByteBuffer get()
 	{
-		final ByteBuffer buffer = _buffers.poll();
+		_acquired.increment();
+		
+		final ByteBuffer buffer = Thread.currentThread().isVirtual() ? pollShared() : _threadMagazines.get().get();
 		if (buffer != null)
 		{
-			_estimateSize.decrementAndGet();
+			return buffer;
 		}
-		return buffer;
-	}
-	
-	/**
-	 * Attempts to recycle a ByteBuffer back into the pool.<br>
-	 * If the pool size has not reached its maximum, the buffer is added back to the pool; otherwise, it is discarded.
-	 * @param buffer The ByteBuffer to be recycled.
-	 * @return true if the buffer was successfully recycled, false otherwise.
-	 */
-	public boolean recycle(ByteBuffer buffer)
-	{
-		final boolean recycle = _estimateSize.get() < _maxSize.get();
-		if (recycle)
+		
+		if (_autoExpandCapacity && (_allocated.sum() >= _maxSize.get()))
 		{
-			_buffers.offer(buffer.clear());
-			_estimateSize.incrementAndGet();
+			_maxSize.incrementAndGet();
 		}
-		return recycle;
+		return allocate();
 	}
 	
 	/**
-	 * Expands the buffer pool's capacity and allocates additional {@link ByteBuffer} instances.
-	 * @param factor The factor used to determine the number of ByteBuffers to allocate.
-	 * @param limit The size limit that, if not exceed, triggers the pool expansion.
+	 * Returns a ByteBuffer to the pool.<br>
+	 * If the pool has reached its maximum size, the buffer is discarded.
+	 * @param buffer The ByteBuffer to be recycled.
 	 */
-	public synchronized void expandCapacity(float factor, int limit)
+	public void recycle(ByteBuffer buffer)
 	{
-		final int maxSize = _maxSize.get();
-		if (maxSize > limit)
-		{
-			return;
-		}
+		_released.increment();
+		buffer.clear();
 		
-		if (factor > 0)
+		if (Thread.currentThread().isVirtual())
 		{
-			final int amount = (int) (maxSize * factor);
-			for (int i = 0; i < amount; i++)
+			if (!offerBuffer(buffer))
 			{
-				_buffers.offer(ByteBuffer.allocateDirect(_bufferSize).order(ByteOrder.LITTLE_ENDIAN));
+				_discarded.increment();
 			}
-			_maxSize.set(maxSize + amount);
-			_estimateSize.addAndGet(amount);
 		}
 		else
 		{
-			_maxSize.set(maxSize * 2);
+			_threadMagazines.get().put(buffer);
 		}
 	}
 	
+	/**
+	 * Increases the maximum size of the buffer pool.
+	 * @param amount The number of buffers added to the maximum size.
+	 */
+	public void expandCapacity(int amount)
+	{
+		_maxSize.addAndGet(amount);
+	}
+	
 	/**
 	 * Returns the maximum size of the buffer pool.
 	 * @return the maximum number of ByteBuffers that can be stored in the pool.
 	 */
-	public synchronized int getMaxSize()
+	public int getMaxSize()
 	{
 		return _maxSize.get();
 	}
 	
 	/**
-	 * @return {@code true} if this buffer pool size has reached its maximum capacity.
+	 * @return the size of the buffers kept in this pool.
+	 */
+	public int getBufferSize()
+	{
+		return _bufferSize;
+	}
+	
+	private ByteBuffer allocate()
+	{
+		_allocated.increment();
+		return ByteBuffer.allocateDirect(_bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	private ByteBuffer pollBuffer()
+	{
+		final ByteBuffer buffer = _buffers.poll();
+		if (buffer != null)
+		{
+			_estimateSize.decrementAndGet();
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Takes a buffer for a thread without magazine.<br>
+	 * When no single buffer is left, a full magazine is taken from the depot and its remaining buffers are kept as single buffers.
+	 * @return a buffer, or {@code null} if the depot is empty
 	 */
-	public boolean isFull()
+	private ByteBuffer pollShared()
+	{
+		final ByteBuffer buffer = pollBuffer();
+		if (buffer != null)
+		{
+			return buffer;
+		}
+		
+		final ByteBuffer[] magazine = _magazines.poll();
+		if (magazine == null)
+		{
+			return null;
+		}
+		
+		// The remaining buffers stay counted in the depot.
+		_estimateSize.decrementAndGet();
+		for (int i = 1; i < magazine.length; i++)
+		{
+			_buffers.offer(magazine[i]);
+		}
+		return magazine[0];
+	}
+	
+	private boolean offerBuffer(ByteBuffer buffer)
+	{
+		if (!reserve(1))
+		{
+			return false;
+		}
+		
+		_buffers.offer(buffer);
+		return true;
+	}
+	
+	private ByteBuffer[] pollMagazine()
 	{
-		return _buffers.size() >= _maxSize.get();
+		final ByteBuffer[] magazine = _magazines.poll();
+		if (magazine != null)
+		{
+			_estimateSize.addAndGet(-magazine.length);
+		}
+		return magazine;
+	}
+	
+	private boolean offerMagazine(ByteBuffer[] magazine)
+	{
+		if (!reserve(magazine.length))
+		{
+			return false;
+		}
+		
+		_magazines.offer(magazine);
+		return true;
 	}
 	
 	/**
-	 * @return {@code true} if this buffer pool is empty.
+	 * Reserves room in the depot for the given number of buffers.
+	 * @param amount the number of buffers
+	 * @return {@code true} if the depot can keep the buffers, {@code false} if it would exceed the maximum size.
 	 */
-	public boolean isEmpty()
+	private boolean reserve(int amount)
 	{
-		return _buffers.isEmpty();
+		int size;
+		do
+		{
+			size = _estimateSize.get();
+			if ((size + amount) > _maxSize.get())
+			{
+				return false;
+			}
+		}
+		while (!_estimateSize.compareAndSet(size, size + amount));
+		return true;
 	}
 	
 	@Override
 	public String toString()
 	{
+		final long acquired = _acquired.sum();
+		final long released = _released.sum();
+		final long allocated = _allocated.sum();
+		final long discarded = _discarded.sum();
+		final int pooled = _estimateSize.get();
+		
 		final StringBuilder sb = new StringBuilder();
-		sb.append("Pool {maxSize=");
-		sb.append(_maxSize.get());
-		sb.append(", bufferSize=");
+		sb.append("Pool {bufferSize=");
 		sb.append(_bufferSize);
-		sb.append(", estimateUse=");
-		sb.append(_estimateSize.get());
+		sb.append(", maxSize=");
+		sb.append(_maxSize.get());
+		sb.append(", pooled=");
+		sb.append(pooled);
+		sb.append(", inUse=");
+		sb.append(acquired - released);
+		sb.append(", threadCached=");
+		sb.append(allocated - discarded - pooled - (acquired - released));
+		sb.append(", acquired=");
+		sb.append(acquired);
+		sb.append(", allocated=");
+		sb.append(allocated);
+		sb.append(", discarded=");
+		sb.append(discarded);
 		sb.append('}');
 		return sb.toString();
 	}
+	
+	/**
+	 * The buffers kept by one platform thread.<br>
+	 * Only the owner thread accesses a magazine, whole magazines are exchanged with the depot when they run empty or full.
+	 */
+	private class Magazine
+	{
+		private ByteBuffer[] _loaded = new ByteBuffer[_magazineSize];
+		private ByteBuffer[] _empty;
+		private int _count;
+		
+		public ByteBuffer get()
+		{
+			if (_count == 0)
+			{
+				final ByteBuffer[] magazine = pollMagazine();
+				if (magazine == null)
+				{
+					return pollBuffer();
+				}
+				
+				_empty = _loaded;
+				_loaded = magazine;
+				_count = magazine.length;
+			}
+			
+			final ByteBuffer buffer = _loaded[--_count];
+			_loaded[_count] = null;
+			return buffer;
+		}
+		
+		public void put(ByteBuffer buffer)
+		{
+			if (_count == _loaded.length)
+			{
+				if (!offerMagazine(_loaded))
+				{
+					_discarded.increment();
+					return;
+				}
+				
+				_loaded = _empty != null ? _empty : new ByteBuffer[_magazineSize];
+				_empty = null;
+				_count = 0;
+			}
+			
+			_loaded[_count++] = buffer;
+		}
+	}
 }
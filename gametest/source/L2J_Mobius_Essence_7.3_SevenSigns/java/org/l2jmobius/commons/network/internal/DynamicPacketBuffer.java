@@ -185,6 +185,13 @@ public class DynamicPacketBuffer extends InternalWritableBuffer
 		setInt(index, value);
 	}
 	
+	@Override
+	public void writeLong(int index, long value)
+	{
+		checkBounds(index, 8);
+		setLong(index, value);
+	}
+	
 	private void setInt(int index, int value)
 	{
 		final PacketNode node = indexToNode(index);
@@ -318,6 +325,7 @@ public class DynamicPacketBuffer extends InternalWritableBuffer
 		return Float.intBitsToFloat(readInt(index));
 	}
 	
+	@Override
 	public long readLong(int index)
 	{
 		checkSize(index + 8);
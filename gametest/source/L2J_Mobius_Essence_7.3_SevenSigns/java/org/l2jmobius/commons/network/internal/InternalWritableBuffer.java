@@ -61,16 +61,19 @@ public abstract class InternalWritableBuffer extends WritableBuffer
 	public abstract void releaseResources();
 	
 	/**
-	 * Create a new Dynamic Buffer that increases as needed based on ArrayPacketBuffer
-	 * @param buffer the base buffer
+	 * Create a new Dynamic Buffer that increases as needed based on a copy of the given data.
+	 * @param data the data to copy, starting at index 0
 	 * @param resourcePool the resource pool used to get new buffers when needed
 	 * @param packetClass the Class<?> of the writable packet
 	 * @return a new Dynamic buffer
 	 */
-	public static InternalWritableBuffer dynamicOf(ArrayPacketBuffer buffer, ResourcePool resourcePool, Class<?> packetClass)
+	public static InternalWritableBuffer dynamicOf(byte[] data, ResourcePool resourcePool, Class<?> packetClass)
 	{
-		final DynamicPacketBuffer copy = new DynamicPacketBuffer(buffer.toByteBuffer(), resourcePool, packetClass);
-		copy.limit(buffer.limit());
+		final ByteBuffer buffer = resourcePool.getBuffer(data.length);
+		buffer.put(data).flip();
+		
+		final DynamicPacketBuffer copy = new DynamicPacketBuffer(buffer, resourcePool, packetClass);
+		copy.limit(data.length);
 		return copy;
 	}
 	
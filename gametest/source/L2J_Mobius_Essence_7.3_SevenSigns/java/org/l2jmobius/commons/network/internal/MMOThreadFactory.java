@@ -43,9 +43,17 @@ public class MMOThreadFactory implements ThreadFactory
 	@Override
 	public Thread newThread(Runnable r)
 	{
-		final Thread thread = new Thread(null, r, _namePrefix + _threadNumber.getAndIncrement(), 0);
+		final Thread thread = new Thread(null, r, newThreadName(), 0);
 		thread.setPriority(_priority);
 		thread.setDaemon(false);
 		return thread;
 	}
+	
+	/**
+	 * @return the name for the next thread created by this factory.
+	 */
+	public String newThreadName()
+	{
+		return _namePrefix + _threadNumber.getAndIncrement();
+	}
 }
@@ -98,6 +98,12 @@ public class SinglePacketBuffer implements ReadableBuffer
 		return _buffer.getInt(index);
 	}
 	
+	@Override
+	public long readLong(int index)
+	{
+		return _buffer.getLong(index);
+	}
+	
 	@Override
 	public float readFloat()
 	{
@@ -134,6 +140,12 @@ public class SinglePacketBuffer implements ReadableBuffer
 		_buffer.putInt(index, value);
 	}
 	
+	@Override
+	public void writeLong(int index, long value)
+	{
+		_buffer.putLong(index, value);
+	}
+	
 	@Override
 	public int limit()
 	{
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.commons.threads;
+
+import java.time.Duration;
+import java.util.logging.Logger;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Logs virtual threads that stay pinned to their carrier thread for longer than a threshold.<br>
+ * Uses the JDK Flight Recorder <b>jdk.VirtualThreadPinned</b> event, so no JVM argument is required.
+ * @author Mobius
+ */
+public class PinnedThreadMonitor
+{
+	private static final Logger LOGGER = Logger.getLogger(PinnedThreadMonitor.class.getName());
+	
+	private static final int MAX_FRAMES = 15;
+	
+	/**
+	 * Starts monitoring pinned virtual threads in a background recording stream.
+	 * @param threshold the minimum pinned time in milliseconds for a pinned thread to be reported
+	 */
+	public static void start(long threshold)
+	{
+		try
+		{
+			final RecordingStream stream = new RecordingStream();
+			stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(threshold)).withStackTrace();
+			stream.onEvent("jdk.VirtualThreadPinned", PinnedThreadMonitor::report);
+			stream.startAsync();
+			LOGGER.info("...monitoring virtual threads pinned for more than " + threshold + " milliseconds.");
+		}
+		catch (Exception e)
+		{
+			LOGGER.warning("PinnedThreadMonitor: Could not start monitoring. " + e.getMessage());
+		}
+	}
+	
+	private static void report(RecordedEvent event)
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Virtual thread ");
+		sb.append(event.getThread() == null ? "unknown" : event.getThread().getJavaName());
+		sb.append(" was pinned for ");
+		sb.append(event.getDuration().toMillis());
+		sb.append(" milliseconds.");
+		if (event.getStackTrace() != null)
+		{
+			int count = 0;
+			for (RecordedFrame frame : event.getStackTrace().getFrames())
+			{
+				if (count++ >= MAX_FRAMES)
+				{
+					sb.append(System.lineSeparator());
+					sb.append("\t...");
+					break;
+				}
+				
+				sb.append(System.lineSeparator());
+				sb.append("\tat ");
+				sb.append(frame.getMethod().getType().getName());
+				sb.append('.');
+				sb.append(frame.getMethod().getName());
+				sb.append(" line ");
+				sb.append(frame.getLineNumber());
+			}
+		}
+		LOGGER.warning(sb.toString());
+	}
+}
@@ -21,6 +21,15 @@
 package org.l2jmobius.commons.threads;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -28,6 +37,8 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import org.l2jmobius.Config;
@@ -41,8 +52,11 @@ public class ThreadPool
 {
 	private static final Logger LOGGER = Logger.getLogger(ThreadPool.class.getName());
 	
-	private static final ScheduledThreadPoolExecutor SCHEDULED_POOL = new ScheduledThreadPoolExecutor(Config.SCHEDULED_THREAD_POOL_SIZE, new ThreadProvider("L2jMobius ScheduledThread"), new ThreadPoolExecutor.CallerRunsPolicy());
-	private static final ThreadPoolExecutor INSTANT_POOL = new ThreadPoolExecutor(Config.INSTANT_THREAD_POOL_SIZE, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new ThreadProvider("L2jMobius Thread"));
+	private static final int SCHEDULED_POOL_SIZE = Config.VIRTUAL_THREADS ? Math.min(Config.SCHEDULED_THREAD_POOL_SIZE, Runtime.getRuntime().availableProcessors()) : Config.SCHEDULED_THREAD_POOL_SIZE;
+	private static final ScheduledThreadPoolExecutor SCHEDULED_POOL = new ScheduledThreadPoolExecutor(SCHEDULED_POOL_SIZE, new ThreadProvider("L2jMobius ScheduledThread"), new ThreadPoolExecutor.CallerRunsPolicy());
+	private static final ThreadPoolExecutor INSTANT_POOL = Config.VIRTUAL_THREADS ? null : new ThreadPoolExecutor(Config.INSTANT_THREAD_POOL_SIZE, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new ThreadProvider("L2jMobius Thread"));
+	private static final ExecutorService VIRTUAL_POOL = Config.VIRTUAL_THREADS ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("L2jMobius VirtualThread ", 1).factory()) : null;
+	private static final TimingWheel TIMING_WHEEL = Config.TIMING_WHEEL_SCHEDULER ? new TimingWheel(VIRTUAL_POOL != null ? VIRTUAL_POOL : new ThreadPoolExecutor(SCHEDULED_POOL_SIZE, SCHEDULED_POOL_SIZE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new ThreadProvider("L2jMobius TimingWheelThread")), Config.TIMING_WHEEL_TICK) : null;
 	private static final long MAX_DELAY = 3155695200000L; // One hundred years.
 	private static final long MIN_DELAY = 0L;
 	
@@ -62,24 +76,51 @@ public class ThreadPool
 		// Configure ScheduledThreadPoolExecutor.
 		SCHEDULED_POOL.setRejectedExecutionHandler(new RejectedExecutionHandlerImpl());
 		SCHEDULED_POOL.setRemoveOnCancelPolicy(true);
-		SCHEDULED_POOL.prestartAllCoreThreads();
+		if (TIMING_WHEEL == null)
+		{
+			// The timing wheel runs tasks on its own executor, so the scheduled pool only starts threads if something uses it directly.
+			SCHEDULED_POOL.prestartAllCoreThreads();
+		}
 		
 		// Configure ThreadPoolExecutor.
-		INSTANT_POOL.setRejectedExecutionHandler(new RejectedExecutionHandlerImpl());
-		INSTANT_POOL.prestartAllCoreThreads();
+		if (INSTANT_POOL != null)
+		{
+			INSTANT_POOL.setRejectedExecutionHandler(new RejectedExecutionHandlerImpl());
+			INSTANT_POOL.prestartAllCoreThreads();
+		}
 		
 		// Schedule the purge task.
 		scheduleAtFixedRate(ThreadPool::purge, 60000, 60000);
 		
 		// Log information.
-		LOGGER.info("...scheduled pool executor with " + Config.SCHEDULED_THREAD_POOL_SIZE + " total threads.");
-		LOGGER.info("...instant pool executor with " + Config.INSTANT_THREAD_POOL_SIZE + " total threads.");
+		LOGGER.info("...scheduled pool executor with " + SCHEDULED_POOL_SIZE + " total threads.");
+		if (TIMING_WHEEL != null)
+		{
+			LOGGER.info("...scheduled tasks are timed by a timing wheel with " + Config.TIMING_WHEEL_TICK + " millisecond ticks.");
+		}
+		if (VIRTUAL_POOL != null)
+		{
+			LOGGER.info("...instant and scheduled tasks run on virtual threads.");
+			
+			// Report virtual threads pinned to their carrier.
+			if (Config.VIRTUAL_THREAD_PINNING_THRESHOLD > 0)
+			{
+				PinnedThreadMonitor.start(Config.VIRTUAL_THREAD_PINNING_THRESHOLD);
+			}
+		}
+		else
+		{
+			LOGGER.info("...instant pool executor with " + Config.INSTANT_THREAD_POOL_SIZE + " total threads.");
+		}
 	}
 	
 	public static void purge()
 	{
 		SCHEDULED_POOL.purge();
-		INSTANT_POOL.purge();
+		if (INSTANT_POOL != null)
+		{
+			INSTANT_POOL.purge();
+		}
 	}
 	
 	/**
@@ -92,6 +133,18 @@ public class ThreadPool
 	{
 		try
 		{
+			if (TIMING_WHEEL != null)
+			{
+				return TIMING_WHEEL.schedule(runnable, validate(delay));
+			}
+			
+			if (VIRTUAL_POOL != null)
+			{
+				final VirtualRunnableWrapper wrapper = new VirtualRunnableWrapper(runnable, false);
+				wrapper.setScheduledFuture(SCHEDULED_POOL.schedule(wrapper, validate(delay), TimeUnit.MILLISECONDS));
+				return wrapper;
+			}
+			
 			return SCHEDULED_POOL.schedule(new RunnableWrapper(runnable), validate(delay), TimeUnit.MILLISECONDS);
 		}
 		catch (Exception e)
@@ -112,6 +165,18 @@ public class ThreadPool
 	{
 		try
 		{
+			if (TIMING_WHEEL != null)
+			{
+				return TIMING_WHEEL.scheduleAtFixedRate(runnable, validate(initialDelay), validate(period));
+			}
+			
+			if (VIRTUAL_POOL != null)
+			{
+				final VirtualRunnableWrapper wrapper = new VirtualRunnableWrapper(runnable, true);
+				wrapper.setScheduledFuture(SCHEDULED_POOL.scheduleAtFixedRate(wrapper, validate(initialDelay), validate(period), TimeUnit.MILLISECONDS));
+				return wrapper;
+			}
+			
 			return SCHEDULED_POOL.scheduleAtFixedRate(new RunnableWrapper(runnable), validate(initialDelay), validate(period), TimeUnit.MILLISECONDS);
 		}
 		catch (Exception e)
@@ -141,6 +206,36 @@ public class ThreadPool
 		}
 	}
 	
+	/**
+	 * @return the number of pending scheduled tasks by class of the scheduled runnable, or an empty map when the timing wheel is not used.
+	 */
+	public static Map<String, Integer> getPendingScheduledTasks()
+	{
+		if (TIMING_WHEEL == null)
+		{
+			return Map.of();
+		}
+		
+		return TIMING_WHEEL.getPendingTasks();
+	}
+	
+	/**
+	 * @return the number of pending scheduled tasks, followed by the classes with the most pending tasks when the timing wheel is used.
+	 */
+	public static String getStatistics()
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Pending scheduled tasks: ").append(TIMING_WHEEL != null ? TIMING_WHEEL.getPendingTaskCount() : SCHEDULED_POOL.getQueue().size()).append('.');
+		
+		final List<Entry<String, Integer>> pendingTasks = new ArrayList<>(getPendingScheduledTasks().entrySet());
+		pendingTasks.sort(Entry.<String, Integer> comparingByValue().reversed());
+		for (Entry<String, Integer> entry : pendingTasks.subList(0, Math.min(10, pendingTasks.size())))
+		{
+			sb.append(System.lineSeparator()).append(entry.getKey()).append(": ").append(entry.getValue());
+		}
+		return sb.toString();
+	}
+	
 	/**
 	 * Executes the given task sometime in the future.
 	 * @param runnable : the task to execute.
@@ -149,7 +244,14 @@ public class ThreadPool
 	{
 		try
 		{
-			INSTANT_POOL.execute(new RunnableWrapper(runnable));
+			if (VIRTUAL_POOL != null)
+			{
+				VIRTUAL_POOL.execute(new RunnableWrapper(runnable));
+			}
+			else
+			{
+				INSTANT_POOL.execute(new RunnableWrapper(runnable));
+			}
 		}
 		catch (Exception e)
 		{
@@ -187,7 +289,18 @@ public class ThreadPool
 		{
 			LOGGER.info("ThreadPool: Shutting down.");
 			SCHEDULED_POOL.shutdownNow();
-			INSTANT_POOL.shutdownNow();
+			if (TIMING_WHEEL != null)
+			{
+				TIMING_WHEEL.shutdown();
+			}
+			if (INSTANT_POOL != null)
+			{
+				INSTANT_POOL.shutdownNow();
+			}
+			if (VIRTUAL_POOL != null)
+			{
+				VIRTUAL_POOL.shutdownNow();
+			}
 		}
 		catch (Throwable t)
 		{
@@ -255,4 +368,102 @@ public class ThreadPool
 			}
 		}
 	}
+	
+	/**
+	 * Hands a scheduled task over to a virtual thread, so the scheduler thread is released immediately.<br>
+	 * A periodic task is skipped while its previous run is still in progress, so runs of the same task never overlap.<br>
+	 * The wrapper is also the future returned to the caller. Delay and cancellation come from the scheduler, while a one-shot task is only done once its virtual thread has run it.
+	 */
+	private static class VirtualRunnableWrapper implements Runnable, ScheduledFuture<Object>
+	{
+		private final Runnable _runnable;
+		private final AtomicBoolean _running = new AtomicBoolean();
+		private final CompletableFuture<Object> _completion = new CompletableFuture<>();
+		private volatile ScheduledFuture<?> _scheduledFuture;
+		
+		public VirtualRunnableWrapper(Runnable runnable, boolean periodic)
+		{
+			_runnable = new RunnableWrapper(() ->
+			{
+				try
+				{
+					runnable.run();
+				}
+				finally
+				{
+					_running.set(false);
+					if (!periodic)
+					{
+						_completion.complete(null);
+					}
+				}
+			});
+		}
+		
+		public void setScheduledFuture(ScheduledFuture<?> scheduledFuture)
+		{
+			_scheduledFuture = scheduledFuture;
+		}
+		
+		@Override
+		public void run()
+		{
+			if (_running.compareAndSet(false, true))
+			{
+				VIRTUAL_POOL.execute(_runnable);
+			}
+		}
+		
+		@Override
+		public long getDelay(TimeUnit unit)
+		{
+			return _scheduledFuture.getDelay(unit);
+		}
+		
+		@Override
+		public int compareTo(Delayed other)
+		{
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+		
+		/**
+		 * Cancels the task if the scheduler has not handed it over yet, or stops further runs of a periodic task.<br>
+		 * A run already handed over to a virtual thread is not interrupted.
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			if (!_scheduledFuture.cancel(false))
+			{
+				return false;
+			}
+			
+			_completion.cancel(false);
+			return true;
+		}
+		
+		@Override
+		public boolean isCancelled()
+		{
+			return _completion.isCancelled();
+		}
+		
+		@Override
+		public boolean isDone()
+		{
+			return _completion.isDone();
+		}
+		
+		@Override
+		public Object get() throws InterruptedException, ExecutionException
+		{
+			return _completion.get();
+		}
+		
+		@Override
+		public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+		{
+			return _completion.get(timeout, unit);
+		}
+	}
 }
@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.commons.threads;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Hashed hierarchical timing wheel.<br>
+ * Scheduling and cancelling a task are O(1) operations that only append the task to a lock-free queue.<br>
+ * A single timer thread owns the wheels: on every tick it inserts the new tasks, unlinks the cancelled ones, cascades the higher wheels<br>
+ * and hands all expired tasks of the tick over to the executor. Each level has 64 slots, so with the default 10 millisecond tick<br>
+ * the first level covers 640 milliseconds, the second 41 seconds, the third 44 minutes and so on.
+ * @author Mobius
+ */
+public class TimingWheel
+{
+	private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+	
+	private static final int WHEEL_BITS = 6;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int LEVELS = 7; // Enough to hold one hundred years with 10 millisecond ticks.
+	
+	private static final int WAITING = 0;
+	private static final int RUNNING = 1;
+	private static final int DONE = 2;
+	private static final int CANCELLED = 3;
+	
+	private final WheelTask[][] _wheels = new WheelTask[LEVELS][WHEEL_SIZE];
+	private final Queue<WheelTask> _pendingTasks = new ConcurrentLinkedQueue<>();
+	private final Queue<WheelTask> _cancelledTasks = new ConcurrentLinkedQueue<>();
+	private final Map<Class<?>, AtomicInteger> _pendingByClass = new ConcurrentHashMap<>();
+	private final Executor _executor;
+	private final long _tickNanos;
+	private final long _startTime;
+	private final Thread _timerThread;
+	private volatile long _currentTick;
+	private volatile boolean _shutdown;
+	
+	/**
+	 * Creates and starts a timing wheel.
+	 * @param executor the executor running the expired tasks
+	 * @param tickMillis the duration of a tick in milliseconds
+	 */
+	public TimingWheel(Executor executor, long tickMillis)
+	{
+		_executor = executor;
+		_tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		_startTime = System.nanoTime();
+		_timerThread = new Thread(this::runTimer, "L2jMobius TimingWheel");
+		_timerThread.setDaemon(true);
+		_timerThread.setPriority(Thread.MAX_PRIORITY);
+		_timerThread.start();
+	}
+	
+	/**
+	 * Schedules a one-shot task.
+	 * @param runnable the task to execute
+	 * @param delay the delay in milliseconds
+	 * @return a ScheduledFuture representing the pending task
+	 */
+	public ScheduledFuture<?> schedule(Runnable runnable, long delay)
+	{
+		return add(new WheelTask(runnable, TimeUnit.MILLISECONDS.toNanos(delay), 0));
+	}
+	
+	/**
+	 * Schedules a periodic task. The next run is scheduled when the previous one ends, so runs of the same task never overlap.
+	 * @param runnable the task to execute
+	 * @param initialDelay the delay of the first execution in milliseconds
+	 * @param period the period between successive executions in milliseconds
+	 * @return a ScheduledFuture representing the pending task
+	 */
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long initialDelay, long period)
+	{
+		return add(new WheelTask(runnable, TimeUnit.MILLISECONDS.toNanos(initialDelay), TimeUnit.MILLISECONDS.toNanos(Math.max(1, period))));
+	}
+	
+	private WheelTask add(WheelTask task)
+	{
+		_pendingByClass.computeIfAbsent(task._runnable.getClass(), _ -> new AtomicInteger()).incrementAndGet();
+		
+		if (task._deadline - System.nanoTime() <= 0)
+		{
+			_executor.execute(task);
+		}
+		else
+		{
+			_pendingTasks.offer(task);
+		}
+		return task;
+	}
+	
+	/**
+	 * Stops the timer thread. Pending tasks are discarded.
+	 */
+	public void shutdown()
+	{
+		_shutdown = true;
+		LockSupport.unpark(_timerThread);
+	}
+	
+	/**
+	 * @return the number of pending tasks, by class of the scheduled runnable, sorted by class name.
+	 */
+	public Map<String, Integer> getPendingTasks()
+	{
+		final Map<String, Integer> result = new TreeMap<>();
+		for (Map.Entry<Class<?>, AtomicInteger> entry : _pendingByClass.entrySet())
+		{
+			final int count = entry.getValue().get();
+			if (count > 0)
+			{
+				// Lambdas of the same class are grouped under their declaring class.
+				final String name = entry.getKey().getName();
+				final int lambdaIndex = name.indexOf("$$Lambda");
+				result.merge(lambdaIndex > 0 ? name.substring(0, lambdaIndex) : name, count, Integer::sum);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the total number of pending tasks.
+	 */
+	public int getPendingTaskCount()
+	{
+		int count = 0;
+		for (AtomicInteger value : _pendingByClass.values())
+		{
+			count += value.get();
+		}
+		return count;
+	}
+	
+	private void runTimer()
+	{
+		long tick = 0;
+		while (!_shutdown)
+		{
+			final long nextTickTime = _startTime + ((tick + 1) * _tickNanos);
+			final long sleepTime = nextTickTime - System.nanoTime();
+			if (sleepTime > 0)
+			{
+				LockSupport.parkNanos(sleepTime);
+				continue;
+			}
+			
+			try
+			{
+				processTick(++tick);
+			}
+			catch (Throwable e)
+			{
+				LOGGER.warning(getClass().getSimpleName() + ": Problem processing tick " + tick + ". " + e.getMessage());
+			}
+		}
+	}
+	
+	private void processTick(long tick)
+	{
+		_currentTick = tick;
+		
+		// Move tasks of higher levels that are now in range of lower levels.
+		for (int level = 1; level < LEVELS; level++)
+		{
+			if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) != 0)
+			{
+				break;
+			}
+			
+			final int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+			WheelTask task = _wheels[level][slot];
+			_wheels[level][slot] = null;
+			while (task != null)
+			{
+				final WheelTask next = task._next;
+				task._next = null;
+				task._previous = null;
+				task._level = -1;
+				insert(task);
+				task = next;
+			}
+		}
+		
+		// Insert new tasks.
+		WheelTask task;
+		while ((task = _pendingTasks.poll()) != null)
+		{
+			if (task._state.get() == WAITING)
+			{
+				insert(task);
+			}
+		}
+		
+		// Unlink cancelled tasks.
+		while ((task = _cancelledTasks.poll()) != null)
+		{
+			unlink(task);
+		}
+		
+		// Run all tasks of this tick.
+		final int slot = (int) (tick & WHEEL_MASK);
+		task = _wheels[0][slot];
+		_wheels[0][slot] = null;
+		while (task != null)
+		{
+			final WheelTask next = task._next;
+			task._next = null;
+			task._previous = null;
+			task._level = -1;
+			if (task._state.get() == WAITING)
+			{
+				_executor.execute(task);
+			}
+			task = next;
+		}
+	}
+	
+	private void insert(WheelTask task)
+	{
+		final long ticks = task._deadlineTick - _currentTick;
+		if (ticks <= 0)
+		{
+			_executor.execute(task);
+			return;
+		}
+		
+		int level = 0;
+		while ((level < (LEVELS - 1)) && (ticks >= (1L << (WHEEL_BITS * (level + 1)))))
+		{
+			level++;
+		}
+		
+		final int slot = (int) ((task._deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+		final WheelTask head = _wheels[level][slot];
+		task._next = head;
+		if (head != null)
+		{
+			head._previous = task;
+		}
+		_wheels[level][slot] = task;
+		task._level = level;
+		task._slot = slot;
+	}
+	
+	private void unlink(WheelTask task)
+	{
+		if (task._level < 0)
+		{
+			return;
+		}
+		
+		if (task._previous != null)
+		{
+			task._previous._next = task._next;
+		}
+		else
+		{
+			_wheels[task._level][task._slot] = task._next;
+		}
+		if (task._next != null)
+		{
+			task._next._previous = task._previous;
+		}
+		task._next = null;
+		task._previous = null;
+		task._level = -1;
+	}
+	
+	private long toTick(long deadline)
+	{
+		// Round up, so a task never runs before its delay has elapsed.
+		return ((deadline - _startTime) + _tickNanos - 1) / _tickNanos;
+	}
+	
+	private void release(WheelTask task)
+	{
+		final AtomicInteger count = _pendingByClass.get(task._runnable.getClass());
+		if (count != null)
+		{
+			count.decrementAndGet();
+		}
+	}
+	
+	private class WheelTask implements Runnable, ScheduledFuture<Object>
+	{
+		private final Runnable _runnable;
+		private final long _period;
+		private final AtomicInteger _state = new AtomicInteger(WAITING);
+		private volatile long _deadline;
+		private volatile Thread _runner;
+		
+		// Only accessed by the timer thread.
+		private long _deadlineTick;
+		private WheelTask _previous;
+		private WheelTask _next;
+		private int _level = -1;
+		private int _slot;
+		
+		public WheelTask(Runnable runnable, long delay, long period)
+		{
+			_runnable = runnable;
+			_period = period;
+			_deadline = System.nanoTime() + Math.max(0, delay);
+			_deadlineTick = toTick(_deadline);
+		}
+		
+		@Override
+		public void run()
+		{
+			if (!_state.compareAndSet(WAITING, RUNNING))
+			{
+				return;
+			}
+			
+			_runner = Thread.currentThread();
+			try
+			{
+				_runnable.run();
+			}
+			catch (Throwable e)
+			{
+				final Thread t = Thread.currentThread();
+				final UncaughtExceptionHandler h = t.getUncaughtExceptionHandler();
+				if (h != null)
+				{
+					h.uncaughtException(t, e);
+				}
+			}
+			finally
+			{
+				_runner = null;
+				if (_period > 0)
+				{
+					if (_state.compareAndSet(RUNNING, WAITING))
+					{
+						_deadline += _period;
+						_deadlineTick = toTick(_deadline);
+						if (_shutdown)
+						{
+							_state.set(CANCELLED);
+						}
+						else
+						{
+							_pendingTasks.offer(this);
+						}
+					}
+				}
+				else if (_state.compareAndSet(RUNNING, DONE))
+				{
+					release(this);
+					signalDone();
+				}
+			}
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			while (true)
+			{
+				final int state = _state.get();
+				if ((state == DONE) || (state == CANCELLED))
+				{
+					return false;
+				}
+				
+				if (_state.compareAndSet(state, CANCELLED))
+				{
+					if (state == WAITING)
+					{
+						_cancelledTasks.offer(this);
+					}
+					else if (mayInterruptIfRunning)
+					{
+						final Thread runner = _runner;
+						if (runner != null)
+						{
+							runner.interrupt();
+						}
+					}
+					
+					release(this);
+					signalDone();
+					return true;
+				}
+			}
+		}
+		
+		private synchronized void signalDone()
+		{
+			notifyAll();
+		}
+		
+		@Override
+		public boolean isCancelled()
+		{
+			return _state.get() == CANCELLED;
+		}
+		
+		@Override
+		public boolean isDone()
+		{
+			final int state = _state.get();
+			return (state == DONE) || (state == CANCELLED);
+		}
+		
+		@Override
+		public synchronized Object get() throws InterruptedException
+		{
+			while (!isDone())
+			{
+				wait();
+			}
+			if (isCancelled())
+			{
+				throw new CancellationException();
+			}
+			return null;
+		}
+		
+		@Override
+		public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException
+		{
+			final long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (!isDone())
+			{
+				final long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+				{
+					throw new TimeoutException();
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+			if (isCancelled())
+			{
+				throw new CancellationException();
+			}
+			return null;
+		}
+		
+		@Override
+		public long getDelay(TimeUnit unit)
+		{
+			return unit.convert(_deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		
+		@Override
+		public int compareTo(Delayed other)
+		{
+			if (other == this)
+			{
+				return 0;
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+		
+		@Override
+		public String toString()
+		{
+			return _runnable.toString();
+		}
+	}
+}
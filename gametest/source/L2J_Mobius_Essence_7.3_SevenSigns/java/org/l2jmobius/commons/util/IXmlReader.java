@@ -21,6 +21,8 @@
 package org.l2jmobius.commons.util;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -36,6 +38,13 @@ import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -56,6 +65,11 @@ public interface IXmlReader
 	static final String JAXP_SCHEMA_LANGUAGE = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
 	static final String W3C_XML_SCHEMA = "http://www.w3.org/2001/XMLSchema";
 	
+	/** Shared by all streaming readers, creating readers from a configured factory is thread-safe. */
+	static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+	/** Validates streamed files against the schema named in each file, compiled schemas are kept between files. */
+	static final Schema XML_SCHEMA = createSchema();
+	
 	/**
 	 * Loads or reloads the data. It is recommended to clear the data storage (either a list or a map) before loading.
 	 */
@@ -71,7 +85,7 @@ public interface IXmlReader
 	}
 	
 	/**
-	 * Parses a single XML file. Calls {@link #parseDocument(Document, File)} if the file is successfully parsed. <b>Validation is enabled by default.</b>
+	 * Parses a single XML file. Calls {@link #parseDocument(Document, File)} if the file is successfully parsed, or {@link #parseStream(XMLStreamReader, File)} for streaming readers. <b>Validation is enabled by default.</b>
 	 * @param file the XML file to parse.
 	 */
 	default void parseFile(File file)
@@ -82,6 +96,43 @@ public interface IXmlReader
 			return;
 		}
 		
+		if (isStreaming())
+		{
+			if (isValidating())
+			{
+				try
+				{
+					XML_SCHEMA.newValidator().validate(new StreamSource(file));
+				}
+				catch (SAXParseException e)
+				{
+					LOGGER.warning("Error validating " + file.getName() + " at line " + e.getLineNumber() + ", column " + e.getColumnNumber() + ": " + e.getMessage());
+				}
+				catch (Exception e)
+				{
+					LOGGER.log(Level.WARNING, "Error validating " + file.getName(), e);
+				}
+			}
+			
+			try (InputStream input = Files.newInputStream(file.toPath()))
+			{
+				final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+				try
+				{
+					parseStream(reader, file);
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+			catch (Exception e)
+			{
+				LOGGER.log(Level.WARNING, "Error parsing " + file.getName(), e);
+			}
+			return;
+		}
+		
 		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		factory.setNamespaceAware(true);
 		factory.setValidating(isValidating());
@@ -90,7 +141,7 @@ public interface IXmlReader
 		{
 			factory.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
 			final DocumentBuilder builder = factory.newDocumentBuilder();
-			parseDocument(builder.parse(file), file);
+			parseDocument(Config.DATAPACK_CACHE ? XmlCache.getDocument(getClass().getName(), file, builder) : builder.parse(file), file);
 		}
 		catch (SAXParseException e)
 		{
@@ -205,11 +256,24 @@ public interface IXmlReader
 	}
 	
 	/**
-	 * Abstract method for parsing the current document. Called from {@link #parseFile(File)}.
+	 * Method for parsing the current document. Called from {@link #parseFile(File)} when the reader is not streaming.
 	 * @param document the document to parse
 	 * @param file the file being processed
 	 */
-	void parseDocument(Document document, File file);
+	default void parseDocument(Document document, File file)
+	{
+	}
+	
+	/**
+	 * Method for parsing the current file as a stream of events. Called from {@link #parseFile(File)} when {@link #isStreaming()} is {@code true}.<br>
+	 * The reader is positioned at the start of the document. Attribute values can be read directly from it while an element is open, without building a document tree.
+	 * @param reader the stream reader of the file
+	 * @param file the file being processed
+	 * @throws XMLStreamException if the file is not well-formed
+	 */
+	default void parseStream(XMLStreamReader reader, File file) throws XMLStreamException
+	{
+	}
 	
 	/**
 	 * Parses a boolean value from the given node.
@@ -706,6 +770,206 @@ public interface IXmlReader
 		}
 	}
 	
+	/**
+	 * Advances the stream reader to the next child element of the current element.<br>
+	 * Text, comments and processing instructions are skipped. Every child element returned must be fully consumed, either by reading it or with {@link #skipElement(XMLStreamReader)}, before calling this method again.
+	 * @param reader the stream reader
+	 * @return {@code true} if the reader is positioned at the start of a child element, {@code false} if the current element has ended
+	 * @throws XMLStreamException if the file is not well-formed
+	 */
+	default boolean nextElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		while (reader.hasNext())
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+				{
+					return true;
+				}
+				case XMLStreamConstants.END_ELEMENT:
+				{
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Skips the remainder of the current element, including all of its children, leaving the reader at its end.
+	 * @param reader the stream reader positioned inside an element
+	 * @throws XMLStreamException if the file is not well-formed
+	 */
+	default void skipElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+				{
+					depth++;
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT:
+				{
+					depth--;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parses a boolean value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the parsed boolean value, or null if the attribute is not found
+	 */
+	default Boolean parseBoolean(XMLStreamReader reader, String name)
+	{
+		return parseBoolean(reader, name, null);
+	}
+	
+	/**
+	 * Parses a boolean value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @param defaultValue the default value to return if the attribute is not found
+	 * @return the parsed boolean value, or the default value if the attribute is not found
+	 */
+	default Boolean parseBoolean(XMLStreamReader reader, String name, Boolean defaultValue)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Boolean.valueOf(value) : defaultValue;
+	}
+	
+	/**
+	 * Parses an int value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @param defaultValue the default value to return if the attribute is not found
+	 * @return the parsed int value, or the default value if the attribute is not found
+	 */
+	default int parseInt(XMLStreamReader reader, String name, int defaultValue)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Integer.decode(value) : defaultValue;
+	}
+	
+	/**
+	 * Parses an Integer value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the parsed Integer value, or null if the attribute is not found
+	 */
+	default Integer parseInteger(XMLStreamReader reader, String name)
+	{
+		return parseInteger(reader, name, null);
+	}
+	
+	/**
+	 * Parses an Integer value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @param defaultValue the default value to return if the attribute is not found
+	 * @return the parsed Integer value, or the default value if the attribute is not found
+	 */
+	default Integer parseInteger(XMLStreamReader reader, String name, Integer defaultValue)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Integer.decode(value) : defaultValue;
+	}
+	
+	/**
+	 * Parses a Long value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the parsed Long value, or null if the attribute is not found
+	 */
+	default Long parseLong(XMLStreamReader reader, String name)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Long.decode(value) : null;
+	}
+	
+	/**
+	 * Parses a Float value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the parsed Float value, or null if the attribute is not found
+	 */
+	default Float parseFloat(XMLStreamReader reader, String name)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Float.valueOf(value) : null;
+	}
+	
+	/**
+	 * Parses a Double value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the parsed Double value, or null if the attribute is not found
+	 */
+	default Double parseDouble(XMLStreamReader reader, String name)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? Double.valueOf(value) : null;
+	}
+	
+	/**
+	 * Parses a String value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @return the String value, or null if the attribute is not found
+	 */
+	default String parseString(XMLStreamReader reader, String name)
+	{
+		return reader.getAttributeValue(null, name);
+	}
+	
+	/**
+	 * Parses a String value from the specified attribute of the current element.
+	 * @param reader the stream reader positioned at an element
+	 * @param name the name of the attribute to parse
+	 * @param defaultValue the default value to return if the attribute is not found
+	 * @return the String value, or the default value if the attribute is not found
+	 */
+	default String parseString(XMLStreamReader reader, String name, String defaultValue)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		return value != null ? value : defaultValue;
+	}
+	
+	/**
+	 * Parses an enum value from the specified attribute of the current element.
+	 * @param <T> the enum type
+	 * @param reader the stream reader positioned at an element
+	 * @param enumClass the class of the enum type
+	 * @param name the name of the attribute to parse
+	 * @return the parsed enum value, or null if the attribute is not found or parsing fails
+	 */
+	default <T extends Enum<T>> T parseEnum(XMLStreamReader reader, Class<T> enumClass, String name)
+	{
+		final String value = reader.getAttributeValue(null, name);
+		if (value == null)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return Enum.valueOf(enumClass, value);
+		}
+		catch (IllegalArgumentException e)
+		{
+			LOGGER.warning("Invalid value for attribute: " + name + ", specified value: " + value + " should be an enum of type \"" + enumClass.getSimpleName() + "\". Using default value: null");
+			return null;
+		}
+	}
+	
 	/**
 	 * Checks if the specified file is a valid XML file.
 	 * @param file the file to check
@@ -725,6 +989,36 @@ public interface IXmlReader
 		return true;
 	}
 	
+	/**
+	 * Checks if files are parsed as a stream of events with {@link #parseStream(XMLStreamReader, File)} instead of a document.<br>
+	 * Streamed files are validated in a separate pass when {@link #isValidating()} is {@code true}. They are always read from the XML file and the datapack cache is not used for them, as streaming a file costs about as much as rebuilding its cached document.
+	 * @return {@code true} if streaming is enabled, {@code false} otherwise.
+	 */
+	default boolean isStreaming()
+	{
+		return false;
+	}
+	
+	private static XMLInputFactory createInputFactory()
+	{
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		return factory;
+	}
+	
+	private static Schema createSchema()
+	{
+		try
+		{
+			return SchemaFactory.newInstance(W3C_XML_SCHEMA).newSchema();
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Could not create the XML schema validator.", e);
+		}
+	}
+	
 	/**
 	 * Checks if a node is of element type.
 	 * @param node the XML node to check
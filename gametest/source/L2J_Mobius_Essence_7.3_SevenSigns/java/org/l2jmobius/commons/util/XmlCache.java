@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.commons.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import org.l2jmobius.Config;
+
+/**
+ * Binary cache of parsed datapack XML documents, one cache file for each loader.<br>
+ * Documents are stored as a compact node tree with a string table, keyed by the path, size and CRC32C checksum of their XML file.<br>
+ * Unchanged files are rebuilt from the cache without XML parsing or schema validation, changed files are parsed and stored again.<br>
+ * The cache is written by {@link #store()} once the server has started, later parses (such as reloads) read the XML files.
+ * @author Mobius
+ */
+public class XmlCache
+{
+	private static final Logger LOGGER = Logger.getLogger(XmlCache.class.getName());
+	
+	private static final int MAGIC = 0x4C32584D;
+	private static final int VERSION = 1;
+	
+	private static final byte NODE_END = 0;
+	private static final byte NODE_ELEMENT = 1;
+	private static final byte NODE_TEXT = 2;
+	private static final byte NODE_CDATA = 3;
+	
+	private static final Map<String, XmlCache> CACHES = new ConcurrentHashMap<>();
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+	private static volatile boolean _stored = false;
+	
+	private final Path _path;
+	private final Map<String, CachedDocument> _cachedDocuments = new HashMap<>();
+	private final Map<String, CachedDocument> _documents = new ConcurrentHashMap<>();
+	private volatile boolean _changed = false;
+	
+	private static class CachedDocument
+	{
+		private final long _length;
+		private final int _checksum;
+		private final ByteBuffer _data;
+		
+		public CachedDocument(long length, int checksum, ByteBuffer data)
+		{
+			_length = length;
+			_checksum = checksum;
+			_data = data;
+		}
+	}
+	
+	private XmlCache(String owner)
+	{
+		_path = new File(Config.DATAPACK_CACHE_PATH, owner + ".bin").toPath();
+		if (!Files.isRegularFile(_path))
+		{
+			return;
+		}
+		
+		try
+		{
+			// Read in one go rather than mapped, so the file can be replaced on store.
+			final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(_path));
+			if ((data.remaining() < 12) || (data.getInt() != MAGIC) || (data.getInt() != VERSION))
+			{
+				LOGGER.info(getClass().getSimpleName() + ": Ignoring " + _path + " written by a different version.");
+				return;
+			}
+			
+			final int count = data.getInt();
+			for (int i = 0; i < count; i++)
+			{
+				final String key = readString(data);
+				final long length = data.getLong();
+				final int checksum = data.getInt();
+				final int size = data.getInt();
+				_cachedDocuments.put(key, new CachedDocument(length, checksum, data.slice(data.position(), size)));
+				data.position(data.position() + size);
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not read " + _path + ", it will be rebuilt.", e);
+			_cachedDocuments.clear();
+		}
+	}
+	
+	/**
+	 * Gets the document of an XML file from the cache of the given loader, parsing the file when it is not cached or has changed.
+	 * @param owner the name of the loader, used as the cache file name
+	 * @param file the XML file
+	 * @param builder the configured builder, used to parse the file or to create the cached document
+	 * @return the document
+	 * @throws Exception if the file cannot be read or parsed
+	 */
+	public static Document getDocument(String owner, File file, DocumentBuilder builder) throws Exception
+	{
+		if (_stored)
+		{
+			return builder.parse(file);
+		}
+		return CACHES.computeIfAbsent(owner, XmlCache::new).get(file, builder);
+	}
+	
+	private Document get(File file, DocumentBuilder builder) throws Exception
+	{
+		final String key = file.getPath();
+		final String systemId = file.toURI().toASCIIString();
+		final byte[] content = Files.readAllBytes(file.toPath());
+		final CRC32C crc = new CRC32C();
+		crc.update(content);
+		final int checksum = (int) crc.getValue();
+		
+		final CachedDocument cached = _cachedDocuments.get(key);
+		if ((cached != null) && (cached._length == content.length) && (cached._checksum == checksum))
+		{
+			try
+			{
+				final Document document = read(cached._data.duplicate(), builder);
+				document.setDocumentURI(systemId);
+				_documents.put(key, cached);
+				HITS.increment();
+				return document;
+			}
+			catch (Exception e)
+			{
+				LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Corrupt cache entry for " + file.getName() + ", parsing it again.", e);
+			}
+		}
+		
+		final Document document = builder.parse(new ByteArrayInputStream(content), systemId);
+		_documents.put(key, new CachedDocument(content.length, checksum, ByteBuffer.wrap(write(document))));
+		_changed = true;
+		MISSES.increment();
+		return document;
+	}
+	
+	/**
+	 * Writes every changed cache file and stops caching, releasing the cached data.
+	 */
+	public static void store()
+	{
+		_stored = true;
+		for (XmlCache cache : CACHES.values())
+		{
+			cache.save();
+		}
+		CACHES.clear();
+		
+		LOGGER.info(XmlCache.class.getSimpleName() + ": Loaded " + HITS.sum() + " documents from cache, parsed " + MISSES.sum() + " changed documents.");
+	}
+	
+	private void save()
+	{
+		// Nothing was parsed and no cached file went away.
+		if (!_changed && (_documents.size() == _cachedDocuments.size()))
+		{
+			return;
+		}
+		
+		try
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final ByteBuffer header = ByteBuffer.allocate(12);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(_documents.size());
+			out.write(header.array());
+			for (Entry<String, CachedDocument> entry : _documents.entrySet())
+			{
+				final CachedDocument cached = entry.getValue();
+				writeString(out, entry.getKey());
+				final ByteBuffer info = ByteBuffer.allocate(16);
+				info.putLong(cached._length);
+				info.putInt(cached._checksum);
+				info.putInt(cached._data.remaining());
+				out.write(info.array());
+				
+				final byte[] data = new byte[cached._data.remaining()];
+				cached._data.duplicate().get(data);
+				out.write(data);
+			}
+			
+			Files.createDirectories(_path.getParent());
+			final Path temp = _path.resolveSibling(_path.getFileName() + ".tmp");
+			Files.write(temp, out.toByteArray());
+			Files.move(temp, _path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not write " + _path + ".", e);
+		}
+	}
+	
+	private static byte[] write(Document document) throws IOException
+	{
+		final Map<String, Integer> indexes = new HashMap<>();
+		final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+		final Node root = document.getDocumentElement();
+		nodes.write(((root != null) && (root.getLocalName() != null)) ? 1 : 0);
+		writeChildren(document, nodes, strings, indexes);
+		
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(strings.size() + nodes.size() + 5);
+		writeVarInt(out, indexes.size());
+		strings.writeTo(out);
+		nodes.writeTo(out);
+		return out.toByteArray();
+	}
+	
+	private static void writeChildren(Node parent, ByteArrayOutputStream out, ByteArrayOutputStream strings, Map<String, Integer> indexes) throws IOException
+	{
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+		{
+			switch (node.getNodeType())
+			{
+				case Node.ELEMENT_NODE:
+				{
+					out.write(NODE_ELEMENT);
+					writeIndex(out, strings, indexes, node.getNamespaceURI());
+					writeIndex(out, strings, indexes, node.getNodeName());
+					final NamedNodeMap attributes = node.getAttributes();
+					writeVarInt(out, attributes.getLength());
+					for (int i = 0; i < attributes.getLength(); i++)
+					{
+						final Node attribute = attributes.item(i);
+						writeIndex(out, strings, indexes, attribute.getNamespaceURI());
+						writeIndex(out, strings, indexes, attribute.getNodeName());
+						writeIndex(out, strings, indexes, attribute.getNodeValue());
+					}
+					writeChildren(node, out, strings, indexes);
+					break;
+				}
+				case Node.TEXT_NODE:
+				{
+					// Whitespace between elements of validated documents is left out of text content, so it is not kept.
+					if (((Text) node).isElementContentWhitespace())
+					{
+						break;
+					}
+					out.write(NODE_TEXT);
+					writeIndex(out, strings, indexes, node.getNodeValue());
+					break;
+				}
+				case Node.CDATA_SECTION_NODE:
+				{
+					out.write(NODE_CDATA);
+					writeIndex(out, strings, indexes, node.getNodeValue());
+					break;
+				}
+			}
+		}
+		out.write(NODE_END);
+	}
+	
+	private static Document read(ByteBuffer data, DocumentBuilder builder)
+	{
+		final String[] strings = new String[readVarInt(data)];
+		for (int i = 0; i < strings.length; i++)
+		{
+			strings[i] = readString(data);
+		}
+		
+		final Document document = builder.newDocument();
+		readChildren(data, strings, document, document, data.get() == 1);
+		return document;
+	}
+	
+	private static void readChildren(ByteBuffer data, String[] strings, Document document, Node parent, boolean namespaceAware)
+	{
+		while (true)
+		{
+			switch (data.get())
+			{
+				case NODE_END:
+				{
+					return;
+				}
+				case NODE_ELEMENT:
+				{
+					final String namespace = readIndex(data, strings);
+					final String name = readIndex(data, strings);
+					final Element element = namespaceAware ? document.createElementNS(namespace, name) : document.createElement(name);
+					final int attributes = readVarInt(data);
+					for (int i = 0; i < attributes; i++)
+					{
+						final String attributeNamespace = readIndex(data, strings);
+						final Attr attribute = namespaceAware ? document.createAttributeNS(attributeNamespace, readIndex(data, strings)) : document.createAttribute(readIndex(data, strings));
+						attribute.setValue(readIndex(data, strings));
+						if (namespaceAware)
+						{
+							element.setAttributeNodeNS(attribute);
+						}
+						else
+						{
+							element.setAttributeNode(attribute);
+						}
+					}
+					readChildren(data, strings, document, element, namespaceAware);
+					parent.appendChild(element);
+					break;
+				}
+				case NODE_TEXT:
+				{
+					parent.appendChild(document.createTextNode(readIndex(data, strings)));
+					break;
+				}
+				case NODE_CDATA:
+				{
+					parent.appendChild(document.createCDATASection(readIndex(data, strings)));
+					break;
+				}
+				default:
+				{
+					throw new IllegalStateException("Unknown node type at " + (data.position() - 1) + ".");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the string table index of a value, 0 for {@code null}, adding new values to the table.
+	 */
+	private static void writeIndex(ByteArrayOutputStream out, ByteArrayOutputStream strings, Map<String, Integer> indexes, String value)
+	{
+		if (value == null)
+		{
+			writeVarInt(out, 0);
+			return;
+		}
+		
+		Integer index = indexes.get(value);
+		if (index == null)
+		{
+			index = indexes.size();
+			indexes.put(value, index);
+			writeString(strings, value);
+		}
+		writeVarInt(out, index + 1);
+	}
+	
+	private static String readIndex(ByteBuffer data, String[] strings)
+	{
+		final int index = readVarInt(data);
+		return index == 0 ? null : strings[index - 1];
+	}
+	
+	private static void writeString(ByteArrayOutputStream out, String value)
+	{
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+	
+	private static String readString(ByteBuffer data)
+	{
+		final int length = readVarInt(data);
+		final String value = new String(data.array(), data.arrayOffset() + data.position(), length, StandardCharsets.UTF_8);
+		data.position(data.position() + length);
+		return value;
+	}
+	
+	private static void writeVarInt(ByteArrayOutputStream out, int value)
+	{
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0)
+		{
+			out.write((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		out.write(remaining);
+	}
+	
+	private static int readVarInt(ByteBuffer data)
+	{
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = data.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+		return value;
+	}
+}
@@ -38,6 +38,7 @@ import org.l2jmobius.commons.network.ConnectionManager;
 import org.l2jmobius.commons.threads.ThreadPool;
 import org.l2jmobius.commons.util.ConfigReader;
 import org.l2jmobius.commons.util.DeadlockWatcher;
+import org.l2jmobius.commons.util.XmlCache;
 import org.l2jmobius.gameserver.cache.HtmCache;
 import org.l2jmobius.gameserver.data.BotReportTable;
 import org.l2jmobius.gameserver.data.SchemeBufferTable;
@@ -260,104 +261,110 @@ public class GameServer
 		AnnouncementsTable.getInstance();
 		GlobalVariablesManager.getInstance();
 		
-		printSection("Data");
-		ActionData.getInstance();
-		CategoryData.getInstance();
-		DynamicExpRateData.getInstance();
-		SecondaryAuthData.getInstance();
-		SayuneData.getInstance();
-		ClanRewardData.getInstance();
-		MissionLevel.getInstance();
-		DailyMissionHandler.getInstance().executeScript();
-		DailyMissionData.getInstance();
-		ElementalSpiritData.getInstance();
-		RankingPowerManager.getInstance();
-		SubjugationData.getInstance();
-		SubjugationGacha.getInstance();
-		PurgeRankingManager.getInstance();
+		final StartupLoader loader = new StartupLoader(this::printSection);
+		loader.section("Data");
+		loader.add("ActionData", ActionData::getInstance);
+		loader.add("CategoryData", CategoryData::getInstance);
+		loader.add("DynamicExpRateData", DynamicExpRateData::getInstance);
+		loader.add("SecondaryAuthData", SecondaryAuthData::getInstance);
+		loader.add("SayuneData", SayuneData::getInstance);
+		loader.add("ClanRewardData", ClanRewardData::getInstance);
+		loader.add("MissionLevel", MissionLevel::getInstance);
+		loader.add("DailyMissionHandler", () -> DailyMissionHandler.getInstance().executeScript());
+		loader.add("DailyMissionData", DailyMissionData::getInstance, "MissionLevel", "DailyMissionHandler");
+		loader.add("ElementalSpiritData", ElementalSpiritData::getInstance);
+		loader.addOrdered("RankingPowerManager", RankingPowerManager::getInstance);
+		loader.add("SubjugationData", SubjugationData::getInstance);
+		loader.add("SubjugationGacha", SubjugationGacha::getInstance);
+		loader.addOrdered("PurgeRankingManager", PurgeRankingManager::getInstance);
 		
-		printSection("Skills");
-		SkillConditionHandler.getInstance().executeScript();
-		EffectHandler.getInstance().executeScript();
-		SkillTreeData.getInstance();
-		SkillData.getInstance();
-		PetSkillData.getInstance();
-		PetAcquireList.getInstance();
-		SkillEnchantData.getInstance();
+		// Handler scripts are executed one at a time, skills and items need them to be registered.
+		loader.section("Skills");
+		loader.add("SkillConditionHandler", () -> SkillConditionHandler.getInstance().executeScript(), "DailyMissionHandler");
+		loader.add("EffectHandler", () -> EffectHandler.getInstance().executeScript(), "SkillConditionHandler");
+		loader.add("SkillTreeData", SkillTreeData::getInstance, "SkillConditionHandler", "EffectHandler");
+		loader.add("SkillData", SkillData::getInstance, "SkillTreeData");
+		loader.add("PetSkillData", PetSkillData::getInstance, "SkillData");
+		loader.add("PetAcquireList", PetAcquireList::getInstance);
+		loader.add("SkillEnchantData", SkillEnchantData::getInstance);
 		
-		printSection("Items");
-		ConditionHandler.getInstance().executeScript();
-		ItemData.getInstance();
-		EnchantItemGroupsData.getInstance();
-		EnchantItemData.getInstance();
-		EnchantItemOptionsData.getInstance();
-		EnchantChallengePointData.getInstance();
-		ElementalAttributeData.getInstance();
-		ItemCrystallizationData.getInstance();
-		OptionData.getInstance();
-		VariationData.getInstance();
-		EnsoulData.getInstance();
-		EnchantItemHPBonusData.getInstance();
-		BuyListData.getInstance();
-		MultisellData.getInstance();
-		CombinationItemsData.getInstance();
-		EquipmentUpgradeData.getInstance();
-		EquipmentUpgradeNormalData.getInstance();
-		AgathionData.getInstance();
-		RaidTeleportListData.getInstance();
-		RecipeData.getInstance();
-		ArmorSetData.getInstance();
-		FishingData.getInstance();
-		HennaData.getInstance();
-		HennaCombinationData.getInstance();
-		HennaPatternPotentialData.getInstance();
-		PrimeShopData.getInstance();
-		LimitShopData.getInstance();
-		LimitShopCraftData.getInstance();
-		LimitShopClanData.getInstance();
-		CollectionData.getInstance();
-		RaidDropAnnounceData.getInstance();
-		PcCafePointsManager.getInstance();
-		AppearanceItemData.getInstance();
-		BlackCouponManager.getInstance();
-		ItemCommissionManager.getInstance();
-		WorldExchangeManager.getInstance();
-		PrivateStoreHistoryManager.getInstance().restore();
-		LuckyGameData.getInstance();
-		MableGameData.getInstance();
-		AttendanceRewardData.getInstance();
-		MagicLampData.getInstance();
-		RandomCraftData.getInstance();
-		RevengeHistoryManager.getInstance();
-		VipData.getInstance();
+		loader.section("Items");
+		loader.add("ConditionHandler", () -> ConditionHandler.getInstance().executeScript(), "EffectHandler");
+		loader.add("ItemData", ItemData::getInstance, "ConditionHandler");
+		loader.add("EnchantItemGroupsData", EnchantItemGroupsData::getInstance);
+		loader.add("EnchantItemData", EnchantItemData::getInstance, "EnchantItemGroupsData");
+		loader.add("EnchantItemOptionsData", EnchantItemOptionsData::getInstance, "ItemData", "SkillData");
+		loader.add("EnchantChallengePointData", EnchantChallengePointData::getInstance, "ItemData");
+		loader.add("ElementalAttributeData", ElementalAttributeData::getInstance, "ItemData");
+		loader.add("ItemCrystallizationData", ItemCrystallizationData::getInstance, "ItemData");
+		loader.add("OptionData", OptionData::getInstance, "EffectHandler", "SkillData");
+		loader.add("VariationData", VariationData::getInstance, "ItemData", "OptionData");
+		loader.add("EnsoulData", EnsoulData::getInstance, "ItemData");
+		loader.add("EnchantItemHPBonusData", EnchantItemHPBonusData::getInstance);
+		loader.add("BuyListData", BuyListData::getInstance, "ItemData");
+		loader.add("MultisellData", MultisellData::getInstance, "ItemData", "EnchantItemGroupsData");
+		loader.add("CombinationItemsData", CombinationItemsData::getInstance, "ItemData");
+		loader.add("EquipmentUpgradeData", EquipmentUpgradeData::getInstance, "ItemData");
+		loader.add("EquipmentUpgradeNormalData", EquipmentUpgradeNormalData::getInstance);
+		loader.add("AgathionData", AgathionData::getInstance, "ItemData", "SkillData");
+		loader.add("RaidTeleportListData", RaidTeleportListData::getInstance);
+		loader.add("RecipeData", RecipeData::getInstance);
+		loader.add("ArmorSetData", ArmorSetData::getInstance, "ItemData");
+		loader.add("FishingData", FishingData::getInstance, "ItemData");
+		loader.add("HennaData", HennaData::getInstance, "SkillData");
+		loader.add("HennaCombinationData", HennaCombinationData::getInstance, "ItemData", "HennaData");
+		loader.add("HennaPatternPotentialData", HennaPatternPotentialData::getInstance, "ItemData", "SkillData");
+		loader.add("PrimeShopData", PrimeShopData::getInstance, "ItemData");
+		loader.add("LimitShopData", LimitShopData::getInstance, "ItemData");
+		loader.add("LimitShopCraftData", LimitShopCraftData::getInstance, "ItemData", "LimitShopData");
+		loader.add("LimitShopClanData", LimitShopClanData::getInstance, "ItemData");
+		loader.add("CollectionData", CollectionData::getInstance, "ItemData");
+		loader.add("RaidDropAnnounceData", RaidDropAnnounceData::getInstance, "ItemData");
+		loader.addOrdered("PcCafePointsManager", PcCafePointsManager::getInstance);
+		loader.add("AppearanceItemData", AppearanceItemData::getInstance, "ItemData");
+		loader.addOrdered("BlackCouponManager", BlackCouponManager::getInstance);
+		loader.addOrdered("ItemCommissionManager", ItemCommissionManager::getInstance);
+		loader.addOrdered("WorldExchangeManager", WorldExchangeManager::getInstance);
+		loader.addOrdered("PrivateStoreHistoryManager", () -> PrivateStoreHistoryManager.getInstance().restore());
+		loader.add("LuckyGameData", LuckyGameData::getInstance);
+		loader.add("MableGameData", MableGameData::getInstance);
+		loader.add("AttendanceRewardData", AttendanceRewardData::getInstance, "ItemData");
+		loader.add("MagicLampData", MagicLampData::getInstance);
+		loader.add("RandomCraftData", RandomCraftData::getInstance, "ItemData");
+		loader.addOrdered("RevengeHistoryManager", RevengeHistoryManager::getInstance);
+		loader.add("VipData", VipData::getInstance);
 		
-		printSection("Characters");
-		ClassListData.getInstance();
-		InitialEquipmentData.getInstance();
-		InitialShortcutData.getInstance();
-		ExperienceData.getInstance();
-		PlayerXpPercentLostData.getInstance();
-		KarmaData.getInstance();
-		HitConditionBonusData.getInstance();
-		PlayerTemplateData.getInstance();
-		CharInfoTable.getInstance();
-		PartyMatchingHistoryTable.getInstance();
-		AdminData.getInstance();
-		PetDataTable.getInstance();
-		PetTypeData.getInstance();
-		PetExtractData.getInstance();
-		CubicData.getInstance();
-		CharSummonTable.getInstance().init();
-		CaptchaManager.getInstance();
-		BeautyShopData.getInstance();
-		MentorManager.getInstance();
-		VipManager.getInstance();
+		loader.section("Characters");
+		loader.add("ClassListData", ClassListData::getInstance);
+		loader.add("InitialEquipmentData", InitialEquipmentData::getInstance);
+		loader.add("InitialShortcutData", InitialShortcutData::getInstance);
+		loader.add("ExperienceData", ExperienceData::getInstance);
+		loader.add("PlayerXpPercentLostData", PlayerXpPercentLostData::getInstance, "ExperienceData");
+		loader.add("KarmaData", KarmaData::getInstance);
+		loader.add("HitConditionBonusData", HitConditionBonusData::getInstance);
+		loader.add("PlayerTemplateData", PlayerTemplateData::getInstance, "ExperienceData");
+		loader.addOrdered("CharInfoTable", CharInfoTable::getInstance);
+		loader.addOrdered("PartyMatchingHistoryTable", PartyMatchingHistoryTable::getInstance);
+		loader.add("AdminData", AdminData::getInstance);
+		loader.add("PetDataTable", PetDataTable::getInstance);
+		loader.add("PetTypeData", PetTypeData::getInstance);
+		loader.add("PetExtractData", PetExtractData::getInstance);
+		loader.add("CubicData", CubicData::getInstance);
+		loader.addOrdered("CharSummonTable", () -> CharSummonTable.getInstance().init());
+		loader.addOrdered("CaptchaManager", CaptchaManager::getInstance);
+		loader.add("BeautyShopData", BeautyShopData::getInstance);
+		loader.addOrdered("MentorManager", MentorManager::getInstance);
+		loader.addOrdered("VipManager", VipManager::getInstance);
 		
 		if (Config.PREMIUM_SYSTEM_ENABLED)
 		{
-			LOGGER.info("PremiumManager: Premium system is enabled.");
-			PremiumManager.getInstance();
+			loader.addOrdered("PremiumManager", () ->
+			{
+				LOGGER.info("PremiumManager: Premium system is enabled.");
+				PremiumManager.getInstance();
+			});
 		}
+		loader.run(Config.PARALLEL_STARTUP);
 		
 		printSection("Clans");
 		ClanLevelData.getInstance();
@@ -477,6 +484,11 @@ public class GameServer
 		}
 		PunishmentManager.getInstance();
 		
+		if (Config.DATAPACK_CACHE)
+		{
+			XmlCache.store();
+		}
+		
 		Runtime.getRuntime().addShutdownHook(Shutdown.getInstance());
 		LOGGER.info("IdManager: Free ObjectID's remaining: " + IdManager.getInstance().getAvailableIdCount());
 		
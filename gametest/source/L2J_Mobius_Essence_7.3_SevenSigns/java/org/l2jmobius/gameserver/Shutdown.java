@@ -55,6 +55,7 @@ import org.l2jmobius.gameserver.network.loginserverpackets.game.ServerStatus;
 import org.l2jmobius.gameserver.network.serverpackets.ServerClose;
 import org.l2jmobius.gameserver.network.serverpackets.SystemMessage;
 import org.l2jmobius.gameserver.taskmanagers.GameTimeTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.WriteBehindTaskManager;
 import org.l2jmobius.gameserver.util.Broadcast;
 
 /**
@@ -414,6 +415,20 @@ public class Shutdown extends Thread
 		saveData();
 		tc.restartCounter();
 		
+		// Write pending batched updates.
+		try
+		{
+			if (Config.WRITE_BEHIND_PERSISTENCE)
+			{
+				WriteBehindTaskManager.getInstance().shutdown();
+				LOGGER.info("Write Behind Task Manager: Pending updates written(" + tc.getEstimatedTimeAndRestartCounter() + "ms).");
+			}
+		}
+		catch (Throwable t)
+		{
+			// ignore
+		}
+		
 		// commit data, last chance
 		try
 		{
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Runs startup loaders that declare the loaders they depend on.<br>
+ * Dependencies must be added before their dependents, so the order of addition is always a valid sequential order.<br>
+ * When running in parallel, every loader starts on a fork join pool as soon as its dependencies are done.<br>
+ * Timings of each loader and the critical path are reported afterwards.
+ * @author Mobius
+ */
+public class StartupLoader
+{
+	private static final Logger LOGGER = Logger.getLogger(StartupLoader.class.getName());
+	
+	private final Map<String, Loader> _loaders = new LinkedHashMap<>();
+	private final Consumer<String> _sectionPrinter;
+	private String _section = null;
+	
+	private static class Loader
+	{
+		private final String _name;
+		private final String _section;
+		private final Runnable _task;
+		private final List<Loader> _dependencies;
+		private long _startTime;
+		private long _endTime;
+		private long _pathTime;
+		private Loader _pathParent;
+		
+		public Loader(String name, String section, Runnable task, List<Loader> dependencies)
+		{
+			_name = name;
+			_section = section;
+			_task = task;
+			_dependencies = dependencies;
+		}
+		
+		public void run()
+		{
+			_startTime = System.nanoTime();
+			try
+			{
+				_task.run();
+			}
+			finally
+			{
+				_endTime = System.nanoTime();
+			}
+		}
+		
+		public long getDuration()
+		{
+			return _endTime - _startTime;
+		}
+	}
+	
+	/**
+	 * @param sectionPrinter prints the section name when a new section starts in sequential mode.
+	 */
+	public StartupLoader(Consumer<String> sectionPrinter)
+	{
+		_sectionPrinter = sectionPrinter;
+	}
+	
+	/**
+	 * Sets the section of the loaders that are added next.
+	 * @param section the section name
+	 */
+	public void section(String section)
+	{
+		_section = section;
+	}
+	
+	/**
+	 * Adds a loader that runs after the given loaders.
+	 * @param name the unique name of the loader
+	 * @param task the task that loads the data
+	 * @param dependencies the names of previously added loaders this loader depends on
+	 */
+	public void add(String name, Runnable task, String... dependencies)
+	{
+		final List<Loader> loaders = new ArrayList<>(dependencies.length);
+		for (String dependency : dependencies)
+		{
+			final Loader loader = _loaders.get(dependency);
+			if (loader == null)
+			{
+				throw new IllegalArgumentException("Loader " + name + " depends on " + dependency + " which was not added before it.");
+			}
+			loaders.add(loader);
+		}
+		addLoader(name, task, loaders);
+	}
+	
+	/**
+	 * Adds a loader that runs after all previously added loaders.
+	 * @param name the unique name of the loader
+	 * @param task the task that loads the data
+	 */
+	public void addOrdered(String name, Runnable task)
+	{
+		addLoader(name, task, new ArrayList<>(_loaders.values()));
+	}
+	
+	private void addLoader(String name, Runnable task, List<Loader> dependencies)
+	{
+		if (_loaders.containsKey(name))
+		{
+			throw new IllegalArgumentException("Loader " + name + " was already added.");
+		}
+		_loaders.put(name, new Loader(name, _section, task, dependencies));
+	}
+	
+	/**
+	 * Runs all loaders and waits for them to finish.
+	 * @param parallel if {@code true} independent loaders run in parallel, otherwise all loaders run in the order they were added.
+	 * @throws Exception the first failure of a loader
+	 */
+	public void run(boolean parallel) throws Exception
+	{
+		final long startTime = System.nanoTime();
+		if (!parallel)
+		{
+			String section = null;
+			for (Loader loader : _loaders.values())
+			{
+				if ((loader._section != null) && !loader._section.equals(section))
+				{
+					section = loader._section;
+					_sectionPrinter.accept(section);
+				}
+				loader.run();
+			}
+			return;
+		}
+		
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		try
+		{
+			final Map<Loader, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+			for (Loader loader : _loaders.values())
+			{
+				final CompletableFuture<Void> future;
+				if (loader._dependencies.isEmpty())
+				{
+					future = CompletableFuture.runAsync(loader::run, pool);
+				}
+				else
+				{
+					final CompletableFuture<?>[] dependencies = new CompletableFuture<?>[loader._dependencies.size()];
+					for (int i = 0; i < dependencies.length; i++)
+					{
+						dependencies[i] = futures.get(loader._dependencies.get(i));
+					}
+					future = CompletableFuture.allOf(dependencies).thenRunAsync(loader::run, pool);
+				}
+				futures.put(loader, future);
+			}
+			
+			try
+			{
+				CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).join();
+			}
+			catch (CompletionException e)
+			{
+				final Throwable cause = e.getCause();
+				if (cause instanceof Exception)
+				{
+					throw (Exception) cause;
+				}
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		
+		report(startTime, System.nanoTime());
+	}
+	
+	private void report(long startTime, long endTime)
+	{
+		long totalTime = 0;
+		Loader last = null;
+		for (Loader loader : _loaders.values())
+		{
+			totalTime += loader.getDuration();
+			
+			// Dependencies are always added first, so their path times are already known.
+			loader._pathTime = 0;
+			loader._pathParent = null;
+			for (Loader dependency : loader._dependencies)
+			{
+				if (dependency._pathTime > loader._pathTime)
+				{
+					loader._pathTime = dependency._pathTime;
+					loader._pathParent = dependency;
+				}
+			}
+			loader._pathTime += loader.getDuration();
+			if ((last == null) || (loader._pathTime > last._pathTime))
+			{
+				last = loader;
+			}
+			
+			LOGGER.info(getClass().getSimpleName() + ": " + loader._name + " took " + toMillis(loader.getDuration()) + " ms, started at " + toMillis(loader._startTime - startTime) + " ms.");
+		}
+		
+		LOGGER.info(getClass().getSimpleName() + ": Loaded " + _loaders.size() + " loaders in " + toMillis(endTime - startTime) + " ms, loader times add up to " + toMillis(totalTime) + " ms.");
+		if (last != null)
+		{
+			final List<Loader> path = new ArrayList<>();
+			for (Loader loader = last; loader != null; loader = loader._pathParent)
+			{
+				path.add(loader);
+			}
+			Collections.reverse(path);
+			
+			final StringBuilder sb = new StringBuilder();
+			for (Loader loader : path)
+			{
+				if (sb.length() > 0)
+				{
+					sb.append(" -> ");
+				}
+				sb.append(loader._name);
+				sb.append(" (");
+				sb.append(toMillis(loader.getDuration()));
+				sb.append(" ms)");
+			}
+			LOGGER.info(getClass().getSimpleName() + ": Critical path of " + toMillis(last._pathTime) + " ms: " + sb);
+		}
+	}
+	
+	private static long toMillis(long nanos)
+	{
+		return nanos / 1000000;
+	}
+}
@@ -42,7 +42,7 @@ public class HtmCache
 {
 	private static final Logger LOGGER = Logger.getLogger(HtmCache.class.getName());
 	
-	private static final Map<String, String> HTML_CACHE = Config.HTM_CACHE ? new HashMap<>() : new ConcurrentHashMap<>();
+	private static final Map<String, HtmTemplate> HTML_CACHE = Config.HTM_CACHE ? new HashMap<>() : new ConcurrentHashMap<>();
 	
 	private int _loadedFiles;
 	private long _bytesBuffLen;
@@ -148,7 +148,7 @@ public class HtmCache
 				LOGGER.warning("HTML encoding check: File " + filePath + " contains non ASCII content.");
 			}
 			
-			final String oldContent = HTML_CACHE.put(filePath, content);
+			final HtmTemplate oldContent = HTML_CACHE.put(filePath, new HtmTemplate(content));
 			if (oldContent == null)
 			{
 				_bytesBuffLen += bytes;
@@ -156,7 +156,7 @@ public class HtmCache
 			}
 			else
 			{
-				_bytesBuffLen = (_bytesBuffLen - oldContent.length()) + bytes;
+				_bytesBuffLen = (_bytesBuffLen - oldContent.getText().length()) + bytes;
 			}
 		}
 		catch (Exception e)
@@ -167,23 +167,42 @@ public class HtmCache
 	}
 	
 	public String getHtm(Player player, String path)
+	{
+		final HtmTemplate template = getTemplate(player, path);
+		return template != null ? template.getText() : null;
+	}
+	
+	/**
+	 * @param player the player, for the localised path
+	 * @param path the html path
+	 * @return the cached template of the html, or {@code null} if it does not exist
+	 */
+	public HtmTemplate getTemplate(Player player, String path)
 	{
 		final String prefix = player != null ? player.getHtmlPrefix() : "";
 		String newPath = prefix + path;
-		String content = HTML_CACHE.get(newPath);
-		if (!Config.HTM_CACHE && (content == null))
+		HtmTemplate template = HTML_CACHE.get(newPath);
+		if (!Config.HTM_CACHE && (template == null))
 		{
-			content = loadFile(new File(Config.DATAPACK_ROOT, newPath));
+			String content = loadFile(new File(Config.DATAPACK_ROOT, newPath));
 			if (content == null)
 			{
 				content = loadFile(new File(Config.SCRIPT_ROOT, newPath));
 			}
+			if (content != null)
+			{
+				template = HTML_CACHE.get(newPath);
+				if ((template == null) || (template.getText() != content))
+				{
+					template = new HtmTemplate(content);
+				}
+			}
 		}
 		
 		// In case localisation does not exist try the default path.
-		if ((content == null) && !prefix.contentEquals(""))
+		if ((template == null) && !prefix.contentEquals(""))
 		{
-			content = HTML_CACHE.get(path);
+			template = HTML_CACHE.get(path);
 			newPath = path;
 		}
 		
@@ -192,7 +211,7 @@ public class HtmCache
 			player.sendPacket(new CreatureSay(null, ChatType.GENERAL, "HTML", newPath.substring(5)));
 		}
 		
-		return content;
+		return template;
 	}
 	
 	public boolean contains(String path)
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Html content split into literal text and %placeholder% slots.<br>
+ * The split is made on first use, rendering then fills all slots in a single pass.
+ * @author Mobius
+ */
+public class HtmTemplate
+{
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+	
+	private final String _text;
+	private volatile Segments _segments;
+	
+	public HtmTemplate(String text)
+	{
+		_text = text;
+	}
+	
+	/**
+	 * @return the html content, without any replacement.
+	 */
+	public String getText()
+	{
+		return _text;
+	}
+	
+	/**
+	 * @return {@code false} if two placeholders share a % character, in which case rendering could differ from replacing them one by one
+	 */
+	public boolean canRender()
+	{
+		return !getSegments()._overlapping;
+	}
+	
+	/**
+	 * Replaces each %placeholder% slot with its value.<br>
+	 * Slots without a value keep their placeholder text and values are not parsed again, same as a single replace of each placeholder.
+	 * @param values the values by placeholder, including the % characters
+	 * @return the rendered html
+	 */
+	public String render(Map<String, String> values)
+	{
+		if (values.isEmpty())
+		{
+			return _text;
+		}
+		
+		final Segments segments = getSegments();
+		final String[] literals = segments._literals;
+		final String[] placeholders = segments._placeholders;
+		final StringBuilder sb = BUILDER.get();
+		sb.setLength(0);
+		for (int i = 0; i < placeholders.length; i++)
+		{
+			sb.append(literals[i]);
+			final String value = values.get(placeholders[i]);
+			sb.append(value != null ? value : placeholders[i]);
+		}
+		sb.append(literals[placeholders.length]);
+		
+		final String result = sb.toString();
+		if (sb.capacity() > 65536)
+		{
+			BUILDER.remove();
+		}
+		return result;
+	}
+	
+	private Segments getSegments()
+	{
+		Segments segments = _segments;
+		if (segments == null)
+		{
+			segments = parse(_text);
+			_segments = segments;
+		}
+		return segments;
+	}
+	
+	/**
+	 * @param pattern a replace pattern
+	 * @return {@code true} if the pattern is a %placeholder% that can be filled by a template slot
+	 */
+	public static boolean isPlaceholder(String pattern)
+	{
+		final int length = pattern.length();
+		if ((length < 3) || (pattern.charAt(0) != '%') || (pattern.charAt(length - 1) != '%'))
+		{
+			return false;
+		}
+		
+		for (int i = 1; i < (length - 1); i++)
+		{
+			if (!isPlaceholderChar(pattern.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isPlaceholderChar(char c)
+	{
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '_');
+	}
+	
+	private static Segments parse(String text)
+	{
+		final List<String> literals = new ArrayList<>();
+		final List<String> placeholders = new ArrayList<>();
+		final int length = text.length();
+		boolean overlapping = false;
+		int literalStart = 0;
+		int index = text.indexOf('%');
+		while (index >= 0)
+		{
+			int end = index + 1;
+			while ((end < length) && isPlaceholderChar(text.charAt(end)))
+			{
+				end++;
+			}
+			
+			// A % not followed by a name and a closing % is plain text, the closing % may open the next placeholder.
+			if ((end == (index + 1)) || (end == length) || (text.charAt(end) != '%'))
+			{
+				index = text.indexOf('%', index + 1);
+				continue;
+			}
+			
+			literals.add(text.substring(literalStart, index));
+			placeholders.add(text.substring(index, end + 1));
+			literalStart = end + 1;
+			index = text.indexOf('%', literalStart);
+			
+			// The closing % could also open a placeholder, as in %a%b%.
+			int next = literalStart;
+			while ((next < length) && isPlaceholderChar(text.charAt(next)))
+			{
+				next++;
+			}
+			if ((next > literalStart) && (next < length) && (text.charAt(next) == '%'))
+			{
+				overlapping = true;
+			}
+		}
+		literals.add(text.substring(literalStart));
+		return new Segments(literals.toArray(new String[0]), placeholders.toArray(new String[0]), overlapping);
+	}
+	
+	private static class Segments
+	{
+		private final String[] _literals;
+		private final String[] _placeholders;
+		private final boolean _overlapping;
+		
+		Segments(String[] literals, String[] placeholders, boolean overlapping)
+		{
+			_literals = literals;
+			_placeholders = placeholders;
+			_overlapping = overlapping;
+		}
+	}
+}
@@ -32,12 +32,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.l2jmobius.Config;
 import org.l2jmobius.commons.util.IXmlReader;
@@ -92,21 +92,26 @@ public class NpcData implements IXmlReader
 	}
 	
 	@Override
-	public void parseDocument(Document document, File file)
+	public boolean isStreaming()
 	{
-		for (Node node = document.getFirstChild(); node != null; node = node.getNextSibling())
+		return true;
+	}
+	
+	@Override
+	public void parseStream(XMLStreamReader reader, File file) throws XMLStreamException
+	{
+		while (nextElement(reader))
 		{
-			if ("list".equalsIgnoreCase(node.getNodeName()))
+			if ("list".equalsIgnoreCase(reader.getLocalName()))
 			{
-				for (Node listNode = node.getFirstChild(); listNode != null; listNode = listNode.getNextSibling())
+				while (nextElement(reader))
 				{
-					if ("npc".equalsIgnoreCase(listNode.getNodeName()))
+					if ("npc".equalsIgnoreCase(reader.getLocalName()))
 					{
-						NamedNodeMap attrs = listNode.getAttributes();
 						final StatSet set = new StatSet(new HashMap<>());
-						final int npcId = parseInteger(attrs, "id");
-						final int level = parseInteger(attrs, "level", 85);
-						final String type = parseString(attrs, "type", "Folk");
+						final int npcId = parseInteger(reader, "id");
+						final int level = parseInt(reader, "level", 85);
+						final String type = parseString(reader, "type", "Folk");
 						Map<String, Object> parameters = null;
 						Map<Integer, Skill> skills = null;
 						Set<Integer> clans = null;
@@ -114,18 +119,18 @@ public class NpcData implements IXmlReader
 						List<DropHolder> dropLists = null;
 						List<DropGroupHolder> dropGroups = null;
 						set.set("id", npcId);
-						set.set("displayId", parseInteger(attrs, "displayId"));
+						set.set("displayId", parseInteger(reader, "displayId"));
 						set.set("level", level);
 						set.set("type", type);
-						set.set("name", parseString(attrs, "name"));
-						set.set("usingServerSideName", parseBoolean(attrs, "usingServerSideName"));
-						set.set("title", parseString(attrs, "title"));
-						set.set("usingServerSideTitle", parseBoolean(attrs, "usingServerSideTitle"));
-						set.set("elementalType", parseEnum(attrs, ElementalSpiritType.class, "element"));
-						for (Node npcNode = listNode.getFirstChild(); npcNode != null; npcNode = npcNode.getNextSibling())
+						set.set("name", parseString(reader, "name"));
+						set.set("usingServerSideName", parseBoolean(reader, "usingServerSideName"));
+						set.set("title", parseString(reader, "title"));
+						set.set("usingServerSideTitle", parseBoolean(reader, "usingServerSideTitle"));
+						set.set("elementalType", parseEnum(reader, ElementalSpiritType.class, "element"));
+						while (nextElement(reader))
 						{
-							attrs = npcNode.getAttributes();
-							switch (npcNode.getNodeName().toLowerCase())
+							final String nodeName = reader.getLocalName();
+							switch (nodeName.toLowerCase())
 							{
 								case "parameters":
 								{
@@ -134,44 +139,52 @@ public class NpcData implements IXmlReader
 										parameters = new HashMap<>();
 									}
 									
-									for (Node parameterNode = npcNode.getFirstChild(); parameterNode != null; parameterNode = parameterNode.getNextSibling())
+									while (nextElement(reader))
 									{
-										NamedNodeMap attributes = parameterNode.getAttributes();
-										switch (parameterNode.getNodeName().toLowerCase())
+										switch (reader.getLocalName().toLowerCase())
 										{
 											case "param":
 											{
-												parameters.put(parseString(attributes, "name"), parseString(attributes, "value"));
+												parameters.put(parseString(reader, "name"), parseString(reader, "value"));
+												skipElement(reader);
 												break;
 											}
 											case "skill":
 											{
-												parameters.put(parseString(attributes, "name"), new SkillHolder(parseInteger(attributes, "id"), parseInteger(attributes, "level")));
+												parameters.put(parseString(reader, "name"), new SkillHolder(parseInteger(reader, "id"), parseInteger(reader, "level")));
+												skipElement(reader);
 												break;
 											}
 											case "location":
 											{
-												parameters.put(parseString(attributes, "name"), new Location(parseInteger(attributes, "x"), parseInteger(attributes, "y"), parseInteger(attributes, "z"), parseInteger(attributes, "heading", 0)));
+												parameters.put(parseString(reader, "name"), new Location(parseInteger(reader, "x"), parseInteger(reader, "y"), parseInteger(reader, "z"), parseInt(reader, "heading", 0)));
+												skipElement(reader);
 												break;
 											}
 											case "minions":
 											{
+												final String name = parseString(reader, "name");
 												final List<MinionHolder> minions = new ArrayList<>(1);
-												for (Node minionNode = parameterNode.getFirstChild(); minionNode != null; minionNode = minionNode.getNextSibling())
+												while (nextElement(reader))
 												{
-													if (minionNode.getNodeName().equalsIgnoreCase("npc"))
+													if (reader.getLocalName().equalsIgnoreCase("npc"))
 													{
-														attributes = minionNode.getAttributes();
-														minions.add(new MinionHolder(parseInteger(attributes, "id"), parseInteger(attributes, "count"), parseInteger(attributes, "max", 0), parseInteger(attributes, "respawnTime"), parseInteger(attributes, "weightPoint", 0)));
+														minions.add(new MinionHolder(parseInteger(reader, "id"), parseInteger(reader, "count"), parseInt(reader, "max", 0), parseInteger(reader, "respawnTime"), parseInt(reader, "weightPoint", 0)));
 													}
+													skipElement(reader);
 												}
 												
 												if (!minions.isEmpty())
 												{
-													parameters.put(parseString(parameterNode.getAttributes(), "name"), minions);
+													parameters.put(name, minions);
 												}
 												break;
 											}
+											default:
+											{
+												skipElement(reader);
+												break;
+											}
 										}
 									}
 									break;
@@ -179,124 +192,129 @@ public class NpcData implements IXmlReader
 								case "race":
 								case "sex":
 								{
-									set.set(npcNode.getNodeName(), npcNode.getTextContent().toUpperCase());
+									set.set(nodeName, reader.getElementText().toUpperCase());
 									break;
 								}
 								case "equipment":
 								{
-									set.set("chestId", parseInteger(attrs, "chest"));
-									set.set("rhandId", parseInteger(attrs, "rhand"));
-									set.set("lhandId", parseInteger(attrs, "lhand"));
-									set.set("weaponEnchant", parseInteger(attrs, "weaponEnchant"));
+									set.set("chestId", parseInteger(reader, "chest"));
+									set.set("rhandId", parseInteger(reader, "rhand"));
+									set.set("lhandId", parseInteger(reader, "lhand"));
+									set.set("weaponEnchant", parseInteger(reader, "weaponEnchant"));
+									skipElement(reader);
 									break;
 								}
 								case "acquire":
 								{
-									set.set("exp", parseDouble(attrs, "exp"));
-									set.set("sp", parseDouble(attrs, "sp"));
-									set.set("raidPoints", parseDouble(attrs, "raidPoints"));
-									set.set("attributeExp", parseLong(attrs, "attributeExp"));
+									set.set("exp", parseDouble(reader, "exp"));
+									set.set("sp", parseDouble(reader, "sp"));
+									set.set("raidPoints", parseDouble(reader, "raidPoints"));
+									set.set("attributeExp", parseLong(reader, "attributeExp"));
+									skipElement(reader);
 									break;
 								}
 								case "mpreward":
 								{
-									set.set("mpRewardValue", parseInteger(attrs, "value"));
-									set.set("mpRewardType", parseEnum(attrs, MpRewardType.class, "type"));
-									set.set("mpRewardTicks", parseInteger(attrs, "ticks"));
-									set.set("mpRewardAffectType", parseEnum(attrs, MpRewardAffectType.class, "affects"));
+									set.set("mpRewardValue", parseInteger(reader, "value"));
+									set.set("mpRewardType", parseEnum(reader, MpRewardType.class, "type"));
+									set.set("mpRewardTicks", parseInteger(reader, "ticks"));
+									set.set("mpRewardAffectType", parseEnum(reader, MpRewardAffectType.class, "affects"));
+									skipElement(reader);
 									break;
 								}
 								case "stats":
 								{
-									set.set("baseSTR", parseInteger(attrs, "str"));
-									set.set("baseINT", parseInteger(attrs, "int"));
-									set.set("baseDEX", parseInteger(attrs, "dex"));
-									set.set("baseWIT", parseInteger(attrs, "wit"));
-									set.set("baseCON", parseInteger(attrs, "con"));
-									set.set("baseMEN", parseInteger(attrs, "men"));
-									for (Node statsNode = npcNode.getFirstChild(); statsNode != null; statsNode = statsNode.getNextSibling())
+									set.set("baseSTR", parseInteger(reader, "str"));
+									set.set("baseINT", parseInteger(reader, "int"));
+									set.set("baseDEX", parseInteger(reader, "dex"));
+									set.set("baseWIT", parseInteger(reader, "wit"));
+									set.set("baseCON", parseInteger(reader, "con"));
+									set.set("baseMEN", parseInteger(reader, "men"));
+									while (nextElement(reader))
 									{
-										attrs = statsNode.getAttributes();
-										switch (statsNode.getNodeName().toLowerCase())
+										switch (reader.getLocalName().toLowerCase())
 										{
 											case "vitals":
 											{
-												set.set("baseHpMax", parseDouble(attrs, "hp"));
-												set.set("baseHpReg", parseDouble(attrs, "hpRegen"));
-												set.set("baseMpMax", parseDouble(attrs, "mp"));
-												set.set("baseMpReg", parseDouble(attrs, "mpRegen"));
+												set.set("baseHpMax", parseDouble(reader, "hp"));
+												set.set("baseHpReg", parseDouble(reader, "hpRegen"));
+												set.set("baseMpMax", parseDouble(reader, "mp"));
+												set.set("baseMpReg", parseDouble(reader, "mpRegen"));
+												skipElement(reader);
 												break;
 											}
 											case "attack":
 											{
-												set.set("basePAtk", parseDouble(attrs, "physical"));
-												set.set("baseMAtk", parseDouble(attrs, "magical"));
-												set.set("baseRndDam", parseInteger(attrs, "random"));
-												set.set("baseCritRate", parseDouble(attrs, "critical"));
-												set.set("accuracy", parseFloat(attrs, "accuracy")); // TODO: Implement me
-												set.set("basePAtkSpd", parseFloat(attrs, "attackSpeed"));
-												set.set("reuseDelay", parseInteger(attrs, "reuseDelay")); // TODO: Implement me
-												set.set("baseAtkType", parseString(attrs, "type"));
-												set.set("baseAtkRange", parseInteger(attrs, "range"));
-												set.set("distance", parseInteger(attrs, "distance")); // TODO: Implement me
-												set.set("width", parseInteger(attrs, "width")); // TODO: Implement me
+												set.set("basePAtk", parseDouble(reader, "physical"));
+												set.set("baseMAtk", parseDouble(reader, "magical"));
+												set.set("baseRndDam", parseInteger(reader, "random"));
+												set.set("baseCritRate", parseDouble(reader, "critical"));
+												set.set("accuracy", parseFloat(reader, "accuracy")); // TODO: Implement me
+												set.set("basePAtkSpd", parseFloat(reader, "attackSpeed"));
+												set.set("reuseDelay", parseInteger(reader, "reuseDelay")); // TODO: Implement me
+												set.set("baseAtkType", parseString(reader, "type"));
+												set.set("baseAtkRange", parseInteger(reader, "range"));
+												set.set("distance", parseInteger(reader, "distance")); // TODO: Implement me
+												set.set("width", parseInteger(reader, "width")); // TODO: Implement me
+												skipElement(reader);
 												break;
 											}
 											case "defence":
 											{
-												set.set("basePDef", parseDouble(attrs, "physical"));
-												set.set("baseMDef", parseDouble(attrs, "magical"));
-												set.set("evasion", parseInteger(attrs, "evasion")); // TODO: Implement me
-												set.set("baseShldDef", parseInteger(attrs, "shield"));
-												set.set("baseShldRate", parseInteger(attrs, "shieldRate"));
+												set.set("basePDef", parseDouble(reader, "physical"));
+												set.set("baseMDef", parseDouble(reader, "magical"));
+												set.set("evasion", parseInteger(reader, "evasion")); // TODO: Implement me
+												set.set("baseShldDef", parseInteger(reader, "shield"));
+												set.set("baseShldRate", parseInteger(reader, "shieldRate"));
+												skipElement(reader);
 												break;
 											}
 											case "abnormalresist":
 											{
-												set.set("physicalAbnormalResist", parseDouble(attrs, "physical"));
-												set.set("magicAbnormalResist", parseDouble(attrs, "magic"));
+												set.set("physicalAbnormalResist", parseDouble(reader, "physical"));
+												set.set("magicAbnormalResist", parseDouble(reader, "magic"));
+												skipElement(reader);
 												break;
 											}
 											case "attribute":
 											{
-												for (Node attributeNode = statsNode.getFirstChild(); attributeNode != null; attributeNode = attributeNode.getNextSibling())
+												while (nextElement(reader))
 												{
-													attrs = attributeNode.getAttributes();
-													switch (attributeNode.getNodeName().toLowerCase())
+													switch (reader.getLocalName().toLowerCase())
 													{
 														case "attack":
 														{
-															final String attackAttributeType = parseString(attrs, "type");
+															final String attackAttributeType = parseString(reader, "type");
 															switch (attackAttributeType.toUpperCase())
 															{
 																case "FIRE":
 																{
-																	set.set("baseFire", parseInteger(attrs, "value"));
+																	set.set("baseFire", parseInteger(reader, "value"));
 																	break;
 																}
 																case "WATER":
 																{
-																	set.set("baseWater", parseInteger(attrs, "value"));
+																	set.set("baseWater", parseInteger(reader, "value"));
 																	break;
 																}
 																case "WIND":
 																{
-																	set.set("baseWind", parseInteger(attrs, "value"));
+																	set.set("baseWind", parseInteger(reader, "value"));
 																	break;
 																}
 																case "EARTH":
 																{
-																	set.set("baseEarth", parseInteger(attrs, "value"));
+																	set.set("baseEarth", parseInteger(reader, "value"));
 																	break;
 																}
 																case "DARK":
 																{
-																	set.set("baseDark", parseInteger(attrs, "value"));
+																	set.set("baseDark", parseInteger(reader, "value"));
 																	break;
 																}
 																case "HOLY":
 																{
-																	set.set("baseHoly", parseInteger(attrs, "value"));
+																	set.set("baseHoly", parseInteger(reader, "value"));
 																	break;
 																}
 															}
@@ -304,49 +322,55 @@ public class NpcData implements IXmlReader
 														}
 														case "defence":
 														{
-															set.set("baseFireRes", parseInteger(attrs, "fire"));
-															set.set("baseWaterRes", parseInteger(attrs, "water"));
-															set.set("baseWindRes", parseInteger(attrs, "wind"));
-															set.set("baseEarthRes", parseInteger(attrs, "earth"));
-															set.set("baseHolyRes", parseInteger(attrs, "holy"));
-															set.set("baseDarkRes", parseInteger(attrs, "dark"));
-															set.set("baseElementRes", parseInteger(attrs, "default"));
+															set.set("baseFireRes", parseInteger(reader, "fire"));
+															set.set("baseWaterRes", parseInteger(reader, "water"));
+															set.set("baseWindRes", parseInteger(reader, "wind"));
+															set.set("baseEarthRes", parseInteger(reader, "earth"));
+															set.set("baseHolyRes", parseInteger(reader, "holy"));
+															set.set("baseDarkRes", parseInteger(reader, "dark"));
+															set.set("baseElementRes", parseInteger(reader, "default"));
 															break;
 														}
 													}
+													skipElement(reader);
 												}
 												break;
 											}
 											case "speed":
 											{
-												for (Node speedNode = statsNode.getFirstChild(); speedNode != null; speedNode = speedNode.getNextSibling())
+												while (nextElement(reader))
 												{
-													attrs = speedNode.getAttributes();
-													switch (speedNode.getNodeName().toLowerCase())
+													switch (reader.getLocalName().toLowerCase())
 													{
 														case "walk":
 														{
-															final double groundWalk = parseDouble(attrs, "ground");
+															final double groundWalk = parseDouble(reader, "ground");
 															set.set("baseWalkSpd", groundWalk <= 0d ? 0.1 : groundWalk);
-															set.set("baseSwimWalkSpd", parseDouble(attrs, "swim"));
-															set.set("baseFlyWalkSpd", parseDouble(attrs, "fly"));
+															set.set("baseSwimWalkSpd", parseDouble(reader, "swim"));
+															set.set("baseFlyWalkSpd", parseDouble(reader, "fly"));
 															break;
 														}
 														case "run":
 														{
-															final double runSpeed = parseDouble(attrs, "ground");
+															final double runSpeed = parseDouble(reader, "ground");
 															set.set("baseRunSpd", runSpeed <= 0d ? 0.1 : runSpeed);
-															set.set("baseSwimRunSpd", parseDouble(attrs, "swim"));
-															set.set("baseFlyRunSpd", parseDouble(attrs, "fly"));
+															set.set("baseSwimRunSpd", parseDouble(reader, "swim"));
+															set.set("baseFlyRunSpd", parseDouble(reader, "fly"));
 															break;
 														}
 													}
+													skipElement(reader);
 												}
 												break;
 											}
 											case "hittime":
 											{
-												set.set("hitTime", npcNode.getTextContent()); // TODO: Implement me default 600 (value in ms)
+												set.set("hitTime", reader.getElementText()); // TODO: Implement me default 600 (value in ms)
+												break;
+											}
+											default:
+											{
+												skipElement(reader);
 												break;
 											}
 										}
@@ -355,70 +379,71 @@ public class NpcData implements IXmlReader
 								}
 								case "status":
 								{
-									set.set("unique", parseBoolean(attrs, "unique"));
-									set.set("attackable", parseBoolean(attrs, "attackable"));
-									set.set("targetable", parseBoolean(attrs, "targetable"));
-									set.set("talkable", parseBoolean(attrs, "talkable"));
-									set.set("undying", parseBoolean(attrs, "undying"));
-									set.set("showName", parseBoolean(attrs, "showName"));
-									set.set("randomWalk", parseBoolean(attrs, "randomWalk"));
-									set.set("randomAnimation", parseBoolean(attrs, "randomAnimation"));
-									set.set("flying", parseBoolean(attrs, "flying"));
-									set.set("canMove", parseBoolean(attrs, "canMove"));
-									set.set("noSleepMode", parseBoolean(attrs, "noSleepMode"));
-									set.set("passableDoor", parseBoolean(attrs, "passableDoor"));
-									set.set("hasSummoner", parseBoolean(attrs, "hasSummoner"));
-									set.set("canBeSown", parseBoolean(attrs, "canBeSown"));
-									set.set("isDeathPenalty", parseBoolean(attrs, "isDeathPenalty"));
+									set.set("unique", parseBoolean(reader, "unique"));
+									set.set("attackable", parseBoolean(reader, "attackable"));
+									set.set("targetable", parseBoolean(reader, "targetable"));
+									set.set("talkable", parseBoolean(reader, "talkable"));
+									set.set("undying", parseBoolean(reader, "undying"));
+									set.set("showName", parseBoolean(reader, "showName"));
+									set.set("randomWalk", parseBoolean(reader, "randomWalk"));
+									set.set("randomAnimation", parseBoolean(reader, "randomAnimation"));
+									set.set("flying", parseBoolean(reader, "flying"));
+									set.set("canMove", parseBoolean(reader, "canMove"));
+									set.set("noSleepMode", parseBoolean(reader, "noSleepMode"));
+									set.set("passableDoor", parseBoolean(reader, "passableDoor"));
+									set.set("hasSummoner", parseBoolean(reader, "hasSummoner"));
+									set.set("canBeSown", parseBoolean(reader, "canBeSown"));
+									set.set("isDeathPenalty", parseBoolean(reader, "isDeathPenalty"));
+									skipElement(reader);
 									break;
 								}
 								case "fakeplayer":
 								{
 									set.set("fakePlayer", true);
-									set.set("classId", parseInteger(attrs, "classId", 1));
-									set.set("hair", parseInteger(attrs, "hair", 1));
-									set.set("hairColor", parseInteger(attrs, "hairColor", 1));
-									set.set("face", parseInteger(attrs, "face", 1));
-									set.set("nameColor", parseInteger(attrs, "nameColor", 0xFFFFFF));
-									set.set("titleColor", parseInteger(attrs, "titleColor", 0xECF9A2));
-									set.set("equipHead", parseInteger(attrs, "equipHead", 0));
-									set.set("equipRHand", parseInteger(attrs, "equipRHand", 0)); // Or dual hand.
-									set.set("equipLHand", parseInteger(attrs, "equipLHand", 0));
-									set.set("equipGloves", parseInteger(attrs, "equipGloves", 0));
-									set.set("equipChest", parseInteger(attrs, "equipChest", 0));
-									set.set("equipLegs", parseInteger(attrs, "equipLegs", 0));
-									set.set("equipFeet", parseInteger(attrs, "equipFeet", 0));
-									set.set("equipCloak", parseInteger(attrs, "equipCloak", 0));
-									set.set("equipHair", parseInteger(attrs, "equipHair", 0));
-									set.set("equipHair2", parseInteger(attrs, "equipHair2", 0));
-									set.set("agathionId", parseInteger(attrs, "agathionId", 0));
-									set.set("weaponEnchantLevel", parseInteger(attrs, "weaponEnchantLevel", 0));
-									set.set("armorEnchantLevel", parseInteger(attrs, "armorEnchantLevel", 0));
-									set.set("fishing", parseBoolean(attrs, "fishing", false));
-									set.set("baitLocationX", parseInteger(attrs, "baitLocationX", 0));
-									set.set("baitLocationY", parseInteger(attrs, "baitLocationY", 0));
-									set.set("baitLocationZ", parseInteger(attrs, "baitLocationZ", 0));
-									set.set("recommends", parseInteger(attrs, "recommends", 0));
-									set.set("nobleLevel", parseInteger(attrs, "nobleLevel", 0));
-									set.set("hero", parseBoolean(attrs, "hero", false));
-									set.set("clanId", parseInteger(attrs, "clanId", 0));
-									set.set("pledgeStatus", parseInteger(attrs, "pledgeStatus", 0));
-									set.set("sitting", parseBoolean(attrs, "sitting", false));
-									set.set("privateStoreType", parseInteger(attrs, "privateStoreType", 0));
-									set.set("privateStoreMessage", parseString(attrs, "privateStoreMessage", ""));
-									set.set("fakePlayerTalkable", parseBoolean(attrs, "fakePlayerTalkable", true));
+									set.set("classId", parseInt(reader, "classId", 1));
+									set.set("hair", parseInt(reader, "hair", 1));
+									set.set("hairColor", parseInt(reader, "hairColor", 1));
+									set.set("face", parseInt(reader, "face", 1));
+									set.set("nameColor", parseInt(reader, "nameColor", 0xFFFFFF));
+									set.set("titleColor", parseInt(reader, "titleColor", 0xECF9A2));
+									set.set("equipHead", parseInt(reader, "equipHead", 0));
+									set.set("equipRHand", parseInt(reader, "equipRHand", 0)); // Or dual hand.
+									set.set("equipLHand", parseInt(reader, "equipLHand", 0));
+									set.set("equipGloves", parseInt(reader, "equipGloves", 0));
+									set.set("equipChest", parseInt(reader, "equipChest", 0));
+									set.set("equipLegs", parseInt(reader, "equipLegs", 0));
+									set.set("equipFeet", parseInt(reader, "equipFeet", 0));
+									set.set("equipCloak", parseInt(reader, "equipCloak", 0));
+									set.set("equipHair", parseInt(reader, "equipHair", 0));
+									set.set("equipHair2", parseInt(reader, "equipHair2", 0));
+									set.set("agathionId", parseInt(reader, "agathionId", 0));
+									set.set("weaponEnchantLevel", parseInt(reader, "weaponEnchantLevel", 0));
+									set.set("armorEnchantLevel", parseInt(reader, "armorEnchantLevel", 0));
+									set.set("fishing", parseBoolean(reader, "fishing", false));
+									set.set("baitLocationX", parseInt(reader, "baitLocationX", 0));
+									set.set("baitLocationY", parseInt(reader, "baitLocationY", 0));
+									set.set("baitLocationZ", parseInt(reader, "baitLocationZ", 0));
+									set.set("recommends", parseInt(reader, "recommends", 0));
+									set.set("nobleLevel", parseInt(reader, "nobleLevel", 0));
+									set.set("hero", parseBoolean(reader, "hero", false));
+									set.set("clanId", parseInt(reader, "clanId", 0));
+									set.set("pledgeStatus", parseInt(reader, "pledgeStatus", 0));
+									set.set("sitting", parseBoolean(reader, "sitting", false));
+									set.set("privateStoreType", parseInt(reader, "privateStoreType", 0));
+									set.set("privateStoreMessage", parseString(reader, "privateStoreMessage", ""));
+									set.set("fakePlayerTalkable", parseBoolean(reader, "fakePlayerTalkable", true));
+									skipElement(reader);
 									break;
 								}
 								case "skilllist":
 								{
 									skills = new HashMap<>();
-									for (Node skillListNode = npcNode.getFirstChild(); skillListNode != null; skillListNode = skillListNode.getNextSibling())
+									while (nextElement(reader))
 									{
-										if ("skill".equalsIgnoreCase(skillListNode.getNodeName()))
+										if ("skill".equalsIgnoreCase(reader.getLocalName()))
 										{
-											attrs = skillListNode.getAttributes();
-											final int skillId = parseInteger(attrs, "id");
-											final int skillLevel = parseInteger(attrs, "level");
+											final int skillId = parseInteger(reader, "id");
+											final int skillLevel = parseInteger(reader, "level");
 											final Skill skill = SkillData.getInstance().getSkill(skillId, skillLevel);
 											if (skill != null)
 											{
@@ -429,61 +454,62 @@ public class NpcData implements IXmlReader
 												LOGGER.warning("[" + file.getName() + "] skill not found. NPC ID: " + npcId + " Skill ID: " + skillId + " Skill Level: " + skillLevel);
 											}
 										}
+										skipElement(reader);
 									}
 									break;
 								}
 								case "shots":
 								{
-									set.set("soulShot", parseInteger(attrs, "soul"));
-									set.set("spiritShot", parseInteger(attrs, "spirit"));
-									set.set("shotShotChance", parseInteger(attrs, "shotChance"));
-									set.set("spiritShotChance", parseInteger(attrs, "spiritChance"));
+									set.set("soulShot", parseInteger(reader, "soul"));
+									set.set("spiritShot", parseInteger(reader, "spirit"));
+									set.set("shotShotChance", parseInteger(reader, "shotChance"));
+									set.set("spiritShotChance", parseInteger(reader, "spiritChance"));
+									skipElement(reader);
 									break;
 								}
 								case "corpsetime":
 								{
-									set.set("corpseTime", npcNode.getTextContent());
+									set.set("corpseTime", reader.getElementText());
 									break;
 								}
 								case "excrteffect":
 								{
-									set.set("exCrtEffect", npcNode.getTextContent()); // TODO: Implement me default ? type boolean
+									set.set("exCrtEffect", reader.getElementText()); // TODO: Implement me default ? type boolean
 									break;
 								}
 								case "snpcprophprate":
 								{
-									set.set("sNpcPropHpRate", npcNode.getTextContent()); // TODO: Implement me default 1 type double
+									set.set("sNpcPropHpRate", reader.getElementText()); // TODO: Implement me default 1 type double
 									break;
 								}
 								case "ai":
 								{
-									set.set("aiType", parseString(attrs, "type"));
-									set.set("aggroRange", parseInteger(attrs, "aggroRange"));
-									set.set("clanHelpRange", parseInteger(attrs, "clanHelpRange"));
-									set.set("isChaos", parseBoolean(attrs, "isChaos"));
-									set.set("isAggressive", parseBoolean(attrs, "isAggressive"));
-									for (Node aiNode = npcNode.getFirstChild(); aiNode != null; aiNode = aiNode.getNextSibling())
+									set.set("aiType", parseString(reader, "type"));
+									set.set("aggroRange", parseInteger(reader, "aggroRange"));
+									set.set("clanHelpRange", parseInteger(reader, "clanHelpRange"));
+									set.set("isChaos", parseBoolean(reader, "isChaos"));
+									set.set("isAggressive", parseBoolean(reader, "isAggressive"));
+									while (nextElement(reader))
 									{
-										attrs = aiNode.getAttributes();
-										switch (aiNode.getNodeName().toLowerCase())
+										switch (reader.getLocalName().toLowerCase())
 										{
 											case "skill":
 											{
-												set.set("minSkillChance", parseInteger(attrs, "minChance"));
-												set.set("maxSkillChance", parseInteger(attrs, "maxChance"));
-												set.set("primarySkillId", parseInteger(attrs, "primaryId"));
-												set.set("shortRangeSkillId", parseInteger(attrs, "shortRangeId"));
-												set.set("shortRangeSkillChance", parseInteger(attrs, "shortRangeChance"));
-												set.set("longRangeSkillId", parseInteger(attrs, "longRangeId"));
-												set.set("longRangeSkillChance", parseInteger(attrs, "longRangeChance"));
+												set.set("minSkillChance", parseInteger(reader, "minChance"));
+												set.set("maxSkillChance", parseInteger(reader, "maxChance"));
+												set.set("primarySkillId", parseInteger(reader, "primaryId"));
+												set.set("shortRangeSkillId", parseInteger(reader, "shortRangeId"));
+												set.set("shortRangeSkillChance", parseInteger(reader, "shortRangeChance"));
+												set.set("longRangeSkillId", parseInteger(reader, "longRangeId"));
+												set.set("longRangeSkillChance", parseInteger(reader, "longRangeChance"));
+												skipElement(reader);
 												break;
 											}
 											case "clanlist":
 											{
-												for (Node clanListNode = aiNode.getFirstChild(); clanListNode != null; clanListNode = clanListNode.getNextSibling())
+												while (nextElement(reader))
 												{
-													attrs = clanListNode.getAttributes();
-													switch (clanListNode.getNodeName().toLowerCase())
+													switch (reader.getLocalName().toLowerCase())
 													{
 														case "clan":
 														{
@@ -491,7 +517,7 @@ public class NpcData implements IXmlReader
 															{
 																clans = new HashSet<>(1);
 															}
-															clans.add(getOrCreateClanId(clanListNode.getTextContent()));
+															clans.add(getOrCreateClanId(reader.getElementText()));
 															break;
 														}
 														case "ignorenpcid":
@@ -500,96 +526,82 @@ public class NpcData implements IXmlReader
 															{
 																ignoreClanNpcIds = new HashSet<>(1);
 															}
-															ignoreClanNpcIds.add(Integer.parseInt(clanListNode.getTextContent()));
+															ignoreClanNpcIds.add(Integer.parseInt(reader.getElementText()));
+															break;
+														}
+														default:
+														{
+															skipElement(reader);
 															break;
 														}
 													}
 												}
 												break;
 											}
+											default:
+											{
+												skipElement(reader);
+												break;
+											}
 										}
 									}
 									break;
 								}
 								case "droplists":
 								{
-									for (Node dropListsNode = npcNode.getFirstChild(); dropListsNode != null; dropListsNode = dropListsNode.getNextSibling())
+									while (nextElement(reader))
 									{
 										DropType dropType = null;
 										
 										try
 										{
-											dropType = Enum.valueOf(DropType.class, dropListsNode.getNodeName().toUpperCase());
+											dropType = Enum.valueOf(DropType.class, reader.getLocalName().toUpperCase());
 										}
 										catch (Exception e)
 										{
 											// Handled bellow.
 										}
 										
-										if (dropType != null)
+										if (dropType == null)
 										{
-											for (Node dropNode = dropListsNode.getFirstChild(); dropNode != null; dropNode = dropNode.getNextSibling())
+											skipElement(reader);
+											continue;
+										}
+										
+										while (nextElement(reader))
+										{
+											final String dropNodeName = reader.getLocalName();
+											if (dropNodeName.equalsIgnoreCase("group"))
 											{
-												final String nodeName = dropNode.getNodeName();
-												if (nodeName.equalsIgnoreCase("group"))
+												if (dropGroups == null)
 												{
-													if (dropGroups == null)
-													{
-														dropGroups = new ArrayList<>();
-													}
-													
-													final DropGroupHolder group = new DropGroupHolder(parseDouble(dropNode.getAttributes(), "chance"));
-													for (Node groupNode = dropNode.getFirstChild(); groupNode != null; groupNode = groupNode.getNextSibling())
+													dropGroups = new ArrayList<>();
+												}
+												
+												final DropGroupHolder group = new DropGroupHolder(parseDouble(reader, "chance"));
+												while (nextElement(reader))
+												{
+													if (reader.getLocalName().equalsIgnoreCase("item"))
 													{
-														if (groupNode.getNodeName().equalsIgnoreCase("item"))
-														{
-															final NamedNodeMap groupAttrs = groupNode.getAttributes();
-															final int itemId = parseInteger(groupAttrs, "id");
-															
-															// Drop materials for random craft configuration.
-															if (!Config.DROP_RANDOM_CRAFT_MATERIALS && (itemId >= 92908) && (itemId <= 92919))
-															{
-																continue;
-															}
-															
-															if (ItemData.getInstance().getTemplate(itemId) == null)
-															{
-																LOGGER.warning("DropListItem: Could not find item with id " + itemId + ".");
-															}
-															else
-															{
-																group.addDrop(new DropHolder(dropType, itemId, parseLong(groupAttrs, "min"), parseLong(groupAttrs, "max"), parseDouble(groupAttrs, "chance")));
-															}
-														}
+														parseDropItem(reader, dropType, group::addDrop);
 													}
-													
-													dropGroups.add(group);
+													skipElement(reader);
 												}
-												else if (nodeName.equalsIgnoreCase("item"))
+												
+												dropGroups.add(group);
+											}
+											else
+											{
+												if (dropNodeName.equalsIgnoreCase("item"))
 												{
 													if (dropLists == null)
 													{
 														dropLists = new ArrayList<>();
 													}
 													
-													final NamedNodeMap dropAttrs = dropNode.getAttributes();
-													final int itemId = parseInteger(dropAttrs, "id");
-													
-													// Drop materials for random craft configuration.
-													if (!Config.DROP_RANDOM_CRAFT_MATERIALS && (itemId >= 92908) && (itemId <= 92919))
-													{
-														continue;
-													}
-													
-													if (ItemData.getInstance().getTemplate(itemId) == null)
-													{
-														LOGGER.warning("DropListItem: Could not find item with id " + itemId + ".");
-													}
-													else
-													{
-														dropLists.add(new DropHolder(dropType, itemId, parseLong(dropAttrs, "min"), parseLong(dropAttrs, "max"), parseDouble(dropAttrs, "chance")));
-													}
+													parseDropItem(reader, dropType, dropLists::add);
 												}
+												skipElement(reader);
 											}
 										}
 									}
@@ -597,27 +609,32 @@ public class NpcData implements IXmlReader
 								}
 								case "collision":
 								{
-									for (Node collisionNode = npcNode.getFirstChild(); collisionNode != null; collisionNode = collisionNode.getNextSibling())
+									while (nextElement(reader))
 									{
-										attrs = collisionNode.getAttributes();
-										switch (collisionNode.getNodeName().toLowerCase())
+										switch (reader.getLocalName().toLowerCase())
 										{
 											case "radius":
 											{
-												set.set("collision_radius", parseDouble(attrs, "normal"));
-												set.set("collisionRadiusGrown", parseDouble(attrs, "grown"));
+												set.set("collision_radius", parseDouble(reader, "normal"));
+												set.set("collisionRadiusGrown", parseDouble(reader, "grown"));
 												break;
 											}
 											case "height":
 											{
-												set.set("collision_height", parseDouble(attrs, "normal"));
-												set.set("collisionHeightGrown", parseDouble(attrs, "grown"));
+												set.set("collision_height", parseDouble(reader, "normal"));
+												set.set("collisionHeightGrown", parseDouble(reader, "grown"));
 												break;
 											}
 										}
+										skipElement(reader);
 									}
 									break;
 								}
+								default:
+								{
+									skipElement(reader);
+									break;
+								}
 							}
 						}
 						
@@ -817,9 +834,42 @@ public class NpcData implements IXmlReader
 							_masterMonsterIDs.add(template.getId());
 						}
 					}
+					else
+					{
+						skipElement(reader);
+					}
 				}
 			}
+			else
+			{
+				skipElement(reader);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a drop item from the current element and passes it to the given action, unless the item does not exist or is a disabled random craft material.
+	 * @param reader the stream reader positioned at the item element
+	 * @param dropType the drop type of the enclosing list
+	 * @param action the action that stores the drop
+	 */
+	private void parseDropItem(XMLStreamReader reader, DropType dropType, Consumer<DropHolder> action)
+	{
+		final int itemId = parseInteger(reader, "id");
+		
+		// Drop materials for random craft configuration.
+		if (!Config.DROP_RANDOM_CRAFT_MATERIALS && (itemId >= 92908) && (itemId <= 92919))
+		{
+			return;
 		}
+		
+		if (ItemData.getInstance().getTemplate(itemId) == null)
+		{
+			LOGGER.warning("DropListItem: Could not find item with id " + itemId + ".");
+			return;
+		}
+		
+		action.accept(new DropHolder(dropType, itemId, parseLong(reader, "min"), parseLong(reader, "max"), parseDouble(reader, "chance")));
 	}
 	
 	/**
@@ -40,7 +40,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
-import org.w3c.dom.Document;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
@@ -154,73 +157,76 @@ public class SkillData implements IXmlReader
 	}
 	
 	@Override
-	public void parseDocument(Document document, File file)
+	public boolean isStreaming()
+	{
+		return true;
+	}
+	
+	@Override
+	public void parseStream(XMLStreamReader reader, File file) throws XMLStreamException
 	{
-		for (Node node = document.getFirstChild(); node != null; node = node.getNextSibling())
+		while (nextElement(reader))
 		{
-			if ("list".equalsIgnoreCase(node.getNodeName()))
+			if ("list".equalsIgnoreCase(reader.getLocalName()))
 			{
-				for (Node listNode = node.getFirstChild(); listNode != null; listNode = listNode.getNextSibling())
+				while (nextElement(reader))
 				{
-					if ("skill".equalsIgnoreCase(listNode.getNodeName()))
+					if ("skill".equalsIgnoreCase(reader.getLocalName()))
 					{
-						NamedNodeMap attributes = listNode.getAttributes();
 						final Map<Integer, Set<Integer>> levels = new HashMap<>();
 						final Map<Integer, Map<Integer, StatSet>> skillInfo = new HashMap<>();
 						final StatSet generalSkillInfo = skillInfo.computeIfAbsent(-1, _ -> new HashMap<>()).computeIfAbsent(-1, _ -> new StatSet());
-						parseAttributes(attributes, "", generalSkillInfo);
+						parseAttributes(reader, "", generalSkillInfo, Collections.emptyMap());
 						
 						final Map<String, Map<Integer, Map<Integer, Object>>> variableValues = new HashMap<>();
 						final Map<EffectScope, List<NamedParamInfo>> effectParamInfo = new EnumMap<>(EffectScope.class);
 						final Map<SkillConditionScope, List<NamedParamInfo>> conditionParamInfo = new EnumMap<>(SkillConditionScope.class);
-						for (Node skillNode = listNode.getFirstChild(); skillNode != null; skillNode = skillNode.getNextSibling())
+						while (nextElement(reader))
 						{
-							final String skillNodeName = skillNode.getNodeName();
-							switch (skillNodeName.toLowerCase())
+							final String skillNodeName = reader.getLocalName();
+							if ("variable".equalsIgnoreCase(skillNodeName))
 							{
-								case "variable":
-								{
-									attributes = skillNode.getAttributes();
-									final String name = "@" + parseString(attributes, "name");
-									variableValues.put(name, parseValues(skillNode));
-									break;
-								}
-								case "#text":
-								{
-									break;
-								}
-								default:
+								final String name = "@" + parseString(reader, "name");
+								variableValues.put(name, parseValues(reader));
+								continue;
+							}
+							
+							final EffectScope effectScope = EffectScope.findByXmlNodeName(skillNodeName);
+							if (effectScope != null)
+							{
+								while (nextElement(reader))
 								{
-									final EffectScope effectScope = EffectScope.findByXmlNodeName(skillNodeName);
-									if (effectScope != null)
+									if ("effect".equalsIgnoreCase(reader.getLocalName()))
 									{
-										for (Node effectsNode = skillNode.getFirstChild(); effectsNode != null; effectsNode = effectsNode.getNextSibling())
-										{
-											if ("effect".equalsIgnoreCase(effectsNode.getNodeName()))
-											{
-												effectParamInfo.computeIfAbsent(effectScope, _ -> new LinkedList<>()).add(parseNamedParamInfo(effectsNode, variableValues));
-											}
-										}
-										break;
+										effectParamInfo.computeIfAbsent(effectScope, _ -> new LinkedList<>()).add(parseNamedParamInfo(reader, variableValues));
 									}
-									final SkillConditionScope skillConditionScope = SkillConditionScope.findByXmlNodeName(skillNodeName);
-									if (skillConditionScope != null)
+									else
 									{
-										for (Node conditionNode = skillNode.getFirstChild(); conditionNode != null; conditionNode = conditionNode.getNextSibling())
-										{
-											if ("condition".equalsIgnoreCase(conditionNode.getNodeName()))
-											{
-												conditionParamInfo.computeIfAbsent(skillConditionScope, _ -> new LinkedList<>()).add(parseNamedParamInfo(conditionNode, variableValues));
-											}
-										}
+										skipElement(reader);
+									}
+								}
+								continue;
+							}
+							
+							final SkillConditionScope skillConditionScope = SkillConditionScope.findByXmlNodeName(skillNodeName);
+							if (skillConditionScope != null)
+							{
+								while (nextElement(reader))
+								{
+									if ("condition".equalsIgnoreCase(reader.getLocalName()))
+									{
+										conditionParamInfo.computeIfAbsent(skillConditionScope, _ -> new LinkedList<>()).add(parseNamedParamInfo(reader, variableValues));
 									}
 									else
 									{
-										parseInfo(skillNode, variableValues, skillInfo);
+										skipElement(reader);
 									}
-									break;
 								}
 							}
+							else
+							{
+								parseInfo(reader, variableValues, skillInfo);
+							}
 						}
 						
 						final int fromLevel = generalSkillInfo.getInt(".fromLevel", 1);
@@ -359,8 +365,16 @@ public class SkillData implements IXmlReader
 							}
 						}));
 					}
+					else
+					{
+						skipElement(reader);
+					}
 				}
 			}
+			else
+			{
+				skipElement(reader);
+			}
 		}
 	}
 	
@@ -392,48 +406,46 @@ public class SkillData implements IXmlReader
 	}
 	
 	/**
-	 * Parses a {@link NamedParamInfo} from a given XML node, setting up ranges and level mappings.
+	 * Parses a {@link NamedParamInfo} from the current element, setting up ranges and level mappings.
 	 * <p>
-	 * This method reads attribute data such as name, level, and sub-level ranges from the node to create a {@link NamedParamInfo}. Nested XML elements are also parsed into a structure of {@link StatSet} entries mapped by level and sub-level.
+	 * This method reads attribute data such as name, level, and sub-level ranges from the element to create a {@link NamedParamInfo}. Nested elements are also parsed into a structure of {@link StatSet} entries mapped by level and sub-level.
 	 * </p>
-	 * @param node The XML node representing the parameter information.
+	 * @param reader The stream reader positioned at the element representing the parameter information.
 	 * @param variableValues A map containing variable values for substitution.
 	 * @return A {@link NamedParamInfo} object containing parsed data.
+	 * @throws XMLStreamException if the file is not well-formed.
 	 */
-	private NamedParamInfo parseNamedParamInfo(Node node, Map<String, Map<Integer, Map<Integer, Object>>> variableValues)
+	private NamedParamInfo parseNamedParamInfo(XMLStreamReader reader, Map<String, Map<Integer, Map<Integer, Object>>> variableValues) throws XMLStreamException
 	{
-		Node n = node;
-		final NamedNodeMap attributes = n.getAttributes();
-		final String name = parseString(attributes, "name");
-		final Integer level = parseInteger(attributes, "level");
-		final Integer fromLevel = parseInteger(attributes, "fromLevel", level);
-		final Integer toLevel = parseInteger(attributes, "toLevel", level);
-		final Integer subLevel = parseInteger(attributes, "subLevel");
-		final Integer fromSubLevel = parseInteger(attributes, "fromSubLevel", subLevel);
-		final Integer toSubLevel = parseInteger(attributes, "toSubLevel", subLevel);
+		final String name = parseString(reader, "name");
+		final Integer level = parseInteger(reader, "level");
+		final Integer fromLevel = parseInteger(reader, "fromLevel", level);
+		final Integer toLevel = parseInteger(reader, "toLevel", level);
+		final Integer subLevel = parseInteger(reader, "subLevel");
+		final Integer fromSubLevel = parseInteger(reader, "fromSubLevel", subLevel);
+		final Integer toSubLevel = parseInteger(reader, "toSubLevel", subLevel);
 		final Map<Integer, Map<Integer, StatSet>> info = new HashMap<>();
-		for (n = n.getFirstChild(); n != null; n = n.getNextSibling())
+		while (nextElement(reader))
 		{
-			if (!n.getNodeName().equals("#text"))
-			{
-				parseInfo(n, variableValues, info);
-			}
+			parseInfo(reader, variableValues, info);
 		}
 		return new NamedParamInfo(name, fromLevel, toLevel, fromSubLevel, toSubLevel, info);
 	}
 	
 	/**
-	 * Parses detailed information from a node into a level-subLevel mapping structure, applying variable values if defined.
+	 * Parses detailed information from the current element into a level-subLevel mapping structure, applying variable values if defined.
 	 * <p>
-	 * The method interprets nested nodes as specific level and sub-level entries. Values can reference variables with "@" syntax, which are resolved using the provided variable values map.
+	 * The method interprets nested elements as specific level and sub-level entries. Values can reference variables with "@" syntax, which are resolved using the provided variable values map.
 	 * </p>
-	 * @param node The XML node containing information entries.
-	 * @param variableValues A map containing variable values for substitution within the node's attributes.
+	 * @param reader The stream reader positioned at the element containing information entries.
+	 * @param variableValues A map containing variable values for substitution within the element.
 	 * @param info A map that organizes {@link StatSet} entries by levels and sub-levels.
+	 * @throws XMLStreamException if the file is not well-formed.
 	 */
-	private void parseInfo(Node node, Map<String, Map<Integer, Map<Integer, Object>>> variableValues, Map<Integer, Map<Integer, StatSet>> info)
+	private void parseInfo(XMLStreamReader reader, Map<String, Map<Integer, Map<Integer, Object>>> variableValues, Map<Integer, Map<Integer, StatSet>> info) throws XMLStreamException
 	{
-		Map<Integer, Map<Integer, Object>> values = parseValues(node);
+		final String nodeName = reader.getLocalName();
+		Map<Integer, Map<Integer, Object>> values = parseValues(reader);
 		final Object generalValue = values.getOrDefault(-1, Collections.emptyMap()).get(-1);
 		if (generalValue != null)
 		{
@@ -452,75 +464,212 @@ public class SkillData implements IXmlReader
 			}
 		}
 		
-		values.forEach((level, subLevelMap) -> subLevelMap.forEach((subLevel, value) -> info.computeIfAbsent(level, _ -> new HashMap<>()).computeIfAbsent(subLevel, _ -> new StatSet()).set(node.getNodeName(), value)));
+		values.forEach((level, subLevelMap) -> subLevelMap.forEach((subLevel, value) -> info.computeIfAbsent(level, _ -> new HashMap<>()).computeIfAbsent(subLevel, _ -> new StatSet()).set(nodeName, value)));
 	}
 	
 	/**
-	 * Parses values from an XML node into a hierarchical map of levels and sub-levels, supporting variable substitution.
+	 * Parses the values of the current element into a hierarchical map of levels and sub-levels.
 	 * <p>
-	 * This method processes each nested "value" node to build a mapping of level and sub-level to specific values. It supports referencing base values and calculating new ones using variables such as "index" and "subIndex".
+	 * A value written directly inside the element applies to all levels and is stored under level and sub-level -1. Otherwise each nested "value" element is stored for its level, see {@link #parseLevelValue(XMLStreamReader, Map)}.
 	 * </p>
-	 * @param node The XML node containing value definitions.
+	 * @param reader The stream reader positioned at the element containing value definitions.
 	 * @return A map with values organized by level and sub-level, potentially using variable substitutions.
+	 * @throws XMLStreamException if the file is not well-formed.
 	 */
-	private Map<Integer, Map<Integer, Object>> parseValues(Node node)
+	private Map<Integer, Map<Integer, Object>> parseValues(XMLStreamReader reader) throws XMLStreamException
 	{
-		Node n = node;
 		final Map<Integer, Map<Integer, Object>> values = new HashMap<>();
-		Object parsedValue = parseValue(n, true, false, Collections.emptyMap());
+		final Object parsedValue = parseValue(reader, false, Collections.emptyMap(), values);
 		if (parsedValue != null)
 		{
+			values.clear();
 			values.computeIfAbsent(-1, _ -> new HashMap<>()).put(-1, parsedValue);
 		}
-		else
+		return values;
+	}
+	
+	/**
+	 * Parses a nested "value" element into the level and sub-level mapping of its parent.
+	 * <p>
+	 * A value with a level range is read once with its expressions left as text, then evaluated for every level and sub-level of the range using the "index", "subIndex" and "base" variables.
+	 * </p>
+	 * @param reader The stream reader positioned at the value element.
+	 * @param values The map of values organized by level and sub-level.
+	 * @throws XMLStreamException if the file is not well-formed.
+	 */
+	private void parseLevelValue(XMLStreamReader reader, Map<Integer, Map<Integer, Object>> values) throws XMLStreamException
+	{
+		final Integer level = parseInteger(reader, "level");
+		if (level != null)
+		{
+			final int subLevel = parseInt(reader, "subLevel", -1);
+			final Object parsedValue = parseValue(reader, false, Collections.emptyMap(), null);
+			if (parsedValue != null)
+			{
+				values.computeIfAbsent(level, _ -> new HashMap<>()).put(subLevel, parsedValue);
+			}
+			return;
+		}
+		
+		final int fromLevel = parseInteger(reader, "fromLevel");
+		final int toLevel = parseInteger(reader, "toLevel");
+		final int fromSubLevel = parseInt(reader, "fromSubLevel", -1);
+		final int toSubLevel = parseInt(reader, "toSubLevel", -1);
+		final Object rangeValue = parseValue(reader, false, null, null);
+		for (int i = fromLevel; i <= toLevel; i++)
+		{
+			for (int j = fromSubLevel; j <= toSubLevel; j++)
+			{
+				final Map<Integer, Object> subValues = values.computeIfAbsent(i, _ -> new HashMap<>());
+				final Map<String, Double> variables = new HashMap<>();
+				variables.put("index", (i - fromLevel) + 1d);
+				variables.put("subIndex", (j - fromSubLevel) + 1d);
+				final Object base = values.getOrDefault(i, Collections.emptyMap()).get(-1);
+				final String baseText = String.valueOf(base);
+				if ((base != null) && !(base instanceof StatSet) && (!baseText.equalsIgnoreCase("true") && !baseText.equalsIgnoreCase("false")))
+				{
+					variables.put("base", Double.parseDouble(baseText));
+				}
+				final Object parsedValue = resolveValue(rangeValue, variables);
+				if (parsedValue != null)
+				{
+					subValues.put(j, parsedValue);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parses the current element into a corresponding data structure, leaving the reader at its end.
+	 * <p>
+	 * This is the streaming counterpart of {@link #parseValue(Node, boolean, boolean, Map)}. When a level map is given, nested "value" elements are parsed into it instead of the result. When no variables are given, expressions are kept as text so that the value can be evaluated later with {@link #resolveValue(Object, Map)}.
+	 * </p>
+	 * @param reader The stream reader positioned at the element containing the value or nested values.
+	 * @param parseAttributes Whether to parse the element's attributes into the result.
+	 * @param variables A map of variables for evaluating expressions within the value, or {@code null} to keep them unevaluated.
+	 * @param levelValues A map receiving the nested "value" elements by level and sub-level, or {@code null} to parse them as regular values.
+	 * @return An object representing the parsed value, which may be a {@link StatSet}, list, or plain text.
+	 * @throws XMLStreamException if the file is not well-formed.
+	 */
+	private Object parseValue(XMLStreamReader reader, boolean parseAttributes, Map<String, Double> variables, Map<Integer, Map<Integer, Object>> levelValues) throws XMLStreamException
+	{
+		StatSet statSet = null;
+		List<Object> list = null;
+		Object text = null;
+		if (parseAttributes && (reader.getAttributeCount() > 0))
+		{
+			statSet = new StatSet();
+			parseAttributes(reader, "", statSet, variables);
+		}
+		
+		for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next())
 		{
-			for (n = n.getFirstChild(); n != null; n = n.getNextSibling())
+			if (event == XMLStreamConstants.CHARACTERS)
+			{
+				final String value = reader.getText().trim();
+				if (!value.isEmpty())
+				{
+					text = variables != null ? parseNodeValue(value, variables) : value;
+				}
+			}
+			else if (event == XMLStreamConstants.START_ELEMENT)
 			{
-				if (n.getNodeName().equalsIgnoreCase("value"))
+				final String nodeName = reader.getLocalName();
+				if (nodeName.equals("item"))
 				{
-					final NamedNodeMap attributes = n.getAttributes();
-					final Integer level = parseInteger(attributes, "level");
-					if (level != null)
+					if (list == null)
 					{
-						parsedValue = parseValue(n, false, false, Collections.emptyMap());
-						if (parsedValue != null)
-						{
-							final Integer subLevel = parseInteger(attributes, "subLevel", -1);
-							values.computeIfAbsent(level, _ -> new HashMap<>()).put(subLevel, parsedValue);
-						}
+						list = new LinkedList<>();
 					}
-					else
+					
+					final Object value = parseValue(reader, true, variables, null);
+					if (value != null)
 					{
-						final int fromLevel = parseInteger(attributes, "fromLevel");
-						final int toLevel = parseInteger(attributes, "toLevel");
-						final int fromSubLevel = parseInteger(attributes, "fromSubLevel", -1);
-						final int toSubLevel = parseInteger(attributes, "toSubLevel", -1);
-						for (int i = fromLevel; i <= toLevel; i++)
+						list.add(value);
+					}
+				}
+				else if (nodeName.equals("value") && (levelValues != null))
+				{
+					parseLevelValue(reader, levelValues);
+				}
+				else
+				{
+					final Object value = parseValue(reader, true, variables, null);
+					if (value != null)
+					{
+						if (statSet == null)
 						{
-							for (int j = fromSubLevel; j <= toSubLevel; j++)
-							{
-								final Map<Integer, Object> subValues = values.computeIfAbsent(i, _ -> new HashMap<>());
-								final Map<String, Double> variables = new HashMap<>();
-								variables.put("index", (i - fromLevel) + 1d);
-								variables.put("subIndex", (j - fromSubLevel) + 1d);
-								final Object base = values.getOrDefault(i, Collections.emptyMap()).get(-1);
-								final String baseText = String.valueOf(base);
-								if ((base != null) && !(base instanceof StatSet) && (!baseText.equalsIgnoreCase("true") && !baseText.equalsIgnoreCase("false")))
-								{
-									variables.put("base", Double.parseDouble(baseText));
-								}
-								parsedValue = parseValue(n, false, false, variables);
-								if (parsedValue != null)
-								{
-									subValues.put(j, parsedValue);
-								}
-							}
+							statSet = new StatSet();
 						}
+						
+						statSet.set(nodeName, value);
 					}
 				}
 			}
 		}
-		return values;
+		
+		if (list != null)
+		{
+			if (text != null)
+			{
+				throw new IllegalArgumentException("Text and list in same node are not allowed. Node[" + reader.getLocalName() + "]");
+			}
+			if (statSet != null)
+			{
+				statSet.set(".", list);
+			}
+			else
+			{
+				return list;
+			}
+		}
+		
+		if (text != null)
+		{
+			if (statSet != null)
+			{
+				statSet.set(".", text);
+			}
+			else
+			{
+				return text;
+			}
+		}
+		
+		return statSet;
+	}
+	
+	/**
+	 * Creates a copy of a value parsed without variables, evaluating each of its expressions with the given variables.
+	 * @param value The value returned by {@link #parseValue(XMLStreamReader, boolean, Map, Map)} without variables.
+	 * @param variables A map of variables for evaluating expressions within the value.
+	 * @return The evaluated copy of the value.
+	 */
+	private Object resolveValue(Object value, Map<String, Double> variables)
+	{
+		if (value instanceof String)
+		{
+			return parseNodeValue((String) value, variables);
+		}
+		
+		if (value instanceof StatSet)
+		{
+			final StatSet statSet = new StatSet();
+			((StatSet) value).getSet().forEach((key, entry) -> statSet.set(key, resolveValue(entry, variables)));
+			return statSet;
+		}
+		
+		if (value instanceof List)
+		{
+			final List<Object> list = new LinkedList<>();
+			for (Object entry : (List<?>) value)
+			{
+				list.add(resolveValue(entry, variables));
+			}
+			return list;
+		}
+		
+		return value;
 	}
 	
 	/**
@@ -634,17 +783,22 @@ public class SkillData implements IXmlReader
 	}
 	
 	/**
-	 * Parses the attributes of an XML node into a {@link StatSet} without any variable substitutions.
+	 * Parses the attributes of the current element into a {@link StatSet}, optionally using variable substitution.
 	 * <p>
-	 * This method iterates through each attribute of the node, storing them in the specified {@link StatSet}. Each attribute name is prefixed with the specified string. This overload of the method does not support variable evaluation within attribute values.
+	 * This method iterates over the attributes of the element, creating entries in the StatSet for each one. If any attribute value is an expression enclosed in "{}", it is evaluated using the provided variables map.
 	 * </p>
-	 * @param attributes The attributes to parse.
-	 * @param prefix A prefix to add to each attribute name when storing in the {@link StatSet}.
-	 * @param statSet The {@link StatSet} where parsed attributes will be stored.
+	 * @param reader The stream reader positioned at the element.
+	 * @param prefix A prefix to prepend to each attribute name in the StatSet.
+	 * @param statSet The StatSet in which to store parsed attributes.
+	 * @param variables A map of variables for evaluating expressions within attribute values, or {@code null} to keep them unevaluated.
 	 */
-	private void parseAttributes(NamedNodeMap attributes, String prefix, StatSet statSet)
+	private void parseAttributes(XMLStreamReader reader, String prefix, StatSet statSet, Map<String, Double> variables)
 	{
-		parseAttributes(attributes, prefix, statSet, Collections.emptyMap());
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+		{
+			final String value = reader.getAttributeValue(i);
+			statSet.set(prefix + "." + reader.getAttributeLocalName(i), variables != null ? parseNodeValue(value, variables) : value);
+		}
 	}
 	
 	/**
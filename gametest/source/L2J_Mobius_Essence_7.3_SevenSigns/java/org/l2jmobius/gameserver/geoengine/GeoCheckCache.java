@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver.geoengine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of geodata line checks.<br>
+ * Results are keyed by the geodata cells and the nearest Z layers of both ends, which fully determine the outcome of a check over static geodata.<br>
+ * Entries are stored in a direct mapped table, a colliding check simply replaces the previous entry.<br>
+ * Any change to the geodata increases the cache epoch, which invalidates every stored entry at once.
+ * @author Mobius
+ */
+public class GeoCheckCache
+{
+	public static final int LINE_OF_SIGHT = 0;
+	public static final int MOVE = 1;
+	public static final int MOVE_AVOID_OBSTRUCTED = 2;
+	private static final int TYPES = 3;
+	
+	private static final String[] TYPE_NAMES =
+	{
+		"LineOfSight",
+		"Move",
+		"MoveAvoidObstructed"
+	};
+	
+	public static final int MISS = -1;
+	
+	private final int _mask;
+	private final AtomicReferenceArray<Entry> _entries;
+	private final AtomicInteger _epoch = new AtomicInteger();
+	private final LongAdder[] _hits = new LongAdder[TYPES];
+	private final LongAdder[] _misses = new LongAdder[TYPES];
+	
+	/**
+	 * @param size the requested number of entries, rounded up to a power of two
+	 */
+	public GeoCheckCache(int size)
+	{
+		final int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+		_mask = capacity - 1;
+		_entries = new AtomicReferenceArray<>(capacity);
+		for (int i = 0; i < TYPES; i++)
+		{
+			_hits[i] = new LongAdder();
+			_misses[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * The epoch must be read before computing a result that will be stored, so a geodata change during the computation discards it.
+	 * @return the current cache epoch
+	 */
+	public int getEpoch()
+	{
+		return _epoch.get();
+	}
+	
+	/**
+	 * @param type the check type
+	 * @param geoX the starting geodata X coordinate
+	 * @param geoY the starting geodata Y coordinate
+	 * @param fromZ the nearest Z of the starting cell
+	 * @param tGeoX the target geodata X coordinate
+	 * @param tGeoY the target geodata Y coordinate
+	 * @param toZ the nearest Z of the target cell
+	 * @return 1 if the check passed, 0 if it failed or {@link #MISS} if no result is stored
+	 */
+	public int get(int type, int geoX, int geoY, int fromZ, int tGeoX, int tGeoY, int toZ)
+	{
+		final long cells = getCells(geoX, geoY, tGeoX, tGeoY);
+		final long layers = getLayers(type, fromZ, toZ);
+		final Entry entry = _entries.get(getIndex(cells, layers));
+		if ((entry != null) && (entry.cells == cells) && (entry.layers == layers) && (entry.epoch == _epoch.get()))
+		{
+			_hits[type].increment();
+			return entry.result ? 1 : 0;
+		}
+		
+		_misses[type].increment();
+		return MISS;
+	}
+	
+	/**
+	 * @param type the check type
+	 * @param geoX the starting geodata X coordinate
+	 * @param geoY the starting geodata Y coordinate
+	 * @param fromZ the nearest Z of the starting cell
+	 * @param tGeoX the target geodata X coordinate
+	 * @param tGeoY the target geodata Y coordinate
+	 * @param toZ the nearest Z of the target cell
+	 * @param epoch the epoch read before the result was computed
+	 * @param result the result of the check
+	 */
+	public void put(int type, int geoX, int geoY, int fromZ, int tGeoX, int tGeoY, int toZ, int epoch, boolean result)
+	{
+		if (epoch != _epoch.get())
+		{
+			return;
+		}
+		
+		final long cells = getCells(geoX, geoY, tGeoX, tGeoY);
+		final long layers = getLayers(type, fromZ, toZ);
+		_entries.set(getIndex(cells, layers), new Entry(cells, layers, epoch, result));
+	}
+	
+	/**
+	 * Invalidates all stored results.
+	 */
+	public void invalidate()
+	{
+		_epoch.incrementAndGet();
+	}
+	
+	/**
+	 * @return the hit rate of each check type
+	 */
+	public String getStatistics()
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Size: ").append(_mask + 1).append(", Epoch: ").append(_epoch.get());
+		for (int type = 0; type < TYPES; type++)
+		{
+			final long hits = _hits[type].sum();
+			final long total = hits + _misses[type].sum();
+			sb.append(System.lineSeparator());
+			sb.append(TYPE_NAMES[type]).append(": ").append(hits).append('/').append(total).append(" hits (");
+			sb.append(total == 0 ? 0 : (hits * 100) / total).append("%)");
+		}
+		return sb.toString();
+	}
+	
+	private static long getCells(int geoX, int geoY, int tGeoX, int tGeoY)
+	{
+		return ((geoX & 0xFFFFL) << 48) | ((geoY & 0xFFFFL) << 32) | ((tGeoX & 0xFFFFL) << 16) | (tGeoY & 0xFFFFL);
+	}
+	
+	private static long getLayers(int type, int fromZ, int toZ)
+	{
+		return ((fromZ & 0xFFFFL) << 32) | ((toZ & 0xFFFFL) << 16) | type;
+	}
+	
+	private int getIndex(long cells, long layers)
+	{
+		long hash = (cells * 0x9E3779B97F4A7C15L) ^ (layers * 0xC2B2AE3D27D4EB4FL);
+		hash ^= hash >>> 29;
+		return (int) hash & _mask;
+	}
+	
+	private static class Entry
+	{
+		final long cells;
+		final long layers;
+		final int epoch;
+		final boolean result;
+		
+		Entry(long cellKey, long layerKey, int cacheEpoch, boolean checkResult)
+		{
+			cells = cellKey;
+			layers = layerKey;
+			epoch = cacheEpoch;
+			result = checkResult;
+		}
+	}
+}
@@ -76,6 +76,7 @@ public class GeoEngine
 	private static final int GEO_REGIONS_Y = 32;
 	private static final int GEO_REGIONS = GEO_REGIONS_X * GEO_REGIONS_Y;
 	private static final AtomicReferenceArray<IRegion> REGIONS = new AtomicReferenceArray<>(GEO_REGIONS);
+	private static final GeoCheckCache CHECK_CACHE = Config.GEO_CHECK_CACHE_SIZE > 0 ? new GeoCheckCache(Config.GEO_CHECK_CACHE_SIZE) : null;
 	
 	protected GeoEngine()
 	{
@@ -151,6 +152,7 @@ public class GeoEngine
 	{
 		final int regionOffset = (regionX * GEO_REGIONS_Y) + regionY;
 		REGIONS.set(regionOffset, region);
+		invalidateCheckCache();
 	}
 	
 	/**
@@ -234,6 +236,7 @@ public class GeoEngine
 	public void setNearestNswe(int geoX, int geoY, int worldZ, byte nswe)
 	{
 		getRegion(geoX, geoY).setNearestNswe(geoX, geoY, worldZ, nswe);
+		invalidateCheckCache();
 	}
 	
 	/**
@@ -246,6 +249,26 @@ public class GeoEngine
 	public void unsetNearestNswe(int geoX, int geoY, int worldZ, byte nswe)
 	{
 		getRegion(geoX, geoY).unsetNearestNswe(geoX, geoY, worldZ, nswe);
+		invalidateCheckCache();
+	}
+	
+	/**
+	 * Discards all cached line of sight and movement results after a geodata change.
+	 */
+	private void invalidateCheckCache()
+	{
+		if (CHECK_CACHE != null)
+		{
+			CHECK_CACHE.invalidate();
+		}
+	}
+	
+	/**
+	 * @return the line of sight and movement check cache statistics
+	 */
+	public String getCheckCacheStatistics()
+	{
+		return CHECK_CACHE == null ? "Disabled." : CHECK_CACHE.getStatistics();
 	}
 	
 	/**
@@ -455,13 +478,13 @@ public class GeoEngine
 	 */
 	public boolean canSeeTarget(int x, int y, int z, int tx, int ty, int tz)
 	{
-		int geoX = getGeoX(x);
-		int geoY = getGeoY(y);
-		int tGeoX = getGeoX(tx);
-		int tGeoY = getGeoY(ty);
+		final int geoX = getGeoX(x);
+		final int geoY = getGeoY(y);
+		final int tGeoX = getGeoX(tx);
+		final int tGeoY = getGeoY(ty);
 		
-		int nearestFromZ = getNearestZ(geoX, geoY, z);
-		int nearestToZ = getNearestZ(tGeoX, tGeoY, tz);
+		final int nearestFromZ = getNearestZ(geoX, geoY, z);
+		final int nearestToZ = getNearestZ(tGeoX, tGeoY, tz);
 		
 		// Fastpath.
 		if ((geoX == tGeoX) && (geoY == tGeoY))
@@ -469,21 +492,44 @@ public class GeoEngine
 			return !hasGeoPos(tGeoX, tGeoY) || (nearestFromZ == nearestToZ);
 		}
 		
-		int fromX = tx;
-		int fromY = ty;
-		int toX = tx;
-		int toY = ty;
+		if (CHECK_CACHE == null)
+		{
+			return checkSeeTarget(geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		}
+		
+		final int cached = CHECK_CACHE.get(GeoCheckCache.LINE_OF_SIGHT, geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		if (cached != GeoCheckCache.MISS)
+		{
+			return cached == 1;
+		}
+		
+		final int epoch = CHECK_CACHE.getEpoch();
+		final boolean result = checkSeeTarget(geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		CHECK_CACHE.put(GeoCheckCache.LINE_OF_SIGHT, geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ, epoch, result);
+		return result;
+	}
+	
+	/**
+	 * Walks the geodata cells between two positions for line of sight.
+	 * @param fromGeoX the starting geodata X coordinate
+	 * @param fromGeoY the starting geodata Y coordinate
+	 * @param fromZ the nearest Z of the starting cell
+	 * @param toGeoX the target geodata X coordinate
+	 * @param toGeoY the target geodata Y coordinate
+	 * @param toZ the nearest Z of the target cell
+	 * @return {@code true} if nothing blocks the sight, {@code false} otherwise
+	 */
+	private boolean checkSeeTarget(int fromGeoX, int fromGeoY, int fromZ, int toGeoX, int toGeoY, int toZ)
+	{
+		int geoX = fromGeoX;
+		int geoY = fromGeoY;
+		int tGeoX = toGeoX;
+		int tGeoY = toGeoY;
+		int nearestFromZ = fromZ;
+		int nearestToZ = toZ;
 		if (nearestToZ > nearestFromZ)
 		{
-			int tmp = toX;
-			toX = fromX;
-			fromX = tmp;
-			
-			tmp = toY;
-			toY = fromY;
-			fromY = tmp;
-			
-			tmp = nearestToZ;
+			int tmp = nearestToZ;
 			nearestToZ = nearestFromZ;
 			nearestFromZ = tmp;
 			
@@ -686,6 +732,36 @@ public class GeoEngine
 			return false;
 		}
 		
+		if (CHECK_CACHE == null)
+		{
+			return checkMoveToTarget(geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		}
+		
+		final int type = Config.AVOID_ABSTRUCTED_PATH_NODES ? GeoCheckCache.MOVE_AVOID_OBSTRUCTED : GeoCheckCache.MOVE;
+		final int cached = CHECK_CACHE.get(type, geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		if (cached != GeoCheckCache.MISS)
+		{
+			return cached == 1;
+		}
+		
+		final int epoch = CHECK_CACHE.getEpoch();
+		final boolean result = checkMoveToTarget(geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ);
+		CHECK_CACHE.put(type, geoX, geoY, nearestFromZ, tGeoX, tGeoY, nearestToZ, epoch, result);
+		return result;
+	}
+	
+	/**
+	 * Walks the geodata cells between two positions for movement.
+	 * @param geoX the starting geodata X coordinate
+	 * @param geoY the starting geodata Y coordinate
+	 * @param nearestFromZ the nearest Z of the starting cell
+	 * @param tGeoX the target geodata X coordinate
+	 * @param tGeoY the target geodata Y coordinate
+	 * @param nearestToZ the nearest Z of the target cell
+	 * @return {@code true} if the movement is not blocked, {@code false} otherwise
+	 */
+	private boolean checkMoveToTarget(int geoX, int geoY, int nearestFromZ, int tGeoX, int tGeoY, int nearestToZ)
+	{
 		final GridLineIterator2D pointIter = new GridLineIterator2D(geoX, geoY, tGeoX, tGeoY);
 		// First point is guaranteed to be available.
 		pointIter.next();
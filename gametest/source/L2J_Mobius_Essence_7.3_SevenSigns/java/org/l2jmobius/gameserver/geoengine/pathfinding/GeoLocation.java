@@ -38,6 +38,21 @@ public class GeoLocation
 		set(x, y, z);
 	}
 	
+	/**
+	 * Creates a location from already known geodata, without querying the geodata again.
+	 * @param x the geodata X coordinate
+	 * @param y the geodata Y coordinate
+	 * @param z the geodata height
+	 * @param nswe the NSWE bitmask of the cell
+	 */
+	public GeoLocation(int x, int y, int z, int nswe)
+	{
+		_x = x;
+		_y = y;
+		_nswe = nswe;
+		_geoHeight = z;
+	}
+	
 	public void set(int x, int y, int z)
 	{
 		_x = x;
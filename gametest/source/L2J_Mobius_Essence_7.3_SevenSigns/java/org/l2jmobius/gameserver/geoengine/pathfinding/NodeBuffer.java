@@ -20,20 +20,45 @@
  */
 package org.l2jmobius.gameserver.geoengine.pathfinding;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
 
 import org.l2jmobius.Config;
+import org.l2jmobius.gameserver.geoengine.GeoEngine;
+import org.l2jmobius.gameserver.geoengine.geodata.Cell;
 
 /**
+ * Pathfinding node map backed by primitive arrays.<br>
+ * Every geodata cell of the map is addressed by an index ({@code (x - baseX) * mapSize + (y - baseY)}) and its state is kept in parallel arrays.<br>
+ * Cells are invalidated in bulk by increasing a generation stamp, so a search never clears the map and never allocates per expanded node.<br>
+ * Unprocessed nodes are kept in a binary heap ordered by cost and insertion order.
  * @author Mobius
  */
 public class NodeBuffer
 {
-	private static final int MAX_ITERATIONS = 3500;
+	public static final int MAX_ITERATIONS = 3500;
+	public static final int NOT_FOUND = -1; // Every reachable node was expanded.
+	public static final int EXHAUSTED = -2; // The search reached the edge of the map or ran out of iterations, a path may still exist.
+	public static final int POINT_SIZE = 4; // World X, Y, Z and NSWE of each route point.
+	private static final float NO_COST = -1000;
 	
-	private final ReentrantLock _lock = new ReentrantLock();
 	private final int _mapSize;
-	private final GeoNode[][] _buffer;
+	
+	// Per cell state.
+	private final int[] _stamp;
+	private final byte[] _nswe;
+	private final short[] _z;
+	private final float[] _cost;
+	private final int[] _parent;
+	private final int[] _order;
+	
+	// Open set.
+	private final int[] _heap;
+	private int _heapSize = 0;
+	private int _sequence = 0;
+	private int _generation = 0;
+	
+	// Reusable storage for path construction.
+	private int[] _path = new int[48];
 	
 	private int _baseX = 0;
 	private int _baseY = 0;
@@ -42,105 +67,190 @@ public class NodeBuffer
 	private int _targetY = 0;
 	private int _targetZ = 0;
 	
-	private GeoNode _current = null;
+	private int _current = -1;
+	private boolean _edgeReached = false;
 	
 	public NodeBuffer(int size)
 	{
 		_mapSize = size;
-		_buffer = new GeoNode[_mapSize][_mapSize];
+		
+		final int cells = _mapSize * _mapSize;
+		_stamp = new int[cells];
+		_nswe = new byte[cells];
+		_z = new short[cells];
+		_cost = new float[cells];
+		_parent = new int[cells];
+		_order = new int[cells];
+		_heap = new int[cells];
 	}
 	
-	public final boolean lock()
+	public int getMapSize()
 	{
-		return _lock.tryLock();
+		return _mapSize;
 	}
 	
-	public GeoNode findPath(int x, int y, int z, int tx, int ty, int tz)
+	/**
+	 * Searches a path between two geodata positions.
+	 * @param x the starting geodata X coordinate
+	 * @param y the starting geodata Y coordinate
+	 * @param z the starting Z coordinate
+	 * @param tx the target geodata X coordinate
+	 * @param ty the target geodata Y coordinate
+	 * @param tz the target Z coordinate
+	 * @param maxIterations the maximum number of expanded nodes
+	 * @return the index of the reached target node, {@link #NOT_FOUND} if there is no path, or {@link #EXHAUSTED} if the search gave up before it could tell
+	 */
+	public int findPath(int x, int y, int z, int tx, int ty, int tz, int maxIterations)
 	{
+		// Invalidate all cells of the previous search.
+		if (++_generation == 0)
+		{
+			Arrays.fill(_stamp, 0);
+			_generation = 1;
+		}
+		_heapSize = 0;
+		_sequence = 0;
+		_edgeReached = false;
+		
 		_baseX = x + ((tx - x - _mapSize) / 2); // Middle of the line (x,y) - (tx,ty).
 		_baseY = y + ((ty - y - _mapSize) / 2); // Will be in the center of the buffer.
 		_targetX = tx;
 		_targetY = ty;
 		_targetZ = tz;
 		_current = getNode(x, y, z);
-		_current.setCost(getCost(x, y, z, Config.HIGH_WEIGHT));
+		if (_current < 0)
+		{
+			return NOT_FOUND;
+		}
+		_cost[_current] = getCost(x, y, z, Config.HIGH_WEIGHT);
 		
-		for (int count = 0; count < MAX_ITERATIONS; count++)
+		for (int count = 0; count < maxIterations; count++)
 		{
-			if ((_current.getLocation().getNodeX() == _targetX) && (_current.getLocation().getNodeY() == _targetY) && (Math.abs(_current.getLocation().getZ() - _targetZ) < 64))
+			if ((getNodeX(_current) == _targetX) && (getNodeY(_current) == _targetY) && (Math.abs(_z[_current] - _targetZ) < 64))
 			{
 				return _current; // Found.
 			}
 			
 			getNeighbors();
 			
-			final GeoNode nextCellNode = _current.getNext();
-			if (nextCellNode == null)
+			if (_heapSize == 0)
 			{
-				return null; // No more ways.
+				return _edgeReached ? EXHAUSTED : NOT_FOUND; // No more ways.
 			}
 			
-			_current = nextCellNode;
+			_current = poll();
 		}
-		return null;
+		return EXHAUSTED;
 	}
 	
-	public void free()
+	/**
+	 * Builds the route points leading to the given node, keeping only the nodes where the moving direction changes.<br>
+	 * The starting node is not included.
+	 * @param node the index of the last node of the path
+	 * @return the route as consecutive world X, Y, Z and NSWE values
+	 */
+	public int[] constructPath(int node)
 	{
-		_current = null;
+		int size = 0;
+		int previousDirectionX = Integer.MIN_VALUE;
+		int previousDirectionY = Integer.MIN_VALUE;
+		int directionX;
+		int directionY;
 		
-		GeoNode node;
-		for (int i = 0; i < _mapSize; i++)
+		int tempNode = node;
+		int parent;
+		int grandParent;
+		while ((parent = _parent[tempNode]) >= 0)
 		{
-			for (int j = 0; j < _mapSize; j++)
+			grandParent = _parent[parent];
+			if (!Config.ADVANCED_DIAGONAL_STRATEGY && (grandParent >= 0))
 			{
-				node = _buffer[i][j];
-				if (node != null)
+				final int tmpX = getNodeX(tempNode) - getNodeX(grandParent);
+				final int tmpY = getNodeY(tempNode) - getNodeY(grandParent);
+				if (Math.abs(tmpX) == Math.abs(tmpY))
 				{
-					node.free();
+					directionX = tmpX;
+					directionY = tmpY;
 				}
+				else
+				{
+					directionX = getNodeX(tempNode) - getNodeX(parent);
+					directionY = getNodeY(tempNode) - getNodeY(parent);
+				}
+			}
+			else
+			{
+				directionX = getNodeX(tempNode) - getNodeX(parent);
+				directionY = getNodeY(tempNode) - getNodeY(parent);
 			}
+			
+			// Only add a new route point if moving direction changes.
+			if ((directionX != previousDirectionX) || (directionY != previousDirectionY))
+			{
+				previousDirectionX = directionX;
+				previousDirectionY = directionY;
+				
+				if (size == _path.length)
+				{
+					_path = Arrays.copyOf(_path, size * 2);
+				}
+				_path[size++] = tempNode;
+			}
+			
+			tempNode = parent;
 		}
 		
-		_lock.unlock();
+		// Points were collected from the end, write them in moving order.
+		final GeoEngine geoEngine = GeoEngine.getInstance();
+		final int[] result = new int[size * POINT_SIZE];
+		for (int i = 0, j = size - 1; j >= 0; i += POINT_SIZE, j--)
+		{
+			final int point = _path[j];
+			result[i] = geoEngine.getWorldX(getNodeX(point));
+			result[i + 1] = geoEngine.getWorldY(getNodeY(point));
+			result[i + 2] = _z[point];
+			result[i + 3] = _nswe[point];
+		}
+		return result;
 	}
 	
 	private void getNeighbors()
 	{
-		if (_current.getLocation().canGoNone())
+		final int nswe = _nswe[_current];
+		if (nswe == 0)
 		{
 			return;
 		}
 		
-		final int x = _current.getLocation().getNodeX();
-		final int y = _current.getLocation().getNodeY();
-		final int z = _current.getLocation().getZ();
+		final int x = getNodeX(_current);
+		final int y = getNodeY(_current);
+		final int z = _z[_current];
 		
-		GeoNode nodeE = null;
-		GeoNode nodeS = null;
-		GeoNode nodeW = null;
-		GeoNode nodeN = null;
+		int nodeE = -1;
+		int nodeS = -1;
+		int nodeW = -1;
+		int nodeN = -1;
 		
 		// East
-		if (_current.getLocation().canGoEast())
+		if ((nswe & Cell.NSWE_EAST) != 0)
 		{
 			nodeE = addNode(x + 1, y, z, false);
 		}
 		
 		// South
-		if (_current.getLocation().canGoSouth())
+		if ((nswe & Cell.NSWE_SOUTH) != 0)
 		{
 			nodeS = addNode(x, y + 1, z, false);
 		}
 		
 		// West
-		if (_current.getLocation().canGoWest())
+		if ((nswe & Cell.NSWE_WEST) != 0)
 		{
 			nodeW = addNode(x - 1, y, z, false);
 		}
 		
 		// North
-		if (_current.getLocation().canGoNorth())
+		if ((nswe & Cell.NSWE_NORTH) != 0)
 		{
 			nodeN = addNode(x, y - 1, z, false);
 		}
@@ -151,85 +261,102 @@ public class NodeBuffer
 		}
 		
 		// SouthEast
-		if ((nodeE != null) && (nodeS != null) && nodeE.getLocation().canGoSouth() && nodeS.getLocation().canGoEast())
+		if ((nodeE >= 0) && (nodeS >= 0) && ((_nswe[nodeE] & Cell.NSWE_SOUTH) != 0) && ((_nswe[nodeS] & Cell.NSWE_EAST) != 0))
 		{
 			addNode(x + 1, y + 1, z, true);
 		}
 		
 		// SouthWest
-		if ((nodeS != null) && (nodeW != null) && nodeW.getLocation().canGoSouth() && nodeS.getLocation().canGoWest())
+		if ((nodeS >= 0) && (nodeW >= 0) && ((_nswe[nodeW] & Cell.NSWE_SOUTH) != 0) && ((_nswe[nodeS] & Cell.NSWE_WEST) != 0))
 		{
 			addNode(x - 1, y + 1, z, true);
 		}
 		
 		// NorthEast
-		if ((nodeN != null) && (nodeE != null) && nodeE.getLocation().canGoNorth() && nodeN.getLocation().canGoEast())
+		if ((nodeN >= 0) && (nodeE >= 0) && ((_nswe[nodeE] & Cell.NSWE_NORTH) != 0) && ((_nswe[nodeN] & Cell.NSWE_EAST) != 0))
 		{
 			addNode(x + 1, y - 1, z, true);
 		}
 		
 		// NorthWest
-		if ((nodeN != null) && (nodeW != null) && nodeW.getLocation().canGoNorth() && nodeN.getLocation().canGoWest())
+		if ((nodeN >= 0) && (nodeW >= 0) && ((_nswe[nodeW] & Cell.NSWE_NORTH) != 0) && ((_nswe[nodeN] & Cell.NSWE_WEST) != 0))
 		{
 			addNode(x - 1, y - 1, z, true);
 		}
 	}
 	
-	private GeoNode getNode(int x, int y, int z)
+	/**
+	 * @param x the geodata X coordinate
+	 * @param y the geodata Y coordinate
+	 * @param z the Z coordinate
+	 * @return the index of the node, loading its geodata on first access during this search, or -1 if outside of the map
+	 */
+	private int getNode(int x, int y, int z)
 	{
 		final int aX = x - _baseX;
 		if ((aX < 0) || (aX >= _mapSize))
 		{
-			return null;
+			return -1;
 		}
 		
 		final int aY = y - _baseY;
 		if ((aY < 0) || (aY >= _mapSize))
 		{
-			return null;
+			return -1;
 		}
 		
-		GeoNode result = _buffer[aX][aY];
-		if (result == null)
+		final int node = (aX * _mapSize) + aY;
+		if (_stamp[node] != _generation)
 		{
-			result = new GeoNode(new GeoLocation(x, y, z));
-			_buffer[aX][aY] = result;
-		}
-		else if (!result.isInUse())
-		{
-			result.setInUse();
-			// Re-init node if needed.
-			if (result.getLocation() != null)
+			_stamp[node] = _generation;
+			_cost[node] = NO_COST;
+			_parent[node] = -1;
+			
+			// Set the NSWE bitmask based on movement possibilities.
+			final GeoEngine geoEngine = GeoEngine.getInstance();
+			int nswe = 0;
+			if (geoEngine.checkNearestNswe(x, y, z, Cell.NSWE_NORTH))
 			{
-				result.getLocation().set(x, y, z);
+				nswe |= Cell.NSWE_NORTH;
 			}
-			else
+			if (geoEngine.checkNearestNswe(x, y, z, Cell.NSWE_EAST))
 			{
-				result.setLoc(new GeoLocation(x, y, z));
+				nswe |= Cell.NSWE_EAST;
 			}
+			if (geoEngine.checkNearestNswe(x, y, z, Cell.NSWE_SOUTH))
+			{
+				nswe |= Cell.NSWE_SOUTH;
+			}
+			if (geoEngine.checkNearestNswe(x, y, z, Cell.NSWE_WEST))
+			{
+				nswe |= Cell.NSWE_WEST;
+			}
+			_nswe[node] = (byte) nswe;
+			_z[node] = (short) geoEngine.getNearestZ(x, y, z);
 		}
 		
-		return result;
+		return node;
 	}
 	
-	private GeoNode addNode(int x, int y, int z, boolean diagonal)
+	private int addNode(int x, int y, int z, boolean diagonal)
 	{
-		final GeoNode newNode = getNode(x, y, z);
-		if (newNode == null)
+		final int newNode = getNode(x, y, z);
+		if (newNode < 0)
 		{
-			return null;
+			_edgeReached = true;
+			return -1;
 		}
-		if (newNode.getCost() >= 0)
+		if (_cost[newNode] >= 0)
 		{
 			return newNode;
 		}
 		
-		final int geoZ = newNode.getLocation().getZ();
+		final int geoZ = _z[newNode];
 		
-		final int stepZ = Math.abs(geoZ - _current.getLocation().getZ());
+		final int stepZ = Math.abs(geoZ - _z[_current]);
 		float weight = diagonal ? Config.DIAGONAL_WEIGHT : Config.LOW_WEIGHT;
 		
-		if (!newNode.getLocation().canGoAll() || (stepZ > 16))
+		if ((_nswe[newNode] != Cell.NSWE_ALL) || (stepZ > 16))
 		{
 			weight = Config.HIGH_WEIGHT;
 		}
@@ -250,39 +377,21 @@ public class NodeBuffer
 			weight = Config.MEDIUM_WEIGHT;
 		}
 		
-		newNode.setParent(_current);
-		newNode.setCost(getCost(x, y, geoZ, weight));
-		
-		GeoNode node = _current;
-		int count = 0;
-		while ((node.getNext() != null) && (count < (MAX_ITERATIONS * 4)))
-		{
-			count++;
-			if (node.getNext().getCost() > newNode.getCost())
-			{
-				// Insert node into a chain.
-				newNode.setNext(node.getNext());
-				break;
-			}
-			node = node.getNext();
-		}
-		if (count == (MAX_ITERATIONS * 4))
-		{
-			System.err.println("Pathfinding: too long loop detected, cost:" + newNode.getCost());
-		}
-		
-		node.setNext(newNode); // Add last.
+		_parent[newNode] = _current;
+		_cost[newNode] = getCost(x, y, geoZ, weight);
+		_order[newNode] = _sequence++;
+		offer(newNode);
 		
 		return newNode;
 	}
 	
 	private boolean isHighWeight(int x, int y, int z)
 	{
-		final GeoNode result = getNode(x, y, z);
-		return (result == null) || !result.getLocation().canGoAll() || (Math.abs(result.getLocation().getZ() - z) > 16);
+		final int node = getNode(x, y, z);
+		return (node < 0) || (_nswe[node] != Cell.NSWE_ALL) || (Math.abs(_z[node] - z) > 16);
 	}
 	
-	private double getCost(int x, int y, int z, float weight)
+	private float getCost(int x, int y, int z, float weight)
 	{
 		final int dX = x - _targetX;
 		final int dY = y - _targetY;
@@ -299,6 +408,76 @@ public class NodeBuffer
 			result = Float.MAX_VALUE;
 		}
 		
+		return (float) result;
+	}
+	
+	private int getNodeX(int node)
+	{
+		return _baseX + (node / _mapSize);
+	}
+	
+	private int getNodeY(int node)
+	{
+		return _baseY + (node % _mapSize);
+	}
+	
+	/**
+	 * Nodes with equal cost keep their insertion order.
+	 * @param a the first node
+	 * @param b the second node
+	 * @return {@code true} if node a must be processed before node b
+	 */
+	private boolean isBefore(int a, int b)
+	{
+		final float costA = _cost[a];
+		final float costB = _cost[b];
+		return (costA < costB) || ((costA == costB) && (_order[a] < _order[b]));
+	}
+	
+	private void offer(int node)
+	{
+		int index = _heapSize++;
+		while (index > 0)
+		{
+			final int parentIndex = (index - 1) >>> 1;
+			final int parent = _heap[parentIndex];
+			if (!isBefore(node, parent))
+			{
+				break;
+			}
+			_heap[index] = parent;
+			index = parentIndex;
+		}
+		_heap[index] = node;
+	}
+	
+	private int poll()
+	{
+		final int result = _heap[0];
+		final int last = _heap[--_heapSize];
+		int index = 0;
+		final int half = _heapSize >>> 1;
+		while (index < half)
+		{
+			int childIndex = (index << 1) + 1;
+			int child = _heap[childIndex];
+			final int rightIndex = childIndex + 1;
+			if ((rightIndex < _heapSize) && isBefore(_heap[rightIndex], child))
+			{
+				childIndex = rightIndex;
+				child = _heap[childIndex];
+			}
+			if (!isBefore(child, last))
+			{
+				break;
+			}
+			_heap[index] = child;
+			index = childIndex;
+		}
+		if (_heapSize > 0)
+		{
+			_heap[index] = last;
+		}
 		return result;
 	}
 }
@@ -21,8 +21,11 @@
 package org.l2jmobius.gameserver.geoengine.pathfinding;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,7 +41,11 @@ public class PathFinding
 {
 	private static final Logger LOGGER = Logger.getLogger(PathFinding.class.getName());
 	
+	// Returned instead of route points by a local search that gave up before it could tell if there is a path, compared by identity.
+	private static final int[] EXHAUSTED = new int[0];
+	
 	private BufferInfo[] _allBuffers;
+	private final PortalGraph _portalGraph;
 	
 	protected PathFinding()
 	{
@@ -67,6 +74,8 @@ public class PathFinding
 			LOGGER.log(Level.WARNING, "CellPathFinding: Problem during buffer init: " + e.getMessage(), e);
 			throw new Error("CellPathFinding: load aborted");
 		}
+		
+		_portalGraph = Config.HIERARCHICAL_PATHFINDING && PortalGraph.getInstance().isLoaded() ? PortalGraph.getInstance() : null;
 	}
 	
 	/**
@@ -153,6 +162,36 @@ public class PathFinding
 	 * @return a list of pathnodes forming the path, or {@code null} if no path is found
 	 */
 	public List<GeoLocation> findPath(int x, int y, int z, int tx, int ty, int tz, Instance instance, boolean playable)
+	{
+		final int[] points = findPathPoints(x, y, z, tx, ty, tz, instance, playable);
+		if (points == null)
+		{
+			return null;
+		}
+		
+		final GeoEngine geoEngine = GeoEngine.getInstance();
+		final List<GeoLocation> path = new ArrayList<>(points.length / NodeBuffer.POINT_SIZE);
+		for (int i = 0; i < points.length; i += NodeBuffer.POINT_SIZE)
+		{
+			path.add(new GeoLocation(geoEngine.getGeoX(points[i]), geoEngine.getGeoY(points[i + 1]), points[i + 2], points[i + 3]));
+		}
+		return path;
+	}
+	
+	/**
+	 * Finds a path between two world positions considering geodata and an instance.<br>
+	 * The path is returned in compact form, as consecutive world X, Y, Z and NSWE values of each route point.
+	 * @param x the starting X coordinate
+	 * @param y the starting Y coordinate
+	 * @param z the starting Z coordinate
+	 * @param tx the target X coordinate
+	 * @param ty the target Y coordinate
+	 * @param tz the target Z coordinate
+	 * @param instance the instance to consider for pathfinding
+	 * @param playable whether the pathfinding is for a playable character
+	 * @return the route points, or {@code null} if no path is found
+	 */
+	public int[] findPathPoints(int x, int y, int z, int tx, int ty, int tz, Instance instance, boolean playable)
 	{
 		final GeoEngine geoEngine = GeoEngine.getInstance();
 		final int gx = geoEngine.getGeoX(x);
@@ -171,38 +210,28 @@ public class PathFinding
 		}
 		
 		final int gtz = geoEngine.getHeight(tx, ty, tz);
-		final NodeBuffer buffer = alloc(64 + (2 * Math.max(Math.abs(gx - gtx), Math.abs(gy - gty))));
-		if (buffer == null)
+		int[] path = searchPath(gx, gy, gz, gtx, gty, gtz, false);
+		if (path == EXHAUSTED)
 		{
-			return null;
+			// Only a search cut short by its buffer may have missed a path, the portal graph searches beyond it.
+			path = _portalGraph != null ? searchLongPath(gx, gy, gz, gtx, gty, gtz) : null;
 		}
-		
-		List<GeoLocation> path = null;
-		try
+		else if ((path == null) && (_portalGraph != null) && (Math.max(Math.abs(gx - gtx), Math.abs(gy - gty)) > PortalGraph.CLUSTER_SIZE))
 		{
-			final GeoNode result = buffer.findPath(gx, gy, gz, gtx, gty, gtz);
-			if (result == null)
-			{
-				return null;
-			}
-			
-			path = constructPath(result);
+			path = searchLongPath(gx, gy, gz, gtx, gty, gtz);
 		}
-		catch (Exception e)
+		if (path == null)
 		{
-			LOGGER.log(Level.WARNING, "CellPathFinding: Problem finding path: " + e.getMessage(), e);
 			return null;
 		}
-		finally
-		{
-			buffer.free();
-		}
 		
-		if ((path.size() < 3) || (Config.MAX_POSTFILTER_PASSES <= 0))
+		int size = path.length / NodeBuffer.POINT_SIZE;
+		if ((size < 3) || (Config.MAX_POSTFILTER_PASSES <= 0))
 		{
 			return path;
 		}
 		
+		// Remove route points that can be skipped, compacting the array in place.
 		int pass = 0;
 		boolean remove;
 		do
@@ -212,141 +241,224 @@ public class PathFinding
 			int currentX = x;
 			int currentY = y;
 			int currentZ = z;
-			final int size = path.size();
-			final List<GeoLocation> newPath = new ArrayList<>(size);
+			int newSize = 0;
 			for (int i = 0; i < (size - 1); i++)
 			{
-				final GeoLocation locMiddle = path.get(i);
-				final GeoLocation locEnd = path.get(i + 1);
-				if (geoEngine.canMoveToTarget(currentX, currentY, currentZ, locEnd.getX(), locEnd.getY(), locEnd.getZ(), instance))
+				final int end = (i + 1) * NodeBuffer.POINT_SIZE;
+				if (geoEngine.canMoveToTarget(currentX, currentY, currentZ, path[end], path[end + 1], path[end + 2], instance))
 				{
 					remove = true;
 				}
 				else
 				{
-					newPath.add(locMiddle);
-					currentX = locMiddle.getX();
-					currentY = locMiddle.getY();
-					currentZ = locMiddle.getZ();
+					final int middle = i * NodeBuffer.POINT_SIZE;
+					currentX = path[middle];
+					currentY = path[middle + 1];
+					currentZ = path[middle + 2];
+					
+					final int target = newSize * NodeBuffer.POINT_SIZE;
+					path[target] = currentX;
+					path[target + 1] = currentY;
+					path[target + 2] = currentZ;
+					path[target + 3] = path[middle + 3];
+					newSize++;
 				}
 			}
 			
 			// Add the last node
-			newPath.add(path.get(size - 1));
-			path = newPath;
+			System.arraycopy(path, (size - 1) * NodeBuffer.POINT_SIZE, path, newSize * NodeBuffer.POINT_SIZE, NodeBuffer.POINT_SIZE);
+			size = newSize + 1;
 		}
-		while (playable && remove && (path.size() > 2) && (pass < Config.MAX_POSTFILTER_PASSES));
+		while (playable && remove && (size > 2) && (pass < Config.MAX_POSTFILTER_PASSES));
 		
-		return path;
+		return (size * NodeBuffer.POINT_SIZE) == path.length ? path : Arrays.copyOf(path, size * NodeBuffer.POINT_SIZE);
 	}
 	
 	/**
-	 * Constructs a path from a given node by traversing its parent nodes.
-	 * @param node the starting node
-	 * @return the constructed path as a list of node locations
+	 * Searches a path with a single node buffer.
+	 * @param gx the starting geodata X coordinate
+	 * @param gy the starting geodata Y coordinate
+	 * @param gz the starting Z coordinate
+	 * @param gtx the target geodata X coordinate
+	 * @param gty the target geodata Y coordinate
+	 * @param gtz the target Z coordinate
+	 * @param leg whether this is a leg of a portal graph route, which is known to be walkable inside a cluster and may use the whole buffer
+	 * @return the route points, {@code null} if there is no path, or {@link #EXHAUSTED} if the search reached the limits of its buffer or the distance is too long for the buffers
 	 */
-	private List<GeoLocation> constructPath(GeoNode node)
+	private int[] searchPath(int gx, int gy, int gz, int gtx, int gty, int gtz, boolean leg)
 	{
-		final List<GeoLocation> path = new ArrayList<>();
-		int previousDirectionX = Integer.MIN_VALUE;
-		int previousDirectionY = Integer.MIN_VALUE;
-		int directionX;
-		int directionY;
+		int distance = Math.max(Math.abs(gx - gtx), Math.abs(gy - gty));
+		if (leg)
+		{
+			distance = Math.max(distance, PortalGraph.CLUSTER_SIZE);
+		}
 		
-		GeoNode tempNode = node;
-		while (tempNode.getParent() != null)
+		final BufferInfo info = getBufferInfo(64 + (2 * distance));
+		if (info == null)
+		{
+			return EXHAUSTED;
+		}
+		
+		final NodeBuffer buffer = info.acquire();
+		try
 		{
-			if (!Config.ADVANCED_DIAGONAL_STRATEGY && (tempNode.getParent().getParent() != null))
+			final int result = buffer.findPath(gx, gy, gz, gtx, gty, gtz, leg ? buffer.getMapSize() * buffer.getMapSize() : NodeBuffer.MAX_ITERATIONS);
+			if (result == NodeBuffer.EXHAUSTED)
 			{
-				final int tmpX = tempNode.getLocation().getNodeX() - tempNode.getParent().getParent().getLocation().getNodeX();
-				final int tmpY = tempNode.getLocation().getNodeY() - tempNode.getParent().getParent().getLocation().getNodeY();
-				if (Math.abs(tmpX) == Math.abs(tmpY))
-				{
-					directionX = tmpX;
-					directionY = tmpY;
-				}
-				else
-				{
-					directionX = tempNode.getLocation().getNodeX() - tempNode.getParent().getLocation().getNodeX();
-					directionY = tempNode.getLocation().getNodeY() - tempNode.getParent().getLocation().getNodeY();
-				}
+				return EXHAUSTED;
 			}
-			else
+			if (result < 0)
+			{
+				return null;
+			}
+			
+			return buffer.constructPath(result);
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.WARNING, "CellPathFinding: Problem finding path: " + e.getMessage(), e);
+			return null;
+		}
+		finally
+		{
+			info.release(buffer);
+		}
+	}
+	
+	/**
+	 * Plans a route over the portal graph and refines every leg of it with a local search.
+	 * @param gx the starting geodata X coordinate
+	 * @param gy the starting geodata Y coordinate
+	 * @param gz the starting Z coordinate
+	 * @param gtx the target geodata X coordinate
+	 * @param gty the target geodata Y coordinate
+	 * @param gtz the target Z coordinate
+	 * @return the route points, or {@code null} if no path is found
+	 */
+	private int[] searchLongPath(int gx, int gy, int gz, int gtx, int gty, int gtz)
+	{
+		final int[] route = _portalGraph.findRoute(gx, gy, gz, gtx, gty, gtz);
+		if (route == null)
+		{
+			return null;
+		}
+		
+		int[] path = new int[((route.length / 3) + 1) * NodeBuffer.POINT_SIZE * 4];
+		int size = 0;
+		int currentX = gx;
+		int currentY = gy;
+		int currentZ = gz;
+		for (int i = 0; i <= route.length; i += 3)
+		{
+			final boolean last = i == route.length;
+			final int nextX = last ? gtx : route[i];
+			final int nextY = last ? gty : route[i + 1];
+			final int nextZ = last ? gtz : route[i + 2];
+			if ((nextX == currentX) && (nextY == currentY))
 			{
-				directionX = tempNode.getLocation().getNodeX() - tempNode.getParent().getLocation().getNodeX();
-				directionY = tempNode.getLocation().getNodeY() - tempNode.getParent().getLocation().getNodeY();
+				continue;
 			}
 			
-			// Only add a new route point if moving direction changes.
-			if ((directionX != previousDirectionX) || (directionY != previousDirectionY))
+			final int[] leg = searchPath(currentX, currentY, currentZ, nextX, nextY, nextZ, true);
+			if ((leg == null) || (leg == EXHAUSTED))
 			{
-				previousDirectionX = directionX;
-				previousDirectionY = directionY;
-				
-				path.addFirst(tempNode.getLocation());
-				tempNode.setLoc(null);
+				return null;
+			}
+			if (leg.length == 0)
+			{
+				continue;
+			}
+			
+			if ((size + leg.length) > path.length)
+			{
+				path = Arrays.copyOf(path, Math.max(path.length * 2, size + leg.length));
 			}
+			System.arraycopy(leg, 0, path, size, leg.length);
+			size += leg.length;
 			
-			tempNode = tempNode.getParent();
+			currentX = nextX;
+			currentY = nextY;
+			currentZ = leg[leg.length - 2];
 		}
 		
-		return path;
+		return size == 0 ? null : Arrays.copyOf(path, size);
 	}
 	
 	/**
-	 * Allocates a buffer for pathfinding based on the specified size.
 	 * @param size the required size of the buffer
-	 * @return a locked buffer, or {@code null} if no suitable buffer is available
+	 * @return the smallest buffer definition that fits the given size, or {@code null} if none is large enough
 	 */
-	private NodeBuffer alloc(int size)
+	private BufferInfo getBufferInfo(int size)
 	{
-		NodeBuffer current = null;
-		
 		for (BufferInfo info : _allBuffers)
 		{
 			if (info.mapSize >= size)
 			{
-				for (NodeBuffer buffer : info.buffers)
-				{
-					if (buffer.lock())
-					{
-						current = buffer;
-						break;
-					}
-				}
-				if (current != null)
-				{
-					break;
-				}
-				
-				// Not found, allocate temporary buffer.
-				current = new NodeBuffer(info.mapSize);
-				current.lock();
-				if (info.buffers.size() < info.count)
-				{
-					info.buffers.add(current);
-					break;
-				}
+				return info;
 			}
 		}
-		
-		return current;
+		return null;
 	}
 	
 	/**
-	 * Represents buffer information for managing pathfinding buffers.
+	 * Represents buffer information for managing pathfinding buffers.<br>
+	 * Idle buffers are retained up to {@code count}, either in a shared pool or as the single buffer cached by a platform thread.<br>
+	 * When no idle buffer is available a temporary one is created, which is only retained on release if the limit allows it.
 	 */
 	private static class BufferInfo
 	{
 		final int mapSize;
 		final int count;
-		final List<NodeBuffer> buffers;
+		final ThreadLocal<NodeBuffer> localBuffer = new ThreadLocal<>();
+		final Queue<NodeBuffer> sharedBuffers = new ConcurrentLinkedQueue<>();
+		final AtomicInteger idleCount = new AtomicInteger();
 		
 		public BufferInfo(int size, int cnt)
 		{
 			mapSize = size;
 			count = cnt;
-			buffers = Collections.synchronizedList(new ArrayList<>(count));
+		}
+		
+		NodeBuffer acquire()
+		{
+			NodeBuffer buffer;
+			if (!Thread.currentThread().isVirtual())
+			{
+				buffer = localBuffer.get();
+				if (buffer != null)
+				{
+					localBuffer.set(null);
+					idleCount.decrementAndGet();
+					return buffer;
+				}
+			}
+			
+			buffer = sharedBuffers.poll();
+			if (buffer != null)
+			{
+				idleCount.decrementAndGet();
+				return buffer;
+			}
+			
+			return new NodeBuffer(mapSize);
+		}
+		
+		void release(NodeBuffer buffer)
+		{
+			if (idleCount.incrementAndGet() > count)
+			{
+				idleCount.decrementAndGet();
+				return;
+			}
+			
+			if (!Thread.currentThread().isVirtual() && (localBuffer.get() == null))
+			{
+				localBuffer.set(buffer);
+			}
+			else
+			{
+				sharedBuffers.offer(buffer);
+			}
 		}
 	}
 	
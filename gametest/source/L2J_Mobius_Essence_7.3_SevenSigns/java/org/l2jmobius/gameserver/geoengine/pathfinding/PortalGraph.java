@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver.geoengine.pathfinding;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.l2jmobius.Config;
+import org.l2jmobius.gameserver.geoengine.GeoEngine;
+import org.l2jmobius.gameserver.geoengine.geodata.Cell;
+
+/**
+ * Abstract graph of the world geodata, used to plan paths that are too long for a single {@link NodeBuffer} search.<br>
+ * The geodata is divided into square clusters. Each walkable opening on a cluster border is a pair of portal nodes, one on each side, linked together.<br>
+ * Portals of the same cluster are linked by the walking distance between them, computed offline by {@code org.l2jmobius.tools.PortalGraphBuilder}.<br>
+ * The graph file is memory mapped and read in place. Its layout (little endian) is:
+ * <ul>
+ * <li>Header: magic, version, cluster size, node count, edge count.</li>
+ * <li>First node index of every cluster, plus the total node count.</li>
+ * <li>Geodata X, Y and Z of every node.</li>
+ * <li>First edge index of every node, plus the total edge count.</li>
+ * <li>Target node and cost of every edge.</li>
+ * </ul>
+ * @author Mobius
+ */
+public class PortalGraph
+{
+	private static final Logger LOGGER = Logger.getLogger(PortalGraph.class.getName());
+	
+	public static final String FILE_NAME = "portals.bin";
+	public static final int MAGIC = 0x4C325047;
+	public static final int VERSION = 1;
+	
+	/** Cells on each side of a cluster. */
+	public static final int CLUSTER_SIZE = 128;
+	/** Clusters on each axis of the world geodata. */
+	public static final int CLUSTERS_AXIS = 65536 / CLUSTER_SIZE;
+	public static final int CLUSTERS = CLUSTERS_AXIS * CLUSTERS_AXIS;
+	public static final int HEADER_SIZE = 20;
+	
+	/** Maximum height difference of a walkable step between two cells. */
+	public static final int MAX_STEP_HEIGHT = 40;
+	private static final int MAX_ITERATIONS = 50000;
+	
+	private final Queue<SearchState> _states = new ConcurrentLinkedQueue<>();
+	private ByteBuffer _data = null;
+	private int _nodeCount = 0;
+	private int _edgeCount = 0;
+	private int _clusterOffset;
+	private int _nodeOffset;
+	private int _edgeIndexOffset;
+	private int _edgeOffset;
+	
+	protected PortalGraph()
+	{
+		final Path filePath = Config.PATHNODE_PATH.resolve(FILE_NAME);
+		if (!Files.exists(filePath))
+		{
+			LOGGER.info(getClass().getSimpleName() + ": " + filePath + " not found, long paths will not be planned.");
+			return;
+		}
+		
+		try (RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "r"))
+		{
+			final ByteBuffer data = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length()).order(ByteOrder.LITTLE_ENDIAN);
+			if ((data.getInt(0) != MAGIC) || (data.getInt(4) != VERSION) || (data.getInt(8) != CLUSTER_SIZE))
+			{
+				LOGGER.warning(getClass().getSimpleName() + ": " + filePath + " was built with a different format, rebuild it with PortalGraphBuilder.");
+				return;
+			}
+			
+			_nodeCount = data.getInt(12);
+			_edgeCount = data.getInt(16);
+			_clusterOffset = HEADER_SIZE;
+			_nodeOffset = _clusterOffset + ((CLUSTERS + 1) * 4);
+			_edgeIndexOffset = _nodeOffset + (_nodeCount * 12);
+			_edgeOffset = _edgeIndexOffset + ((_nodeCount + 1) * 4);
+			_data = data;
+			
+			LOGGER.info(getClass().getSimpleName() + ": Loaded " + _nodeCount + " portals with " + _edgeCount + " links.");
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Failed to load " + filePath + "!", e);
+		}
+	}
+	
+	public boolean isLoaded()
+	{
+		return _data != null;
+	}
+	
+	/**
+	 * @param geoX the geodata X coordinate
+	 * @param geoY the geodata Y coordinate
+	 * @return the cluster containing the given cell
+	 */
+	public static int getCluster(int geoX, int geoY)
+	{
+		return ((geoX / CLUSTER_SIZE) * CLUSTERS_AXIS) + (geoY / CLUSTER_SIZE);
+	}
+	
+	/**
+	 * Plans a route over the portal graph.
+	 * @param gx the starting geodata X coordinate
+	 * @param gy the starting geodata Y coordinate
+	 * @param gz the starting Z coordinate
+	 * @param gtx the target geodata X coordinate
+	 * @param gty the target geodata Y coordinate
+	 * @param gtz the target Z coordinate
+	 * @return the geodata X, Y and Z of the portals where the route enters a new cluster, or {@code null} if no route was found
+	 */
+	public int[] findRoute(int gx, int gy, int gz, int gtx, int gty, int gtz)
+	{
+		if (_data == null)
+		{
+			return null;
+		}
+		
+		final int startCluster = getCluster(gx, gy);
+		final int goalCluster = getCluster(gtx, gty);
+		if (startCluster == goalCluster)
+		{
+			return null;
+		}
+		
+		SearchState state = _states.poll();
+		if (state == null)
+		{
+			state = new SearchState(_nodeCount);
+		}
+		
+		try
+		{
+			final int goal = search(state, startCluster, gx, gy, gz, goalCluster, gtx, gty, gtz);
+			return goal < 0 ? null : buildRoute(state, goal);
+		}
+		finally
+		{
+			_states.offer(state);
+		}
+	}
+	
+	/**
+	 * A* over the graph. The start and the goal are linked to the portals of their clusters by flooding both clusters.
+	 * @return the last portal of the route, or -1 if the goal was not reached
+	 */
+	private int search(SearchState state, int startCluster, int gx, int gy, int gz, int goalCluster, int gtx, int gty, int gtz)
+	{
+		state.reset();
+		flood(gx, gy, gz, state.startDistances, state.startHeights, state.queue);
+		flood(gtx, gty, gtz, state.goalDistances, state.goalHeights, state.queue);
+		
+		for (int node = getClusterStart(startCluster), end = getClusterStart(startCluster + 1); node < end; node++)
+		{
+			final int distance = getFloodDistance(node, state.startDistances, state.startHeights);
+			if (distance >= 0)
+			{
+				state.update(node, -1, distance, getDistance(getNodeX(node), getNodeY(node), gtx, gty));
+			}
+		}
+		
+		int bestGoal = -1;
+		float bestCost = Float.MAX_VALUE;
+		for (int count = 0; (count < MAX_ITERATIONS) && !state.isEmpty(); count++)
+		{
+			final int node = state.poll();
+			if (state.getPriority(node) >= bestCost)
+			{
+				break; // No remaining node can improve the route.
+			}
+			
+			final float cost = state.getCost(node);
+			final int nodeX = getNodeX(node);
+			final int nodeY = getNodeY(node);
+			if (getCluster(nodeX, nodeY) == goalCluster)
+			{
+				final int distance = getFloodDistance(node, state.goalDistances, state.goalHeights);
+				if ((distance >= 0) && ((cost + distance) < bestCost))
+				{
+					bestCost = cost + distance;
+					bestGoal = node;
+				}
+			}
+			
+			for (int edge = getEdgeStart(node), end = getEdgeStart(node + 1); edge < end; edge++)
+			{
+				final int target = getEdgeTarget(edge);
+				final float targetCost = cost + getEdgeCost(edge);
+				if (targetCost < state.getCost(target))
+				{
+					state.update(target, node, targetCost, getDistance(getNodeX(target), getNodeY(target), gtx, gty));
+				}
+			}
+		}
+		return bestGoal;
+	}
+	
+	/**
+	 * Keeps the portals where the route crosses into another cluster, as each of them can be reached by a local search from the previous one.
+	 */
+	private int[] buildRoute(SearchState state, int goal)
+	{
+		int count = 0;
+		for (int node = goal; node >= 0; node = state.getParent(node))
+		{
+			final int parent = state.getParent(node);
+			if ((parent >= 0) && (getCluster(getNodeX(parent), getNodeY(parent)) != getCluster(getNodeX(node), getNodeY(node))))
+			{
+				count++;
+			}
+		}
+		
+		final int[] route = new int[count * 3];
+		int index = route.length;
+		for (int node = goal; node >= 0; node = state.getParent(node))
+		{
+			final int parent = state.getParent(node);
+			if ((parent >= 0) && (getCluster(getNodeX(parent), getNodeY(parent)) != getCluster(getNodeX(node), getNodeY(node))))
+			{
+				index -= 3;
+				route[index] = getNodeX(node);
+				route[index + 1] = getNodeY(node);
+				route[index + 2] = getNodeZ(node);
+			}
+		}
+		return route;
+	}
+	
+	/**
+	 * @return the flooded walking distance to the given portal, or -1 if it was not reached on its layer
+	 */
+	private int getFloodDistance(int node, int[] distances, int[] heights)
+	{
+		final int cell = getClusterCell(getNodeX(node), getNodeY(node));
+		return (distances[cell] >= 0) && (Math.abs(heights[cell] - getNodeZ(node)) <= MAX_STEP_HEIGHT) ? distances[cell] : -1;
+	}
+	
+	/**
+	 * @param geoX the geodata X coordinate
+	 * @param geoY the geodata Y coordinate
+	 * @return the index of the cell inside its cluster
+	 */
+	public static int getClusterCell(int geoX, int geoY)
+	{
+		return ((geoX % CLUSTER_SIZE) * CLUSTER_SIZE) + (geoY % CLUSTER_SIZE);
+	}
+	
+	/**
+	 * Breadth first walk over the cells of the cluster containing the starting position, following the geodata movement flags and layer heights.
+	 * @param geoX the starting geodata X coordinate
+	 * @param geoY the starting geodata Y coordinate
+	 * @param z the starting Z coordinate
+	 * @param distances receives the walking distance in cells of every reached cell, -1 for the others
+	 * @param heights receives the height of every reached cell
+	 * @param queue work storage of cluster size
+	 */
+	public static void flood(int geoX, int geoY, int z, int[] distances, int[] heights, int[] queue)
+	{
+		final GeoEngine geoEngine = GeoEngine.getInstance();
+		final int baseX = geoX - (geoX % CLUSTER_SIZE);
+		final int baseY = geoY - (geoY % CLUSTER_SIZE);
+		Arrays.fill(distances, -1);
+		int head = 0;
+		int tail = 0;
+		final int start = getClusterCell(geoX, geoY);
+		distances[start] = 0;
+		heights[start] = geoEngine.getNearestZ(geoX, geoY, z);
+		queue[tail++] = start;
+		while (head < tail)
+		{
+			final int cell = queue[head++];
+			final int localX = cell / CLUSTER_SIZE;
+			final int localY = cell % CLUSTER_SIZE;
+			final int cellZ = heights[cell];
+			for (int direction = 0; direction < 4; direction++)
+			{
+				final int nextLocalX = localX + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+				final int nextLocalY = localY + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+				if ((nextLocalX < 0) || (nextLocalX >= CLUSTER_SIZE) || (nextLocalY < 0) || (nextLocalY >= CLUSTER_SIZE))
+				{
+					continue;
+				}
+				
+				final int next = (nextLocalX * CLUSTER_SIZE) + nextLocalY;
+				if (distances[next] >= 0)
+				{
+					continue;
+				}
+				
+				final byte nswe = direction == 0 ? Cell.NSWE_EAST : direction == 1 ? Cell.NSWE_WEST : direction == 2 ? Cell.NSWE_SOUTH : Cell.NSWE_NORTH;
+				if (!geoEngine.checkNearestNswe(baseX + localX, baseY + localY, cellZ, nswe))
+				{
+					continue;
+				}
+				
+				final int nextZ = geoEngine.getNearestZ(baseX + nextLocalX, baseY + nextLocalY, cellZ);
+				if ((nextZ - cellZ) > MAX_STEP_HEIGHT)
+				{
+					continue;
+				}
+				
+				distances[next] = distances[cell] + 1;
+				heights[next] = nextZ;
+				queue[tail++] = next;
+			}
+		}
+	}
+	
+	private static float getDistance(int x, int y, int tx, int ty)
+	{
+		final int dx = tx - x;
+		final int dy = ty - y;
+		return (float) Math.sqrt((dx * dx) + (dy * dy));
+	}
+	
+	private int getClusterStart(int cluster)
+	{
+		return _data.getInt(_clusterOffset + (cluster * 4));
+	}
+	
+	private int getNodeX(int node)
+	{
+		return _data.getInt(_nodeOffset + (node * 12));
+	}
+	
+	private int getNodeY(int node)
+	{
+		return _data.getInt(_nodeOffset + (node * 12) + 4);
+	}
+	
+	private int getNodeZ(int node)
+	{
+		return _data.getInt(_nodeOffset + (node * 12) + 8);
+	}
+	
+	private int getEdgeStart(int node)
+	{
+		return _data.getInt(_edgeIndexOffset + (node * 4));
+	}
+	
+	private int getEdgeTarget(int edge)
+	{
+		return _data.getInt(_edgeOffset + (edge * 8));
+	}
+	
+	private int getEdgeCost(int edge)
+	{
+		return _data.getInt(_edgeOffset + (edge * 8) + 4);
+	}
+	
+	/**
+	 * Reusable per search storage, node state is invalidated by a generation stamp.
+	 */
+	private static class SearchState
+	{
+		final int[] startDistances = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		final int[] startHeights = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		final int[] goalDistances = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		final int[] goalHeights = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		final int[] queue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		private final int[] _stamp;
+		private final int[] _parent;
+		private final float[] _cost;
+		private final float[] _priority;
+		private final int[] _heap;
+		private final int[] _heapIndex;
+		private int _heapSize = 0;
+		private int _generation = 0;
+		
+		SearchState(int nodeCount)
+		{
+			_stamp = new int[nodeCount];
+			_parent = new int[nodeCount];
+			_cost = new float[nodeCount];
+			_priority = new float[nodeCount];
+			_heap = new int[nodeCount];
+			_heapIndex = new int[nodeCount];
+		}
+		
+		void reset()
+		{
+			if (++_generation == 0)
+			{
+				Arrays.fill(_stamp, 0);
+				_generation = 1;
+			}
+			_heapSize = 0;
+		}
+		
+		boolean isEmpty()
+		{
+			return _heapSize == 0;
+		}
+		
+		float getCost(int node)
+		{
+			return _stamp[node] == _generation ? _cost[node] : Float.MAX_VALUE;
+		}
+		
+		float getPriority(int node)
+		{
+			return _priority[node];
+		}
+		
+		int getParent(int node)
+		{
+			return _parent[node];
+		}
+		
+		void update(int node, int parent, float cost, float estimate)
+		{
+			if (_stamp[node] != _generation)
+			{
+				_stamp[node] = _generation;
+				_heapIndex[node] = -1;
+			}
+			_parent[node] = parent;
+			_cost[node] = cost;
+			_priority[node] = cost + estimate;
+			
+			int index = _heapIndex[node];
+			if (index < 0)
+			{
+				index = _heapSize++;
+			}
+			siftUp(node, index);
+		}
+		
+		int poll()
+		{
+			final int result = _heap[0];
+			_heapIndex[result] = -1;
+			final int last = _heap[--_heapSize];
+			if (_heapSize > 0)
+			{
+				siftDown(last, 0);
+			}
+			return result;
+		}
+		
+		private void siftUp(int node, int startIndex)
+		{
+			int index = startIndex;
+			while (index > 0)
+			{
+				final int parentIndex = (index - 1) >>> 1;
+				final int parent = _heap[parentIndex];
+				if (_priority[parent] <= _priority[node])
+				{
+					break;
+				}
+				_heap[index] = parent;
+				_heapIndex[parent] = index;
+				index = parentIndex;
+			}
+			_heap[index] = node;
+			_heapIndex[node] = index;
+		}
+		
+		private void siftDown(int node, int startIndex)
+		{
+			int index = startIndex;
+			final int half = _heapSize >>> 1;
+			while (index < half)
+			{
+				int childIndex = (index << 1) + 1;
+				int child = _heap[childIndex];
+				final int rightIndex = childIndex + 1;
+				if ((rightIndex < _heapSize) && (_priority[_heap[rightIndex]] < _priority[child]))
+				{
+					childIndex = rightIndex;
+					child = _heap[childIndex];
+				}
+				if (_priority[node] <= _priority[child])
+				{
+					break;
+				}
+				_heap[index] = child;
+				_heapIndex[child] = index;
+				index = childIndex;
+			}
+			_heap[index] = node;
+			_heapIndex[node] = index;
+		}
+	}
+	
+	public static PortalGraph getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static class SingletonHolder
+	{
+		protected static final PortalGraph INSTANCE = new PortalGraph();
+	}
+}
@@ -16,13 +16,26 @@
  */
 package org.l2jmobius.gameserver.managers;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,14 +47,36 @@ import org.l2jmobius.gameserver.model.item.instance.Item;
 import org.l2jmobius.gameserver.taskmanagers.ItemsAutoDestroyTaskManager;
 
 /**
- * This class manage all items on ground.
+ * This class manage all items on ground.<br>
+ * Only items dropped, picked up or changed since the last save are written, in a single transaction.<br>
+ * Every change is also appended to a journal file as it happens. Journal files are replayed on startup and deleted once a save has written their changes,<br>
+ * so a restart after a crash restores exactly the items that were on the ground.
  * @author Enforcer
  */
 public class ItemsOnGroundManager implements Runnable
 {
 	private static final Logger LOGGER = Logger.getLogger(ItemsOnGroundManager.class.getName());
 	
-	private final Set<Item> _items = ConcurrentHashMap.newKeySet();
+	private static final String STORE_ITEM = "REPLACE INTO itemsonground(object_id,item_id,count,enchant_level,x,y,z,drop_time,equipable) VALUES(?,?,?,?,?,?,?,?,?)";
+	private static final String DELETE_ITEM = "DELETE FROM itemsonground WHERE object_id=?";
+	
+	private static final String JOURNAL_PREFIX = "itemsonground-";
+	private static final String JOURNAL_SUFFIX = ".journal";
+	private static final byte JOURNAL_STORE = 1;
+	private static final byte JOURNAL_DELETE = 2;
+	private static final int JOURNAL_RECORD_SIZE = 42; // Operation, object id, item id, count, enchant level, x, y, z, drop time and equipable.
+	
+	private final Map<Integer, Item> _items = new ConcurrentHashMap<>();
+	
+	// Changes not yet saved and the journal segment they are written to, guarded by the journal lock.
+	private final ReentrantLock _journalLock = new ReentrantLock();
+	private final ByteBuffer _record = ByteBuffer.allocate(JOURNAL_RECORD_SIZE);
+	private Set<Integer> _changed = new HashSet<>();
+	private FileChannel _journal;
+	private int _journalSequence;
+	
+	// Saves are written one at a time, so an older state can never overwrite a newer one.
+	private final ReentrantLock _saveLock = new ReentrantLock();
 	
 	protected ItemsOnGroundManager()
 	{
@@ -92,74 +127,264 @@ public class ItemsOnGroundManager implements Runnable
 			}
 		}
 		
-		// Add items to world
+		// Read the items of the last save.
+		final Map<Integer, GroundItem> groundItems = new LinkedHashMap<>();
 		try (Connection con = DatabaseFactory.getConnection();
-			PreparedStatement ps = con.prepareStatement("SELECT object_id,item_id,count,enchant_level,x,y,z,drop_time,equipable FROM itemsonground"))
+			PreparedStatement ps = con.prepareStatement("SELECT object_id,item_id,count,enchant_level,x,y,z,drop_time,equipable FROM itemsonground");
+			ResultSet rs = ps.executeQuery())
+		{
+			while (rs.next())
+			{
+				groundItems.put(rs.getInt(1), new GroundItem(rs.getInt(2), rs.getLong(3), rs.getInt(4), rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getLong(8), rs.getInt(9) == 1));
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": Error while loading ItemsOnGround " + e.getMessage(), e);
+		}
+		
+		// Apply the changes made after the last save.
+		final Set<Integer> replayed = replayJournal(groundItems);
+		
+		// Add items to world
+		int count = 0;
+		for (Entry<Integer, GroundItem> entry : groundItems.entrySet())
+		{
+			final GroundItem groundItem = entry.getValue();
+			final Item item = new Item(entry.getKey(), groundItem.itemId());
+			World.getInstance().addObject(item);
+			// this check and..
+			if (item.isStackable() && (groundItem.count() > 1))
+			{
+				item.setCount(groundItem.count());
+			}
+			// this, are really necessary?
+			if (groundItem.enchantLevel() > 0)
+			{
+				item.setEnchantLevel(groundItem.enchantLevel());
+			}
+			item.setXYZ(groundItem.x(), groundItem.y(), groundItem.z());
+			item.setWorldRegion(World.getInstance().getRegion(item));
+			item.getWorldRegion().addVisibleObject(item);
+			final long dropTime = groundItem.dropTime();
+			item.setDropTime(dropTime);
+			item.setProtected(dropTime == -1);
+			item.setSpawned(true);
+			World.getInstance().addVisibleObject(item, item.getWorldRegion());
+			_items.put(item.getObjectId(), item);
+			count++;
+			// add to ItemsAutoDestroy only items not protected
+			if (!Config.LIST_PROTECTED_ITEMS.contains(item.getId()) && (dropTime > -1) && (((Config.AUTODESTROY_ITEM_AFTER > 0) && !item.getTemplate().hasExImmediateEffect()) || ((Config.HERB_AUTO_DESTROY_TIME > 0) && item.getTemplate().hasExImmediateEffect())))
+			{
+				ItemsAutoDestroyTaskManager.getInstance().addItem(item);
+			}
+		}
+		LOGGER.info(getClass().getSimpleName() + ": Loaded " + count + " items.");
+		
+		_journalLock.lock();
+		try
+		{
+			_changed.addAll(replayed);
+			if (Config.EMPTY_DROPPED_ITEM_TABLE_AFTER_LOAD)
+			{
+				emptyTable();
+				
+				// Loaded items are written again with the next save.
+				_changed.addAll(_items.keySet());
+			}
+		}
+		finally
+		{
+			_journalLock.unlock();
+		}
+		
+		// Write the replayed changes, so their journal files can be deleted.
+		if (!replayed.isEmpty())
+		{
+			LOGGER.info(getClass().getSimpleName() + ": Restored " + replayed.size() + " changes from the journal.");
+			run();
+		}
+	}
+	
+	/**
+	 * Applies the journal files left by the previous run to the saved items.
+	 * @param groundItems the saved items, by object id
+	 * @return the object ids changed by the journal
+	 */
+	private Set<Integer> replayJournal(Map<Integer, GroundItem> groundItems)
+	{
+		final Set<Integer> replayed = new HashSet<>();
+		final Map<Integer, Path> journals = getJournals();
+		if (!journals.isEmpty())
 		{
-			int count = 0;
-			try (ResultSet rs = ps.executeQuery())
+			_journalSequence = journals.keySet().stream().mapToInt(Integer::intValue).max().getAsInt() + 1;
+		}
+		
+		final ByteBuffer record = ByteBuffer.allocate(JOURNAL_RECORD_SIZE);
+		for (Path path : journals.values())
+		{
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
 			{
-				Item item;
-				while (rs.next())
+				record.clear();
+				while (channel.read(record) > 0)
 				{
-					item = new Item(rs.getInt(1), rs.getInt(2));
-					World.getInstance().addObject(item);
-					// this check and..
-					if (item.isStackable() && (rs.getInt(3) > 1))
+					if (record.hasRemaining())
 					{
-						item.setCount(rs.getInt(3));
+						continue;
 					}
-					// this, are really necessary?
-					if (rs.getInt(4) > 0)
+					
+					record.flip();
+					final byte operation = record.get();
+					final int objectId = record.getInt();
+					final int itemId = record.getInt();
+					final long count = record.getLong();
+					final int enchantLevel = record.getInt();
+					final int x = record.getInt();
+					final int y = record.getInt();
+					final int z = record.getInt();
+					long dropTime = record.getLong();
+					final boolean equipable = record.get() == 1;
+					record.clear();
+					
+					replayed.add(objectId);
+					if ((operation == JOURNAL_DELETE) || CursedWeaponsManager.getInstance().isCursed(itemId))
 					{
-						item.setEnchantLevel(rs.getInt(4));
+						groundItems.remove(objectId);
+						continue;
 					}
-					item.setXYZ(rs.getInt(5), rs.getInt(6), rs.getInt(7));
-					item.setWorldRegion(World.getInstance().getRegion(item));
-					item.getWorldRegion().addVisibleObject(item);
-					final long dropTime = rs.getLong(8);
-					item.setDropTime(dropTime);
-					item.setProtected(dropTime == -1);
-					item.setSpawned(true);
-					World.getInstance().addVisibleObject(item, item.getWorldRegion());
-					_items.add(item);
-					count++;
-					// add to ItemsAutoDestroy only items not protected
-					if (!Config.LIST_PROTECTED_ITEMS.contains(item.getId()) && (dropTime > -1) && (((Config.AUTODESTROY_ITEM_AFTER > 0) && !item.getTemplate().hasExImmediateEffect()) || ((Config.HERB_AUTO_DESTROY_TIME > 0) && item.getTemplate().hasExImmediateEffect())))
+					
+					// Same recycling of protected items as for the saved items.
+					if (Config.DESTROY_DROPPED_PLAYER_ITEM && (dropTime == -1) && (Config.DESTROY_EQUIPABLE_PLAYER_ITEM || !equipable))
 					{
-						ItemsAutoDestroyTaskManager.getInstance().addItem(item);
+						dropTime = System.currentTimeMillis();
 					}
+					groundItems.put(objectId, new GroundItem(itemId, count, enchantLevel, x, y, z, dropTime, equipable));
 				}
 			}
-			LOGGER.info(getClass().getSimpleName() + ": Loaded " + count + " items.");
+			catch (IOException e)
+			{
+				LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": Error while reading journal " + path + " " + e.getMessage(), e);
+			}
 		}
-		catch (Exception e)
+		return replayed;
+	}
+	
+	/**
+	 * Adds a dropped item, or marks an item already on the ground as changed.
+	 * @param item the item on the ground
+	 */
+	public void save(Item item)
+	{
+		if (Config.SAVE_DROPPED_ITEM)
 		{
-			LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": Error while loading ItemsOnGround " + e.getMessage(), e);
+			_items.put(item.getObjectId(), item);
+			journal(JOURNAL_STORE, item);
 		}
-		
-		if (Config.EMPTY_DROPPED_ITEM_TABLE_AFTER_LOAD)
+	}
+	
+	/**
+	 * Marks an item on the ground as changed, so it is written with the next save.
+	 * @param item the item
+	 */
+	public void markChanged(Item item)
+	{
+		if (Config.SAVE_DROPPED_ITEM && _items.containsKey(item.getObjectId()))
 		{
-			emptyTable();
+			journal(JOURNAL_STORE, item);
 		}
 	}
 	
-	public void save(Item item)
+	public void removeObject(Item item)
 	{
-		if (Config.SAVE_DROPPED_ITEM)
+		if (Config.SAVE_DROPPED_ITEM && (_items.remove(item.getObjectId()) != null))
 		{
-			_items.add(item);
+			journal(JOURNAL_DELETE, item);
 		}
 	}
 	
-	public void removeObject(Item item)
+	/**
+	 * Marks the item as changed and appends its current state to the journal.
+	 * @param operation the journal operation
+	 * @param item the item
+	 */
+	private void journal(byte operation, Item item)
 	{
-		if (Config.SAVE_DROPPED_ITEM)
+		_journalLock.lock();
+		try
+		{
+			_changed.add(item.getObjectId());
+			
+			_record.clear();
+			_record.put(operation);
+			_record.putInt(item.getObjectId());
+			_record.putInt(item.getId());
+			_record.putLong(item.getCount());
+			_record.putInt(item.getEnchantLevel());
+			_record.putInt(item.getX());
+			_record.putInt(item.getY());
+			_record.putInt(item.getZ());
+			_record.putLong(item.isProtected() ? -1 : item.getDropTime());
+			_record.put((byte) (item.isEquipable() ? 1 : 0));
+			_record.flip();
+			
+			if (_journal == null)
+			{
+				Files.createDirectories(Config.SAVE_DROPPED_ITEM_JOURNAL_PATH);
+				_journal = FileChannel.open(getJournalPath(_journalSequence), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			}
+			while (_record.hasRemaining())
+			{
+				_journal.write(_record);
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not write journal: " + e.getMessage(), e);
+		}
+		finally
 		{
-			_items.remove(item);
+			_journalLock.unlock();
 		}
 	}
 	
+	private static Path getJournalPath(int sequence)
+	{
+		return Config.SAVE_DROPPED_ITEM_JOURNAL_PATH.resolve(JOURNAL_PREFIX + sequence + JOURNAL_SUFFIX);
+	}
+	
+	/**
+	 * @return the journal files, by sequence number in ascending order
+	 */
+	private Map<Integer, Path> getJournals()
+	{
+		final Map<Integer, Path> journals = new TreeMap<>();
+		if (!Files.isDirectory(Config.SAVE_DROPPED_ITEM_JOURNAL_PATH))
+		{
+			return journals;
+		}
+		
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(Config.SAVE_DROPPED_ITEM_JOURNAL_PATH, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX))
+		{
+			for (Path path : stream)
+			{
+				final String name = path.getFileName().toString();
+				try
+				{
+					journals.put(Integer.parseInt(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length())), path);
+				}
+				catch (NumberFormatException e)
+				{
+					LOGGER.warning(getClass().getSimpleName() + ": Ignoring unknown journal file " + path);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": Error while listing journals " + e.getMessage(), e);
+		}
+		return journals;
+	}
+	
 	public void saveInDb()
 	{
 		run();
@@ -168,6 +393,35 @@ public class ItemsOnGroundManager implements Runnable
 	public void cleanUp()
 	{
 		_items.clear();
+		
+		_journalLock.lock();
+		try
+		{
+			_changed.clear();
+			closeJournal();
+		}
+		finally
+		{
+			_journalLock.unlock();
+		}
+	}
+	
+	private void closeJournal()
+	{
+		if (_journal == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			_journal.close();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not close journal: " + e.getMessage(), e);
+		}
+		_journal = null;
 	}
 	
 	public void emptyTable()
@@ -184,61 +438,137 @@ public class ItemsOnGroundManager implements Runnable
 	}
 	
 	@Override
-	public synchronized void run()
+	public void run()
 	{
 		if (!Config.SAVE_DROPPED_ITEM)
 		{
 			return;
 		}
 		
-		emptyTable();
-		
-		if (_items.isEmpty())
-		{
-			return;
-		}
-		
-		try (Connection con = DatabaseFactory.getConnection();
-			PreparedStatement statement = con.prepareStatement("INSERT INTO itemsonground(object_id,item_id,count,enchant_level,x,y,z,drop_time,equipable) VALUES(?,?,?,?,?,?,?,?,?)"))
+		_saveLock.lock();
+		try
 		{
-			for (Item item : _items)
+			// Take the changes and start a new journal segment. Changes made meanwhile go to the new segment and are written with the next save.
+			final Set<Integer> changed;
+			final int savedSequence;
+			_journalLock.lock();
+			try
 			{
-				if (item == null)
+				if (_changed.isEmpty())
 				{
-					continue;
+					return;
 				}
 				
-				if (CursedWeaponsManager.getInstance().isCursed(item.getId()))
+				changed = _changed;
+				_changed = new HashSet<>();
+				closeJournal();
+				savedSequence = _journalSequence++;
+			}
+			finally
+			{
+				_journalLock.unlock();
+			}
+			
+			if (store(changed))
+			{
+				// The changes of the older segments are in the database now.
+				for (Entry<Integer, Path> entry : getJournals().entrySet())
 				{
-					continue; // Cursed Items not saved to ground, prevent double save
+					if (entry.getKey() <= savedSequence)
+					{
+						try
+						{
+							Files.deleteIfExists(entry.getValue());
+						}
+						catch (IOException e)
+						{
+							LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not delete journal " + entry.getValue() + ": " + e.getMessage(), e);
+						}
+					}
 				}
-				
+			}
+			else
+			{
+				// Nothing was written, retry with the next save. The journal files are kept until then.
+				_journalLock.lock();
 				try
 				{
-					statement.setInt(1, item.getObjectId());
-					statement.setInt(2, item.getId());
-					statement.setLong(3, item.getCount());
-					statement.setInt(4, item.getEnchantLevel());
-					statement.setInt(5, item.getX());
-					statement.setInt(6, item.getY());
-					statement.setInt(7, item.getZ());
-					statement.setLong(8, (item.isProtected() ? -1 : item.getDropTime())); // item is protected or AutoDestroyed
-					statement.setLong(9, (item.isEquipable() ? 1 : 0)); // set equip-able
-					statement.execute();
-					statement.clearParameters();
+					_changed.addAll(changed);
 				}
-				catch (Exception e)
+				finally
 				{
-					LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": Error while inserting into table ItemsOnGround: " + e.getMessage(), e);
+					_journalLock.unlock();
 				}
 			}
 		}
+		finally
+		{
+			_saveLock.unlock();
+		}
+	}
+	
+	/**
+	 * Writes the current state of the given items in a single transaction.
+	 * @param changed the object ids of the changed items
+	 * @return {@code true} if the changes were written
+	 */
+	private boolean store(Set<Integer> changed)
+	{
+		try (Connection con = DatabaseFactory.getConnection();
+			PreparedStatement store = con.prepareStatement(STORE_ITEM);
+			PreparedStatement delete = con.prepareStatement(DELETE_ITEM))
+		{
+			con.setAutoCommit(false);
+			try
+			{
+				for (Integer objectId : changed)
+				{
+					final Item item = _items.get(objectId);
+					if ((item == null) || CursedWeaponsManager.getInstance().isCursed(item.getId())) // Cursed Items not saved to ground, prevent double save
+					{
+						delete.setInt(1, objectId);
+						delete.addBatch();
+						continue;
+					}
+					
+					store.setInt(1, objectId);
+					store.setInt(2, item.getId());
+					store.setLong(3, item.getCount());
+					store.setInt(4, item.getEnchantLevel());
+					store.setInt(5, item.getX());
+					store.setInt(6, item.getY());
+					store.setInt(7, item.getZ());
+					store.setLong(8, (item.isProtected() ? -1 : item.getDropTime())); // item is protected or AutoDestroyed
+					store.setLong(9, (item.isEquipable() ? 1 : 0)); // set equip-able
+					store.addBatch();
+				}
+				
+				delete.executeBatch();
+				store.executeBatch();
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+			finally
+			{
+				con.setAutoCommit(true);
+			}
+			return true;
+		}
 		catch (SQLException e)
 		{
 			LOGGER.log(Level.SEVERE, getClass().getSimpleName() + ": SQL error while storing items on ground: " + e.getMessage(), e);
+			return false;
 		}
 	}
 	
+	private record GroundItem(int itemId, long count, int enchantLevel, int x, int y, int z, long dropTime, boolean equipable)
+	{
+	}
+	
 	/**
 	 * Gets the single instance of {@code ItemsOnGroundManager}.
 	 * @return single instance of {@code ItemsOnGroundManager}
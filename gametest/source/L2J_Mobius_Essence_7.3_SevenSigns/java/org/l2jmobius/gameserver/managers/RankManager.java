@@ -24,11 +24,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,26 +58,16 @@ public class RankManager
 	
 	private static final String SELECT_CHARACTERS = "SELECT charId,char_name,level,race,base_class, clanid FROM characters WHERE (" + CURRENT_TIME + " - cast(lastAccess as signed) < " + TIME_LIMIT + ") AND accesslevel = 0 AND level > 39 ORDER BY exp DESC, onlinetime DESC LIMIT " + PLAYER_LIMIT;
 	private static final String SELECT_CHARACTERS_PVP = "SELECT charId,char_name,level,race,base_class, clanid, deaths, kills, pvpkills FROM characters WHERE (" + CURRENT_TIME + " - cast(lastAccess as signed) < " + TIME_LIMIT + ") AND accesslevel = 0 AND level > 39 ORDER BY kills DESC, onlinetime DESC LIMIT " + PLAYER_LIMIT;
-	private static final String SELECT_CHARACTERS_BY_RACE = "SELECT charId FROM characters WHERE (" + CURRENT_TIME + " - cast(lastAccess as signed) < " + TIME_LIMIT + ") AND accesslevel = 0 AND level > 39 AND race = ? ORDER BY exp DESC, onlinetime DESC LIMIT " + PLAYER_LIMIT;
+	private static final String SELECT_CHARACTERS_RACE_AND_CLASS = "SELECT charId,race,base_class FROM characters WHERE (" + CURRENT_TIME + " - cast(lastAccess as signed) < " + TIME_LIMIT + ") AND accesslevel = 0 AND level > 39 ORDER BY exp DESC, onlinetime DESC";
 	private static final String SELECT_PETS = "SELECT characters.charId, pets.exp, characters.char_name, pets.level as petLevel, characters.race as char_race, characters.level as char_level, characters.clanId, pet_evolves.index, pet_evolves.level as evolveLevel, pets.item_obj_id, item_id FROM characters, items, pets, pet_evolves WHERE pets.ownerId = characters.charId AND pet_evolves.itemObjId = items.object_id AND pet_evolves.itemObjId = pets.item_obj_id AND (" + CURRENT_TIME + " - cast(characters.lastAccess as signed) < " + TIME_LIMIT + ") AND characters.accesslevel = 0 AND pets.level > 39 ORDER BY pets.exp DESC, characters.onlinetime DESC LIMIT " + PLAYER_LIMIT;
 	private static final String SELECT_CLANS = "SELECT characters.level, characters.char_name, clan_data.clan_id, clan_data.clan_level, clan_data.clan_name, clan_data.reputation_score, clan_data.exp FROM characters, clan_data WHERE characters.charId = clan_data.leader_id AND characters.clanid = clan_data.clan_id AND dissolving_expiry_time = 0 AND characters.accesslevel = 0 ORDER BY exp DESC LIMIT " + PLAYER_LIMIT;
 	
 	private static final String GET_CURRENT_CYCLE_DATA = "SELECT characters.char_name, characters.level, characters.base_class, characters.clanid, olympiad_nobles.charId, olympiad_nobles.olympiad_points, olympiad_nobles.competitions_won, olympiad_nobles.competitions_lost FROM characters, olympiad_nobles WHERE characters.charId = olympiad_nobles.charId ORDER BY olympiad_nobles.olympiad_points DESC LIMIT " + PLAYER_LIMIT;
 	private static final String GET_HEROES = "SELECT characters.charId, characters.char_name, characters.race, characters.sex, characters.base_class, characters.level, characters.clanid, olympiad_nobles_eom.competitions_won, olympiad_nobles_eom.competitions_lost, olympiad_nobles_eom.olympiad_points, heroes.legend_count, heroes.count FROM heroes, characters, olympiad_nobles_eom WHERE characters.charId = heroes.charId AND characters.charId = olympiad_nobles_eom.charId AND heroes.played = 1 AND characters.accesslevel = 0 ORDER BY olympiad_nobles_eom.olympiad_points DESC, characters.base_class ASC LIMIT " + RankManager.PLAYER_LIMIT;
-	private static final String GET_CHARACTERS_BY_CLASS = "SELECT charId FROM characters WHERE (" + CURRENT_TIME + " - cast(lastAccess as signed) < " + TIME_LIMIT + ") AND accesslevel = 0 AND level > 39 AND characters.base_class = ? ORDER BY exp DESC, onlinetime DESC LIMIT " + PLAYER_LIMIT;
-	
-	private final Map<Integer, StatSet> _mainList = new ConcurrentHashMap<>();
-	private Map<Integer, StatSet> _snapshotList = new ConcurrentHashMap<>();
-	private final Map<Integer, StatSet> _mainOlyList = new ConcurrentHashMap<>();
-	private Map<Integer, StatSet> _snapshotOlyList = new ConcurrentHashMap<>();
-	private final List<HeroInfo> _mainHeroList = new LinkedList<>();
-	private List<HeroInfo> _snapshotHeroList = new LinkedList<>();
-	private final Map<Integer, StatSet> _mainPvpList = new ConcurrentHashMap<>();
-	private Map<Integer, StatSet> _snapshotPvpList = new ConcurrentHashMap<>();
-	private final Map<Integer, StatSet> _mainPetList = new ConcurrentHashMap<>();
-	private Map<Integer, StatSet> _snapshotPetList = new ConcurrentHashMap<>();
-	private final Map<Integer, StatSet> _mainClanList = new ConcurrentHashMap<>();
-	private Map<Integer, StatSet> _snapshotClanList = new ConcurrentHashMap<>();
+	
+	// Rankings of the last refresh and of the one before, replaced together after each refresh.
+	private volatile Rankings _current = new Rankings();
+	private volatile Rankings _snapshot = _current;
 	
 	public class HeroInfo
 	{
@@ -118,19 +110,18 @@ public class RankManager
 	
 	private synchronized void update()
 	{
-		// Load charIds All
-		_snapshotList = _mainList;
-		_mainList.clear();
-		_snapshotOlyList = _mainOlyList;
-		_mainOlyList.clear();
-		_snapshotHeroList = _mainHeroList;
-		_mainHeroList.clear();
-		_snapshotPvpList = _mainPvpList;
-		_mainPvpList.clear();
-		_snapshotPetList = _mainPetList;
-		_mainPetList.clear();
-		_snapshotClanList = _mainClanList;
-		_mainClanList.clear();
+		// The new rankings are built aside and published at once, readers keep using the previous ones meanwhile.
+		final Map<Integer, StatSet> mainList = new LinkedHashMap<>();
+		final Map<Integer, StatSet> mainOlyList = new LinkedHashMap<>();
+		final List<HeroInfo> mainHeroList = new LinkedList<>();
+		final Map<Integer, StatSet> mainPvpList = new LinkedHashMap<>();
+		final Map<Integer, StatSet> mainPetList = new LinkedHashMap<>();
+		final Map<Integer, StatSet> mainClanList = new LinkedHashMap<>();
+		
+		// Race and class ranks of all characters, from a single query.
+		final Map<Integer, Integer> raceRanks = new HashMap<>();
+		final Map<Integer, Integer> classRanks = new HashMap<>();
+		loadRaceAndClassRanks(raceRanks, classRanks);
 		
 		try (Connection con = DatabaseFactory.getConnection();
 			PreparedStatement statement = con.prepareStatement(SELECT_CHARACTERS))
@@ -142,15 +133,14 @@ public class RankManager
 				{
 					final StatSet stats = new StatSet();
 					final int charId = result.getInt("charId");
-					final int classId = result.getInt("base_class");
 					stats.set("charId", charId);
 					stats.set("name", result.getString("char_name"));
 					stats.set("level", result.getInt("level"));
 					stats.set("classId", result.getInt("base_class"));
 					final int race = result.getInt("race");
 					stats.set("race", race);
-					loadRaceRank(charId, race, stats);
-					loadClassRank(charId, classId, stats);
+					stats.set("raceRank", raceRanks.getOrDefault(charId, 0));
+					stats.set("classRank", classRanks.getOrDefault(charId, 0));
 					
 					final Clan clan = ClanTable.getInstance().getClan(result.getInt("clanid"));
 					if (clan != null)
@@ -162,7 +152,7 @@ public class RankManager
 						stats.set("clanName", "");
 					}
 					
-					_mainList.put(i, stats);
+					mainList.put(i, stats);
 					i++;
 				}
 			}
@@ -217,9 +207,9 @@ public class RankManager
 						stats.set("legend_count", 0);
 					}
 					
-					loadClassRank(charId, classId, stats);
+					stats.set("classRank", classRanks.getOrDefault(charId, 0));
 					
-					_mainOlyList.put(i, stats);
+					mainOlyList.put(i, stats);
 					i++;
 				}
 			}
@@ -251,7 +241,7 @@ public class RankManager
 					final int olympiadPoints = result.getInt("olympiad_points");
 					final int clanLevel = (clanId > 0) ? ClanTable.getInstance().getClan(clanId).getLevel() : 0;
 					final boolean isTopHero = isFirstHero;
-					_mainHeroList.add(new HeroInfo(charName, clanName, Config.SERVER_ID, race, isMale, baseClass, level, legendCount, competitionsWon, competitionsLost, olympiadPoints, clanLevel, isTopHero));
+					mainHeroList.add(new HeroInfo(charName, clanName, Config.SERVER_ID, race, isMale, baseClass, level, legendCount, competitionsWon, competitionsLost, olympiadPoints, clanLevel, isTopHero));
 					isFirstHero = false;
 				}
 			}
@@ -280,7 +270,7 @@ public class RankManager
 					stats.set("kills", result.getInt("kills"));
 					stats.set("deaths", result.getInt("deaths"));
 					stats.set("points", result.getInt("pvpkills"));
-					loadRaceRank(charId, race, stats);
+					stats.set("raceRank", raceRanks.getOrDefault(charId, 0));
 					
 					final Clan clan = ClanTable.getInstance().getClan(result.getInt("clanid"));
 					if (clan != null)
@@ -292,7 +282,7 @@ public class RankManager
 						stats.set("clanName", "");
 					}
 					
-					_mainPvpList.put(i, stats);
+					mainPvpList.put(i, stats);
 					i++;
 				}
 			}
@@ -336,7 +326,7 @@ public class RankManager
 					stats.set("petType", petData.getType());
 					stats.set("npcId", petData.getNpcId());
 					
-					_mainPetList.put(i++, stats);
+					mainPetList.put(i++, stats);
 				}
 			}
 		}
@@ -361,7 +351,7 @@ public class RankManager
 					stats.set("reputation_score", result.getInt("reputation_score"));
 					stats.set("exp", result.getLong("exp"));
 					stats.set("clan_id", result.getInt("clan_id"));
-					_mainClanList.put(i, stats);
+					mainClanList.put(i, stats);
 					i++;
 				}
 			}
@@ -370,176 +360,306 @@ public class RankManager
 		{
 			LOGGER.log(Level.WARNING, "Could not load clan total rank data: " + this + " - " + e.getMessage(), e);
 		}
+		
+		// The first refresh after startup is also its own snapshot.
+		final Rankings rankings = new Rankings(mainList, mainOlyList, mainHeroList, mainPvpList, mainPetList, mainClanList);
+		_snapshot = _current._players.isEmpty() ? rankings : _current;
+		_current = rankings;
 	}
 	
-	private void loadClassRank(int charId, int classId, StatSet stats)
+	private void loadRaceAndClassRanks(Map<Integer, Integer> raceRanks, Map<Integer, Integer> classRanks)
 	{
 		try (Connection con = DatabaseFactory.getConnection();
-			PreparedStatement statement = con.prepareStatement(GET_CHARACTERS_BY_CLASS))
+			PreparedStatement statement = con.prepareStatement(SELECT_CHARACTERS_RACE_AND_CLASS);
+			ResultSet result = statement.executeQuery())
 		{
-			statement.setInt(1, classId);
-			try (ResultSet result = statement.executeQuery())
+			final Map<Integer, Integer> raceCounts = new HashMap<>();
+			final Map<Integer, Integer> classCounts = new HashMap<>();
+			while (result.next())
 			{
-				int i = 0;
-				while (result.next())
+				final int charId = result.getInt("charId");
+				final int raceRank = raceCounts.merge(result.getInt("race"), 1, Integer::sum);
+				if (raceRank <= PLAYER_LIMIT)
 				{
-					if (result.getInt("charId") == charId)
-					{
-						stats.set("classRank", i + 1);
-					}
-					i++;
+					raceRanks.put(charId, raceRank);
 				}
-				if (i == 0)
+				
+				final int classRank = classCounts.merge(result.getInt("base_class"), 1, Integer::sum);
+				if (classRank <= PLAYER_LIMIT)
 				{
-					stats.set("classRank", 0);
+					classRanks.put(charId, classRank);
 				}
 			}
 		}
 		catch (Exception e)
 		{
-			LOGGER.log(Level.WARNING, "Could not load chars classId olympiad rank data: " + this + " - " + e.getMessage(), e);
-		}
-	}
-	
-	private void loadRaceRank(int charId, int race, StatSet stats)
-	{
-		try (Connection con = DatabaseFactory.getConnection();
-			PreparedStatement statement = con.prepareStatement(SELECT_CHARACTERS_BY_RACE))
-		{
-			statement.setInt(1, race);
-			try (ResultSet result = statement.executeQuery())
-			{
-				int i = 0;
-				while (result.next())
-				{
-					if (result.getInt("charId") == charId)
-					{
-						stats.set("raceRank", i + 1);
-					}
-					i++;
-				}
-				if (i == 0)
-				{
-					stats.set("raceRank", 0);
-				}
-			}
-		}
-		catch (Exception e)
-		{
-			LOGGER.log(Level.WARNING, "Could not load chars race rank data: " + this + " - " + e.getMessage(), e);
+			LOGGER.log(Level.WARNING, "Could not load chars race and class rank data: " + this + " - " + e.getMessage(), e);
 		}
 	}
 	
 	public Map<Integer, StatSet> getRankList()
 	{
-		return _mainList;
+		return _current._players;
 	}
 	
 	public Map<Integer, StatSet> getSnapshotList()
 	{
-		return _snapshotList;
+		return _snapshot._players;
 	}
 	
 	public Map<Integer, StatSet> getOlyRankList()
 	{
-		return _mainOlyList;
+		return _current._olympiad;
 	}
 	
 	public Map<Integer, StatSet> getSnapshotOlyList()
 	{
-		return _snapshotOlyList;
+		return _snapshot._olympiad;
 	}
 	
 	public Collection<HeroInfo> getSnapshotHeroList()
 	{
-		return _snapshotHeroList;
+		return _snapshot._heroes;
 	}
 	
 	public Map<Integer, StatSet> getPvpRankList()
 	{
-		return _mainPvpList;
+		return _current._pvp;
 	}
 	
 	public Map<Integer, StatSet> getSnapshotPvpRankList()
 	{
-		return _snapshotPvpList;
+		return _snapshot._pvp;
 	}
 	
 	public Map<Integer, StatSet> getPetRankList()
 	{
-		return _mainPetList;
+		return _current._pets;
 	}
 	
 	public Map<Integer, StatSet> getSnapshotPetRankList()
 	{
-		return _snapshotPetList;
+		return _snapshot._pets;
 	}
 	
 	public Map<Integer, StatSet> getClanRankList()
 	{
-		return _mainClanList;
+		return _current._clans;
 	}
 	
 	public Map<Integer, StatSet> getSnapshotClanRankList()
 	{
-		return _snapshotClanList;
+		return _snapshot._clans;
 	}
 	
 	public int getPlayerGlobalRank(Player player)
 	{
-		final int objectId = player.getObjectId();
-		for (Entry<Integer, StatSet> entry : _mainList.entrySet())
+		return _current._globalRanks.get(player.getObjectId());
+	}
+	
+	public int getPlayerRaceRank(Player player)
+	{
+		return _current._raceRanks.get(player.getObjectId());
+	}
+	
+	public int getPlayerClassRank(Player player)
+	{
+		return _current._classRanks.get(player.getObjectId());
+	}
+	
+	public int getSnapshotGlobalRank(int charId)
+	{
+		return _snapshot._globalRanks.get(charId);
+	}
+	
+	public int getSnapshotClassRank(int charId)
+	{
+		return _snapshot._classRanks.get(charId);
+	}
+	
+	/**
+	 * @param charId the character object id
+	 * @return the pvp rank of the character, or 0 if not ranked
+	 */
+	public int getPvpRank(int charId)
+	{
+		return _current._pvpRanks.get(charId);
+	}
+	
+	public int getSnapshotPvpRank(int charId)
+	{
+		return _snapshot._pvpRanks.get(charId);
+	}
+	
+	/**
+	 * @param controlledItemObjId the object id of the pet control item
+	 * @return the server rank of the pet, or 0 if not ranked
+	 */
+	public int getPetRank(int controlledItemObjId)
+	{
+		return _current._petRanks.get(controlledItemObjId);
+	}
+	
+	public int getSnapshotPetRank(int controlledItemObjId)
+	{
+		return _snapshot._petRanks.get(controlledItemObjId);
+	}
+	
+	/**
+	 * @param clanId the clan id
+	 * @return the rank of the clan, or 0 if not ranked
+	 */
+	public int getClanRank(int clanId)
+	{
+		return _current._clanRanks.get(clanId);
+	}
+	
+	public int getSnapshotClanRank(int clanId)
+	{
+		return _snapshot._clanRanks.get(clanId);
+	}
+	
+	public Collection<Integer> getTop50()
+	{
+		final Map<Integer, StatSet> players = _current._players;
+		final List<Integer> result = new LinkedList<>();
+		for (int i = 1; i <= 50; i++)
 		{
-			final StatSet stats = entry.getValue();
-			if (stats.getInt("charId", 0) == objectId)
+			final StatSet stats = players.get(i);
+			if (stats != null)
 			{
-				return entry.getKey();
+				result.add(stats.getInt("charId", 0));
 			}
 		}
-		
-		return 0;
+		return result;
 	}
 	
-	public int getPlayerRaceRank(Player player)
+	/**
+	 * Rankings of one refresh. Never modified once built, lists are keyed and ordered by rank.
+	 */
+	private class Rankings
 	{
-		final int objectId = player.getObjectId();
-		for (StatSet stats : _mainList.values())
+		private final Map<Integer, StatSet> _players;
+		private final Map<Integer, StatSet> _olympiad;
+		private final List<HeroInfo> _heroes;
+		private final Map<Integer, StatSet> _pvp;
+		private final Map<Integer, StatSet> _pets;
+		private final Map<Integer, StatSet> _clans;
+		private final RankIndex _globalRanks;
+		private final RankIndex _raceRanks;
+		private final RankIndex _classRanks;
+		private final RankIndex _pvpRanks;
+		private final RankIndex _petRanks;
+		private final RankIndex _clanRanks;
+		
+		Rankings()
 		{
-			if (stats.getInt("charId", 0) == objectId)
+			this(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+		}
+		
+		Rankings(Map<Integer, StatSet> players, Map<Integer, StatSet> olympiad, List<HeroInfo> heroes, Map<Integer, StatSet> pvp, Map<Integer, StatSet> pets, Map<Integer, StatSet> clans)
+		{
+			_players = Collections.unmodifiableMap(players);
+			_olympiad = Collections.unmodifiableMap(olympiad);
+			_heroes = Collections.unmodifiableList(heroes);
+			_pvp = Collections.unmodifiableMap(pvp);
+			_pets = Collections.unmodifiableMap(pets);
+			_clans = Collections.unmodifiableMap(clans);
+			
+			_globalRanks = new RankIndex(players.size());
+			_raceRanks = new RankIndex(players.size());
+			_classRanks = new RankIndex(players.size());
+			for (Entry<Integer, StatSet> entry : players.entrySet())
+			{
+				final StatSet stats = entry.getValue();
+				final int charId = stats.getInt("charId", 0);
+				_globalRanks.put(charId, entry.getKey());
+				_raceRanks.put(charId, stats.getInt("raceRank", 0));
+				_classRanks.put(charId, stats.getInt("classRank", 0));
+			}
+			
+			_pvpRanks = new RankIndex(pvp.size());
+			for (Entry<Integer, StatSet> entry : pvp.entrySet())
+			{
+				_pvpRanks.put(entry.getValue().getInt("charId", 0), entry.getKey());
+			}
+			
+			_petRanks = new RankIndex(pets.size());
+			for (Entry<Integer, StatSet> entry : pets.entrySet())
 			{
-				return stats.getInt("raceRank", 0);
+				_petRanks.put(entry.getValue().getInt("controlledItemObjId", 0), entry.getKey());
+			}
+			
+			_clanRanks = new RankIndex(clans.size());
+			for (Entry<Integer, StatSet> entry : clans.entrySet())
+			{
+				_clanRanks.put(entry.getValue().getInt("clan_id", 0), entry.getKey());
 			}
 		}
-		
-		return 0;
 	}
 	
-	public int getPlayerClassRank(Player player)
+	/**
+	 * Open addressing table of object ids to ranks, filled once before it is published.<br>
+	 * A rank of 0 means not ranked, so it is neither stored nor distinguished from a missing id.
+	 */
+	private static class RankIndex
 	{
-		final int objectId = player.getObjectId();
-		for (StatSet stats : _mainList.values())
+		private final int[] _ids;
+		private final int[] _ranks;
+		private final int _mask;
+		
+		RankIndex(int size)
 		{
-			if (stats.getInt("charId", 0) == objectId)
+			final int capacity = Integer.highestOneBit(Math.max(size, 1) * 2) * 2;
+			_ids = new int[capacity];
+			_ranks = new int[capacity];
+			_mask = capacity - 1;
+		}
+		
+		/**
+		 * Keeps the first rank of an id, like a scan of the list would find.
+		 * @param id the object id
+		 * @param rank the rank
+		 */
+		void put(int id, int rank)
+		{
+			if (rank == 0)
+			{
+				return;
+			}
+			
+			int index = hash(id) & _mask;
+			while (_ranks[index] != 0)
 			{
-				return stats.getInt("classRank", 0);
+				if (_ids[index] == id)
+				{
+					return;
+				}
+				index = (index + 1) & _mask;
 			}
+			_ids[index] = id;
+			_ranks[index] = rank;
 		}
 		
-		return 0;
-	}
-	
-	public Collection<Integer> getTop50()
-	{
-		final List<Integer> result = new LinkedList<>();
-		for (int i = 1; i <= 50; i++)
+		int get(int id)
 		{
-			final StatSet stats = _mainList.get(i);
-			if (stats != null)
+			int index = hash(id) & _mask;
+			while (_ranks[index] != 0)
 			{
-				result.add(stats.getInt("charId", 0));
+				if (_ids[index] == id)
+				{
+					return _ranks[index];
+				}
+				index = (index + 1) & _mask;
 			}
+			return 0;
+		}
+		
+		private static int hash(int id)
+		{
+			final int h = id * 0x9E3779B9;
+			return h ^ (h >>> 16);
 		}
-		return result;
 	}
 	
 	public static RankManager getInstance()
@@ -31,10 +31,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -78,7 +82,15 @@ public class WorldExchangeManager implements IXmlReader
 	private static final String RESTORE_INFO = "SELECT * FROM world_exchange_items";
 	private static final String INSERT_WORLD_EXCHANGE = "REPLACE INTO world_exchange_items (`world_exchange_id`, `item_object_id`, `item_status`, `category_id`, `price`, `old_owner_id`, `start_time`, `end_time`) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 	
+	private static final int MAX_LIST_SIZE = 399;
+	private static final Comparator<WorldExchangeHolder> PRICE_ORDER = Comparator.comparingLong(WorldExchangeHolder::getPrice).thenComparingLong(WorldExchangeHolder::getWorldExchangeId);
+	
 	private final Map<Long, WorldExchangeHolder> _itemBids = new ConcurrentHashMap<>();
+	// Registered bids indexed for searches, kept sorted by price. Blessed items use the negative item id as key.
+	private final Map<WorldExchangeItemSubType, NavigableSet<WorldExchangeHolder>> _registeredByCategory = new ConcurrentHashMap<>();
+	private final Map<Integer, NavigableSet<WorldExchangeHolder>> _registeredByItem = new ConcurrentHashMap<>();
+	private final Map<WorldExchangeItemSubType, Set<Integer>> _categoryItems = new ConcurrentHashMap<>();
+	private final Map<String, Map<Integer, String>> _sortNames = new ConcurrentHashMap<>();
 	private final Map<Integer, WorldExchangeItemSubType> _itemCategories = new ConcurrentHashMap<>();
 	private final Map<String, Map<Integer, String>> _localItemNames = new HashMap<>(new HashMap<>());
 	private long _lastWorldExchangeId = 0;
@@ -102,6 +114,7 @@ public class WorldExchangeManager implements IXmlReader
 	@Override
 	public void load()
 	{
+		_sortNames.clear();
 		if (Config.MULTILANG_ENABLE)
 		{
 			_localItemNames.clear();
@@ -195,6 +208,7 @@ public class WorldExchangeManager implements IXmlReader
 				{
 					holder.setEndTime(calculateDate(Config.WORLD_EXCHANGE_ITEM_BACK_PERIOD));
 					holder.setStoreType(WorldExchangeItemStatusType.WORLD_EXCHANGE_OUT_TIME);
+					removeRegistered(holder);
 					_itemBids.replace(entry.getKey(), holder);
 					insert(entry.getKey(), false);
 					break;
@@ -298,7 +312,12 @@ public class WorldExchangeManager implements IXmlReader
 					storeType = WorldExchangeItemStatusType.WORLD_EXCHANGE_OUT_TIME;
 					needChange = true;
 				}
-				_itemBids.put(worldExchangeId, new WorldExchangeHolder(worldExchangeId, itemInstance, new ItemInfo(itemInstance), price, bidPlayerObjectId, storeType, categoryId, startTime, endTime, needChange));
+				final WorldExchangeHolder holder = new WorldExchangeHolder(worldExchangeId, itemInstance, new ItemInfo(itemInstance), price, bidPlayerObjectId, storeType, categoryId, startTime, endTime, needChange);
+				_itemBids.put(worldExchangeId, holder);
+				if (storeType == WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED)
+				{
+					addRegistered(holder);
+				}
 			}
 		}
 		catch (Exception e)
@@ -400,7 +419,9 @@ public class WorldExchangeManager implements IXmlReader
 		player.sendInventoryUpdate(iu);
 		player.getInventory().reduceAdena(ItemProcessType.FEE, feePrice, player, null);
 		final long endTime = calculateDate(Config.WORLD_EXCHANGE_ITEM_SELL_PERIOD);
-		_itemBids.put(freeId, new WorldExchangeHolder(freeId, itemInstance, new ItemInfo(itemInstance), priceForEach, player.getObjectId(), WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED, category, System.currentTimeMillis(), endTime, true));
+		final WorldExchangeHolder holder = new WorldExchangeHolder(freeId, itemInstance, new ItemInfo(itemInstance), priceForEach, player.getObjectId(), WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED, category, System.currentTimeMillis(), endTime, true);
+		_itemBids.put(freeId, holder);
+		addRegistered(holder);
 		player.sendPacket(new WorldExchangeRegisterItem(itemObjectId, amount, (byte) 1));
 		if (!Config.WORLD_EXCHANGE_LAZY_UPDATE)
 		{
@@ -517,6 +538,7 @@ public class WorldExchangeManager implements IXmlReader
 		worldExchangeItem.setStoreType(WorldExchangeItemStatusType.WORLD_EXCHANGE_NONE);
 		worldExchangeItem.setHasChanges(true);
 		_itemBids.replace(worldExchangeItem.getWorldExchangeId(), worldExchangeItem);
+		removeRegistered(worldExchangeItem);
 		if (!Config.WORLD_EXCHANGE_LAZY_UPDATE)
 		{
 			insert(worldExchangeItem.getWorldExchangeId(), true);
@@ -715,6 +737,7 @@ public class WorldExchangeManager implements IXmlReader
 		final long destroyTime = calculateDate(Config.WORLD_EXCHANGE_PAYMENT_TAKE_PERIOD);
 		WorldExchangeHolder newHolder = new WorldExchangeHolder(worldExchangeId, newItem, new ItemInfo(newItem), worldExchangeItem.getPrice(), worldExchangeItem.getOldOwnerId(), WorldExchangeItemStatusType.WORLD_EXCHANGE_SOLD, worldExchangeItem.getCategory(), worldExchangeItem.getStartTime(), destroyTime, true);
 		_itemBids.replace(worldExchangeId, worldExchangeItem, newHolder);
+		removeRegistered(worldExchangeItem);
 		if (!Config.WORLD_EXCHANGE_LAZY_UPDATE)
 		{
 			insert(worldExchangeItem.getWorldExchangeId(), false);
@@ -793,31 +816,30 @@ public class WorldExchangeManager implements IXmlReader
 	 */
 	public List<WorldExchangeHolder> getItemBids(int ownerId, WorldExchangeItemSubType type, WorldExchangeSortType sortType, String lang)
 	{
-		if (!Config.ENABLE_WORLD_EXCHANGE)
+		if (!Config.ENABLE_WORLD_EXCHANGE || (type == null))
 		{
 			return Collections.emptyList();
 		}
 		
 		final List<WorldExchangeHolder> returnList = new ArrayList<>();
-		for (WorldExchangeHolder holder : _itemBids.values())
+		if ((sortType == WorldExchangeSortType.ITEM_NAME_ASCE) || (sortType == WorldExchangeSortType.ITEM_NAME_DESC))
 		{
-			if (holder.getStoreType() == WorldExchangeItemStatusType.WORLD_EXCHANGE_NONE)
-			{
-				continue;
-			}
-			
-			if ((holder.getOldOwnerId() == ownerId) || (holder.getCategory() != type))
-			{
-				continue;
-			}
-			
-			if (holder.getStoreType() == WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED)
+			// Walk the items of the category in name order, each one is already sorted by price.
+			final boolean descending = sortType == WorldExchangeSortType.ITEM_NAME_DESC;
+			for (int itemKey : getItemKeysByName(_categoryItems.getOrDefault(type, Collections.emptySet()), lang, descending))
 			{
-				returnList.add(holder);
+				if (!collect(_registeredByItem.get(itemKey), descending, ownerId, type, returnList, MAX_LIST_SIZE))
+				{
+					break;
+				}
 			}
 		}
+		else
+		{
+			collect(_registeredByCategory.get(type), isDescending(sortType), ownerId, type, returnList, MAX_LIST_SIZE);
+		}
 		
-		return sortList(returnList, sortType, lang);
+		return returnList;
 	}
 	
 	/**
@@ -833,21 +855,86 @@ public class WorldExchangeManager implements IXmlReader
 			return Collections.emptyList();
 		}
 		
+		// Take the first bids of each item, only those can be part of the result.
+		final boolean descending = isDescending(sortType);
 		final List<WorldExchangeHolder> returnList = new ArrayList<>();
-		for (WorldExchangeHolder holder : _itemBids.values())
+		for (int id : new HashSet<>(ids))
 		{
-			if (holder.getStoreType() == WorldExchangeItemStatusType.WORLD_EXCHANGE_NONE)
+			collect(_registeredByItem.get(id), descending, 0, null, returnList, returnList.size() + MAX_LIST_SIZE);
+			collect(_registeredByItem.get(-id), descending, 0, null, returnList, returnList.size() + MAX_LIST_SIZE);
+		}
+		
+		return sortList(returnList, sortType, lang);
+	}
+	
+	/**
+	 * Adds registered bids from a price sorted index to a list.
+	 * @param bids the bids sorted by price, can be {@code null}
+	 * @param descending {@code true} to start from the highest price
+	 * @param ownerId the owner whose bids are skipped
+	 * @param type the category of the bids, {@code null} for any
+	 * @param list the list to add to
+	 * @param limit the list size to stop at
+	 * @return {@code true} if the limit was not reached
+	 */
+	private boolean collect(NavigableSet<WorldExchangeHolder> bids, boolean descending, int ownerId, WorldExchangeItemSubType type, List<WorldExchangeHolder> list, int limit)
+	{
+		if (bids == null)
+		{
+			return list.size() < limit;
+		}
+		
+		for (WorldExchangeHolder holder : descending ? bids.descendingSet() : bids)
+		{
+			if (list.size() >= limit)
+			{
+				return false;
+			}
+			
+			if ((holder.getStoreType() != WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED) || (holder.getOldOwnerId() == ownerId) || ((type != null) && (holder.getCategory() != type)))
+			{
+				continue;
+			}
+			
+			list.add(holder);
+		}
+		return list.size() < limit;
+	}
+	
+	private boolean isDescending(WorldExchangeSortType sortType)
+	{
+		return (sortType == WorldExchangeSortType.PRICE_DESC) || (sortType == WorldExchangeSortType.PRICE_PER_PIECE_DESC) || (sortType == WorldExchangeSortType.ITEM_NAME_DESC);
+	}
+	
+	/**
+	 * @param itemKeys the item keys of a category
+	 * @param lang the language of the names
+	 * @param descending {@code true} for reverse name order
+	 * @return the item keys that have registered bids, sorted by item name
+	 */
+	private List<Integer> getItemKeysByName(Set<Integer> itemKeys, String lang, boolean descending)
+	{
+		final List<Integer> keys = new ArrayList<>(itemKeys.size());
+		final Map<Integer, String> names = new HashMap<>();
+		for (Integer itemKey : itemKeys)
+		{
+			final NavigableSet<WorldExchangeHolder> bids = _registeredByItem.get(itemKey);
+			if (bids == null)
 			{
 				continue;
 			}
 			
-			if (ids.contains(holder.getItemInstance().getId()) && (holder.getStoreType() == WorldExchangeItemStatusType.WORLD_EXCHANGE_REGISTERED))
+			for (WorldExchangeHolder holder : bids)
 			{
-				returnList.add(holder);
+				names.put(itemKey, getSortName(lang, holder));
+				keys.add(itemKey);
+				break;
 			}
 		}
 		
-		return sortList(returnList, sortType, lang);
+		final Comparator<Integer> comparator = Comparator.comparing(names::get);
+		keys.sort(descending ? comparator.reversed() : comparator);
+		return keys;
 	}
 	
 	/**
@@ -862,61 +949,92 @@ public class WorldExchangeManager implements IXmlReader
 		switch (sortType)
 		{
 			case PRICE_ASCE:
+			case PRICE_PER_PIECE_ASCE:
 			{
-				Collections.sort(sortedList, Comparator.comparing(WorldExchangeHolder::getPrice));
+				sortedList.sort(PRICE_ORDER);
 				break;
 			}
 			case PRICE_DESC:
+			case PRICE_PER_PIECE_DESC:
 			{
-				Collections.sort(sortedList, Comparator.comparing(WorldExchangeHolder::getPrice));
-				Collections.reverse(sortedList);
+				sortedList.sort(PRICE_ORDER.reversed());
 				break;
 			}
 			case ITEM_NAME_ASCE:
 			{
-				if ((lang == null) || (!lang.equals("en") && _localItemNames.containsKey(lang)))
-				{
-					Collections.sort(sortedList, Comparator.comparing(o -> getItemName(lang, o.getItemInstance().getId(), o.getItemInstance().isBlessed())));
-				}
-				else
-				{
-					Collections.sort(sortedList, Comparator.comparing(o -> (o.getItemInstance().isBlessed() ? "Blessed " : "") + o.getItemInstance().getItemName()));
-				}
+				sortedList.sort(Comparator.comparing(o -> getSortName(lang, o)));
 				break;
 			}
 			case ITEM_NAME_DESC:
 			{
-				if ((lang == null) || (!lang.equals("en") && _localItemNames.containsKey(lang)))
-				{
-					Collections.sort(sortedList, Comparator.comparing(o -> getItemName(lang, o.getItemInstance().getId(), o.getItemInstance().isBlessed())));
-				}
-				else
-				{
-					Collections.sort(sortedList, Comparator.comparing(o -> (o.getItemInstance().isBlessed() ? "Blessed " : "") + o.getItemInstance().getItemName()));
-				}
-				Collections.reverse(sortedList);
-				break;
-			}
-			case PRICE_PER_PIECE_ASCE:
-			{
-				Collections.sort(sortedList, Comparator.comparingLong(WorldExchangeHolder::getPrice));
-				break;
-			}
-			case PRICE_PER_PIECE_DESC:
-			{
-				Collections.sort(sortedList, Comparator.comparingLong(WorldExchangeHolder::getPrice).reversed());
+				sortedList.sort(Comparator.comparing((WorldExchangeHolder o) -> getSortName(lang, o)).reversed());
 				break;
 			}
 		}
 		
-		if (sortedList.size() > 399)
+		if (sortedList.size() > MAX_LIST_SIZE)
 		{
-			return sortedList.subList(0, 399);
+			return sortedList.subList(0, MAX_LIST_SIZE);
 		}
 		
 		return sortedList;
 	}
 	
+	/**
+	 * @param lang the language of the name
+	 * @param holder the bid
+	 * @return the name used to sort the bid, cached per language and item
+	 */
+	private String getSortName(String lang, WorldExchangeHolder holder)
+	{
+		final Item item = holder.getItemInstance();
+		return _sortNames.computeIfAbsent(String.valueOf(lang), _ -> new ConcurrentHashMap<>()).computeIfAbsent(getItemKey(item), _ ->
+		{
+			if ((lang == null) || (!lang.equals("en") && _localItemNames.containsKey(lang)))
+			{
+				return getItemName(lang, item.getId(), item.isBlessed());
+			}
+			return (item.isBlessed() ? "Blessed " : "") + item.getItemName();
+		});
+	}
+	
+	private static int getItemKey(Item item)
+	{
+		return item.isBlessed() ? -item.getId() : item.getId();
+	}
+	
+	private void addRegistered(WorldExchangeHolder holder)
+	{
+		final int itemKey = getItemKey(holder.getItemInstance());
+		_registeredByItem.computeIfAbsent(itemKey, _ -> new ConcurrentSkipListSet<>(PRICE_ORDER)).add(holder);
+		
+		final WorldExchangeItemSubType category = holder.getCategory();
+		if (category != null)
+		{
+			_registeredByCategory.computeIfAbsent(category, _ -> new ConcurrentSkipListSet<>(PRICE_ORDER)).add(holder);
+			_categoryItems.computeIfAbsent(category, _ -> ConcurrentHashMap.newKeySet()).add(itemKey);
+		}
+	}
+	
+	private void removeRegistered(WorldExchangeHolder holder)
+	{
+		final NavigableSet<WorldExchangeHolder> itemBids = _registeredByItem.get(getItemKey(holder.getItemInstance()));
+		if (itemBids != null)
+		{
+			itemBids.remove(holder);
+		}
+		
+		final WorldExchangeItemSubType category = holder.getCategory();
+		if (category != null)
+		{
+			final NavigableSet<WorldExchangeHolder> categoryBids = _registeredByCategory.get(category);
+			if (categoryBids != null)
+			{
+				categoryBids.remove(holder);
+			}
+		}
+	}
+	
 	private String getItemName(String lang, int id, boolean isBlessed)
 	{
 		if (!_localItemNames.containsKey(lang))
@@ -674,7 +674,7 @@ public class World
 		final WorldRegion[] surroundingRegions = worldRegion.getSurroundingRegions();
 		for (int i = 0; i < surroundingRegions.length; i++)
 		{
-			final Collection<WorldObject> visibleObjects = surroundingRegions[i].getVisibleObjects();
+			final Collection<WorldObject> visibleObjects = surroundingRegions[i].getVisibleObjects(clazz);
 			if (visibleObjects.isEmpty())
 			{
 				continue;
@@ -730,10 +730,19 @@ public class World
 			return;
 		}
 		
+		final int x = object.getX();
+		final int y = object.getY();
 		final WorldRegion[] surroundingRegions = worldRegion.getSurroundingRegions();
 		for (int i = 0; i < surroundingRegions.length; i++)
 		{
-			final Collection<WorldObject> visibleObjects = surroundingRegions[i].getVisibleObjects();
+			// Skip regions that are entirely out of range.
+			final WorldRegion region = surroundingRegions[i];
+			if (!region.isInRange(x, y, range))
+			{
+				continue;
+			}
+			
+			final Collection<WorldObject> visibleObjects = region.getVisibleObjects(clazz);
 			if (visibleObjects.isEmpty())
 			{
 				continue;
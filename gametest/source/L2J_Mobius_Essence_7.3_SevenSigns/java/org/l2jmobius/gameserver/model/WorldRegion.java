@@ -33,14 +33,22 @@ import org.l2jmobius.commons.threads.ThreadPool;
 import org.l2jmobius.gameserver.ai.Intention;
 import org.l2jmobius.gameserver.model.actor.Attackable;
 import org.l2jmobius.gameserver.model.actor.Npc;
+import org.l2jmobius.gameserver.model.actor.Playable;
+import org.l2jmobius.gameserver.model.actor.Player;
 import org.l2jmobius.gameserver.model.actor.instance.Door;
 import org.l2jmobius.gameserver.model.actor.instance.Fence;
+import org.l2jmobius.gameserver.model.item.instance.Item;
 import org.l2jmobius.gameserver.taskmanagers.RandomAnimationTaskManager;
 
 public class WorldRegion
 {
 	/** Set containing visible objects in this world region. */
 	private final Set<WorldObject> _visibleObjects = ConcurrentHashMap.newKeySet();
+	/** Typed subsets of _visibleObjects, so class filtered lookups do not iterate unrelated objects. */
+	private final Set<WorldObject> _playables = ConcurrentHashMap.newKeySet();
+	private final Set<WorldObject> _players = ConcurrentHashMap.newKeySet();
+	private final Set<WorldObject> _npcs = ConcurrentHashMap.newKeySet();
+	private final Set<WorldObject> _items = ConcurrentHashMap.newKeySet();
 	/** List containing doors in this world region. */
 	private final List<Door> _doors = new ArrayList<>(1);
 	/** List containing fences in this world region. */
@@ -49,6 +57,11 @@ public class WorldRegion
 	private WorldRegion[] _surroundingRegions;
 	private final int _regionX;
 	private final int _regionY;
+	/** World coordinate bounds of this region. */
+	private final int _minX;
+	private final int _minY;
+	private final int _maxX;
+	private final int _maxY;
 	private boolean _active = Config.GRIDS_ALWAYS_ON;
 	private ScheduledFuture<?> _neighborsTask = null;
 	private final AtomicInteger _activeNeighbors = new AtomicInteger();
@@ -57,6 +70,10 @@ public class WorldRegion
 	{
 		_regionX = regionX;
 		_regionY = regionY;
+		_minX = (regionX - World.OFFSET_X) << World.SHIFT_BY;
+		_minY = (regionY - World.OFFSET_Y) << World.SHIFT_BY;
+		_maxX = _minX + (1 << World.SHIFT_BY) - 1;
+		_maxY = _minY + (1 << World.SHIFT_BY) - 1;
 	}
 	
 	private void switchAI(boolean isOn)
@@ -154,21 +171,9 @@ public class WorldRegion
 		for (int i = 0; i < _surroundingRegions.length; i++)
 		{
 			final WorldRegion worldRegion = _surroundingRegions[i];
-			if (worldRegion.isActive())
+			if (worldRegion.isActive() && !worldRegion._playables.isEmpty())
 			{
-				final Collection<WorldObject> regionObjects = worldRegion.getVisibleObjects();
-				if (regionObjects.isEmpty())
-				{
-					continue;
-				}
-				
-				for (WorldObject wo : regionObjects)
-				{
-					if ((wo != null) && wo.isPlayable())
-					{
-						return false;
-					}
-				}
+				return false;
 			}
 		}
 		return true;
@@ -277,6 +282,22 @@ public class WorldRegion
 		}
 		
 		_visibleObjects.add(object);
+		if (object.isPlayable())
+		{
+			_playables.add(object);
+			if (object.isPlayer())
+			{
+				_players.add(object);
+			}
+		}
+		else if (object.isNpc())
+		{
+			_npcs.add(object);
+		}
+		else if (object.isItem())
+		{
+			_items.add(object);
+		}
 		
 		if (object.isDoor())
 		{
@@ -317,6 +338,22 @@ public class WorldRegion
 		}
 		
 		_visibleObjects.remove(object);
+		if (object.isPlayable())
+		{
+			_playables.remove(object);
+			if (object.isPlayer())
+			{
+				_players.remove(object);
+			}
+		}
+		else if (object.isNpc())
+		{
+			_npcs.remove(object);
+		}
+		else if (object.isItem())
+		{
+			_items.remove(object);
+		}
 		
 		if (object.isDoor())
 		{
@@ -344,6 +381,46 @@ public class WorldRegion
 		return _visibleObjects;
 	}
 	
+	/**
+	 * Returns the smallest set of visible objects that can contain instances of the given class.<br>
+	 * Objects of the returned collection are not guaranteed to be instances of the class (e.g. Summon requests get all playables).
+	 * @param clazz the requested object class
+	 * @return the visible objects of this region that may match the given class
+	 */
+	public Collection<WorldObject> getVisibleObjects(Class<?> clazz)
+	{
+		if (Player.class.isAssignableFrom(clazz))
+		{
+			return _players;
+		}
+		if (Npc.class.isAssignableFrom(clazz))
+		{
+			return _npcs;
+		}
+		if (Playable.class.isAssignableFrom(clazz))
+		{
+			return _playables;
+		}
+		if (Item.class.isAssignableFrom(clazz))
+		{
+			return _items;
+		}
+		return _visibleObjects;
+	}
+	
+	/**
+	 * @param x the X coordinate
+	 * @param y the Y coordinate
+	 * @param range the range
+	 * @return {@code true} if any point of this region is within the given 2D range of the given coordinates, {@code false} otherwise.
+	 */
+	public boolean isInRange(int x, int y, int range)
+	{
+		final long dx = x < _minX ? _minX - x : (x > _maxX ? x - _maxX : 0);
+		final long dy = y < _minY ? _minY - y : (y > _maxY ? y - _maxY : 0);
+		return ((dx * dx) + (dy * dy)) <= ((long) range * range);
+	}
+	
 	public synchronized void addDoor(Door door)
 	{
 		if (!_doors.contains(door))
@@ -402,11 +402,13 @@ import org.l2jmobius.gameserver.network.serverpackets.vip.ReceiveVipInfo;
 import org.l2jmobius.gameserver.taskmanagers.AttackStanceTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.AutoPlayTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.AutoUseTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.CharInfoTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.DecayTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.GameTimeTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.ItemsAutoDestroyTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.PlayerAutoSaveTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.PvpFlagTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.WriteBehindTaskManager;
 import org.l2jmobius.gameserver.util.Broadcast;
 import org.l2jmobius.gameserver.util.LocationUtil;
 
@@ -436,6 +438,7 @@ public class Player extends Playable
 	// Character Character SQL String Definitions:
 	private static final String INSERT_CHARACTER = "INSERT INTO characters (account_name,charId,char_name,level,maxHp,curHp,maxCp,curCp,maxMp,curMp,face,hairStyle,hairColor,sex,exp,sp,reputation,fame,raidbossPoints,pvpkills,pkkills,clanid,race,classid,deletetime,cancraft,title,title_color,online,clan_privs,wantspeace,base_class,nobless,power_grade,vitality_points,createDate,lastAccess,kills,deaths) values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 	private static final String UPDATE_CHARACTER = "UPDATE characters SET level=?,maxHp=?,curHp=?,maxCp=?,curCp=?,maxMp=?,curMp=?,face=?,hairStyle=?,hairColor=?,sex=?,heading=?,x=?,y=?,z=?,exp=?,expBeforeDeath=?,sp=?,reputation=?,fame=?,raidbossPoints=?,pvpkills=?,pkkills=?,clanid=?,race=?,classid=?,deletetime=?,title=?,title_color=?,online=?,clan_privs=?,wantspeace=?,base_class=?,onlinetime=?,nobless=?,power_grade=?,subpledge=?,lvl_joined_academy=?,apprentice=?,sponsor=?,clan_join_expiry_time=?,clan_create_expiry_time=?,char_name=?,bookmarkslot=?,vitality_points=?,language=?,faction=?,pccafe_points=?,kills=?,deaths=? WHERE charId=?";
+	private static final WriteBehindTaskManager.Table<Player> CHARACTERS_TABLE = new WriteBehindTaskManager.Table<>("characters", UPDATE_CHARACTER, Player::storeCharBaseInBatch, (player, objectId) -> player.getObjectId() == objectId);
 	private static final String UPDATE_CHARACTER_ACCESS = "UPDATE characters SET accesslevel = ? WHERE charId = ?";
 	private static final String RESTORE_CHARACTER = "SELECT * FROM characters WHERE charId=?";
 	
@@ -518,7 +521,6 @@ public class Player extends Playable
 	private ScheduledFuture<?> _userBoostStatTask;
 	private ScheduledFuture<?> _abnormalVisualEffectTask;
 	private ScheduledFuture<?> _updateAndBroadcastStatusTask;
-	private ScheduledFuture<?> _broadcastCharInfoTask;
 	
 	private boolean _subclassLock = false;
 	protected int _baseClass;
@@ -4483,53 +4485,7 @@ public class Player extends Playable
 			return;
 		}
 		
-		if (_broadcastCharInfoTask == null)
-		{
-			_broadcastCharInfoTask = ThreadPool.schedule(() ->
-			{
-				final CharInfo charInfo = new CharInfo(this, false);
-				charInfo.sendInBroadcast();
-				World.getInstance().forEachVisibleObject(this, Player.class, player ->
-				{
-					if (isVisibleFor(player))
-					{
-						if (isInvisible() && player.canOverrideCond(PlayerCondOverride.SEE_ALL_PLAYERS))
-						{
-							player.sendPacket(new CharInfo(this, true));
-						}
-						else
-						{
-							player.sendPacket(charInfo);
-						}
-						
-						// Update relation.
-						final long relation = getRelation(player);
-						final boolean isAutoAttackable = isAutoAttackable(player);
-						final RelationCache oldrelation = getKnownRelations().get(player.getObjectId());
-						if ((oldrelation == null) || (oldrelation.getRelation() != relation) || (oldrelation.isAutoAttackable() != isAutoAttackable))
-						{
-							final RelationChanged rc = new RelationChanged();
-							rc.addRelation(this, relation, isAutoAttackable);
-							if (hasSummon())
-							{
-								final Summon pet = getPet();
-								if (pet != null)
-								{
-									rc.addRelation(pet, relation, isAutoAttackable);
-								}
-								if (hasServitors())
-								{
-									getServitors().values().forEach(s -> rc.addRelation(s, relation, isAutoAttackable));
-								}
-							}
-							player.sendPacket(rc);
-							getKnownRelations().put(player.getObjectId(), new RelationCache(relation, isAutoAttackable));
-						}
-					}
-				});
-				_broadcastCharInfoTask = null;
-			}, 100);
-		}
+		CharInfoTaskManager.getInstance().addCharInfo(this);
 	}
 	
 	public void broadcastTitleInfo()
@@ -7740,78 +7696,16 @@ public class Player extends Playable
 	
 	private void storeCharBase()
 	{
-		// Get the exp, level, and sp of base class to store in base table
-		final long exp = getStat().getBaseExp();
-		final int level = getStat().getBaseLevel();
-		final long sp = getStat().getBaseSp();
+		if (Config.WRITE_BEHIND_PERSISTENCE)
+		{
+			WriteBehindTaskManager.getInstance().add(CHARACTERS_TABLE, this);
+			return;
+		}
+		
 		try (Connection con = DatabaseFactory.getConnection();
 			PreparedStatement statement = con.prepareStatement(UPDATE_CHARACTER))
 		{
-			statement.setInt(1, level);
-			statement.setInt(2, getMaxHp());
-			statement.setDouble(3, getCurrentHp());
-			statement.setInt(4, getMaxCp());
-			statement.setDouble(5, getCurrentCp());
-			statement.setInt(6, getMaxMp());
-			statement.setDouble(7, getCurrentMp());
-			statement.setInt(8, _appearance.getFace());
-			statement.setInt(9, _appearance.getHairStyle());
-			statement.setInt(10, _appearance.getHairColor());
-			statement.setInt(11, _appearance.isFemale() ? 1 : 0);
-			statement.setInt(12, getHeading());
-			statement.setInt(13, _lastLoc != null ? _lastLoc.getX() : getX());
-			statement.setInt(14, _lastLoc != null ? _lastLoc.getY() : getY());
-			statement.setInt(15, _lastLoc != null ? _lastLoc.getZ() : getZ());
-			statement.setLong(16, exp);
-			statement.setLong(17, _expBeforeDeath);
-			statement.setLong(18, sp);
-			statement.setInt(19, getReputation());
-			statement.setInt(20, _fame);
-			statement.setInt(21, _raidbossPoints);
-			statement.setInt(22, _pvpKills);
-			statement.setInt(23, _pkKills);
-			statement.setInt(24, getOgClanId());
-			statement.setInt(25, getRace().ordinal());
-			statement.setInt(26, getPlayerClass().getId());
-			statement.setLong(27, _deleteTimer);
-			statement.setString(28, getTitle());
-			statement.setInt(29, _appearance.getTitleColor());
-			statement.setInt(30, isOnlineInt());
-			statement.setInt(31, _clanPrivileges.getMask());
-			statement.setInt(32, _wantsPeace);
-			statement.setInt(33, _baseClass);
-			long totalOnlineTime = _onlineTime;
-			if (_onlineBeginTime > 0)
-			{
-				totalOnlineTime += (System.currentTimeMillis() - _onlineBeginTime) / 1000;
-			}
-			statement.setLong(34, _offlineShopStart > 0 ? _onlineTime : totalOnlineTime);
-			statement.setInt(35, isNoble() ? 1 : 0);
-			statement.setInt(36, _powerGrade);
-			statement.setInt(37, _pledgeType);
-			statement.setInt(38, _lvlJoinedAcademy);
-			statement.setLong(39, _apprentice);
-			statement.setLong(40, _sponsor);
-			statement.setLong(41, _clanJoinExpiryTime);
-			statement.setLong(42, _clanCreateExpiryTime);
-			statement.setString(43, getName());
-			statement.setInt(44, _bookmarkslot);
-			statement.setInt(45, getStat().getBaseVitalityPoints());
-			statement.setString(46, _lang);
-			int factionId = 0;
-			if (_isGood)
-			{
-				factionId = 1;
-			}
-			if (_isEvil)
-			{
-				factionId = 2;
-			}
-			statement.setInt(47, factionId);
-			statement.setInt(48, _pcCafePoints);
-			statement.setInt(49, getTotalKills());
-			statement.setInt(50, getTotalDeaths());
-			statement.setInt(51, getObjectId());
+			setCharBaseParameters(statement);
 			statement.execute();
 		}
 		catch (Exception e)
@@ -7820,6 +7714,92 @@ public class Player extends Playable
 		}
 	}
 	
+	/**
+	 * Adds the base data of the player to a batched update, used by the write-behind thread.
+	 * @param statement the batched update statement
+	 * @param con the connection of the batch
+	 * @return {@code true}
+	 * @throws SQLException
+	 */
+	private boolean storeCharBaseInBatch(PreparedStatement statement, Connection con) throws SQLException
+	{
+		setCharBaseParameters(statement);
+		return true;
+	}
+	
+	private void setCharBaseParameters(PreparedStatement statement) throws SQLException
+	{
+		// Get the exp, level, and sp of base class to store in base table
+		final long exp = getStat().getBaseExp();
+		final int level = getStat().getBaseLevel();
+		final long sp = getStat().getBaseSp();
+		statement.setInt(1, level);
+		statement.setInt(2, getMaxHp());
+		statement.setDouble(3, getCurrentHp());
+		statement.setInt(4, getMaxCp());
+		statement.setDouble(5, getCurrentCp());
+		statement.setInt(6, getMaxMp());
+		statement.setDouble(7, getCurrentMp());
+		statement.setInt(8, _appearance.getFace());
+		statement.setInt(9, _appearance.getHairStyle());
+		statement.setInt(10, _appearance.getHairColor());
+		statement.setInt(11, _appearance.isFemale() ? 1 : 0);
+		statement.setInt(12, getHeading());
+		statement.setInt(13, _lastLoc != null ? _lastLoc.getX() : getX());
+		statement.setInt(14, _lastLoc != null ? _lastLoc.getY() : getY());
+		statement.setInt(15, _lastLoc != null ? _lastLoc.getZ() : getZ());
+		statement.setLong(16, exp);
+		statement.setLong(17, _expBeforeDeath);
+		statement.setLong(18, sp);
+		statement.setInt(19, getReputation());
+		statement.setInt(20, _fame);
+		statement.setInt(21, _raidbossPoints);
+		statement.setInt(22, _pvpKills);
+		statement.setInt(23, _pkKills);
+		statement.setInt(24, getOgClanId());
+		statement.setInt(25, getRace().ordinal());
+		statement.setInt(26, getPlayerClass().getId());
+		statement.setLong(27, _deleteTimer);
+		statement.setString(28, getTitle());
+		statement.setInt(29, _appearance.getTitleColor());
+		statement.setInt(30, isOnlineInt());
+		statement.setInt(31, _clanPrivileges.getMask());
+		statement.setInt(32, _wantsPeace);
+		statement.setInt(33, _baseClass);
+		long totalOnlineTime = _onlineTime;
+		if (_onlineBeginTime > 0)
+		{
+			totalOnlineTime += (System.currentTimeMillis() - _onlineBeginTime) / 1000;
+		}
+		statement.setLong(34, _offlineShopStart > 0 ? _onlineTime : totalOnlineTime);
+		statement.setInt(35, isNoble() ? 1 : 0);
+		statement.setInt(36, _powerGrade);
+		statement.setInt(37, _pledgeType);
+		statement.setInt(38, _lvlJoinedAcademy);
+		statement.setLong(39, _apprentice);
+		statement.setLong(40, _sponsor);
+		statement.setLong(41, _clanJoinExpiryTime);
+		statement.setLong(42, _clanCreateExpiryTime);
+		statement.setString(43, getName());
+		statement.setInt(44, _bookmarkslot);
+		statement.setInt(45, getStat().getBaseVitalityPoints());
+		statement.setString(46, _lang);
+		int factionId = 0;
+		if (_isGood)
+		{
+			factionId = 1;
+		}
+		if (_isEvil)
+		{
+			factionId = 2;
+		}
+		statement.setInt(47, factionId);
+		statement.setInt(48, _pcCafePoints);
+		statement.setInt(49, getTotalKills());
+		statement.setInt(50, getTotalDeaths());
+		statement.setInt(51, getObjectId());
+	}
+	
 	private void storeCharSub()
 	{
 		if (getTotalSubClasses() <= 0)
@@ -11874,6 +11854,7 @@ public class Player extends Playable
 			abortAttack();
 			abortCast();
 			stopMove(null);
+			CharInfoTaskManager.getInstance().remove(this);
 		}
 		catch (Exception e)
 		{
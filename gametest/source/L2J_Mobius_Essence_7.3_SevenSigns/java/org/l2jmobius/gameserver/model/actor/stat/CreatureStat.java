@@ -20,15 +20,18 @@
  */
 package org.l2jmobius.gameserver.model.actor.stat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
 
@@ -37,7 +40,6 @@ import org.l2jmobius.gameserver.model.actor.Creature;
 import org.l2jmobius.gameserver.model.actor.Player;
 import org.l2jmobius.gameserver.model.actor.enums.creature.AttributeType;
 import org.l2jmobius.gameserver.model.actor.enums.creature.Position;
-import org.l2jmobius.gameserver.model.actor.holders.creature.DelayedPumpHolder;
 import org.l2jmobius.gameserver.model.effects.AbstractEffect;
 import org.l2jmobius.gameserver.model.item.instance.Item;
 import org.l2jmobius.gameserver.model.skill.AbnormalType;
@@ -53,6 +55,41 @@ import org.l2jmobius.gameserver.util.MathUtil;
 
 public class CreatureStat
 {
+	private static final Stat[] STATS = Stat.values();
+	private static final int STAT_COUNT = STATS.length;
+	/** Mask bits past the stats, used to track the vampiric sums. */
+	private static final int VAMPIRIC_SUM = STAT_COUNT;
+	private static final int MP_VAMPIRIC_SUM = STAT_COUNT + 1;
+	private static final int MASK_LENGTH = (STAT_COUNT + 2 + 63) >>> 6;
+	
+	private static final double[] RESET_ADD_VALUES = new double[STAT_COUNT];
+	private static final double[] RESET_MUL_VALUES = new double[STAT_COUNT];
+	private static final long[] RESET_ADD_PRESENT = new long[MASK_LENGTH];
+	private static final long[] RESET_MUL_PRESENT = new long[MASK_LENGTH];
+	static
+	{
+		for (Stat stat : STATS)
+		{
+			final int id = stat.ordinal();
+			RESET_ADD_VALUES[id] = stat.getResetAddValue();
+			RESET_MUL_VALUES[id] = stat.getResetMulValue();
+			if (RESET_ADD_VALUES[id] != 0)
+			{
+				set(RESET_ADD_PRESENT, id);
+			}
+			if (RESET_MUL_VALUES[id] != 0)
+			{
+				set(RESET_MUL_PRESENT, id);
+			}
+		}
+	}
+	
+	private static final StatSnapshot EMPTY_SNAPSHOT = new StatSnapshot(new double[STAT_COUNT], new double[STAT_COUNT], new long[MASK_LENGTH], new long[MASK_LENGTH], 0, 0);
+	
+	private static final LongAdder FULL_RECALCULATIONS = new LongAdder();
+	private static final LongAdder INCREMENTAL_RECALCULATIONS = new LongAdder();
+	private static final LongAdder RECALCULATION_TIME = new LongAdder();
+	
 	private final Creature _creature;
 	private long _exp = 0;
 	private long _sp = 0;
@@ -62,8 +99,23 @@ public class CreatureStat
 	private double _vampiricSum = 0;
 	private double _mpVampiricSum = 0;
 	
-	private final Map<Stat, Double> _statsAdd = new EnumMap<>(Stat.class);
-	private final Map<Stat, Double> _statsMul = new EnumMap<>(Stat.class);
+	/** Values being pumped, only accessed while holding the write lock. */
+	private final double[] _addValues = new double[STAT_COUNT];
+	private final double[] _mulValues = new double[STAT_COUNT];
+	private final long[] _addPresent = new long[MASK_LENGTH];
+	private final long[] _mulPresent = new long[MASK_LENGTH];
+	/** Values published by the last recalculation. */
+	private volatile StatSnapshot _snapshot = EMPTY_SNAPSHOT;
+	
+	/** Effects pumped by the last recalculation and the stats they merged, {@code null} when unknown. */
+	private List<StatContribution> _contributions;
+	private Map<StatContribution, StatContribution> _previousLookup;
+	private int _previousIndex;
+	private int _pass;
+	private StatContribution _pumping;
+	private long[] _pumpFilter;
+	private boolean _pumpRead;
+	
 	private final Map<Stat, Map<MoveType, Double>> _moveTypeStats = new ConcurrentHashMap<>();
 	private final Map<Integer, Double> _reuseStat = new ConcurrentHashMap<>();
 	private final Map<Integer, Double> _mpConsumeStat = new ConcurrentHashMap<>();
@@ -785,9 +837,23 @@ public class CreatureStat
 	 * @param stat
 	 * @param value
 	 */
-	public void mergeAdd(Stat stat, Double value)
+	public void mergeAdd(Stat stat, double value)
 	{
-		_statsAdd.merge(stat, value, stat::functionAdd);
+		final int id = stat.ordinal();
+		if (!acceptPump(id))
+		{
+			return;
+		}
+		
+		if (isSet(_addPresent, id))
+		{
+			_addValues[id] = stat.functionAdd(_addValues[id], value);
+		}
+		else
+		{
+			_addValues[id] = value;
+			set(_addPresent, id);
+		}
 	}
 	
 	/**
@@ -795,9 +861,54 @@ public class CreatureStat
 	 * @param stat
 	 * @param value
 	 */
-	public void mergeMul(Stat stat, Double value)
+	public void mergeMul(Stat stat, double value)
 	{
-		_statsMul.merge(stat, value, stat::functionMul);
+		final int id = stat.ordinal();
+		if (!acceptPump(id))
+		{
+			return;
+		}
+		
+		if (isSet(_mulPresent, id))
+		{
+			_mulValues[id] = stat.functionMul(_mulValues[id], value);
+		}
+		else
+		{
+			_mulValues[id] = value;
+			set(_mulPresent, id);
+		}
+	}
+	
+	/**
+	 * Records the merged stat for the effect currently being pumped.
+	 * @param id the stat (or vampiric sum) index
+	 * @return {@code true} if the value should be merged, {@code false} if it is filtered out by an incremental recalculation
+	 */
+	private boolean acceptPump(int id)
+	{
+		// Pumps outside of a recalculation are replaced by the one that follows.
+		if (!_lock.isWriteLockedByCurrentThread())
+		{
+			return false;
+		}
+		
+		final StatContribution contribution = _pumping;
+		if (contribution != null)
+		{
+			if ((_pumpFilter != null) && !isSet(_pumpFilter, id))
+			{
+				return false;
+			}
+			
+			set(contribution._stats, id);
+			if (_pumpRead)
+			{
+				// The merged value may depend on other stats.
+				contribution._dependent = true;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -810,27 +921,19 @@ public class CreatureStat
 	}
 	
 	/**
+	 * Lock free stat ADD getter, reads the values published by the last recalculation.
 	 * @param stat
 	 * @param defaultValue
 	 * @return the add value
 	 */
 	public double getAdd(Stat stat, double defaultValue)
 	{
-		_lock.readLock().lock();
-		try
-		{
-			final Double val = _statsAdd.get(stat);
-			return val != null ? val.doubleValue() : defaultValue;
-		}
-		finally
-		{
-			_lock.readLock().unlock();
-		}
+		return getAddValue(stat, defaultValue);
 	}
 	
 	/**
 	 * Non blocking stat ADD getter.<br>
-	 * WARNING: Only use with effect handlers!
+	 * Effect handlers that are being pumped read the values of the ongoing recalculation.
 	 * @param stat
 	 * @return the add value
 	 */
@@ -841,15 +944,23 @@ public class CreatureStat
 	
 	/**
 	 * Non blocking stat ADD getter.<br>
-	 * WARNING: Only use with effect handlers!
+	 * Effect handlers that are being pumped read the values of the ongoing recalculation.
 	 * @param stat
 	 * @param defaultValue
 	 * @return the add value
 	 */
 	public double getAddValue(Stat stat, double defaultValue)
 	{
-		final Double val = _statsAdd.get(stat);
-		return val != null ? val.doubleValue() : defaultValue;
+		final int id = stat.ordinal();
+		if (_lock.isWriteLockedByCurrentThread())
+		{
+			if (_pumping != null)
+			{
+				_pumpRead = true;
+			}
+			return isSet(_addPresent, id) ? _addValues[id] : defaultValue;
+		}
+		return _snapshot.getAdd(id, defaultValue);
 	}
 	
 	/**
@@ -862,27 +973,19 @@ public class CreatureStat
 	}
 	
 	/**
+	 * Lock free stat MUL getter, reads the values published by the last recalculation.
 	 * @param stat
 	 * @param defaultValue
 	 * @return the mul value
 	 */
 	public double getMul(Stat stat, double defaultValue)
 	{
-		_lock.readLock().lock();
-		try
-		{
-			final Double val = _statsMul.get(stat);
-			return val != null ? val.doubleValue() : defaultValue;
-		}
-		finally
-		{
-			_lock.readLock().unlock();
-		}
+		return getMulValue(stat, defaultValue);
 	}
 	
 	/**
 	 * Non blocking stat MUL getter.<br>
-	 * WARNING: Only use with effect handlers!
+	 * Effect handlers that are being pumped read the values of the ongoing recalculation.
 	 * @param stat
 	 * @return the mul value
 	 */
@@ -893,15 +996,23 @@ public class CreatureStat
 	
 	/**
 	 * Non blocking stat MUL getter.<br>
-	 * WARNING: Only use with effect handlers!
+	 * Effect handlers that are being pumped read the values of the ongoing recalculation.
 	 * @param stat
 	 * @param defaultValue
 	 * @return the mul value
 	 */
 	public double getMulValue(Stat stat, double defaultValue)
 	{
-		final Double val = _statsMul.get(stat);
-		return val != null ? val.doubleValue() : defaultValue;
+		final int id = stat.ordinal();
+		if (_lock.isWriteLockedByCurrentThread())
+		{
+			if (_pumping != null)
+			{
+				_pumpRead = true;
+			}
+			return isSet(_mulPresent, id) ? _mulValues[id] : defaultValue;
+		}
+		return _snapshot.getMul(id, defaultValue);
 	}
 	
 	/**
@@ -927,173 +1038,349 @@ public class CreatureStat
 	
 	protected void resetStats()
 	{
-		_statsAdd.clear();
-		_statsMul.clear();
+		System.arraycopy(RESET_ADD_VALUES, 0, _addValues, 0, STAT_COUNT);
+		System.arraycopy(RESET_MUL_VALUES, 0, _mulValues, 0, STAT_COUNT);
+		System.arraycopy(RESET_ADD_PRESENT, 0, _addPresent, 0, MASK_LENGTH);
+		System.arraycopy(RESET_MUL_PRESENT, 0, _mulPresent, 0, MASK_LENGTH);
 		_vampiricSum = 0;
 		_mpVampiricSum = 0;
-		
-		// Initialize default values
-		for (Stat stat : Stat.values())
+	}
+	
+	/**
+	 * Resets only the given stats to their default values.
+	 * @param stats the stat mask
+	 */
+	private void resetStats(long[] stats)
+	{
+		for (int i = 0; i < MASK_LENGTH; i++)
 		{
-			if (stat.getResetAddValue() != 0)
+			long bits = stats[i];
+			while (bits != 0)
 			{
-				_statsAdd.put(stat, stat.getResetAddValue());
-			}
-			if (stat.getResetMulValue() != 0)
-			{
-				_statsMul.put(stat, stat.getResetMulValue());
+				final int id = (i << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				if (id < STAT_COUNT)
+				{
+					_addValues[id] = RESET_ADD_VALUES[id];
+					_mulValues[id] = RESET_MUL_VALUES[id];
+					copyBit(RESET_ADD_PRESENT, _addPresent, id);
+					copyBit(RESET_MUL_PRESENT, _mulPresent, id);
+				}
+				else if (id == VAMPIRIC_SUM)
+				{
+					_vampiricSum = 0;
+				}
+				else
+				{
+					_mpVampiricSum = 0;
+				}
 			}
 		}
 	}
 	
 	/**
-	 * Locks and resets all stats and recalculates all
+	 * Recalculates the stats of this creature.<br>
+	 * Only the stats touched by effects that were added, removed or depend on the creature's state are reset and pumped again.<br>
+	 * Everything is recalculated when that is not possible, like for delayed pumps or effects that read other stats.
 	 * @param broadcast
 	 */
 	public void recalculateStats(boolean broadcast)
 	{
-		// Copy old data before wiping it out.
-		final Map<Stat, Double> adds = !broadcast ? Collections.emptyMap() : new EnumMap<>(_statsAdd);
-		final Map<Stat, Double> muls = !broadcast ? Collections.emptyMap() : new EnumMap<>(_statsMul);
-		
+		final long start = System.nanoTime();
+		final StatSnapshot previous;
+		final StatSnapshot current;
 		_lock.writeLock().lock();
-		
 		try
 		{
-			// Wipe all the data.
-			resetStats();
+			previous = _snapshot;
 			
-			// Delayed pump effects.
-			final List<DelayedPumpHolder> delayedPumps = new LinkedList<>();
+			// Recalculations started by a pump cannot rely on the recorded contributions.
+			final boolean nested = _lock.getWriteHoldCount() > 1;
+			final List<StatContribution> contributions = collectContributions();
+			if (!nested && pumpChanged(contributions))
+			{
+				INCREMENTAL_RECALCULATIONS.increment();
+			}
+			else
+			{
+				pumpAll(contributions);
+				FULL_RECALCULATIONS.increment();
+			}
+			_contributions = nested ? null : contributions;
 			
-			// Call pump to each effect.
-			for (BuffInfo info : _creature.getEffectList().getPassives())
+			_attackSpeedMultiplier = Formulas.calcAtkSpdMultiplier(_creature);
+			_mAttackSpeedMultiplier = Formulas.calcMAtkSpdMultiplier(_creature);
+			
+			// Publish the new values to lock free readers.
+			current = new StatSnapshot(_addValues, _mulValues, _addPresent, _mulPresent, _vampiricSum, _mpVampiricSum);
+			_snapshot = current;
+		}
+		finally
+		{
+			_lock.writeLock().unlock();
+		}
+		RECALCULATION_TIME.add(System.nanoTime() - start);
+		
+		// Notify recalculation to child classes.
+		onRecalculateStats(broadcast);
+		
+		if (broadcast)
+		{
+			// Calculate the difference between old and new stats.
+			final Set<Stat> changed = EnumSet.noneOf(Stat.class);
+			double statAddResetValue;
+			double statMulResetValue;
+			double addsValue;
+			double mulsValue;
+			for (int id = 0; id < STAT_COUNT; id++)
 			{
-				if (info.isInUse() && info.getSkill().checkConditions(SkillConditionScope.PASSIVE, _creature, _creature.getTarget()))
+				statAddResetValue = RESET_ADD_VALUES[id];
+				statMulResetValue = RESET_MUL_VALUES[id];
+				addsValue = previous.getAdd(id, statAddResetValue);
+				mulsValue = previous.getMul(id, statMulResetValue);
+				if ((Double.compare(addsValue, statAddResetValue) == 0) || (Double.compare(mulsValue, statMulResetValue) == 0) || (Double.compare(addsValue, current.getAdd(id, statAddResetValue)) != 0) || (Double.compare(mulsValue, current.getMul(id, statMulResetValue)) != 0))
 				{
-					for (AbstractEffect effect : info.getEffects())
-					{
-						if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(info.getEffector(), info.getEffected(), info.getSkill()))
-						{
-							if (effect.delayPump())
-							{
-								delayedPumps.add(new DelayedPumpHolder(effect, info.getEffected(), info.getSkill()));
-							}
-							else
-							{
-								effect.pump(info.getEffected(), info.getSkill());
-							}
-						}
-					}
+					changed.add(STATS[id]);
 				}
 			}
-			for (BuffInfo info : _creature.getEffectList().getOptions())
+			_creature.broadcastModifiedStats(changed);
+		}
+	}
+	
+	/**
+	 * Collects the effects that can currently be pumped, reusing the contributions recorded by the previous recalculation.
+	 * @return the contributions in pump order
+	 */
+	private List<StatContribution> collectContributions()
+	{
+		final List<StatContribution> previous = _contributions == null ? Collections.emptyList() : _contributions;
+		final List<StatContribution> contributions = new ArrayList<>(Math.max(previous.size(), 16));
+		final int pass = ++_pass;
+		_previousIndex = 0;
+		_previousLookup = null;
+		
+		for (BuffInfo info : _creature.getEffectList().getPassives())
+		{
+			if (info.isInUse() && info.getSkill().checkConditions(SkillConditionScope.PASSIVE, _creature, _creature.getTarget()))
+			{
+				collectContributions(info, previous, contributions, pass);
+			}
+		}
+		for (BuffInfo info : _creature.getEffectList().getOptions())
+		{
+			if (info.isInUse())
+			{
+				collectContributions(info, previous, contributions, pass);
+			}
+		}
+		for (BuffInfo info : _creature.getEffectList().getEffects())
+		{
+			if (info.isInUse())
+			{
+				collectContributions(info, previous, contributions, pass);
+			}
+		}
+		
+		_previousLookup = null;
+		return contributions;
+	}
+	
+	private void collectContributions(BuffInfo info, List<StatContribution> previous, List<StatContribution> contributions, int pass)
+	{
+		for (AbstractEffect effect : info.getEffects())
+		{
+			if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(info.getEffector(), info.getEffected(), info.getSkill()))
 			{
-				if (info.isInUse())
+				StatContribution contribution = findPrevious(previous, info, effect);
+				if (contribution == null)
 				{
-					for (AbstractEffect effect : info.getEffects())
-					{
-						if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(info.getEffector(), info.getEffected(), info.getSkill()))
-						{
-							if (effect.delayPump())
-							{
-								delayedPumps.add(new DelayedPumpHolder(effect, info.getEffected(), info.getSkill()));
-							}
-							else
-							{
-								effect.pump(info.getEffected(), info.getSkill());
-							}
-						}
-					}
+					contribution = new StatContribution(info, effect);
+					contribution._retained = false;
 				}
+				else
+				{
+					contribution._retained = true;
+				}
+				contribution._pass = pass;
+				contributions.add(contribution);
 			}
-			for (BuffInfo info : _creature.getEffectList().getEffects())
+		}
+	}
+	
+	/**
+	 * Effects are collected in a stable order, so the previous contributions are walked in sequence and only looked up when an effect was added or removed.
+	 * @param previous the contributions of the previous recalculation
+	 * @param info
+	 * @param effect
+	 * @return the matching previous contribution, or {@code null} if the effect is new
+	 */
+	private StatContribution findPrevious(List<StatContribution> previous, BuffInfo info, AbstractEffect effect)
+	{
+		if (_previousLookup == null)
+		{
+			if (_previousIndex < previous.size())
 			{
-				if (info.isInUse())
+				final StatContribution contribution = previous.get(_previousIndex);
+				if ((contribution._info == info) && (contribution._effect == effect))
 				{
-					for (AbstractEffect effect : info.getEffects())
-					{
-						if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(info.getEffector(), info.getEffected(), info.getSkill()))
-						{
-							if (effect.delayPump())
-							{
-								delayedPumps.add(new DelayedPumpHolder(effect, info.getEffected(), info.getSkill()));
-							}
-							else
-							{
-								effect.pump(info.getEffected(), info.getSkill());
-							}
-						}
-					}
+					_previousIndex++;
+					return contribution;
 				}
 			}
 			
-			// Call delayed effect pumps.
-			if (!delayedPumps.isEmpty())
+			if (previous.isEmpty())
+			{
+				return null;
+			}
+			
+			_previousLookup = new HashMap<>(previous.size() * 2);
+			for (StatContribution contribution : previous)
+			{
+				_previousLookup.put(contribution, contribution);
+			}
+		}
+		return _previousLookup.get(new StatContribution(info, effect));
+	}
+	
+	/**
+	 * Wipes all the data and pumps every effect.
+	 * @param contributions
+	 */
+	private void pumpAll(List<StatContribution> contributions)
+	{
+		resetStats();
+		
+		// Call pump to each effect.
+		boolean delayed = false;
+		for (StatContribution contribution : contributions)
+		{
+			if (contribution._effect.delayPump())
+			{
+				delayed = true;
+			}
+			else
+			{
+				pump(contribution, null);
+			}
+		}
+		
+		// Call delayed effect pumps.
+		if (delayed)
+		{
+			for (StatContribution contribution : contributions)
 			{
-				for (DelayedPumpHolder holder : delayedPumps)
+				if (contribution._effect.delayPump())
 				{
-					holder.getEffect().pump(holder.getEffected(), holder.getSkill());
+					pump(contribution, null);
 				}
 			}
-			
-			// Pump for summon ABILITY_CHANGE abnormal type.
-			if (_creature.isSummon())
+		}
+		
+		// Pump for summon ABILITY_CHANGE abnormal type.
+		if (_creature.isSummon())
+		{
+			final Player player = _creature.asPlayer();
+			if ((player != null) && player.hasAbnormalType(AbnormalType.ABILITY_CHANGE))
 			{
-				final Player player = _creature.asPlayer();
-				if ((player != null) && player.hasAbnormalType(AbnormalType.ABILITY_CHANGE))
+				for (BuffInfo info : player.getEffectList().getEffects())
 				{
-					for (BuffInfo info : player.getEffectList().getEffects())
+					if (info.isInUse() && info.isAbnormalType(AbnormalType.ABILITY_CHANGE))
 					{
-						if (info.isInUse() && info.isAbnormalType(AbnormalType.ABILITY_CHANGE))
+						for (AbstractEffect effect : info.getEffects())
 						{
-							for (AbstractEffect effect : info.getEffects())
+							if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(_creature, _creature, info.getSkill()))
 							{
-								if (effect.canStart(info.getEffector(), info.getEffected(), info.getSkill()) && effect.canPump(_creature, _creature, info.getSkill()))
-								{
-									effect.pump(_creature, info.getSkill());
-								}
+								effect.pump(_creature, info.getSkill());
 							}
 						}
 					}
 				}
 			}
+		}
+	}
+	
+	/**
+	 * Resets and pumps again only the stats touched by added, removed or state dependent effects.
+	 * @param contributions
+	 * @return {@code true} if the stats were updated, {@code false} if a full recalculation is required
+	 */
+	private boolean pumpChanged(List<StatContribution> contributions)
+	{
+		final List<StatContribution> previous = _contributions;
+		if ((previous == null) || _creature.isSummon())
+		{
+			return false;
+		}
+		
+		final long[] dirty = new long[MASK_LENGTH];
+		for (StatContribution contribution : contributions)
+		{
+			if (contribution._effect.delayPump() || contribution._dependent)
+			{
+				return false;
+			}
 			
-			_attackSpeedMultiplier = Formulas.calcAtkSpdMultiplier(_creature);
-			_mAttackSpeedMultiplier = Formulas.calcMAtkSpdMultiplier(_creature);
+			// Effects that are not static may pump differently every time.
+			if (!contribution._effect.isStaticPump())
+			{
+				or(dirty, contribution._stats);
+			}
 		}
-		finally
+		for (StatContribution contribution : previous)
 		{
-			_lock.writeLock().unlock();
+			if (contribution._pass != _pass)
+			{
+				or(dirty, contribution._stats);
+			}
 		}
 		
-		// Notify recalculation to child classes.
-		onRecalculateStats(broadcast);
+		resetStats(dirty);
 		
-		if (broadcast)
+		for (StatContribution contribution : contributions)
 		{
-			// Calculate the difference between old and new stats.
-			final Set<Stat> changed = EnumSet.noneOf(Stat.class);
-			Double statAddResetValue;
-			Double statMulResetValue;
-			Double statAddValue;
-			Double statMulValue;
-			Double addsValue;
-			Double mulsValue;
-			for (Stat stat : Stat.values())
+			if (!contribution._retained || !contribution._effect.isStaticPump())
 			{
-				statAddResetValue = stat.getResetAddValue();
-				statMulResetValue = stat.getResetMulValue();
-				addsValue = adds.getOrDefault(stat, statAddResetValue);
-				mulsValue = muls.getOrDefault(stat, statMulResetValue);
-				statAddValue = _statsAdd.getOrDefault(stat, statAddResetValue);
-				statMulValue = _statsMul.getOrDefault(stat, statMulResetValue);
-				if (addsValue.equals(statAddResetValue) || mulsValue.equals(statMulResetValue) || !addsValue.equals(statAddValue) || !mulsValue.equals(statMulValue))
-				{
-					changed.add(stat);
-				}
+				pump(contribution, null);
+			}
+			else if (intersects(contribution._stats, dirty))
+			{
+				pump(contribution, dirty);
+			}
+			
+			if (contribution._dependent)
+			{
+				return false;
 			}
-			_creature.broadcastModifiedStats(changed);
+		}
+		return true;
+	}
+	
+	/**
+	 * Pumps a single effect, recording the stats it merges.
+	 * @param contribution
+	 * @param filter the stats that may be merged, or {@code null} to merge and record all of them
+	 */
+	private void pump(StatContribution contribution, long[] filter)
+	{
+		if (filter == null)
+		{
+			Arrays.fill(contribution._stats, 0);
+			contribution._dependent = false;
+		}
+		
+		_pumping = contribution;
+		_pumpFilter = filter;
+		_pumpRead = false;
+		try
+		{
+			final BuffInfo info = contribution._info;
+			contribution._effect.pump(info.getEffected(), info.getSkill());
+		}
+		finally
+		{
+			_pumping = null;
+			_pumpFilter = null;
+			_pumpRead = false;
 		}
 	}
 	
@@ -1200,38 +1487,28 @@ public class CreatureStat
 	
 	public void addToVampiricSum(double sum)
 	{
-		_vampiricSum += sum;
+		if (acceptPump(VAMPIRIC_SUM))
+		{
+			_vampiricSum += sum;
+		}
 	}
 	
 	public double getVampiricSum()
 	{
-		_lock.readLock().lock();
-		try
-		{
-			return _vampiricSum;
-		}
-		finally
-		{
-			_lock.readLock().unlock();
-		}
+		return _lock.isWriteLockedByCurrentThread() ? _vampiricSum : _snapshot._vampiricSum;
 	}
 	
 	public void addToMpVampiricSum(double sum)
 	{
-		_mpVampiricSum += sum;
+		if (acceptPump(MP_VAMPIRIC_SUM))
+		{
+			_mpVampiricSum += sum;
+		}
 	}
 	
 	public double getMpVampiricSum()
 	{
-		_lock.readLock().lock();
-		try
-		{
-			return _mpVampiricSum;
-		}
-		finally
-		{
-			_lock.readLock().unlock();
-		}
+		return _lock.isWriteLockedByCurrentThread() ? _mpVampiricSum : _snapshot._mpVampiricSum;
 	}
 	
 	/**
@@ -1262,4 +1539,116 @@ public class CreatureStat
 	{
 		return _fixedValue.remove(stat) != null;
 	}
+	
+	/**
+	 * @return the number of full and incremental stat recalculations and their average duration.
+	 */
+	public static String getStatistics()
+	{
+		final long full = FULL_RECALCULATIONS.sum();
+		final long incremental = INCREMENTAL_RECALCULATIONS.sum();
+		final long total = full + incremental;
+		final long averageTime = total == 0 ? 0 : RECALCULATION_TIME.sum() / total / 1000;
+		return "Recalculations: " + total + " (" + incremental + " incremental, " + full + " full), average " + averageTime + " us.";
+	}
+	
+	private static boolean isSet(long[] mask, int id)
+	{
+		return (mask[id >>> 6] & (1L << id)) != 0;
+	}
+	
+	private static void set(long[] mask, int id)
+	{
+		mask[id >>> 6] |= 1L << id;
+	}
+	
+	private static void copyBit(long[] from, long[] to, int id)
+	{
+		final long bit = 1L << id;
+		to[id >>> 6] = (to[id >>> 6] & ~bit) | (from[id >>> 6] & bit);
+	}
+	
+	private static void or(long[] mask, long[] other)
+	{
+		for (int i = 0; i < MASK_LENGTH; i++)
+		{
+			mask[i] |= other[i];
+		}
+	}
+	
+	private static boolean intersects(long[] mask, long[] other)
+	{
+		for (int i = 0; i < MASK_LENGTH; i++)
+		{
+			if ((mask[i] & other[i]) != 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * An effect pumped during a recalculation and the stats it merged.
+	 */
+	private static class StatContribution
+	{
+		private final BuffInfo _info;
+		private final AbstractEffect _effect;
+		private final long[] _stats = new long[MASK_LENGTH];
+		private int _pass;
+		private boolean _retained;
+		private boolean _dependent;
+		
+		public StatContribution(BuffInfo info, AbstractEffect effect)
+		{
+			_info = info;
+			_effect = effect;
+		}
+		
+		@Override
+		public boolean equals(Object object)
+		{
+			return (object instanceof StatContribution contribution) && (contribution._info == _info) && (contribution._effect == _effect);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return (31 * System.identityHashCode(_info)) + System.identityHashCode(_effect);
+		}
+	}
+	
+	/**
+	 * Immutable copy of the pumped values, read without locking.
+	 */
+	private static class StatSnapshot
+	{
+		private final double[] _addValues;
+		private final double[] _mulValues;
+		private final long[] _addPresent;
+		private final long[] _mulPresent;
+		private final double _vampiricSum;
+		private final double _mpVampiricSum;
+		
+		public StatSnapshot(double[] addValues, double[] mulValues, long[] addPresent, long[] mulPresent, double vampiricSum, double mpVampiricSum)
+		{
+			_addValues = addValues.clone();
+			_mulValues = mulValues.clone();
+			_addPresent = addPresent.clone();
+			_mulPresent = mulPresent.clone();
+			_vampiricSum = vampiricSum;
+			_mpVampiricSum = mpVampiricSum;
+		}
+		
+		public double getAdd(int id, double defaultValue)
+		{
+			return isSet(_addPresent, id) ? _addValues[id] : defaultValue;
+		}
+		
+		public double getMul(int id, double defaultValue)
+		{
+			return isSet(_mulPresent, id) ? _mulValues[id] : defaultValue;
+		}
+	}
 }
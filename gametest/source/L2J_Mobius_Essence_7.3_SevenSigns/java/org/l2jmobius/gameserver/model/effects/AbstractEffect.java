@@ -159,6 +159,16 @@ public abstract class AbstractEffect
 	{
 	}
 	
+	/**
+	 * Static pumps only merge fixed amounts into stats, regardless of the effected creature's state.<br>
+	 * They are not pumped again when other effects change, unless their stats need to be recalculated.
+	 * @return {@code true} if this effect's pump is static, {@code false} otherwise
+	 */
+	public boolean isStaticPump()
+	{
+		return false;
+	}
+	
 	/**
 	 * @return if pumped at a later time.
 	 */
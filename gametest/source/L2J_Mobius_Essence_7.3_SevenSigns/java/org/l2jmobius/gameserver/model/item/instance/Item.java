@@ -108,6 +108,7 @@ import org.l2jmobius.gameserver.network.serverpackets.SystemMessage;
 import org.l2jmobius.gameserver.taskmanagers.ItemAppearanceTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.ItemLifeTimeTaskManager;
 import org.l2jmobius.gameserver.taskmanagers.ItemManaTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.WriteBehindTaskManager;
 import org.l2jmobius.gameserver.util.GMAudit;
 
 /**
@@ -119,6 +120,9 @@ public class Item extends WorldObject
 	private static final Logger LOGGER = Logger.getLogger(Item.class.getName());
 	private static final Logger LOG_ITEMS = Logger.getLogger("item");
 	
+	private static final String UPDATE_ITEM = "UPDATE items SET owner_id=?,count=?,loc=?,loc_data=?,enchant_level=?,custom_type1=?,custom_type2=?,mana_left=?,time=? WHERE object_id = ?";
+	private static final WriteBehindTaskManager.Table<Item> ITEMS_TABLE = new WriteBehindTaskManager.Table<>("items", UPDATE_ITEM, Item::storeInBatch, Item::isStoredFor);
+	
 	/** Owner */
 	private int _ownerId;
 	private Player _owner;
@@ -182,6 +186,7 @@ public class Item extends WorldObject
 	private int _lastChange = 2; // 1 ??, 2 modified, 3 removed
 	private boolean _existsInDb; // if a record exists in DB.
 	private boolean _storedInDb; // if DB data is up-to-date.
+	private int _storedOwnerId; // owner of the DB record.
 	
 	private final ReentrantLock _dbLock = new ReentrantLock();
 	
@@ -254,6 +259,7 @@ public class Item extends WorldObject
 		this(rs.getInt("object_id"), ItemData.getInstance().getTemplate(rs.getInt("item_id")));
 		_count = rs.getLong("count");
 		_ownerId = rs.getInt("owner_id");
+		_storedOwnerId = _ownerId;
 		_loc = ItemLocation.valueOf(rs.getString("loc"));
 		_locData = rs.getInt("loc_data");
 		_enchantLevel = rs.getInt("enchant_level");
@@ -628,6 +634,10 @@ public class Item extends WorldObject
 	public void setDropTime(long time)
 	{
 		_dropTime = time;
+		if (Config.SAVE_DROPPED_ITEM && isSpawned())
+		{
+			ItemsOnGroundManager.getInstance().markChanged(this);
+		}
 	}
 	
 	public long getDropTime()
@@ -1691,19 +1701,16 @@ public class Item extends WorldObject
 			return;
 		}
 		
+		if (Config.WRITE_BEHIND_PERSISTENCE)
+		{
+			WriteBehindTaskManager.getInstance().add(ITEMS_TABLE, this);
+			return;
+		}
+		
 		try (Connection con = DatabaseFactory.getConnection();
-			PreparedStatement ps = con.prepareStatement("UPDATE items SET owner_id=?,count=?,loc=?,loc_data=?,enchant_level=?,custom_type1=?,custom_type2=?,mana_left=?,time=? WHERE object_id = ?"))
+			PreparedStatement ps = con.prepareStatement(UPDATE_ITEM))
 		{
-			ps.setInt(1, _ownerId);
-			ps.setLong(2, _count);
-			ps.setString(3, _loc.name());
-			ps.setInt(4, _locData);
-			ps.setInt(5, _enchantLevel);
-			ps.setInt(6, _type1);
-			ps.setInt(7, _type2);
-			ps.setInt(8, _mana);
-			ps.setLong(9, _time);
-			ps.setInt(10, getObjectId());
+			setUpdateParameters(ps);
 			ps.executeUpdate();
 			_existsInDb = true;
 			_storedInDb = true;
@@ -1726,6 +1733,72 @@ public class Item extends WorldObject
 		}
 	}
 	
+	private void setUpdateParameters(PreparedStatement ps) throws SQLException
+	{
+		ps.setInt(1, _ownerId);
+		ps.setLong(2, _count);
+		ps.setString(3, _loc.name());
+		ps.setInt(4, _locData);
+		ps.setInt(5, _enchantLevel);
+		ps.setInt(6, _type1);
+		ps.setInt(7, _type2);
+		ps.setInt(8, _mana);
+		ps.setLong(9, _time);
+		ps.setInt(10, getObjectId());
+		_storedOwnerId = _ownerId;
+	}
+	
+	/**
+	 * Used by the write-behind thread to find the pending items of a character, including items given away since they were last stored.
+	 * @param item the item
+	 * @param objectId the character object id
+	 * @return {@code true} if the item or its database record belongs to the character
+	 */
+	private static boolean isStoredFor(Item item, int objectId)
+	{
+		return (item._ownerId == objectId) || (item._storedOwnerId == objectId);
+	}
+	
+	/**
+	 * Adds the values of the item to a batched update, used by the write-behind thread.
+	 * @param ps the batched update statement
+	 * @param con the connection used to update the item attributes
+	 * @return {@code true} if the item still has to be updated, {@code false} otherwise
+	 * @throws SQLException
+	 */
+	private boolean storeInBatch(PreparedStatement ps, Connection con) throws SQLException
+	{
+		_dbLock.lock();
+		try
+		{
+			// Deleted meanwhile.
+			if (!_existsInDb || _wear)
+			{
+				return false;
+			}
+			
+			setUpdateParameters(ps);
+			_storedInDb = true;
+			
+			if (_augmentation != null)
+			{
+				updateItemOptions(con);
+			}
+			
+			if (_elementals != null)
+			{
+				updateItemElements(con);
+			}
+			
+			updateSpecialAbilities(con);
+			return true;
+		}
+		finally
+		{
+			_dbLock.unlock();
+		}
+	}
+	
 	/**
 	 * Insert the item in database
 	 */
@@ -1754,6 +1827,7 @@ public class Item extends WorldObject
 			ps.executeUpdate();
 			_existsInDb = true;
 			_storedInDb = true;
+			_storedOwnerId = _ownerId;
 			
 			if (_augmentation != null)
 			{
@@ -1783,6 +1857,11 @@ public class Item extends WorldObject
 			return;
 		}
 		
+		if (Config.WRITE_BEHIND_PERSISTENCE)
+		{
+			WriteBehindTaskManager.getInstance().remove(ITEMS_TABLE, this);
+		}
+		
 		try (Connection con = DatabaseFactory.getConnection())
 		{
 			try (PreparedStatement ps = con.prepareStatement("DELETE FROM items WHERE object_id = ?"))
@@ -1848,6 +1927,10 @@ public class Item extends WorldObject
 	public void setProtected(boolean isProtected)
 	{
 		_protected = isProtected;
+		if (Config.SAVE_DROPPED_ITEM && isSpawned())
+		{
+			ItemsOnGroundManager.getInstance().markChanged(this);
+		}
 	}
 	
 	public boolean isProtected()
@@ -18,11 +18,13 @@ package org.l2jmobius.gameserver.network;
 
 import java.util.logging.Logger;
 
+import org.l2jmobius.Config;
 import org.l2jmobius.commons.threads.ThreadPool;
 import org.l2jmobius.gameserver.managers.AntiFeedManager;
 import org.l2jmobius.gameserver.model.actor.Player;
 import org.l2jmobius.gameserver.network.serverpackets.ServerPacket;
 import org.l2jmobius.gameserver.taskmanagers.AttackStanceTaskManager;
+import org.l2jmobius.gameserver.taskmanagers.WriteBehindTaskManager;
 
 /**
  * @author NB4L1
@@ -138,6 +140,12 @@ public class Disconnection
 			{
 				_player.deleteMe();
 			}
+			
+			// Write pending updates before the character can be loaded again.
+			if ((_player != null) && Config.WRITE_BEHIND_PERSISTENCE)
+			{
+				WriteBehindTaskManager.getInstance().flush(_player);
+			}
 		}
 		catch (RuntimeException e)
 		{
@@ -19,18 +19,28 @@ package org.l2jmobius.gameserver.network;
 import org.l2jmobius.commons.network.Buffer;
 
 /**
+ * Game packet cipher.<br>
+ * Each byte is XORed with the key and the previous encrypted byte. The payload is processed eight bytes at a time,<br>
+ * the chaining inside each long being resolved with a prefix XOR, which keeps the output identical to the byte by byte form.
  * @author KenM
  */
 public class Encryption
 {
-	private final byte[] _inKey = new byte[16];
-	private final byte[] _outKey = new byte[16];
+	private static final long BYTE_SPREAD = 0x0101010101010101L;
+	
+	// The 16 byte keys, held as two little-endian longs each.
+	private long _inKey0;
+	private long _inKey1;
+	private long _outKey0;
+	private long _outKey1;
 	private boolean _isEnabled;
 	
 	public void setKey(byte[] key)
 	{
-		System.arraycopy(key, 0, _inKey, 0, 16);
-		System.arraycopy(key, 0, _outKey, 0, 16);
+		_inKey0 = getLong(key, 0);
+		_inKey1 = getLong(key, 8);
+		_outKey0 = _inKey0;
+		_outKey1 = _inKey1;
 	}
 	
 	public void encrypt(Buffer data, int offset, int size)
@@ -41,24 +51,34 @@ public class Encryption
 			return;
 		}
 		
+		final long key0 = _outKey0;
+		final long key1 = _outKey1;
+		final int blocks = size & ~7;
 		int encrypted = 0;
-		for (int i = 0; i < size; i++)
+		int i = 0;
+		for (; i < blocks; i += 8)
+		{
+			long value = data.readLong(offset + i) ^ ((i & 8) == 0 ? key0 : key1);
+			value ^= value << 8;
+			value ^= value << 16;
+			value ^= value << 32;
+			value ^= encrypted * BYTE_SPREAD;
+			data.writeLong(offset + i, value);
+			encrypted = (int) (value >>> 56);
+		}
+		
+		if (i < size)
 		{
-			final int raw = Byte.toUnsignedInt(data.readByte(offset + i));
-			encrypted = raw ^ _outKey[i & 0x0f] ^ encrypted;
-			data.writeByte(offset + i, (byte) encrypted);
+			final long key = (i & 8) == 0 ? key0 : key1;
+			for (int shift = 0; i < size; i++, shift += 8)
+			{
+				encrypted = (Byte.toUnsignedInt(data.readByte(offset + i)) ^ (int) (key >>> shift) ^ encrypted) & 0xff;
+				data.writeByte(offset + i, (byte) encrypted);
+			}
 		}
 		
 		// Shift key.
-		int old = _outKey[8] & 0xff;
-		old |= (_outKey[9] << 8) & 0xff00;
-		old |= (_outKey[10] << 16) & 0xff0000;
-		old |= (_outKey[11] << 24) & 0xff000000;
-		old += size;
-		_outKey[8] = (byte) (old & 0xff);
-		_outKey[9] = (byte) ((old >> 8) & 0xff);
-		_outKey[10] = (byte) ((old >> 16) & 0xff);
-		_outKey[11] = (byte) ((old >> 24) & 0xff);
+		_outKey1 = shiftKey(key1, size);
 	}
 	
 	public void decrypt(Buffer data, int offset, int size)
@@ -68,23 +88,51 @@ public class Encryption
 			return;
 		}
 		
-		int xOr = 0;
-		for (int i = 0; i < size; i++)
+		final long key0 = _inKey0;
+		final long key1 = _inKey1;
+		final int blocks = size & ~7;
+		long xOr = 0;
+		int i = 0;
+		for (; i < blocks; i += 8)
 		{
-			final int encrypted = Byte.toUnsignedInt(data.readByte(offset + i));
-			data.writeByte(offset + i, (byte) (encrypted ^ _inKey[i & 15] ^ xOr));
-			xOr = encrypted;
+			final long encrypted = data.readLong(offset + i);
+			data.writeLong(offset + i, encrypted ^ ((i & 8) == 0 ? key0 : key1) ^ ((encrypted << 8) | xOr));
+			xOr = encrypted >>> 56;
+		}
+		
+		if (i < size)
+		{
+			final long key = (i & 8) == 0 ? key0 : key1;
+			for (int shift = 0; i < size; i++, shift += 8)
+			{
+				final int encrypted = Byte.toUnsignedInt(data.readByte(offset + i));
+				data.writeByte(offset + i, (byte) (encrypted ^ (int) (key >>> shift) ^ (int) xOr));
+				xOr = encrypted;
+			}
 		}
 		
 		// Shift key.
-		int old = _inKey[8] & 0xff;
-		old |= (_inKey[9] << 8) & 0xff00;
-		old |= (_inKey[10] << 16) & 0xff0000;
-		old |= (_inKey[11] << 24) & 0xff000000;
-		old += size;
-		_inKey[8] = (byte) (old & 0xff);
-		_inKey[9] = (byte) ((old >> 8) & 0xff);
-		_inKey[10] = (byte) ((old >> 16) & 0xff);
-		_inKey[11] = (byte) ((old >> 24) & 0xff);
+		_inKey1 = shiftKey(key1, size);
+	}
+	
+	/**
+	 * Adds the packet size to key bytes 8 to 11, which are the low int of the second key long.
+	 * @param key the second key long
+	 * @param size the packet size
+	 * @return the shifted key long
+	 */
+	private static long shiftKey(long key, int size)
+	{
+		return (key & 0xFFFFFFFF00000000L) | ((key + size) & 0xFFFFFFFFL);
+	}
+	
+	private static long getLong(byte[] bytes, int index)
+	{
+		long value = 0;
+		for (int i = 7; i >= 0; i--)
+		{
+			value = (value << 8) | Byte.toUnsignedLong(bytes[index + i]);
+		}
+		return value;
 	}
 }
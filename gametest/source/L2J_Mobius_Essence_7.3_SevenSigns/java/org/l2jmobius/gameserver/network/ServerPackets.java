@@ -1197,6 +1197,16 @@ public enum ServerPackets
 		_id2 = id2;
 	}
 	
+	public int getId1()
+	{
+		return _id1;
+	}
+	
+	public int getId2()
+	{
+		return _id2;
+	}
+	
 	public void writeId(ServerPacket packet, WritableBuffer buffer)
 	{
 		if (Config.DEBUG_SERVER_PACKETS)
@@ -16,7 +16,12 @@
  */
 package org.l2jmobius.gameserver.network.serverpackets;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
 import org.l2jmobius.gameserver.cache.HtmCache;
+import org.l2jmobius.gameserver.cache.HtmTemplate;
 import org.l2jmobius.gameserver.model.actor.Player;
 import org.l2jmobius.gameserver.network.PacketLogger;
 import org.l2jmobius.gameserver.network.enums.HtmlActionScope;
@@ -33,6 +38,10 @@ public abstract class AbstractHtmlPacket extends ServerPacket
 	private String _html = null;
 	private boolean _disabledValidation = false;
 	
+	// Html from the cache, with the placeholder values not applied yet.
+	private HtmTemplate _template = null;
+	private Map<String, String> _values = null;
+	
 	protected AbstractHtmlPacket()
 	{
 		_npcObjId = 0;
@@ -70,6 +79,8 @@ public abstract class AbstractHtmlPacket extends ServerPacket
 	
 	public void setHtml(String html)
 	{
+		_template = null;
+		_values = null;
 		if (html.length() > 17200)
 		{
 			PacketLogger.warning(getClass().getSimpleName() + ": Html is too long! this will crash the client!");
@@ -90,20 +101,71 @@ public abstract class AbstractHtmlPacket extends ServerPacket
 	
 	public boolean setFile(Player player, String path)
 	{
-		final String content = HtmCache.getInstance().getHtm(player, path);
-		if (content == null)
+		final HtmTemplate template = HtmCache.getInstance().getTemplate(player, path);
+		if (template == null)
 		{
 			setHtml("<html><body>My Text is missing:<br>" + path + "</body></html>");
 			PacketLogger.warning(getClass().getSimpleName() + ": Missing html page " + path);
 			return false;
 		}
+		
+		final String content = template.getText();
 		setHtml(content);
+		
+		// Placeholders are filled by the template, unless the content was changed by setHtml.
+		if ((_html == content) && template.canRender())
+		{
+			_template = template;
+			_values = new HashMap<>();
+		}
 		return true;
 	}
 	
 	public void replace(String pattern, String value)
 	{
-		_html = _html.replaceAll(pattern, value.replaceAll("\\$", "\\\\\\$"));
+		// The first value of a placeholder is kept, like the first replace leaves nothing to replace.
+		// A value with % could contain placeholders replaced later, so it is applied immediately.
+		if ((_template != null) && HtmTemplate.isPlaceholder(pattern) && (value.indexOf('%') < 0))
+		{
+			_values.putIfAbsent(pattern, value);
+			return;
+		}
+		
+		applyTemplate();
+		if (isLiteral(pattern))
+		{
+			_html = _html.replace(pattern, value);
+		}
+		else
+		{
+			_html = _html.replaceAll(pattern, Matcher.quoteReplacement(value));
+		}
+	}
+	
+	private void applyTemplate()
+	{
+		if (_template != null)
+		{
+			_html = _template.render(_values);
+			_template = null;
+			_values = null;
+		}
+	}
+	
+	/**
+	 * @param pattern the replace pattern
+	 * @return {@code true} if the pattern has no regular expression characters, so it can be replaced as plain text
+	 */
+	private static boolean isLiteral(String pattern)
+	{
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			if ("\\^$.|?*+()[]{}".indexOf(pattern.charAt(i)) >= 0)
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	public void replace(String pattern, CharSequence value)
@@ -144,7 +206,7 @@ public abstract class AbstractHtmlPacket extends ServerPacket
 		}
 		if (player != null)
 		{
-			HtmlUtil.buildHtmlActionCache(player, getScope(), _npcObjId, _html);
+			HtmlUtil.buildHtmlActionCache(player, getScope(), _npcObjId, getHtml());
 		}
 	}
 	
@@ -155,6 +217,7 @@ public abstract class AbstractHtmlPacket extends ServerPacket
 	
 	public String getHtml()
 	{
+		applyTemplate();
 		return _html;
 	}
 	
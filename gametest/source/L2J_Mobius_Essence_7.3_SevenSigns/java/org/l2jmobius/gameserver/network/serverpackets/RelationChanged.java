@@ -103,6 +103,11 @@ public class RelationChanged extends ServerPacket
 		_multi.add(r);
 	}
 	
+	public boolean isEmpty()
+	{
+		return (_multi == null) ? (_singled == null) : _multi.isEmpty();
+	}
+	
 	@Override
 	public void writeImpl(GameClient client, WritableBuffer buffer)
 	{
@@ -21,8 +21,6 @@
 package org.l2jmobius.gameserver.network.serverpackets.ranking;
 
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
 
 import org.l2jmobius.commons.network.WritableBuffer;
 import org.l2jmobius.gameserver.data.xml.PetDataTable;
@@ -40,8 +38,8 @@ public class ExPetRankingMyInfo extends ServerPacket
 {
 	private final int _petId;
 	private final Player _player;
-	private final Optional<Entry<Integer, StatSet>> _ranking;
-	private final Optional<Entry<Integer, StatSet>> _snapshotRanking;
+	private final int _ranking;
+	private final int _snapshotRanking;
 	private final Map<Integer, StatSet> _rankingList;
 	private final Map<Integer, StatSet> _snapshotList;
 	
@@ -49,8 +47,8 @@ public class ExPetRankingMyInfo extends ServerPacket
 	{
 		_player = player;
 		_petId = petId;
-		_ranking = RankManager.getInstance().getPetRankList().entrySet().stream().filter(it -> it.getValue().getInt("controlledItemObjId") == petId).findFirst();
-		_snapshotRanking = RankManager.getInstance().getSnapshotPetRankList().entrySet().stream().filter(it -> it.getValue().getInt("controlledItemObjId") == petId).findFirst();
+		_ranking = RankManager.getInstance().getPetRank(petId);
+		_snapshotRanking = RankManager.getInstance().getSnapshotPetRank(petId);
 		_rankingList = RankManager.getInstance().getPetRankList();
 		_snapshotList = RankManager.getInstance().getSnapshotPetRankList();
 	}
@@ -63,8 +61,8 @@ public class ExPetRankingMyInfo extends ServerPacket
 		buffer.writeShort(1);
 		buffer.writeInt(-1);
 		buffer.writeInt(0);
-		buffer.writeInt(_ranking.isPresent() ? _ranking.get().getKey() : 0); // server rank
-		buffer.writeInt(_snapshotRanking.isPresent() ? _snapshotRanking.get().getKey() : 0); // snapshot server rank
+		buffer.writeInt(_ranking); // server rank
+		buffer.writeInt(_snapshotRanking); // snapshot server rank
 		if (_petId > 0)
 		{
 			int typeRank = 1;
@@ -45,8 +45,8 @@ public class ExPledgeRankingMyInfo extends ServerPacket
 	{
 		ServerPackets.EX_PLEDGE_RANKING_MY_INFO.writeId(this, buffer);
 		final Clan clan = _player.getClan();
-		buffer.writeInt(clan != null ? RankManager.getInstance().getClanRankList().entrySet().stream().anyMatch(it -> it.getValue().getInt("clan_id") == _player.getClanId()) ? RankManager.getInstance().getClanRankList().entrySet().stream().filter(it -> it.getValue().getInt("clan_id") == _player.getClanId()).findFirst().orElse(null).getKey() : 0 : 0); // rank
-		buffer.writeInt(clan != null ? RankManager.getInstance().getSnapshotClanRankList().entrySet().stream().anyMatch(it -> it.getValue().getInt("clan_id") == _player.getClanId()) ? RankManager.getInstance().getSnapshotClanRankList().entrySet().stream().filter(it -> it.getValue().getInt("clan_id") == _player.getClanId()).findFirst().orElse(null).getKey() : 0 : 0); // snapshot
+		buffer.writeInt(clan != null ? RankManager.getInstance().getClanRank(clan.getId()) : 0); // rank
+		buffer.writeInt(clan != null ? RankManager.getInstance().getSnapshotClanRank(clan.getId()) : 0); // snapshot
 		buffer.writeInt(clan != null ? clan.getExp() : 0); // exp
 	}
 }
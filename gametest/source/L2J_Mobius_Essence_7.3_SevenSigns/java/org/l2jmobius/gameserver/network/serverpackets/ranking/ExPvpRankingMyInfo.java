@@ -21,7 +21,6 @@
 package org.l2jmobius.gameserver.network.serverpackets.ranking;
 
 import java.util.Map;
-import java.util.Optional;
 
 import org.l2jmobius.commons.network.WritableBuffer;
 import org.l2jmobius.gameserver.managers.RankManager;
@@ -38,44 +37,29 @@ public class ExPvpRankingMyInfo extends ServerPacket
 {
 	private final Player _player;
 	private final Map<Integer, StatSet> _playerList;
-	private final Map<Integer, StatSet> _snapshotList;
+	private final int _rank;
+	private final int _snapshotRank;
 	
 	public ExPvpRankingMyInfo(Player player)
 	{
 		_player = player;
 		_playerList = RankManager.getInstance().getPvpRankList();
-		_snapshotList = RankManager.getInstance().getSnapshotPvpRankList();
+		_rank = RankManager.getInstance().getPvpRank(player.getObjectId());
+		_snapshotRank = RankManager.getInstance().getSnapshotPvpRank(player.getObjectId());
 	}
 	
 	@Override
 	public void writeImpl(GameClient client, WritableBuffer buffer)
 	{
 		ServerPackets.EX_PVP_RANKING_MY_INFO.writeId(this, buffer);
-		if (!_playerList.isEmpty())
+		final StatSet ss = _rank > 0 ? _playerList.get(_rank) : null;
+		if ((ss != null) && (ss.getInt("charId") == _player.getObjectId()))
 		{
-			boolean found = false;
-			for (Integer id : _playerList.keySet())
-			{
-				final StatSet ss = _playerList.get(id);
-				if (ss.getInt("charId") == _player.getObjectId())
-				{
-					final Optional<Map.Entry<Integer, StatSet>> snapshotValue = _snapshotList.entrySet().stream().filter(it -> it.getValue().getInt("charId") == _player.getObjectId()).findFirst();
-					found = true;
-					buffer.writeLong(ss.getInt("points")); // pvp points
-					buffer.writeInt(id); // current rank
-					buffer.writeInt(snapshotValue.isPresent() ? snapshotValue.get().getKey() : id); // ingame shown change in rank as this value - current rank value.
-					buffer.writeInt(ss.getInt("kills")); // kills
-					buffer.writeInt(ss.getInt("deaths")); // deaths
-				}
-			}
-			if (!found)
-			{
-				buffer.writeLong(0); // pvp points
-				buffer.writeInt(0); // current rank
-				buffer.writeInt(0); // ingame shown change in rank as this value - current rank value.
-				buffer.writeInt(0); // kills
-				buffer.writeInt(0); // deaths
-			}
+			buffer.writeLong(ss.getInt("points")); // pvp points
+			buffer.writeInt(_rank); // current rank
+			buffer.writeInt(_snapshotRank > 0 ? _snapshotRank : _rank); // ingame shown change in rank as this value - current rank value.
+			buffer.writeInt(ss.getInt("kills")); // kills
+			buffer.writeInt(ss.getInt("deaths")); // deaths
 		}
 		else
 		{
@@ -20,11 +20,8 @@
  */
 package org.l2jmobius.gameserver.network.serverpackets.ranking;
 
-import java.util.Map;
-
 import org.l2jmobius.commons.network.WritableBuffer;
 import org.l2jmobius.gameserver.managers.RankManager;
-import org.l2jmobius.gameserver.model.StatSet;
 import org.l2jmobius.gameserver.model.actor.Player;
 import org.l2jmobius.gameserver.network.GameClient;
 import org.l2jmobius.gameserver.network.ServerPackets;
@@ -36,62 +33,42 @@ import org.l2jmobius.gameserver.network.serverpackets.ServerPacket;
 public class ExRankingCharInfo extends ServerPacket
 {
 	private final Player _player;
-	private final Map<Integer, StatSet> _playerList;
-	private final Map<Integer, StatSet> _snapshotList;
 	
 	public ExRankingCharInfo(Player player)
 	{
 		_player = player;
-		_playerList = RankManager.getInstance().getRankList();
-		_snapshotList = RankManager.getInstance().getSnapshotList();
 	}
 	
 	@Override
 	public void writeImpl(GameClient client, WritableBuffer buffer)
 	{
 		ServerPackets.EX_RANKING_CHAR_INFO.writeId(this, buffer);
-		if (!_playerList.isEmpty())
+		final RankManager manager = RankManager.getInstance();
+		final int rank = manager.getPlayerGlobalRank(_player);
+		if (rank > 0)
 		{
-			for (Integer id : _playerList.keySet())
+			final int classRank = manager.getPlayerClassRank(_player);
+			buffer.writeInt(rank); // server rank
+			buffer.writeInt(manager.getPlayerRaceRank(_player)); // race rank
+			buffer.writeInt(classRank); // class rank
+			final int snapshotRank = manager.getSnapshotGlobalRank(_player.getObjectId());
+			if (snapshotRank > 0)
 			{
-				final StatSet player = _playerList.get(id);
-				if (player.getInt("charId") == _player.getObjectId())
-				{
-					buffer.writeInt(id); // server rank
-					buffer.writeInt(player.getInt("raceRank")); // race rank
-					buffer.writeInt(player.getInt("classRank")); // class rank
-					for (Integer id2 : _snapshotList.keySet())
-					{
-						final StatSet snapshot = _snapshotList.get(id2);
-						if (player.getInt("charId") == snapshot.getInt("charId"))
-						{
-							buffer.writeInt(id2); // server rank snapshot
-							buffer.writeInt(snapshot.getInt("classRank")); // class rank snapshot
-							buffer.writeInt(player.getInt("classRank")); // class rank snapshot
-							buffer.writeInt(0);
-							buffer.writeInt(0);
-							buffer.writeInt(0);
-							return;
-						}
-					}
-				}
+				buffer.writeInt(snapshotRank); // server rank snapshot
+				buffer.writeInt(manager.getSnapshotClassRank(_player.getObjectId())); // class rank snapshot
+				buffer.writeInt(classRank); // class rank snapshot
+				buffer.writeInt(0);
+				buffer.writeInt(0);
+				buffer.writeInt(0);
+				return;
 			}
-			
-			buffer.writeInt(0); // server rank
-			buffer.writeInt(0); // race rank
-			buffer.writeInt(0); // server rank snapshot
-			buffer.writeInt(0); // race rank snapshot
-			buffer.writeInt(0); // nClassRank
-			buffer.writeInt(0); // nClassRank_Snapshot snapshot
-		}
-		else
-		{
-			buffer.writeInt(0); // server rank
-			buffer.writeInt(0); // race rank
-			buffer.writeInt(0); // server rank snapshot
-			buffer.writeInt(0); // race rank snapshot
-			buffer.writeInt(0); // nClassRank
-			buffer.writeInt(0); // nClassRank_Snapshot snapshot
 		}
+		
+		buffer.writeInt(0); // server rank
+		buffer.writeInt(0); // race rank
+		buffer.writeInt(0); // server rank snapshot
+		buffer.writeInt(0); // race rank snapshot
+		buffer.writeInt(0); // nClassRank
+		buffer.writeInt(0); // nClassRank_Snapshot snapshot
 	}
 }
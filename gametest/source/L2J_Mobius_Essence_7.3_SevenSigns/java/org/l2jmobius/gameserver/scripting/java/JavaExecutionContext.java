@@ -24,10 +24,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.tools.Diagnostic;
@@ -36,6 +44,10 @@ import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
+import com.sun.source.util.JavacTask;
+
+import org.l2jmobius.commons.util.TraceUtil;
+import org.l2jmobius.gameserver.scripting.ScriptEngineManager;
 import org.l2jmobius.gameserver.scripting.annotations.Disabled;
 
 /**
@@ -49,8 +61,12 @@ public class JavaExecutionContext
 	private static final ClassLoader CLASS_LOADER = ClassLoader.getSystemClassLoader();
 	private static final List<String> OPTIONS = new ArrayList<>();
 	
+	private static final int MIN_BATCH_SIZE = 100;
+	
 	private static Path _currentExecutingScript;
 	
+	private final ScriptingCache _cache;
+	
 	public JavaExecutionContext()
 	{
 		// The Java version is hardcoded to "1.8" for both the source and target options in the compiler settings.
@@ -60,6 +76,8 @@ public class JavaExecutionContext
 		addOptionIfNotNull(OPTIONS, "source,lines,vars", "-g:");
 		OPTIONS.add("-target");
 		OPTIONS.add("1.8");
+		
+		_cache = new ScriptingCache(String.join(" ", OPTIONS));
 	}
 	
 	private boolean addOptionIfNotNull(List<String> list, String nullChecked, String before)
@@ -82,73 +100,252 @@ public class JavaExecutionContext
 		return true;
 	}
 	
-	public Map<Path, Throwable> executeScripts(Iterable<Path> sourcePaths) throws Exception
+	public synchronized Map<Path, Throwable> executeScripts(Iterable<Path> sourcePaths) throws Exception
 	{
-		final DiagnosticCollector<JavaFileObject> fileManagerDiagnostics = new DiagnosticCollector<>();
-		final DiagnosticCollector<JavaFileObject> compilationDiagnostics = new DiagnosticCollector<>();
+		final long compileStart = System.currentTimeMillis();
+		_cache.validate();
+		
+		final Map<Path, String> scripts = new LinkedHashMap<>();
+		final List<Path> changedSources = new ArrayList<>();
+		for (Path sourcePath : sourcePaths)
+		{
+			final String key = ScriptingCache.getKey(sourcePath);
+			scripts.put(sourcePath, key);
+			if (!_cache.contains(key))
+			{
+				changedSources.add(sourcePath);
+			}
+		}
+		
+		final Map<String, Long> compileTimes = new HashMap<>();
+		final int batchCount = changedSources.isEmpty() ? 0 : compile(changedSources, compileTimes);
+		final long compileTime = System.currentTimeMillis() - compileStart;
+		
+		final long initStart = System.currentTimeMillis();
+		final Map<String, byte[]> compiledClasses = _cache.getClasses();
+		final Map<String, Long> initTimes = new HashMap<>();
+		final Map<Path, Throwable> executionFailures = new HashMap<>();
+		for (Entry<Path, String> script : scripts.entrySet())
+		{
+			final Path sourcePath = script.getKey();
+			final String javaName = _cache.getMainClass(script.getValue());
+			if (javaName == null)
+			{
+				LOGGER.severe("Compilation successful, but class corresponding to " + sourcePath.toString() + " not found!");
+				continue;
+			}
+			
+			final long start = System.nanoTime();
+			_currentExecutingScript = sourcePath;
+			try
+			{
+				final ScriptingClassLoader loader = new ScriptingClassLoader(CLASS_LOADER, compiledClasses);
+				final Class<?> javaClass = loader.loadClass(javaName);
+				executeMainMethod(javaClass, sourcePath);
+			}
+			catch (Exception e)
+			{
+				executionFailures.put(sourcePath, e);
+			}
+			finally
+			{
+				_currentExecutingScript = null;
+			}
+			initTimes.put(script.getValue(), System.nanoTime() - start);
+		}
+		final long initTime = System.currentTimeMillis() - initStart;
+		
+		_cache.save();
+		
+		LOGGER.info(getClass().getSimpleName() + ": Loaded " + scripts.size() + " scripts, " + (scripts.size() - changedSources.size()) + " from cache. Compiled " + changedSources.size() + " in " + batchCount + " batches (" + compileTime + " ms), initialized in " + initTime + " ms.");
+		if (scripts.size() > 1)
+		{
+			if (!compileTimes.isEmpty())
+			{
+				LOGGER.info(getClass().getSimpleName() + ": Slowest compilations " + getSlowest(compileTimes) + ".");
+			}
+			LOGGER.info(getClass().getSimpleName() + ": Slowest initializations " + getSlowest(initTimes) + ".");
+		}
+		if (LOGGER.isLoggable(Level.FINE))
+		{
+			for (String key : scripts.values())
+			{
+				LOGGER.fine(getClass().getSimpleName() + ": " + key + " compiled in " + (compileTimes.getOrDefault(key, 0L) / 1000000) + " ms, initialized in " + (initTimes.getOrDefault(key, 0L) / 1000000) + " ms.");
+			}
+		}
+		
+		return executionFailures;
+	}
+	
+	/**
+	 * Compiles the given sources in parallel batches and stores the resulting classes in the cache.<br>
+	 * Each batch compiles a contiguous range of the sorted sources, so scripts of the same package tend to share a batch. Other scripts they reference are read from the source path.
+	 * @param sources the sources to compile
+	 * @param compileTimes receives the compile time of each script, in nanoseconds
+	 * @return the number of batches
+	 * @throws Exception if a source cannot be read or compiled
+	 */
+	private int compile(List<Path> sources, Map<String, Long> compileTimes) throws Exception
+	{
+		// Hash before compiling, so that a source edited meanwhile is compiled again next time.
+		final Map<String, byte[]> hashes = new HashMap<>();
+		for (Path source : sources)
+		{
+			hashes.put(ScriptingCache.getKey(source), ScriptingCache.hash(source));
+		}
+		
+		Collections.sort(sources);
+		final int batchCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), sources.size() / MIN_BATCH_SIZE));
+		final List<CompileBatch> batches = new ArrayList<>(batchCount);
+		for (int i = 0; i < batchCount; i++)
+		{
+			batches.add(new CompileBatch(sources.subList((i * sources.size()) / batchCount, ((i + 1) * sources.size()) / batchCount)));
+		}
+		
+		if (batchCount == 1)
+		{
+			batches.get(0).run();
+		}
+		else
+		{
+			final ExecutorService executor = Executors.newFixedThreadPool(batchCount);
+			try
+			{
+				final List<Future<?>> tasks = new ArrayList<>(batchCount);
+				for (CompileBatch batch : batches)
+				{
+					tasks.add(executor.submit(batch));
+				}
+				for (Future<?> task : tasks)
+				{
+					task.get();
+				}
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
 		
-		try (ScriptingFileManager fileManager = new ScriptingFileManager(COMPILER.getStandardFileManager(fileManagerDiagnostics, null, StandardCharsets.UTF_8)))
+		final StringBuilder errors = new StringBuilder();
+		for (CompileBatch batch : batches)
 		{
-			// We really need an iterable of files or strings.
-			final List<String> sourcePathStrings = new ArrayList<>();
-			for (Path sourcePath : sourcePaths)
+			if (!batch._successful)
 			{
-				sourcePathStrings.add(sourcePath.toAbsolutePath().toString());
+				errors.append(batch._output);
+			}
+		}
+		if (errors.length() > 0)
+		{
+			throw new RuntimeException(errors.toString());
+		}
+		
+		// Classes referenced from other sources are compiled by every batch that needs them, the first copy is kept.
+		final Map<String, Map<String, byte[]>> scriptClasses = new HashMap<>();
+		for (String key : hashes.keySet())
+		{
+			// Sources without classes, such as package-info, are cached as well.
+			scriptClasses.put(key, new LinkedHashMap<>());
+		}
+		final Map<String, Set<String>> scriptDependencies = new HashMap<>();
+		final Map<String, String> classScripts = _cache.getClassScripts();
+		for (CompileBatch batch : batches)
+		{
+			for (ScriptingOutputFileObject compiledClass : batch._compiledClasses)
+			{
+				if (compiledClass.getSourcePath() != null)
+				{
+					final String key = ScriptingCache.getKey(compiledClass.getSourcePath());
+					scriptClasses.computeIfAbsent(key, _ -> new LinkedHashMap<>()).putIfAbsent(compiledClass.getJavaName(), compiledClass.getJavaData());
+					classScripts.put(compiledClass.getJavaName(), key);
+				}
 			}
 			
-			final StringWriter strOut = new StringWriter();
-			final PrintWriter out = new PrintWriter(strOut);
-			final boolean compilationSuccess = COMPILER.getTask(out, fileManager, compilationDiagnostics, OPTIONS, null, fileManager.getJavaFileObjectsFromStrings(sourcePathStrings)).call();
-			if (!compilationSuccess)
+			batch._listener.getDependencies().forEach((key, classes) -> scriptDependencies.computeIfAbsent(key, _ -> new HashSet<>()).addAll(classes));
+			batch._listener.getTimes().forEach((key, time) -> compileTimes.merge(key, time, Long::sum));
+		}
+		
+		for (Entry<String, Map<String, byte[]>> entry : scriptClasses.entrySet())
+		{
+			final String key = entry.getKey();
+			final Set<String> dependencies = new HashSet<>();
+			for (String referencedClass : scriptDependencies.getOrDefault(key, Collections.emptySet()))
 			{
-				logDiagnostics(out, fileManagerDiagnostics, compilationDiagnostics);
-				throw new RuntimeException(strOut.toString());
+				final String dependency = classScripts.get(referencedClass);
+				if ((dependency != null) && !dependency.equals(key))
+				{
+					dependencies.add(dependency);
+				}
 			}
 			
-			final Map<Path, Throwable> executionFailures = new HashMap<>();
-			final Iterable<ScriptingOutputFileObject> compiledClasses = fileManager.getCompiledClasses();
-			for (Path sourcePath : sourcePaths)
+			byte[] hash = hashes.get(key);
+			if (hash == null)
+			{
+				hash = ScriptingCache.hash(ScriptEngineManager.SCRIPT_FOLDER.resolve(key));
+			}
+			_cache.put(key, hash, dependencies, entry.getValue());
+		}
+		
+		return batchCount;
+	}
+	
+	private static String getSlowest(Map<String, Long> times)
+	{
+		final StringBuilder sb = new StringBuilder();
+		times.entrySet().stream().sorted(Entry.<String, Long> comparingByValue().reversed()).limit(5).forEach(entry ->
+		{
+			sb.append(sb.length() == 0 ? "" : ", ").append(entry.getKey()).append(' ').append(entry.getValue() / 1000000).append(" ms");
+		});
+		return sb.toString();
+	}
+	
+	/**
+	 * Compiles a part of the scripts with its own compiler task and file manager.
+	 */
+	private class CompileBatch implements Runnable
+	{
+		private final List<Path> _sources;
+		private final StringWriter _output = new StringWriter();
+		private Iterable<ScriptingOutputFileObject> _compiledClasses = Collections.emptyList();
+		private ScriptingTaskListener _listener;
+		private boolean _successful = false;
+		
+		public CompileBatch(List<Path> sources)
+		{
+			_sources = sources;
+		}
+		
+		@Override
+		public void run()
+		{
+			final DiagnosticCollector<JavaFileObject> fileManagerDiagnostics = new DiagnosticCollector<>();
+			final DiagnosticCollector<JavaFileObject> compilationDiagnostics = new DiagnosticCollector<>();
+			final PrintWriter out = new PrintWriter(_output);
+			try (ScriptingFileManager fileManager = new ScriptingFileManager(COMPILER.getStandardFileManager(fileManagerDiagnostics, null, StandardCharsets.UTF_8)))
 			{
-				boolean found = false;
-				for (ScriptingOutputFileObject compiledClass : compiledClasses)
+				// We really need an iterable of files or strings.
+				final List<String> sourcePathStrings = new ArrayList<>();
+				for (Path sourcePath : _sources)
 				{
-					final Path compiledSourcePath = compiledClass.getSourcePath();
-					// sourcePath can be relative, so we have to use endsWith
-					if ((compiledSourcePath != null) && (compiledSourcePath.equals(sourcePath) || compiledSourcePath.endsWith(sourcePath)))
-					{
-						final String javaName = compiledClass.getJavaName();
-						if (javaName.indexOf('$') != -1)
-						{
-							continue;
-						}
-						
-						found = true;
-						_currentExecutingScript = compiledSourcePath;
-						try
-						{
-							final ScriptingClassLoader loader = new ScriptingClassLoader(CLASS_LOADER, compiledClasses);
-							final Class<?> javaClass = loader.loadClass(javaName);
-							executeMainMethod(javaClass, compiledSourcePath);
-						}
-						catch (Exception e)
-						{
-							executionFailures.put(compiledSourcePath, e);
-						}
-						finally
-						{
-							_currentExecutingScript = null;
-						}
-						break;
-					}
+					sourcePathStrings.add(sourcePath.toAbsolutePath().toString());
 				}
 				
-				if (!found)
+				final JavacTask task = (JavacTask) COMPILER.getTask(out, fileManager, compilationDiagnostics, OPTIONS, null, fileManager.getJavaFileObjectsFromStrings(sourcePathStrings));
+				_listener = new ScriptingTaskListener(task);
+				task.addTaskListener(_listener);
+				_successful = task.call();
+				if (!_successful)
 				{
-					LOGGER.severe("Compilation successful, but class corresponding to " + sourcePath.toString() + " not found!");
+					logDiagnostics(out, fileManagerDiagnostics, compilationDiagnostics);
 				}
+				_compiledClasses = fileManager.getCompiledClasses();
 			}
-			
-			return executionFailures;
+			catch (Exception e)
+			{
+				_successful = false;
+				out.println(TraceUtil.getStackTrace(e));
+			}
+			out.flush();
 		}
 	}
 	
@@ -0,0 +1,401 @@
+/*
+ * This file is part of the L2J Mobius project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.gameserver.scripting.java;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.l2jmobius.Config;
+
+/**
+ * Compiled script classes, stored by the source file they were compiled from.<br>
+ * Every script keeps the SHA-256 hash of its source and the scripts it references, so its classes are only reused while neither the script nor anything it depends on has changed.<br>
+ * When {@link Config#SCRIPT_CACHE} is enabled, the scripts are kept in a file of the datapack cache directory between restarts. Otherwise they are released after each execution.
+ * @author Mobius
+ */
+public class ScriptingCache
+{
+	private static final Logger LOGGER = Logger.getLogger(ScriptingCache.class.getName());
+	
+	private static final int MAGIC = 0x4C32534D;
+	private static final int VERSION = 1;
+	private static final int HASH_LENGTH = 32;
+	
+	private final Path _path;
+	private final String _version;
+	private final Map<String, CachedScript> _scripts = new HashMap<>();
+	private boolean _changed = false;
+	
+	private static class CachedScript
+	{
+		private final byte[] _hash;
+		private final Set<String> _dependencies;
+		private final Map<String, byte[]> _classes;
+		private long _verified;
+		
+		public CachedScript(byte[] hash, Set<String> dependencies, Map<String, byte[]> classes)
+		{
+			_hash = hash;
+			_dependencies = dependencies;
+			_classes = classes;
+		}
+	}
+	
+	/**
+	 * @param options the compiler options, scripts compiled with other options or by another server build are not reused
+	 */
+	ScriptingCache(String options)
+	{
+		_path = new File(Config.DATAPACK_CACHE_PATH, "scripts.bin").toPath();
+		_version = options + " " + Runtime.version() + " " + getServerVersion();
+		if (!Config.SCRIPT_CACHE || !Files.isRegularFile(_path))
+		{
+			return;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(_path))))
+		{
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || !in.readUTF().equals(_version))
+			{
+				LOGGER.info(getClass().getSimpleName() + ": Ignoring " + _path + " written by a different version.");
+				return;
+			}
+			
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				final String key = in.readUTF();
+				final byte[] hash = new byte[HASH_LENGTH];
+				in.readFully(hash);
+				
+				final int dependencyCount = in.readInt();
+				final Set<String> dependencies = new HashSet<>(dependencyCount);
+				for (int j = 0; j < dependencyCount; j++)
+				{
+					dependencies.add(in.readUTF());
+				}
+				
+				final int classCount = in.readInt();
+				final Map<String, byte[]> classes = new LinkedHashMap<>(classCount);
+				for (int j = 0; j < classCount; j++)
+				{
+					final String name = in.readUTF();
+					final byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+					classes.put(name, data);
+				}
+				
+				_scripts.put(key, new CachedScript(hash, dependencies, classes));
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not read " + _path + ", it will be rebuilt.", e);
+			_scripts.clear();
+		}
+	}
+	
+	/**
+	 * Removes every script whose source changed or was deleted, together with all scripts that depend on them.
+	 */
+	void validate()
+	{
+		final Set<String> invalid = new HashSet<>();
+		for (Entry<String, CachedScript> entry : _scripts.entrySet())
+		{
+			final CachedScript script = entry.getValue();
+			final File file = getPath(entry.getKey()).toFile();
+			final long modified = file.lastModified();
+			if (modified == 0)
+			{
+				invalid.add(entry.getKey());
+			}
+			else if (modified != script._verified)
+			{
+				try
+				{
+					if (!Arrays.equals(hash(file.toPath()), script._hash))
+					{
+						invalid.add(entry.getKey());
+					}
+					script._verified = modified;
+				}
+				catch (IOException e)
+				{
+					invalid.add(entry.getKey());
+				}
+			}
+		}
+		
+		// Scripts referencing a changed script may have inlined its constants or use a changed signature.
+		boolean removed = !invalid.isEmpty();
+		while (removed)
+		{
+			removed = false;
+			for (Entry<String, CachedScript> entry : _scripts.entrySet())
+			{
+				if (invalid.contains(entry.getKey()))
+				{
+					continue;
+				}
+				
+				for (String dependency : entry.getValue()._dependencies)
+				{
+					if (invalid.contains(dependency) || !_scripts.containsKey(dependency))
+					{
+						invalid.add(entry.getKey());
+						removed = true;
+						break;
+					}
+				}
+			}
+		}
+		
+		if (!invalid.isEmpty())
+		{
+			_scripts.keySet().removeAll(invalid);
+			_changed = true;
+		}
+	}
+	
+	/**
+	 * @param key the script key
+	 * @return {@code true} if the classes of the script are available
+	 */
+	boolean contains(String key)
+	{
+		return _scripts.containsKey(key);
+	}
+	
+	/**
+	 * Stores the classes compiled from a script.
+	 * @param key the script key
+	 * @param hash the hash of the compiled source
+	 * @param dependencies the keys of the scripts referenced by the source
+	 * @param classes the compiled classes by binary name
+	 */
+	void put(String key, byte[] hash, Set<String> dependencies, Map<String, byte[]> classes)
+	{
+		_scripts.put(key, new CachedScript(hash, dependencies, classes));
+		_changed = true;
+	}
+	
+	/**
+	 * @param key the script key
+	 * @return the binary name of the top level class named after the script file, or of the first top level class if none matches, {@code null} if the script has no classes
+	 */
+	String getMainClass(String key)
+	{
+		final CachedScript script = _scripts.get(key);
+		if (script == null)
+		{
+			return null;
+		}
+		
+		final String simpleName = key.substring(key.lastIndexOf('/') + 1).replace(".java", "");
+		String mainClass = null;
+		for (String name : script._classes.keySet())
+		{
+			if (name.indexOf('$') != -1)
+			{
+				continue;
+			}
+			
+			if (name.substring(name.lastIndexOf('.') + 1).equals(simpleName))
+			{
+				return name;
+			}
+			
+			if (mainClass == null)
+			{
+				mainClass = name;
+			}
+		}
+		return mainClass;
+	}
+	
+	/**
+	 * @return a snapshot of the classes of all scripts by binary name
+	 */
+	Map<String, byte[]> getClasses()
+	{
+		final Map<String, byte[]> classes = new HashMap<>();
+		for (CachedScript script : _scripts.values())
+		{
+			classes.putAll(script._classes);
+		}
+		return classes;
+	}
+	
+	/**
+	 * @return the script key of every class by binary name
+	 */
+	Map<String, String> getClassScripts()
+	{
+		final Map<String, String> classScripts = new HashMap<>();
+		for (Entry<String, CachedScript> entry : _scripts.entrySet())
+		{
+			for (String name : entry.getValue()._classes.keySet())
+			{
+				classScripts.put(name, entry.getKey());
+			}
+		}
+		return classScripts;
+	}
+	
+	/**
+	 * Writes the cache file if scripts were compiled or removed, or releases all scripts when the cache is disabled.
+	 */
+	void save()
+	{
+		if (!Config.SCRIPT_CACHE)
+		{
+			_scripts.clear();
+			return;
+		}
+		
+		if (!_changed)
+		{
+			return;
+		}
+		_changed = false;
+		
+		try
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(_version);
+			out.writeInt(_scripts.size());
+			for (Entry<String, CachedScript> entry : _scripts.entrySet())
+			{
+				final CachedScript script = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.write(script._hash);
+				out.writeInt(script._dependencies.size());
+				for (String dependency : script._dependencies)
+				{
+					out.writeUTF(dependency);
+				}
+				out.writeInt(script._classes.size());
+				for (Entry<String, byte[]> compiledClass : script._classes.entrySet())
+				{
+					out.writeUTF(compiledClass.getKey());
+					out.writeInt(compiledClass.getValue().length);
+					out.write(compiledClass.getValue());
+				}
+			}
+			out.flush();
+			
+			Files.createDirectories(_path.getParent());
+			final Path temp = _path.resolveSibling(_path.getFileName() + ".tmp");
+			Files.write(temp, bytes.toByteArray());
+			Files.move(temp, _path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, getClass().getSimpleName() + ": Could not write " + _path + ".", e);
+		}
+	}
+	
+	/**
+	 * @param sourcePath the path of a script source, absolute or relative to the working directory
+	 * @return the key of the script, its path relative to the script root when inside of it
+	 */
+	static String getKey(Path sourcePath)
+	{
+		Path path;
+		try
+		{
+			path = sourcePath.toRealPath();
+		}
+		catch (IOException e)
+		{
+			path = sourcePath.toAbsolutePath().normalize();
+		}
+		
+		final Path root = Config.SCRIPT_ROOT.toPath();
+		return path.startsWith(root) ? root.relativize(path).toString().replace('\\', '/') : path.toString();
+	}
+	
+	private static Path getPath(String key)
+	{
+		return Config.SCRIPT_ROOT.toPath().resolve(key);
+	}
+	
+	/**
+	 * @param sourcePath the path of a script source
+	 * @return the SHA-256 hash of the source
+	 * @throws IOException if the source cannot be read
+	 */
+	static byte[] hash(Path sourcePath) throws IOException
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(sourcePath));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * @return the size and time of the server jar, or of its newest class when running from a class directory
+	 */
+	private static String getServerVersion()
+	{
+		try
+		{
+			final Path location = Paths.get(ScriptingCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isRegularFile(location))
+			{
+				return Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis();
+			}
+			
+			try (Stream<Path> files = Files.walk(location))
+			{
+				return Long.toString(files.mapToLong(file -> file.toFile().lastModified()).max().orElse(0));
+			}
+		}
+		catch (Exception e)
+		{
+			return "";
+		}
+	}
+}
@@ -16,6 +16,7 @@
  */
 package org.l2jmobius.gameserver.scripting.java;
 
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -25,9 +26,9 @@ public class ScriptingClassLoader extends ClassLoader
 {
 	public static final Logger LOGGER = Logger.getLogger(ScriptingClassLoader.class.getName());
 	
-	private Iterable<ScriptingOutputFileObject> _compiledClasses;
+	private Map<String, byte[]> _compiledClasses;
 	
-	ScriptingClassLoader(ClassLoader parent, Iterable<ScriptingOutputFileObject> compiledClasses)
+	ScriptingClassLoader(ClassLoader parent, Map<String, byte[]> compiledClasses)
 	{
 		super(parent);
 		_compiledClasses = compiledClasses;
@@ -41,13 +42,10 @@ public class ScriptingClassLoader extends ClassLoader
 	@Override
 	protected Class<?> findClass(String name) throws ClassNotFoundException
 	{
-		for (ScriptingOutputFileObject compiledClass : _compiledClasses)
+		final byte[] classBytes = _compiledClasses.get(name);
+		if (classBytes != null)
 		{
-			if (compiledClass.getJavaName().equals(name))
-			{
-				final byte[] classBytes = compiledClass.getJavaData();
-				return defineClass(name, classBytes, 0, classBytes.length);
-			}
+			return defineClass(name, classBytes, 0, classBytes.length);
 		}
 		return super.findClass(name);
 	}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of the L2J Mobius project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.gameserver.scripting.java;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+/**
+ * Collects the compile time and the referenced top level classes of each script while it is compiled.
+ * @author Mobius
+ */
+public class ScriptingTaskListener implements TaskListener
+{
+	private final Trees _trees;
+	private final Elements _elements;
+	private final Map<String, Set<String>> _dependencies = new HashMap<>();
+	private final Map<String, Long> _times = new HashMap<>();
+	private long _started;
+	
+	ScriptingTaskListener(JavacTask task)
+	{
+		_trees = Trees.instance(task);
+		_elements = task.getElements();
+	}
+	
+	/**
+	 * @return the binary names of the top level classes referenced by each script key
+	 */
+	Map<String, Set<String>> getDependencies()
+	{
+		return _dependencies;
+	}
+	
+	/**
+	 * @return the time spent parsing, analyzing and generating each script key, in nanoseconds
+	 */
+	Map<String, Long> getTimes()
+	{
+		return _times;
+	}
+	
+	@Override
+	public void started(TaskEvent event)
+	{
+		_started = System.nanoTime();
+	}
+	
+	@Override
+	public void finished(TaskEvent event)
+	{
+		final CompilationUnitTree unit = event.getCompilationUnit();
+		if (unit == null)
+		{
+			return;
+		}
+		
+		switch (event.getKind())
+		{
+			case PARSE:
+			case GENERATE:
+			{
+				_times.merge(getKey(unit), System.nanoTime() - _started, Long::sum);
+				break;
+			}
+			case ANALYZE:
+			{
+				final String key = getKey(unit);
+				_times.merge(key, System.nanoTime() - _started, Long::sum);
+				
+				// Each top level class is analyzed on its own, so only its own tree is fully attributed.
+				final TreePath path = _trees.getPath(event.getTypeElement());
+				if (path != null)
+				{
+					new DependencyScanner().scan(path, _dependencies.computeIfAbsent(key, _ -> new HashSet<>()));
+				}
+				break;
+			}
+		}
+	}
+	
+	private static String getKey(CompilationUnitTree unit)
+	{
+		return ScriptingCache.getKey(Paths.get(unit.getSourceFile().toUri()));
+	}
+	
+	private class DependencyScanner extends TreePathScanner<Void, Set<String>>
+	{
+		@Override
+		public Void visitIdentifier(IdentifierTree tree, Set<String> dependencies)
+		{
+			addDependency(dependencies);
+			return super.visitIdentifier(tree, dependencies);
+		}
+		
+		@Override
+		public Void visitMemberSelect(MemberSelectTree tree, Set<String> dependencies)
+		{
+			addDependency(dependencies);
+			return super.visitMemberSelect(tree, dependencies);
+		}
+		
+		private void addDependency(Set<String> dependencies)
+		{
+			TypeElement topLevelClass = null;
+			for (Element element = _trees.getElement(getCurrentPath()); (element != null) && (element.getKind() != ElementKind.PACKAGE) && (element.getKind() != ElementKind.MODULE); element = element.getEnclosingElement())
+			{
+				if (element instanceof TypeElement)
+				{
+					topLevelClass = (TypeElement) element;
+				}
+			}
+			
+			if (topLevelClass != null)
+			{
+				dependencies.add(_elements.getBinaryName(topLevelClass).toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver.taskmanagers;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.l2jmobius.commons.threads.ThreadPool;
+import org.l2jmobius.gameserver.cache.RelationCache;
+import org.l2jmobius.gameserver.model.World;
+import org.l2jmobius.gameserver.model.WorldRegion;
+import org.l2jmobius.gameserver.model.actor.Player;
+import org.l2jmobius.gameserver.model.actor.Summon;
+import org.l2jmobius.gameserver.model.actor.enums.player.PlayerCondOverride;
+import org.l2jmobius.gameserver.network.serverpackets.CharInfo;
+import org.l2jmobius.gameserver.network.serverpackets.RelationChanged;
+
+/**
+ * Collects CharInfo update requests of players and sends them once per tick.<br>
+ * Pending players are split in shards by their world region, one shard per available processor, each shard being sent by its own periodic task.<br>
+ * Relation changes of the pending players of a shard are merged into a single RelationChanged packet for each observer.
+ * @author Mobius
+ */
+public class CharInfoTaskManager
+{
+	private static final int SHARD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private static final int TICK_DELAY = 100;
+	
+	private static final CharInfoShard[] SHARDS = new CharInfoShard[SHARD_COUNT];
+	
+	private final long _startTime = System.currentTimeMillis();
+	private final LongAdder _requests = new LongAdder();
+	private final LongAdder _coalescedRequests = new LongAdder();
+	private final LongAdder _charInfoPackets = new LongAdder();
+	private final LongAdder _relationPackets = new LongAdder();
+	private final LongAdder _mergedRelations = new LongAdder();
+	
+	protected CharInfoTaskManager()
+	{
+		for (int i = 0; i < SHARD_COUNT; i++)
+		{
+			SHARDS[i] = new CharInfoShard();
+			ThreadPool.schedulePriorityTaskAtFixedRate(SHARDS[i], TICK_DELAY, TICK_DELAY);
+		}
+	}
+	
+	private class CharInfoShard implements Runnable
+	{
+		private final Set<Player> _players = ConcurrentHashMap.newKeySet();
+		private final Map<Player, RelationChanged> _relations = new ConcurrentHashMap<>();
+		
+		@Override
+		public synchronized void run()
+		{
+			if (_players.isEmpty())
+			{
+				return;
+			}
+			
+			final Iterator<Player> iterator = _players.iterator();
+			while (iterator.hasNext())
+			{
+				final Player player = iterator.next();
+				iterator.remove();
+				if (player.isOnlineInt() != 0)
+				{
+					broadcast(player);
+				}
+			}
+			
+			if (!_relations.isEmpty())
+			{
+				for (Entry<Player, RelationChanged> entry : _relations.entrySet())
+				{
+					final RelationChanged rc = entry.getValue();
+					if (!rc.isEmpty())
+					{
+						entry.getKey().sendPacket(rc);
+						_relationPackets.increment();
+					}
+				}
+				_relations.clear();
+			}
+		}
+		
+		private void broadcast(Player player)
+		{
+			final CharInfo charInfo = new CharInfo(player, false);
+			charInfo.sendInBroadcast();
+			World.getInstance().forEachVisibleObject(player, Player.class, observer ->
+			{
+				if (!player.isVisibleFor(observer))
+				{
+					return;
+				}
+				
+				if (player.isInvisible() && observer.canOverrideCond(PlayerCondOverride.SEE_ALL_PLAYERS))
+				{
+					observer.sendPacket(new CharInfo(player, true));
+				}
+				else
+				{
+					observer.sendPacket(charInfo);
+				}
+				_charInfoPackets.increment();
+				
+				// Update relation.
+				final long relation = player.getRelation(observer);
+				final boolean isAutoAttackable = player.isAutoAttackable(observer);
+				final RelationCache oldrelation = player.getKnownRelations().get(observer.getObjectId());
+				if ((oldrelation == null) || (oldrelation.getRelation() != relation) || (oldrelation.isAutoAttackable() != isAutoAttackable))
+				{
+					RelationChanged rc = _relations.get(observer);
+					if (rc == null)
+					{
+						rc = new RelationChanged();
+						_relations.put(observer, rc);
+					}
+					else
+					{
+						_mergedRelations.increment();
+					}
+					
+					rc.addRelation(player, relation, isAutoAttackable);
+					if (player.hasSummon())
+					{
+						final Summon pet = player.getPet();
+						if (pet != null)
+						{
+							rc.addRelation(pet, relation, isAutoAttackable);
+						}
+						if (player.hasServitors())
+						{
+							for (Summon servitor : player.getServitors().values())
+							{
+								rc.addRelation(servitor, relation, isAutoAttackable);
+							}
+						}
+					}
+					player.getKnownRelations().put(observer.getObjectId(), new RelationCache(relation, isAutoAttackable));
+				}
+			});
+		}
+	}
+	
+	private static int getShardIndex(Player player)
+	{
+		final WorldRegion region = player.getWorldRegion();
+		if (region == null)
+		{
+			return 0;
+		}
+		return ((region.getRegionX() * 31) + region.getRegionY()) % SHARD_COUNT;
+	}
+	
+	/**
+	 * Schedules a CharInfo and relation update of the player to all observers for the next tick.
+	 * @param player the player
+	 */
+	public void addCharInfo(Player player)
+	{
+		_requests.increment();
+		if (!SHARDS[getShardIndex(player)]._players.add(player))
+		{
+			_coalescedRequests.increment();
+		}
+	}
+	
+	public void remove(Player player)
+	{
+		for (CharInfoShard shard : SHARDS)
+		{
+			shard._players.remove(player);
+			shard._relations.remove(player);
+		}
+	}
+	
+	/**
+	 * @return the number of requests, sent packets and packets saved by merging relation updates.
+	 */
+	public String getStatistics()
+	{
+		int pending = 0;
+		for (CharInfoShard shard : SHARDS)
+		{
+			pending += shard._players.size();
+		}
+		
+		final long seconds = Math.max(1, (System.currentTimeMillis() - _startTime) / 1000);
+		final long merged = _mergedRelations.sum();
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Pending: ").append(pending);
+		sb.append(", requests: ").append(_requests.sum());
+		sb.append(" (").append(_coalescedRequests.sum()).append(" coalesced)");
+		sb.append(", CharInfo packets: ").append(_charInfoPackets.sum());
+		sb.append(", RelationChanged packets: ").append(_relationPackets.sum());
+		sb.append(", packets saved: ").append(merged);
+		sb.append(" (").append(merged / seconds).append(" per second).");
+		return sb.toString();
+	}
+	
+	public static CharInfoTaskManager getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static class SingletonHolder
+	{
+		protected static final CharInfoTaskManager INSTANCE = new CharInfoTaskManager();
+	}
+}
@@ -20,42 +20,76 @@
  */
 package org.l2jmobius.gameserver.taskmanagers;
 
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 
 import org.l2jmobius.commons.threads.ThreadPool;
 import org.l2jmobius.commons.util.TraceUtil;
 import org.l2jmobius.gameserver.ai.Action;
+import org.l2jmobius.gameserver.model.WorldRegion;
 import org.l2jmobius.gameserver.model.actor.Creature;
 
 /**
- * Movement task manager class.
+ * Movement task manager class.<br>
+ * Moving creatures are split in shards by their world region, one shard per available processor for players and one for other creatures.<br>
+ * Each shard is updated by its own periodic task, empty shards skip their ticks and creatures without any player around are updated less often.<br>
+ * Creatures that move to a region of another shard are handed over to it, and membership changes of a creature are atomic, so a new move order never races with an arrival.
  * @author Mobius
  */
 public class MovementTaskManager
 {
 	protected static final Logger LOGGER = Logger.getLogger(MovementTaskManager.class.getName());
 	
-	private static final Set<Set<Creature>> POOLS_CREATURE = ConcurrentHashMap.newKeySet();
-	private static final Set<Set<Creature>> POOLS_PLAYER = ConcurrentHashMap.newKeySet();
-	private static final int POOL_SIZE_CREATURE = 1000;
-	private static final int POOL_SIZE_PLAYER = 500;
+	private static final int SHARD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
 	private static final int TASK_DELAY_CREATURE = 100;
 	private static final int TASK_DELAY_PLAYER = 50;
+	private static final int UNOBSERVED_TICK_INTERVAL = 4; // Creatures without players around are updated every 4 ticks.
+	
+	/** Upper bounds, in milliseconds, of the tick duration histogram buckets. The last bucket holds all longer ticks. */
+	private static final int[] HISTOGRAM_BOUNDS =
+	{
+		1,
+		2,
+		5,
+		10,
+		20,
+		50,
+		100,
+		200
+	};
+	
+	private static final Map<Creature, Movement> MOVING_CREATURES = new ConcurrentHashMap<>();
+	private static final Movement[] SHARDS_CREATURE = new Movement[SHARD_COUNT];
+	private static final Movement[] SHARDS_PLAYER = new Movement[SHARD_COUNT];
+	private static final AtomicLongArray TICK_DURATIONS_CREATURE = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+	private static final AtomicLongArray TICK_DURATIONS_PLAYER = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
 	
 	protected MovementTaskManager()
 	{
+		for (int i = 0; i < SHARD_COUNT; i++)
+		{
+			SHARDS_CREATURE[i] = new Movement(TICK_DURATIONS_CREATURE, true);
+			ThreadPool.scheduleAtFixedRate(SHARDS_CREATURE[i], TASK_DELAY_CREATURE, TASK_DELAY_CREATURE);
+			
+			SHARDS_PLAYER[i] = new Movement(TICK_DURATIONS_PLAYER, false);
+			ThreadPool.schedulePriorityTaskAtFixedRate(SHARDS_PLAYER[i], TASK_DELAY_PLAYER, TASK_DELAY_PLAYER);
+		}
 	}
 	
 	private class Movement implements Runnable
 	{
-		private final Set<Creature> _creatures;
+		private final Set<Creature> _creatures = ConcurrentHashMap.newKeySet();
+		private final AtomicLongArray _tickDurations;
+		private final boolean _adaptive;
+		private int _tick;
 		
-		public Movement(Set<Creature> creatures)
+		public Movement(AtomicLongArray tickDurations, boolean adaptive)
 		{
-			_creatures = creatures;
+			_tickDurations = tickDurations;
+			_adaptive = adaptive;
 		}
 		
 		@Override
@@ -66,83 +100,163 @@ public class MovementTaskManager
 				return;
 			}
 			
-			Creature creature;
-			final Iterator<Creature> iterator = _creatures.iterator();
-			while (iterator.hasNext())
+			final long start = System.nanoTime();
+			final boolean updateUnobserved = !_adaptive || ((++_tick % UNOBSERVED_TICK_INTERVAL) == 0);
+			
+			for (Creature creature : _creatures)
 			{
-				creature = iterator.next();
 				try
 				{
+					if (!updateUnobserved && !isObserved(creature))
+					{
+						continue;
+					}
+					
 					if (creature.updatePosition())
 					{
-						iterator.remove();
-						creature.getAI().notifyAction(Action.ARRIVED);
+						if (stop(creature))
+						{
+							creature.getAI().notifyAction(Action.ARRIVED);
+						}
+					}
+					else if (getShard(creature) != this)
+					{
+						// Moved to a region of another shard.
+						register(creature);
 					}
 				}
 				catch (Exception e)
 				{
-					iterator.remove();
+					stop(creature);
 					LOGGER.warning("MovementTaskManager: Problem updating position of " + creature);
 					LOGGER.warning(TraceUtil.getStackTrace(e));
 				}
 			}
+			
+			_tickDurations.incrementAndGet(getHistogramBucket((System.nanoTime() - start) / 1000000));
+		}
+		
+		/**
+		 * Removes the creature from this shard, unless a new move order registered it meanwhile.
+		 * @param creature the creature that arrived
+		 * @return {@code true} if the creature was removed
+		 */
+		private boolean stop(Creature creature)
+		{
+			final boolean[] stopped = new boolean[1];
+			MOVING_CREATURES.computeIfPresent(creature, (key, shard) ->
+			{
+				if (shard != this)
+				{
+					return shard;
+				}
+				
+				_creatures.remove(key);
+				stopped[0] = true;
+				return null;
+			});
+			return stopped[0];
 		}
 	}
 	
 	/**
-	 * Add a Creature to moving objects of MovementTaskManager.
-	 * @param creature The Creature to add to moving objects of MovementTaskManager.
+	 * @param creature the creature to check
+	 * @return {@code true} if there is any playable in the surrounding active regions of the creature.
 	 */
-	public synchronized void registerMovingObject(Creature creature)
+	private static boolean isObserved(Creature creature)
+	{
+		final WorldRegion region = creature.getWorldRegion();
+		return (region == null) || !region.areNeighborsEmpty();
+	}
+	
+	private static int getHistogramBucket(long duration)
 	{
-		if (creature.isPlayer())
+		for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++)
 		{
-			for (Set<Creature> pool : POOLS_PLAYER)
-			{
-				if (pool.contains(creature))
-				{
-					return;
-				}
-			}
-			
-			for (Set<Creature> pool : POOLS_PLAYER)
+			if (duration < HISTOGRAM_BOUNDS[i])
 			{
-				if (pool.size() < POOL_SIZE_PLAYER)
-				{
-					pool.add(creature);
-					return;
-				}
+				return i;
 			}
-			
-			final Set<Creature> pool = ConcurrentHashMap.newKeySet(POOL_SIZE_PLAYER);
-			pool.add(creature);
-			ThreadPool.schedulePriorityTaskAtFixedRate(new Movement(pool), TASK_DELAY_PLAYER, TASK_DELAY_PLAYER);
-			POOLS_PLAYER.add(pool);
 		}
-		else
+		return HISTOGRAM_BOUNDS.length;
+	}
+	
+	private Movement getShard(Creature creature)
+	{
+		final WorldRegion region = creature.getWorldRegion();
+		final int index = region == null ? 0 : ((region.getRegionX() * 31) + region.getRegionY()) % SHARD_COUNT;
+		return creature.isPlayer() ? SHARDS_PLAYER[index] : SHARDS_CREATURE[index];
+	}
+	
+	/**
+	 * Adds the creature to the shard of its region, or moves it there from its previous shard.<br>
+	 * Shard sets of a creature are only changed inside the atomic update of its mapping.
+	 * @param creature the creature
+	 */
+	private void register(Creature creature)
+	{
+		MOVING_CREATURES.compute(creature, (key, previous) ->
 		{
-			for (Set<Creature> pool : POOLS_CREATURE)
+			final Movement shard = getShard(key);
+			if (previous != shard)
 			{
-				if (pool.contains(creature))
+				if (previous != null)
 				{
-					return;
+					previous._creatures.remove(key);
 				}
+				shard._creatures.add(key);
 			}
-			
-			for (Set<Creature> pool : POOLS_CREATURE)
-			{
-				if (pool.size() < POOL_SIZE_CREATURE)
-				{
-					pool.add(creature);
-					return;
-				}
-			}
-			
-			final Set<Creature> pool = ConcurrentHashMap.newKeySet(POOL_SIZE_CREATURE);
-			pool.add(creature);
-			ThreadPool.scheduleAtFixedRate(new Movement(pool), TASK_DELAY_CREATURE, TASK_DELAY_CREATURE);
-			POOLS_CREATURE.add(pool);
+			return shard;
+		});
+	}
+	
+	/**
+	 * Add a Creature to moving objects of MovementTaskManager.
+	 * @param creature The Creature to add to moving objects of MovementTaskManager.
+	 */
+	public void registerMovingObject(Creature creature)
+	{
+		register(creature);
+	}
+	
+	/**
+	 * @return the number of creatures currently moving.
+	 */
+	public int getMovingCount()
+	{
+		return MOVING_CREATURES.size();
+	}
+	
+	/**
+	 * @return the tick duration histograms of player and creature shards.
+	 */
+	public String getStatistics()
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Moving creatures: ");
+		sb.append(MOVING_CREATURES.size());
+		sb.append(System.lineSeparator());
+		appendHistogram(sb, "Player ticks", TICK_DURATIONS_PLAYER);
+		appendHistogram(sb, "Creature ticks", TICK_DURATIONS_CREATURE);
+		return sb.toString();
+	}
+	
+	private static void appendHistogram(StringBuilder sb, String name, AtomicLongArray histogram)
+	{
+		sb.append(name);
+		sb.append(':');
+		for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++)
+		{
+			sb.append(" <");
+			sb.append(HISTOGRAM_BOUNDS[i]);
+			sb.append("ms=");
+			sb.append(histogram.get(i));
 		}
+		sb.append(" >=");
+		sb.append(HISTOGRAM_BOUNDS[HISTOGRAM_BOUNDS.length - 1]);
+		sb.append("ms=");
+		sb.append(histogram.get(HISTOGRAM_BOUNDS.length));
+		sb.append(System.lineSeparator());
 	}
 	
 	public static final MovementTaskManager getInstance()
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.gameserver.taskmanagers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.l2jmobius.Config;
+import org.l2jmobius.commons.database.DatabaseFactory;
+import org.l2jmobius.gameserver.model.actor.Player;
+
+/**
+ * Write-behind persistence.<br>
+ * Entities are marked dirty per table and written later in JDBC batches by a dedicated thread.<br>
+ * An entity marked several times before a write is stored once, with the values it has at that time.
+ * @author Mobius
+ */
+public class WriteBehindTaskManager extends Thread
+{
+	private static final Logger LOGGER = Logger.getLogger(WriteBehindTaskManager.class.getName());
+	
+	private static final int BATCH_SIZE = 500;
+	private static final int MAX_RETRIES = 3;
+	private static final List<Table<?>> TABLES = new CopyOnWriteArrayList<>();
+	
+	private final ReentrantLock _flushLock = new ReentrantLock();
+	private final LongAdder _flushes = new LongAdder();
+	private final LongAdder _flushTime = new LongAdder();
+	private final AtomicLong _maxFlushTime = new AtomicLong();
+	private volatile boolean _shutdown = false;
+	
+	protected WriteBehindTaskManager()
+	{
+		super("WriteBehindTaskManager");
+		super.setDaemon(true);
+		super.start();
+	}
+	
+	@Override
+	public void run()
+	{
+		while (!_shutdown)
+		{
+			try
+			{
+				Thread.sleep(Config.WRITE_BEHIND_INTERVAL);
+			}
+			catch (InterruptedException e)
+			{
+				// Ignore.
+			}
+			
+			flush();
+		}
+	}
+	
+	/**
+	 * Marks an entity to be written with the next flush.
+	 * @param <T> the entity type
+	 * @param table the table the entity is written to
+	 * @param entity the entity
+	 */
+	public <T> void add(Table<T> table, T entity)
+	{
+		table._dirty.add(entity);
+	}
+	
+	/**
+	 * Removes an entity that no longer has to be written, for example because its row was deleted.
+	 * @param <T> the entity type
+	 * @param table the table the entity is written to
+	 * @param entity the entity
+	 */
+	public <T> void remove(Table<T> table, T entity)
+	{
+		table._dirty.remove(entity);
+	}
+	
+	/**
+	 * Writes every pending entity before returning.
+	 */
+	public void flush()
+	{
+		_flushLock.lock();
+		try
+		{
+			final long start = System.nanoTime();
+			boolean written = false;
+			for (Table<?> table : TABLES)
+			{
+				written |= table.flush();
+			}
+			
+			if (written)
+			{
+				final long time = System.nanoTime() - start;
+				_flushes.increment();
+				_flushTime.add(time);
+				_maxFlushTime.accumulateAndGet(time, Math::max);
+			}
+		}
+		finally
+		{
+			_flushLock.unlock();
+		}
+	}
+	
+	/**
+	 * Writes the pending entities of a player before returning, leaving those of other players for the writer thread.
+	 * @param player the player
+	 */
+	public void flush(Player player)
+	{
+		// Also waits for a running flush, which may be writing entities of the player.
+		_flushLock.lock();
+		try
+		{
+			for (Table<?> table : TABLES)
+			{
+				table.flush(player.getObjectId());
+			}
+		}
+		finally
+		{
+			_flushLock.unlock();
+		}
+	}
+	
+	/**
+	 * Stops the writer thread and writes every pending entity.
+	 */
+	public void shutdown()
+	{
+		_shutdown = true;
+		interrupt();
+		flush();
+	}
+	
+	/**
+	 * @return the number of entities waiting to be written.
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (Table<?> table : TABLES)
+		{
+			size += table._dirty.size();
+		}
+		return size;
+	}
+	
+	public String getStatistics()
+	{
+		final long flushes = _flushes.sum();
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Queued: ").append(getQueueSize());
+		sb.append(", flushes: ").append(flushes);
+		sb.append(", average: ").append(flushes == 0 ? 0 : _flushTime.sum() / flushes / 1000000).append(" ms");
+		sb.append(", max: ").append(_maxFlushTime.get() / 1000000).append(" ms.");
+		for (Table<?> table : TABLES)
+		{
+			final long batches = table._batches.sum();
+			final long rows = table._rows.sum();
+			sb.append(System.lineSeparator()).append(table._name).append(": ").append(rows).append(" rows in ").append(batches).append(" batches (").append(batches == 0 ? 0 : rows / batches).append(" rows per batch), ").append(table._failures.sum()).append(" failed.");
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Binds the values of an entity to the batched statement of its table.
+	 * @param <T> the entity type
+	 */
+	@FunctionalInterface
+	public interface Binder<T>
+	{
+		/**
+		 * @param entity the entity to write
+		 * @param statement the batched statement
+		 * @param con the connection, for rows that need other statements
+		 * @return {@code true} if the parameters were set and a row should be added to the batch, {@code false} to skip it
+		 * @throws SQLException
+		 */
+		boolean bind(T entity, PreparedStatement statement, Connection con) throws SQLException;
+	}
+	
+	/**
+	 * Tells if an entity has to be written when a player leaves.
+	 * @param <T> the entity type
+	 */
+	@FunctionalInterface
+	public interface Owner<T>
+	{
+		/**
+		 * @param entity the entity
+		 * @param objectId the object id of the player
+		 * @return {@code true} if the entity has to be written before the player can be loaded again
+		 */
+		boolean isOwnedBy(T entity, int objectId);
+	}
+	
+	/**
+	 * A table written by the write-behind thread, with its statement and dirty entities.
+	 * @param <T> the entity type
+	 */
+	public static class Table<T>
+	{
+		private final String _name;
+		private final String _sql;
+		private final Binder<T> _binder;
+		private final Owner<T> _owner;
+		private final Set<T> _dirty = ConcurrentHashMap.newKeySet();
+		private final Map<T, Integer> _retries = new ConcurrentHashMap<>();
+		private final LongAdder _rows = new LongAdder();
+		private final LongAdder _batches = new LongAdder();
+		private final LongAdder _failures = new LongAdder();
+		
+		public Table(String name, String sql, Binder<T> binder, Owner<T> owner)
+		{
+			_name = name;
+			_sql = sql;
+			_binder = binder;
+			_owner = owner;
+			TABLES.add(this);
+		}
+		
+		/**
+		 * Writes all dirty entities.<br>
+		 * Entities are marked clean before they are bound, so changes made meanwhile are written with the next flush.
+		 * @return {@code true} if anything was written
+		 */
+		private boolean flush()
+		{
+			if (_dirty.isEmpty())
+			{
+				return false;
+			}
+			
+			final List<T> entities = new ArrayList<>(_dirty.size());
+			final Iterator<T> iterator = _dirty.iterator();
+			while (iterator.hasNext())
+			{
+				entities.add(iterator.next());
+				iterator.remove();
+			}
+			
+			write(entities);
+			return true;
+		}
+		
+		/**
+		 * Writes the dirty entities owned by a player.
+		 * @param objectId the object id of the player
+		 */
+		private void flush(int objectId)
+		{
+			if (_dirty.isEmpty())
+			{
+				return;
+			}
+			
+			final List<T> entities = new ArrayList<>();
+			final Iterator<T> iterator = _dirty.iterator();
+			while (iterator.hasNext())
+			{
+				final T entity = iterator.next();
+				if (_owner.isOwnedBy(entity, objectId))
+				{
+					entities.add(entity);
+					iterator.remove();
+				}
+			}
+			
+			if (!entities.isEmpty())
+			{
+				write(entities);
+			}
+		}
+		
+		/**
+		 * Writes entities in batches, in a single transaction.
+		 * @param entities the entities, already removed from the dirty set
+		 */
+		private void write(List<T> entities)
+		{
+			try (Connection con = DatabaseFactory.getConnection();
+				PreparedStatement statement = con.prepareStatement(_sql))
+			{
+				con.setAutoCommit(false);
+				try
+				{
+					int count = 0;
+					for (T entity : entities)
+					{
+						if (_binder.bind(entity, statement, con))
+						{
+							statement.addBatch();
+							if (++count == BATCH_SIZE)
+							{
+								executeBatch(statement, count);
+								count = 0;
+							}
+						}
+					}
+					if (count > 0)
+					{
+						executeBatch(statement, count);
+					}
+					con.commit();
+					if (!_retries.isEmpty())
+					{
+						entities.forEach(_retries::remove);
+					}
+				}
+				catch (SQLException e)
+				{
+					// Do not let a single bad row hold back the others.
+					LOGGER.log(Level.WARNING, WriteBehindTaskManager.class.getSimpleName() + ": Could not write " + _name + " batch, writing rows one by one: " + e.getMessage());
+					con.rollback();
+					con.setAutoCommit(true);
+					statement.clearBatch();
+					writeEach(entities, statement, con);
+				}
+				finally
+				{
+					con.setAutoCommit(true);
+				}
+			}
+			catch (Exception e)
+			{
+				// Queue everything again, it will be retried with the next flush.
+				_dirty.addAll(entities);
+				LOGGER.log(Level.SEVERE, WriteBehindTaskManager.class.getSimpleName() + ": Could not write " + _name + ": " + e.getMessage(), e);
+			}
+		}
+		
+		private void executeBatch(PreparedStatement statement, int count) throws SQLException
+		{
+			statement.executeBatch();
+			_rows.add(count);
+			_batches.increment();
+		}
+		
+		private void writeEach(List<T> entities, PreparedStatement statement, Connection con)
+		{
+			for (T entity : entities)
+			{
+				try
+				{
+					if (_binder.bind(entity, statement, con))
+					{
+						statement.executeUpdate();
+						_rows.increment();
+					}
+					_retries.remove(entity);
+				}
+				catch (SQLException e)
+				{
+					_failures.increment();
+					
+					// The entity is already marked as stored, queue it again unless it keeps failing.
+					if (_retries.merge(entity, 1, Integer::sum) <= MAX_RETRIES)
+					{
+						_dirty.add(entity);
+						LOGGER.log(Level.WARNING, WriteBehindTaskManager.class.getSimpleName() + ": Could not write " + entity + " to " + _name + ", retrying with the next flush: " + e.getMessage());
+					}
+					else
+					{
+						_retries.remove(entity);
+						LOGGER.log(Level.SEVERE, WriteBehindTaskManager.class.getSimpleName() + ": Could not write " + entity + " to " + _name + " after " + MAX_RETRIES + " retries: " + e.getMessage(), e);
+					}
+				}
+			}
+		}
+	}
+	
+	public static WriteBehindTaskManager getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+	
+	private static class SingletonHolder
+	{
+		protected static final WriteBehindTaskManager INSTANCE = new WriteBehindTaskManager();
+	}
+}
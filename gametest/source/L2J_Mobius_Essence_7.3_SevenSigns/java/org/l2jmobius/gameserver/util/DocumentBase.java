@@ -28,12 +28,15 @@ import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
+import org.l2jmobius.Config;
+import org.l2jmobius.commons.util.XmlCache;
 import org.l2jmobius.gameserver.data.enums.CategoryType;
 import org.l2jmobius.gameserver.model.StatSet;
 import org.l2jmobius.gameserver.model.actor.enums.creature.InstanceType;
@@ -165,7 +168,8 @@ public abstract class DocumentBase
 			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 			factory.setValidating(false);
 			factory.setIgnoringComments(true);
-			document = factory.newDocumentBuilder().parse(_file);
+			final DocumentBuilder builder = factory.newDocumentBuilder();
+			document = Config.DATAPACK_CACHE ? XmlCache.getDocument(getClass().getName(), _file, builder) : builder.parse(_file);
 			parseDocument(document);
 		}
 		catch (Exception e)
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.l2jmobius.Config;
+import org.l2jmobius.commons.enums.ServerMode;
+import org.l2jmobius.gameserver.geoengine.GeoEngine;
+import org.l2jmobius.gameserver.geoengine.geodata.Cell;
+import org.l2jmobius.gameserver.geoengine.geodata.IRegion;
+import org.l2jmobius.gameserver.geoengine.pathfinding.PathFinding;
+import org.l2jmobius.gameserver.geoengine.pathfinding.PortalGraph;
+import org.l2jmobius.gameserver.model.World;
+
+/**
+ * Builds the {@link PortalGraph} file from the loaded geodata.<br>
+ * Walkable openings on every cluster border become portal pairs and portals of the same cluster are linked by their walking distance.<br>
+ * When a query count is given as argument, random long paths between portals are searched afterwards to report the success rate and latency.
+ * @author Mobius
+ */
+public class PortalGraphBuilder
+{
+	private static final int CLUSTER_SIZE = PortalGraph.CLUSTER_SIZE;
+	private static final int MAX_STEP_HEIGHT = PortalGraph.MAX_STEP_HEIGHT;
+	private static final int MAX_RUN_HEIGHT = 16;
+	private static final int MAX_LAYERS = 16;
+	private static final int LONG_RUN = 32;
+	private static final int LONG_RUN_OFFSET = 4;
+	
+	private final GeoEngine _geoEngine = GeoEngine.getInstance();
+	private final Map<Integer, List<PortalNode>> _clusters = new HashMap<>();
+	
+	private PortalGraphBuilder()
+	{
+	}
+	
+	/**
+	 * Creates the portal pairs on the east and south borders of every cluster with geodata.
+	 */
+	private void createPortals()
+	{
+		for (int regionX = World.TILE_X_MIN; regionX <= World.TILE_X_MAX; regionX++)
+		{
+			for (int regionY = World.TILE_Y_MIN; regionY <= World.TILE_Y_MAX; regionY++)
+			{
+				if (!_geoEngine.hasGeoPos(regionX * IRegion.REGION_CELLS_X, regionY * IRegion.REGION_CELLS_Y))
+				{
+					continue;
+				}
+				
+				final int clustersX = IRegion.REGION_CELLS_X / CLUSTER_SIZE;
+				final int clustersY = IRegion.REGION_CELLS_Y / CLUSTER_SIZE;
+				for (int clusterX = regionX * clustersX; clusterX < ((regionX + 1) * clustersX); clusterX++)
+				{
+					for (int clusterY = regionY * clustersY; clusterY < ((regionY + 1) * clustersY); clusterY++)
+					{
+						final int lastX = ((clusterX + 1) * CLUSTER_SIZE) - 1;
+						final int lastY = ((clusterY + 1) * CLUSTER_SIZE) - 1;
+						
+						// East border.
+						if (_geoEngine.hasGeoPos(lastX + 1, clusterY * CLUSTER_SIZE))
+						{
+							scanBorder(lastX, clusterY * CLUSTER_SIZE, 0, 1, 1, 0, Cell.NSWE_EAST, Cell.NSWE_WEST);
+						}
+						
+						// South border.
+						if (_geoEngine.hasGeoPos(clusterX * CLUSTER_SIZE, lastY + 1))
+						{
+							scanBorder(clusterX * CLUSTER_SIZE, lastY, 1, 0, 0, 1, Cell.NSWE_SOUTH, Cell.NSWE_NORTH);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds the runs of consecutive crossable cells along a cluster border and places portals on them.
+	 * @param startX the first border cell X on the near side
+	 * @param startY the first border cell Y on the near side
+	 * @param stepX the X step along the border
+	 * @param stepY the Y step along the border
+	 * @param crossX the X offset to the far side
+	 * @param crossY the Y offset to the far side
+	 * @param nswe the direction towards the far side
+	 * @param backNswe the direction back to the near side
+	 */
+	private void scanBorder(int startX, int startY, int stepX, int stepY, int crossX, int crossY, byte nswe, byte backNswe)
+	{
+		final List<Run> openRuns = new ArrayList<>();
+		for (int i = 0; i < CLUSTER_SIZE; i++)
+		{
+			final int x = startX + (i * stepX);
+			final int y = startY + (i * stepY);
+			int z = _geoEngine.getNearestZ(x, y, Short.MAX_VALUE);
+			for (int layer = 0; layer < MAX_LAYERS; layer++)
+			{
+				if (_geoEngine.checkNearestNswe(x, y, z, nswe))
+				{
+					final int farZ = _geoEngine.getNearestZ(x + crossX, y + crossY, z);
+					if ((Math.abs(farZ - z) <= MAX_STEP_HEIGHT) && _geoEngine.checkNearestNswe(x + crossX, y + crossY, farZ, backNswe))
+					{
+						addCrossing(openRuns, i, z, farZ);
+					}
+				}
+				
+				final int lowerZ = _geoEngine.getNextLowerZ(x, y, z - 1);
+				if ((lowerZ >= z) || ((lowerZ == (z - 1)) && (_geoEngine.getNearestZ(x, y, lowerZ) != lowerZ)))
+				{
+					break;
+				}
+				z = lowerZ;
+			}
+			
+			// Runs that did not continue on this cell are complete.
+			for (int r = openRuns.size() - 1; r >= 0; r--)
+			{
+				final Run run = openRuns.get(r);
+				if (run.last < i)
+				{
+					placePortals(run, startX, startY, stepX, stepY, crossX, crossY);
+					openRuns.remove(r);
+				}
+			}
+		}
+		
+		for (Run run : openRuns)
+		{
+			placePortals(run, startX, startY, stepX, stepY, crossX, crossY);
+		}
+	}
+	
+	private void addCrossing(List<Run> openRuns, int index, int z, int farZ)
+	{
+		for (Run run : openRuns)
+		{
+			if ((run.last == (index - 1)) && (Math.abs(run.lastZ - z) <= MAX_RUN_HEIGHT))
+			{
+				run.add(index, z, farZ);
+				return;
+			}
+		}
+		
+		final Run run = new Run();
+		run.add(index, z, farZ);
+		openRuns.add(run);
+	}
+	
+	/**
+	 * Short runs get a portal in the middle, long runs get one near each end.
+	 */
+	private void placePortals(Run run, int startX, int startY, int stepX, int stepY, int crossX, int crossY)
+	{
+		final int size = run.crossings.size();
+		if (size < LONG_RUN)
+		{
+			placePortal(run.crossings.get(size / 2), startX, startY, stepX, stepY, crossX, crossY);
+		}
+		else
+		{
+			placePortal(run.crossings.get(LONG_RUN_OFFSET), startX, startY, stepX, stepY, crossX, crossY);
+			placePortal(run.crossings.get(size - 1 - LONG_RUN_OFFSET), startX, startY, stepX, stepY, crossX, crossY);
+		}
+	}
+	
+	private void placePortal(int[] crossing, int startX, int startY, int stepX, int stepY, int crossX, int crossY)
+	{
+		final int x = startX + (crossing[0] * stepX);
+		final int y = startY + (crossing[0] * stepY);
+		final PortalNode near = addNode(x, y, crossing[1]);
+		final PortalNode far = addNode(x + crossX, y + crossY, crossing[2]);
+		near.link(far, 1);
+		far.link(near, 1);
+	}
+	
+	private PortalNode addNode(int x, int y, int z)
+	{
+		final PortalNode node = new PortalNode(x, y, z);
+		_clusters.computeIfAbsent(PortalGraph.getCluster(x, y), _ -> new ArrayList<>()).add(node);
+		return node;
+	}
+	
+	/**
+	 * Links the portals of every cluster by flooding the cluster cells from each of them.
+	 */
+	private void linkClusters()
+	{
+		final AtomicInteger done = new AtomicInteger();
+		final int total = _clusters.size();
+		_clusters.entrySet().parallelStream().forEach(entry ->
+		{
+			final List<PortalNode> nodes = entry.getValue();
+			final int[] distances = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+			final int[] heights = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+			final int[] queue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+			for (PortalNode node : nodes)
+			{
+				PortalGraph.flood(node.x, node.y, node.z, distances, heights, queue);
+				for (PortalNode other : nodes)
+				{
+					if (other == node)
+					{
+						continue;
+					}
+					
+					final int cell = PortalGraph.getClusterCell(other.x, other.y);
+					if ((distances[cell] >= 0) && (Math.abs(heights[cell] - other.z) <= MAX_STEP_HEIGHT))
+					{
+						node.link(other, distances[cell]);
+					}
+				}
+			}
+			
+			final int count = done.incrementAndGet();
+			if ((count % 1000) == 0)
+			{
+				System.out.println("[INFO] Linked " + count + "/" + total + " clusters.");
+			}
+		});
+	}
+	
+	/**
+	 * Writes the graph in the layout described by {@link PortalGraph}.
+	 * @param filePath the output file
+	 * @throws IOException if the file cannot be written
+	 */
+	private void write(Path filePath) throws IOException
+	{
+		// Number the nodes by cluster.
+		final List<Integer> clusterIds = new ArrayList<>(_clusters.keySet());
+		clusterIds.sort(null);
+		final List<PortalNode> nodes = new ArrayList<>();
+		for (int cluster : clusterIds)
+		{
+			for (PortalNode node : _clusters.get(cluster))
+			{
+				node.id = nodes.size();
+				nodes.add(node);
+			}
+		}
+		
+		int edgeCount = 0;
+		for (PortalNode node : nodes)
+		{
+			edgeCount += node.links.size();
+		}
+		
+		Files.createDirectories(filePath.getParent());
+		try (OutputStream os = Files.newOutputStream(filePath);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16)))
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			writeInt(out, buffer, PortalGraph.MAGIC);
+			writeInt(out, buffer, PortalGraph.VERSION);
+			writeInt(out, buffer, CLUSTER_SIZE);
+			writeInt(out, buffer, nodes.size());
+			writeInt(out, buffer, edgeCount);
+			
+			// First node of each cluster.
+			int nodeIndex = 0;
+			for (int cluster = 0; cluster <= PortalGraph.CLUSTERS; cluster++)
+			{
+				while ((nodeIndex < nodes.size()) && (PortalGraph.getCluster(nodes.get(nodeIndex).x, nodes.get(nodeIndex).y) < cluster))
+				{
+					nodeIndex++;
+				}
+				writeInt(out, buffer, nodeIndex);
+			}
+			
+			for (PortalNode node : nodes)
+			{
+				writeInt(out, buffer, node.x);
+				writeInt(out, buffer, node.y);
+				writeInt(out, buffer, node.z);
+			}
+			
+			int edgeIndex = 0;
+			for (PortalNode node : nodes)
+			{
+				writeInt(out, buffer, edgeIndex);
+				edgeIndex += node.links.size();
+			}
+			writeInt(out, buffer, edgeIndex);
+			
+			for (PortalNode node : nodes)
+			{
+				for (int i = 0; i < node.links.size(); i++)
+				{
+					writeInt(out, buffer, node.links.get(i).id);
+					writeInt(out, buffer, node.costs.get(i));
+				}
+			}
+		}
+		
+		System.out.println("[INFO] Saved " + nodes.size() + " portals with " + edgeCount + " links to " + filePath + ".");
+	}
+	
+	private static void writeInt(DataOutputStream out, ByteBuffer buffer, int value) throws IOException
+	{
+		buffer.putInt(0, value);
+		out.write(buffer.array(), 0, 4);
+	}
+	
+	/**
+	 * Searches random paths between distant portals of different regions.
+	 * @param queries the number of paths to search
+	 */
+	private void benchmark(int queries)
+	{
+		final List<PortalNode> nodes = new ArrayList<>();
+		for (List<PortalNode> clusterNodes : _clusters.values())
+		{
+			nodes.addAll(clusterNodes);
+		}
+		if (nodes.size() < 2)
+		{
+			return;
+		}
+		
+		Config.HIERARCHICAL_PATHFINDING = true;
+		final PathFinding pathFinding = PathFinding.getInstance();
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		int found = 0;
+		int searched = 0;
+		long totalTime = 0;
+		long maxTime = 0;
+		while (searched < queries)
+		{
+			final PortalNode from = nodes.get(random.nextInt(nodes.size()));
+			final PortalNode to = nodes.get(random.nextInt(nodes.size()));
+			final int distance = Math.max(Math.abs(from.x - to.x), Math.abs(from.y - to.y));
+			if ((distance < CLUSTER_SIZE) || (distance > (CLUSTER_SIZE * 16)))
+			{
+				continue;
+			}
+			
+			final long start = System.nanoTime();
+			final int[] path = pathFinding.findPathPoints(_geoEngine.getWorldX(from.x), _geoEngine.getWorldY(from.y), from.z, _geoEngine.getWorldX(to.x), _geoEngine.getWorldY(to.y), to.z, null, false);
+			final long time = System.nanoTime() - start;
+			totalTime += time;
+			maxTime = Math.max(maxTime, time);
+			searched++;
+			if (path != null)
+			{
+				found++;
+			}
+		}
+		
+		System.out.println("[INFO] Found " + found + "/" + searched + " paths (" + ((found * 100) / searched) + "%), average " + TimeUnit.NANOSECONDS.toMicros(totalTime / searched) + " us, max " + TimeUnit.NANOSECONDS.toMillis(maxTime) + " ms.");
+	}
+	
+	private static class Run
+	{
+		final List<int[]> crossings = new ArrayList<>();
+		int last;
+		int lastZ;
+		
+		void add(int index, int z, int farZ)
+		{
+			crossings.add(new int[]
+			{
+				index,
+				z,
+				farZ
+			});
+			last = index;
+			lastZ = z;
+		}
+	}
+	
+	private static class PortalNode
+	{
+		final int x;
+		final int y;
+		final int z;
+		final List<PortalNode> links = new ArrayList<>();
+		final List<Integer> costs = new ArrayList<>();
+		int id;
+		
+		PortalNode(int geoX, int geoY, int geoZ)
+		{
+			x = geoX;
+			y = geoY;
+			z = geoZ;
+		}
+		
+		synchronized void link(PortalNode node, int cost)
+		{
+			links.add(node);
+			costs.add(cost);
+		}
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		Config.load(ServerMode.GAME);
+		
+		final long start = System.currentTimeMillis();
+		final PortalGraphBuilder builder = new PortalGraphBuilder();
+		builder.createPortals();
+		System.out.println("[INFO] Created portals in " + builder._clusters.size() + " clusters.");
+		builder.linkClusters();
+		builder.write(Config.PATHNODE_PATH.resolve(PortalGraph.FILE_NAME));
+		System.out.println("[INFO] Done in " + TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start) + " seconds.");
+		
+		if (args.length > 0)
+		{
+			builder.benchmark(Integer.parseInt(args[0]));
+		}
+	}
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.l2jmobius.Config;
+import org.l2jmobius.commons.network.base.BaseReadablePacket;
+import org.l2jmobius.commons.network.base.BaseWritablePacket;
+import org.l2jmobius.commons.network.internal.SinglePacketBuffer;
+import org.l2jmobius.commons.threads.ThreadPool;
+import org.l2jmobius.commons.util.Rnd;
+import org.l2jmobius.gameserver.network.ClientPackets;
+import org.l2jmobius.gameserver.network.Encryption;
+import org.l2jmobius.gameserver.network.ExClientPackets;
+import org.l2jmobius.gameserver.network.ServerPackets;
+import org.l2jmobius.gameserver.network.enums.ChatType;
+import org.l2jmobius.loginserver.SessionKey;
+import org.l2jmobius.tools.loadtest.BotProfile.BotAction;
+
+/**
+ * A headless game client driven by a {@link BotProfile}.<br>
+ * It logs in with a session key registered on the {@link LoginServerStub}, creates its character when the account has none and enters the world, then repeats the actions of its profile.<br>
+ * Server tick lateness is measured from skill casts: the server schedules the launch of a cast after its hit time, so the delay between MagicSkillUse and MagicSkillLaunched of a skill,<br>
+ * minus the fastest delay seen for the same skill, is the time the scheduled task ran late.
+ * @author Mobius
+ */
+public class BotClient implements Runnable
+{
+	private static final Logger LOGGER = Logger.getLogger(BotClient.class.getName());
+	
+	/** The second half of the game packet key is static, the server only sends the first 8 bytes. */
+	private static final byte[] STATIC_KEY_PART =
+	{
+		(byte) 0xc8,
+		(byte) 0x27,
+		(byte) 0x93,
+		(byte) 0x01,
+		(byte) 0xa1,
+		(byte) 0x6c,
+		(byte) 0x31,
+		(byte) 0x97
+	};
+	
+	private static final ServerPackets[] SERVER_PACKETS = new ServerPackets[256];
+	static
+	{
+		for (ServerPackets packet : ServerPackets.values())
+		{
+			if ((packet.getId2() < 0) && (SERVER_PACKETS[packet.getId1()] == null))
+			{
+				SERVER_PACKETS[packet.getId1()] = packet;
+			}
+		}
+	}
+	
+	private static final int MAX_KNOWN_NPCS = 64;
+	private static final long PING_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+	
+	private final LoadTest _loadTest;
+	private final LoadTestStatistics _statistics;
+	private final String _account;
+	private final String _name;
+	private final BotProfile _profile;
+	private final SessionKey _sessionKey;
+	private final List<ScheduledFuture<?>> _tasks = new ArrayList<>();
+	private final List<Integer> _skills = new ArrayList<>();
+	private final Set<Integer> _knownNpcs = ConcurrentHashMap.newKeySet();
+	private final Map<Integer, Long> _castStarts = new ConcurrentHashMap<>();
+	private final Map<Integer, Long> _fastestLaunches = new ConcurrentHashMap<>();
+	
+	private Socket _socket;
+	private OutputStream _out;
+	private Encryption _encryption;
+	private long _connectTime;
+	private boolean _characterCreated;
+	private volatile boolean _inGame;
+	private volatile boolean _stopped;
+	private volatile long _pingTime;
+	private volatile int _targetId;
+	private int _objectId;
+	private int _spawnX;
+	private int _spawnY;
+	private int _spawnZ;
+	private int _x;
+	private int _y;
+	private int _z;
+	
+	public BotClient(LoadTest loadTest, int index, BotProfile profile)
+	{
+		_loadTest = loadTest;
+		_statistics = loadTest.getStatistics();
+		_account = (loadTest.getAccountPrefix() + index).toLowerCase();
+		_name = loadTest.getAccountPrefix() + index;
+		_profile = profile;
+		_sessionKey = new SessionKey(Rnd.nextInt(), Rnd.nextInt(), Rnd.nextInt(), Rnd.nextInt());
+	}
+	
+	@Override
+	public void run()
+	{
+		_loadTest.getLoginServer().addSessionKey(_account, _sessionKey);
+		_connectTime = System.nanoTime();
+		boolean failed = true;
+		try (Socket socket = new Socket(_loadTest.getHost(), Config.PORT_GAME))
+		{
+			socket.setTcpNoDelay(true);
+			_socket = socket;
+			_out = new BufferedOutputStream(socket.getOutputStream());
+			_statistics.onConnected();
+			
+			// The first packet is never encrypted.
+			final OutgoingPacket protocolVersion = new OutgoingPacket(ClientPackets.PROTOCOL_VERSION);
+			protocolVersion.writeInt(Config.PROTOCOL_LIST.get(0));
+			sendPacket(protocolVersion);
+			
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (!_stopped)
+			{
+				final int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8);
+				final byte[] data = new byte[length - 2];
+				in.readFully(data);
+				_statistics.onPacketReceived(length);
+				
+				if (_encryption != null)
+				{
+					_encryption.decrypt(wrap(data), 0, data.length);
+				}
+				handlePacket(data);
+			}
+			failed = false;
+		}
+		catch (IOException e)
+		{
+			if (!_stopped)
+			{
+				LOGGER.warning(getClass().getSimpleName() + " " + _account + ": Disconnected: " + e.getMessage());
+			}
+			failed = !_stopped;
+		}
+		finally
+		{
+			cancelTasks();
+			if (_out != null)
+			{
+				_statistics.onDisconnected(_inGame, failed);
+			}
+			else
+			{
+				_statistics.onConnectionFailed();
+			}
+			_inGame = false;
+		}
+	}
+	
+	private void handlePacket(byte[] data)
+	{
+		final BaseReadablePacket packet = new BaseReadablePacket(data);
+		final ServerPackets type = SERVER_PACKETS[packet.readByte()];
+		if (type == null)
+		{
+			return;
+		}
+		
+		switch (type)
+		{
+			case VERSION_CHECK:
+			{
+				if (packet.readByte() == 0)
+				{
+					fail("Protocol " + Config.PROTOCOL_LIST.get(0) + " rejected.");
+					return;
+				}
+				
+				final byte[] key = new byte[16];
+				System.arraycopy(packet.readBytes(8), 0, key, 0, 8);
+				System.arraycopy(STATIC_KEY_PART, 0, key, 8, 8);
+				if (packet.readInt() != 0)
+				{
+					_encryption = new Encryption();
+					_encryption.setKey(key);
+					// The first encryption only enables the cipher, like the server does for this KeyPacket.
+					_encryption.encrypt(wrap(new byte[0]), 0, 0);
+				}
+				
+				final OutgoingPacket authLogin = new OutgoingPacket(ClientPackets.AUTH_LOGIN);
+				authLogin.writeString(_account);
+				authLogin.writeInt(_sessionKey.playOkID2);
+				authLogin.writeInt(_sessionKey.playOkID1);
+				authLogin.writeInt(_sessionKey.loginOkID1);
+				authLogin.writeInt(_sessionKey.loginOkID2);
+				sendPacket(authLogin);
+				break;
+			}
+			case LOGIN_FAIL:
+			{
+				if (packet.readInt() != -1)
+				{
+					fail("Login failed, reason " + packet.readInt() + ".");
+				}
+				break;
+			}
+			case CHARACTER_SELECTION_INFO:
+			{
+				if (packet.readInt() > 0)
+				{
+					selectCharacter();
+				}
+				else if (!_characterCreated)
+				{
+					createCharacter();
+				}
+				else
+				{
+					fail("No character after creation.");
+				}
+				break;
+			}
+			case CHARACTER_CREATE_SUCCESS:
+			{
+				selectCharacter();
+				break;
+			}
+			case CHARACTER_CREATE_FAIL:
+			{
+				fail("Character creation failed, reason " + packet.readInt() + ".");
+				break;
+			}
+			case CHARACTER_SELECTED:
+			{
+				packet.readString(); // Name
+				_objectId = packet.readInt();
+				packet.readString(); // Title
+				packet.readInt(); // Session id
+				packet.readInt(); // Clan id
+				packet.readInt();
+				packet.readInt(); // Sex
+				packet.readInt(); // Race
+				packet.readInt(); // Class id
+				packet.readInt(); // Active
+				_spawnX = _x = packet.readInt();
+				_spawnY = _y = packet.readInt();
+				_spawnZ = _z = packet.readInt();
+				
+				// The client requests its key mapping before it enters the world.
+				sendPacket(new OutgoingPacket(ExClientPackets.REQUEST_KEY_MAPPING));
+				
+				final OutgoingPacket enterWorld = new OutgoingPacket(ClientPackets.ENTER_WORLD);
+				enterWorld.writeBytes(new byte[104]); // Tracert, unknown values and byte array.
+				sendPacket(enterWorld);
+				break;
+			}
+			case USER_INFO:
+			{
+				if (!_inGame && (packet.readInt() == _objectId))
+				{
+					_inGame = true;
+					_statistics.onEnteredWorld(System.nanoTime() - _connectTime);
+					startActions();
+				}
+				break;
+			}
+			case SKILL_LIST:
+			{
+				final List<Integer> skills = new ArrayList<>();
+				final int count = packet.readInt();
+				for (int i = 0; i < count; i++)
+				{
+					final boolean passive = packet.readInt() != 0;
+					packet.readShort(); // Level
+					packet.readShort(); // Sub level
+					final int skillId = packet.readInt();
+					packet.readInt(); // Reuse delay group
+					final boolean disabled = packet.readByte() != 0;
+					packet.readByte(); // Enchanted
+					if (!passive && !disabled)
+					{
+						skills.add(skillId);
+					}
+				}
+				synchronized (_skills)
+				{
+					_skills.clear();
+					_skills.addAll(skills);
+				}
+				break;
+			}
+			case NPC_INFO:
+			{
+				if (_knownNpcs.size() < MAX_KNOWN_NPCS)
+				{
+					_knownNpcs.add(packet.readInt());
+				}
+				break;
+			}
+			case DELETE_OBJECT:
+			{
+				final int objectId = packet.readInt();
+				_knownNpcs.remove(objectId);
+				if (_targetId == objectId)
+				{
+					_targetId = 0;
+				}
+				break;
+			}
+			case NET_PING:
+			{
+				final long pingTime = _pingTime;
+				if (pingTime != 0)
+				{
+					_pingTime = 0;
+					_statistics.onPing(System.nanoTime() - pingTime);
+				}
+				break;
+			}
+			case MAGIC_SKILL_USE:
+			{
+				packet.readInt(); // Casting bar type
+				if (packet.readInt() == _objectId)
+				{
+					packet.readInt(); // Target
+					_castStarts.put(packet.readInt(), System.nanoTime());
+				}
+				break;
+			}
+			case MAGIC_SKILL_LAUNCHED:
+			{
+				packet.readInt(); // Casting bar type
+				if (packet.readInt() == _objectId)
+				{
+					final int skillId = packet.readInt();
+					final Long start = _castStarts.remove(skillId);
+					if (start != null)
+					{
+						final long delay = System.nanoTime() - start;
+						_statistics.onSkillLaunched(delay - _fastestLaunches.merge(skillId, delay, Math::min));
+					}
+				}
+				break;
+			}
+			case LOG_OUT_OK:
+			case SEVER_CLOSE:
+			{
+				fail("Disconnected by the server.");
+				break;
+			}
+		}
+	}
+	
+	private void createCharacter()
+	{
+		_characterCreated = true;
+		
+		final OutgoingPacket characterCreate = new OutgoingPacket(ClientPackets.CHARACTER_CREATE);
+		characterCreate.writeString(_name);
+		characterCreate.writeInt(0); // Race
+		characterCreate.writeInt(Rnd.get(2)); // Sex
+		characterCreate.writeInt(_loadTest.getCharacterClassId());
+		for (int i = 0; i < 6; i++)
+		{
+			characterCreate.writeInt(0); // Base stats are taken from the class template.
+		}
+		characterCreate.writeInt(0); // Hair style
+		characterCreate.writeInt(0); // Hair color
+		characterCreate.writeInt(0); // Face
+		sendPacket(characterCreate);
+	}
+	
+	private void selectCharacter()
+	{
+		final OutgoingPacket characterSelect = new OutgoingPacket(ClientPackets.CHARACTER_SELECT);
+		characterSelect.writeInt(0); // Slot
+		characterSelect.writeShort(0);
+		characterSelect.writeInt(0);
+		characterSelect.writeInt(0);
+		characterSelect.writeInt(0);
+		sendPacket(characterSelect);
+	}
+	
+	private void startActions()
+	{
+		synchronized (_tasks)
+		{
+			for (Entry<BotAction, Integer> entry : _profile.getIntervals().entrySet())
+			{
+				final BotAction action = entry.getKey();
+				final int interval = entry.getValue();
+				_tasks.add(ThreadPool.scheduleAtFixedRate(() -> runAction(action), Rnd.get(interval), interval));
+			}
+		}
+	}
+	
+	private void cancelTasks()
+	{
+		synchronized (_tasks)
+		{
+			for (ScheduledFuture<?> task : _tasks)
+			{
+				if (task != null)
+				{
+					task.cancel(false);
+				}
+			}
+			_tasks.clear();
+		}
+	}
+	
+	private void runAction(BotAction action)
+	{
+		if (!_inGame)
+		{
+			return;
+		}
+		
+		switch (action)
+		{
+			case MOVE:
+			{
+				final int radius = _loadTest.getMoveRadius();
+				final int x = _spawnX + Rnd.get(-radius, radius);
+				final int y = _spawnY + Rnd.get(-radius, radius);
+				final OutgoingPacket move = new OutgoingPacket(ClientPackets.MOVE_BACKWARD_TO_LOCATION);
+				move.writeInt(x);
+				move.writeInt(y);
+				move.writeInt(_spawnZ);
+				move.writeInt(_x);
+				move.writeInt(_y);
+				move.writeInt(_z);
+				move.writeInt(1); // Mouse movement.
+				sendPacket(move);
+				_x = x;
+				_y = y;
+				_z = _spawnZ;
+				break;
+			}
+			case SAY:
+			{
+				final OutgoingPacket say = new OutgoingPacket(ClientPackets.SAY2);
+				say.writeString(_loadTest.getChatMessage());
+				say.writeInt(ChatType.GENERAL.getClientId());
+				say.writeByte(0); // Share location.
+				sendPacket(say);
+				break;
+			}
+			case TARGET:
+			{
+				final List<Integer> npcs = new ArrayList<>(_knownNpcs);
+				if (!npcs.isEmpty())
+				{
+					final int objectId = npcs.get(Rnd.get(npcs.size()));
+					final OutgoingPacket target = new OutgoingPacket(ClientPackets.ACTION);
+					target.writeInt(objectId);
+					target.writeInt(_x);
+					target.writeInt(_y);
+					target.writeInt(_z);
+					target.writeByte(0); // Simple click.
+					sendPacket(target);
+					_targetId = objectId;
+				}
+				break;
+			}
+			case ATTACK:
+			{
+				final int objectId = _targetId;
+				if (objectId != 0)
+				{
+					final OutgoingPacket attack = new OutgoingPacket(ClientPackets.ATTACK_REQUEST);
+					attack.writeInt(objectId);
+					attack.writeInt(_x);
+					attack.writeInt(_y);
+					attack.writeInt(_z);
+					attack.writeByte(0); // Simple click.
+					sendPacket(attack);
+				}
+				break;
+			}
+			case SKILL:
+			{
+				final int skillId;
+				synchronized (_skills)
+				{
+					if (_skills.isEmpty())
+					{
+						break;
+					}
+					skillId = _skills.get(Rnd.get(_skills.size()));
+				}
+				
+				final OutgoingPacket skill = new OutgoingPacket(ClientPackets.REQUEST_MAGIC_SKILL_USE);
+				skill.writeInt(skillId);
+				skill.writeInt(0); // Ctrl pressed.
+				skill.writeByte(0); // Shift pressed.
+				sendPacket(skill);
+				break;
+			}
+			case PING:
+			{
+				final long now = System.nanoTime();
+				if ((_pingTime == 0) || ((now - _pingTime) > PING_TIMEOUT))
+				{
+					_pingTime = now;
+					sendPacket(new OutgoingPacket(ClientPackets.NET_PING));
+				}
+				break;
+			}
+		}
+	}
+	
+	private void sendPacket(OutgoingPacket packet)
+	{
+		final byte[] data = packet.getSendableBytes();
+		try
+		{
+			synchronized (this)
+			{
+				if (_encryption != null)
+				{
+					_encryption.encrypt(wrap(data), 2, data.length - 2);
+				}
+				_out.write(data);
+				_out.flush();
+			}
+			_statistics.onPacketSent(data.length);
+		}
+		catch (IOException e)
+		{
+			fail("Send failed: " + e.getMessage());
+		}
+	}
+	
+	private void fail(String reason)
+	{
+		if (!_stopped)
+		{
+			LOGGER.warning(getClass().getSimpleName() + " " + _account + ": " + reason);
+		}
+		disconnect(false);
+	}
+	
+	/**
+	 * Closes the connection of this bot.
+	 * @param stopped {@code true} when the load test ends, {@code false} when the bot failed
+	 */
+	public void disconnect(boolean stopped)
+	{
+		if (stopped)
+		{
+			_stopped = true;
+		}
+		
+		cancelTasks();
+		try
+		{
+			if (_socket != null)
+			{
+				_socket.close();
+			}
+		}
+		catch (IOException e)
+		{
+			// Ignore.
+		}
+	}
+	
+	private static SinglePacketBuffer wrap(byte[] data)
+	{
+		return new SinglePacketBuffer(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN));
+	}
+	
+	private static class OutgoingPacket extends BaseWritablePacket
+	{
+		public OutgoingPacket(ClientPackets packet)
+		{
+			writeByte(packet.getPacketId());
+		}
+		
+		public OutgoingPacket(ExClientPackets packet)
+		{
+			writeByte(ClientPackets.EX_PACKET.getPacketId());
+			writeShort(packet.getPacketId());
+		}
+	}
+}
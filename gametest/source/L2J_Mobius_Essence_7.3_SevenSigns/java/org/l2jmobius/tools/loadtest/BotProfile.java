@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools.loadtest;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Scripted behaviour of a load test bot.<br>
+ * A profile is a list of actions, each of them repeated by the bot at its own interval once it is in game.<br>
+ * Format: action:interval;action:interval;... with intervals in milliseconds.
+ * @author Mobius
+ */
+public class BotProfile
+{
+	public enum BotAction
+	{
+		/** Moves to a random location around the spawn point. */
+		MOVE,
+		/** Says a message on general chat. */
+		SAY,
+		/** Targets a random known npc. */
+		TARGET,
+		/** Attacks the current target. */
+		ATTACK,
+		/** Casts a random active skill of the skill list. */
+		SKILL,
+		/** Measures the packet round trip time. */
+		PING
+	}
+	
+	private final String _name;
+	private final Map<BotAction, Integer> _intervals = new EnumMap<>(BotAction.class);
+	
+	public BotProfile(String name, String script)
+	{
+		_name = name;
+		for (String entry : script.split(";"))
+		{
+			if (entry.isBlank())
+			{
+				continue;
+			}
+			
+			final String[] split = entry.split(":");
+			if (split.length != 2)
+			{
+				throw new IllegalArgumentException("Invalid action \"" + entry + "\" in profile " + name + ".");
+			}
+			
+			final BotAction action = BotAction.valueOf(split[0].trim().toUpperCase());
+			final int interval = Integer.parseInt(split[1].trim());
+			if (interval <= 0)
+			{
+				throw new IllegalArgumentException("Invalid interval for action " + action + " in profile " + name + ".");
+			}
+			_intervals.put(action, interval);
+		}
+	}
+	
+	public String getName()
+	{
+		return _name;
+	}
+	
+	/**
+	 * @return the repeat interval, in milliseconds, of each action of this profile.
+	 */
+	public Map<BotAction, Integer> getIntervals()
+	{
+		return Collections.unmodifiableMap(_intervals);
+	}
+}
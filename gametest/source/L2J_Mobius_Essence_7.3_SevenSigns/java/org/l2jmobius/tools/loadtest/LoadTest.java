@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.l2jmobius.Config;
+import org.l2jmobius.commons.enums.ServerMode;
+import org.l2jmobius.commons.threads.ThreadPool;
+import org.l2jmobius.commons.util.ConfigReader;
+
+/**
+ * Headless load test that drives a running game server with bots over loopback.<br>
+ * A {@link LoginServerStub} takes the place of the login server, so the game server must be started with its LoginHost and LoginPort pointing to this tool.<br>
+ * Bots log in at a fixed rate, run their scripted {@link BotProfile} and the packet throughput, packet round trip time, server tick lateness and login time are reported periodically.
+ * @author Mobius
+ */
+public class LoadTest
+{
+	private static final String LOAD_TEST_CONFIG_FILE = "./config/LoadTest.ini";
+	private static final String PROFILE_PREFIX = "Profile.";
+	
+	private final String _host;
+	private final int _botCount;
+	private final int _loginRate;
+	private final int _duration;
+	private final int _reportInterval;
+	private final String _accountPrefix;
+	private final int _characterClassId;
+	private final int _moveRadius;
+	private final String _chatMessage;
+	private final List<BotProfile> _profiles = new ArrayList<>();
+	private final List<Integer> _profileWeights = new ArrayList<>();
+	private final List<BotClient> _bots = new ArrayList<>();
+	private final LoadTestStatistics _statistics = new LoadTestStatistics();
+	private LoginServerStub _loginServer;
+	
+	private LoadTest()
+	{
+		final ConfigReader config = new ConfigReader(LOAD_TEST_CONFIG_FILE);
+		_host = config.getString("GameHost", "127.0.0.1");
+		_botCount = config.getInt("BotCount", 100);
+		_loginRate = Math.max(1, config.getInt("LoginRate", 20));
+		_duration = config.getInt("Duration", 300);
+		_reportInterval = Math.max(1, config.getInt("ReportInterval", 10));
+		_accountPrefix = config.getString("AccountPrefix", "LoadTest");
+		_characterClassId = config.getInt("CharacterClassId", 0);
+		_moveRadius = config.getInt("MoveRadius", 500);
+		_chatMessage = config.getString("ChatMessage", "Load test message.");
+		
+		// Format: name:weight;name:weight;...
+		for (String entry : config.getString("Profiles", "walker:1").split(";"))
+		{
+			if (entry.isBlank())
+			{
+				continue;
+			}
+			
+			final String[] split = entry.split(":");
+			final String name = split[0].trim();
+			final String script = config.getString(PROFILE_PREFIX + name, null);
+			if (script == null)
+			{
+				throw new IllegalArgumentException("Profile " + name + " is not defined in " + LOAD_TEST_CONFIG_FILE + ".");
+			}
+			_profiles.add(new BotProfile(name, script));
+			_profileWeights.add(split.length > 1 ? Math.max(1, Integer.parseInt(split[1].trim())) : 1);
+		}
+	}
+	
+	/**
+	 * Profiles are handed out in proportion to their weights, in the same order on every run.
+	 * @param index the bot index
+	 * @return the profile of the bot.
+	 */
+	private BotProfile getProfile(int index)
+	{
+		int totalWeight = 0;
+		for (int weight : _profileWeights)
+		{
+			totalWeight += weight;
+		}
+		
+		int position = index % totalWeight;
+		for (int i = 0; i < _profiles.size(); i++)
+		{
+			position -= _profileWeights.get(i);
+			if (position < 0)
+			{
+				return _profiles.get(i);
+			}
+		}
+		return _profiles.get(0);
+	}
+	
+	private void run() throws Exception
+	{
+		_loginServer = new LoginServerStub(Config.GAME_SERVER_LOGIN_PORT);
+		_loginServer.start();
+		System.out.println("[INFO] Waiting for the game server to register on port " + Config.GAME_SERVER_LOGIN_PORT + "...");
+		while (!_loginServer.awaitRegistration(60))
+		{
+			System.out.println("[INFO] Still waiting for the game server.");
+		}
+		
+		System.out.println("[INFO] Starting " + _botCount + " bots at " + _loginRate + " logins per second.");
+		final long start = System.nanoTime();
+		final AtomicInteger launched = new AtomicInteger();
+		final ScheduledFuture<?> launcher = ThreadPool.scheduleAtFixedRate(() ->
+		{
+			final int index = launched.getAndIncrement();
+			if (index < _botCount)
+			{
+				final BotClient bot = new BotClient(this, index, getProfile(index));
+				synchronized (_bots)
+				{
+					_bots.add(bot);
+				}
+				Thread.ofVirtual().name("Bot-" + index).start(bot);
+			}
+		}, 0, Math.max(1, 1000 / _loginRate));
+		
+		final long end = _duration > 0 ? start + TimeUnit.SECONDS.toNanos(_duration) : Long.MAX_VALUE;
+		while (System.nanoTime() < end)
+		{
+			Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(_reportInterval), Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+			System.out.println("[INFO] " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "s" + System.lineSeparator() + _statistics.getIntervalReport());
+		}
+		
+		launcher.cancel(false);
+		synchronized (_bots)
+		{
+			for (BotClient bot : _bots)
+			{
+				bot.disconnect(true);
+			}
+		}
+		
+		System.out.println("[INFO] Load test finished." + System.lineSeparator() + _statistics.getTotalReport((System.nanoTime() - start) / 1000000000d));
+	}
+	
+	public String getHost()
+	{
+		return _host;
+	}
+	
+	public String getAccountPrefix()
+	{
+		return _accountPrefix;
+	}
+	
+	public int getCharacterClassId()
+	{
+		return _characterClassId;
+	}
+	
+	public int getMoveRadius()
+	{
+		return _moveRadius;
+	}
+	
+	public String getChatMessage()
+	{
+		return _chatMessage;
+	}
+	
+	public LoginServerStub getLoginServer()
+	{
+		return _loginServer;
+	}
+	
+	public LoadTestStatistics getStatistics()
+	{
+		return _statistics;
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		Config.load(ServerMode.GAME);
+		ThreadPool.init();
+		new LoadTest().run();
+		System.exit(0);
+	}
+}
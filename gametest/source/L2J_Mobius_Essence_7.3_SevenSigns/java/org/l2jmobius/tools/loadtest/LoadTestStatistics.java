@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms collected by the load test bots.<br>
+ * Latencies are kept twice, once for the current report interval and once for the whole run.
+ * @author Mobius
+ */
+public class LoadTestStatistics
+{
+	/** Upper bounds, in milliseconds, of the latency histogram buckets. The last bucket holds all longer samples. */
+	private static final int[] HISTOGRAM_BOUNDS =
+	{
+		1,
+		2,
+		5,
+		10,
+		20,
+		50,
+		100,
+		200,
+		500,
+		1000,
+		2000,
+		5000
+	};
+	
+	private final AtomicInteger _connected = new AtomicInteger();
+	private final AtomicInteger _inGame = new AtomicInteger();
+	private final AtomicInteger _failed = new AtomicInteger();
+	private final LongAdder _packetsSent = new LongAdder();
+	private final LongAdder _bytesSent = new LongAdder();
+	private final LongAdder _packetsReceived = new LongAdder();
+	private final LongAdder _bytesReceived = new LongAdder();
+	private final Latency _loginTime = new Latency("Login time");
+	private final Latency _packetRtt = new Latency("Packet RTT");
+	private final Latency _tickLateness = new Latency("Server tick lateness");
+	
+	private long _lastReport = System.nanoTime();
+	private long _lastPacketsSent;
+	private long _lastBytesSent;
+	private long _lastPacketsReceived;
+	private long _lastBytesReceived;
+	
+	public void onConnected()
+	{
+		_connected.incrementAndGet();
+	}
+	
+	public void onConnectionFailed()
+	{
+		_failed.incrementAndGet();
+	}
+	
+	public void onDisconnected(boolean wasInGame, boolean failed)
+	{
+		_connected.decrementAndGet();
+		if (wasInGame)
+		{
+			_inGame.decrementAndGet();
+		}
+		if (failed)
+		{
+			_failed.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * @param loginTime the time, in nanoseconds, from connection to the first UserInfo after EnterWorld.
+	 */
+	public void onEnteredWorld(long loginTime)
+	{
+		_inGame.incrementAndGet();
+		_loginTime.record(loginTime);
+	}
+	
+	public void onPacketSent(int size)
+	{
+		_packetsSent.increment();
+		_bytesSent.add(size);
+	}
+	
+	public void onPacketReceived(int size)
+	{
+		_packetsReceived.increment();
+		_bytesReceived.add(size);
+	}
+	
+	/**
+	 * @param rtt the time, in nanoseconds, between a RequestNetPing and its NetPing answer.
+	 */
+	public void onPing(long rtt)
+	{
+		_packetRtt.record(rtt);
+	}
+	
+	/**
+	 * @param lateness the time, in nanoseconds, a skill launch arrived later than the fastest launch of the same skill.
+	 */
+	public void onSkillLaunched(long lateness)
+	{
+		_tickLateness.record(lateness);
+	}
+	
+	public int getInGameCount()
+	{
+		return _inGame.get();
+	}
+	
+	/**
+	 * Creates the report of the interval since the previous call and starts a new interval.
+	 * @return the interval report.
+	 */
+	public synchronized String getIntervalReport()
+	{
+		final long now = System.nanoTime();
+		final double seconds = Math.max(1, now - _lastReport) / 1000000000d;
+		_lastReport = now;
+		
+		final long packetsSent = _packetsSent.sum();
+		final long bytesSent = _bytesSent.sum();
+		final long packetsReceived = _packetsReceived.sum();
+		final long bytesReceived = _bytesReceived.sum();
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Bots: ");
+		sb.append(_inGame.get());
+		sb.append(" in game, ");
+		sb.append(_connected.get());
+		sb.append(" connected, ");
+		sb.append(_failed.get());
+		sb.append(" failed.");
+		sb.append(System.lineSeparator());
+		sb.append(String.format("Sent %.0f packets/s (%.1f KB/s), received %.0f packets/s (%.1f KB/s).", (packetsSent - _lastPacketsSent) / seconds, (bytesSent - _lastBytesSent) / seconds / 1024, (packetsReceived - _lastPacketsReceived) / seconds, (bytesReceived - _lastBytesReceived) / seconds / 1024));
+		_lastPacketsSent = packetsSent;
+		_lastBytesSent = bytesSent;
+		_lastPacketsReceived = packetsReceived;
+		_lastBytesReceived = bytesReceived;
+		
+		sb.append(System.lineSeparator());
+		sb.append(_packetRtt.getReport(false));
+		sb.append(System.lineSeparator());
+		sb.append(_tickLateness.getReport(false));
+		sb.append(System.lineSeparator());
+		sb.append(_loginTime.getReport(false));
+		return sb.toString();
+	}
+	
+	/**
+	 * @param seconds the duration of the run
+	 * @return the report of the whole run.
+	 */
+	public String getTotalReport(double seconds)
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Sent %d packets (%.0f/s, %.1f KB/s), received %d packets (%.0f/s, %.1f KB/s).", _packetsSent.sum(), _packetsSent.sum() / seconds, _bytesSent.sum() / seconds / 1024, _packetsReceived.sum(), _packetsReceived.sum() / seconds, _bytesReceived.sum() / seconds / 1024));
+		sb.append(System.lineSeparator());
+		sb.append(_packetRtt.getReport(true));
+		sb.append(System.lineSeparator());
+		sb.append(_tickLateness.getReport(true));
+		sb.append(System.lineSeparator());
+		sb.append(_loginTime.getReport(true));
+		return sb.toString();
+	}
+	
+	private static class Latency
+	{
+		private final String _name;
+		private final Histogram _interval = new Histogram();
+		private final Histogram _total = new Histogram();
+		
+		public Latency(String name)
+		{
+			_name = name;
+		}
+		
+		public void record(long nanos)
+		{
+			final long micros = Math.max(0, nanos / 1000);
+			_interval.record(micros);
+			_total.record(micros);
+		}
+		
+		public String getReport(boolean total)
+		{
+			final String report = _name + ": " + (total ? _total : _interval);
+			if (!total)
+			{
+				_interval.reset();
+			}
+			return report;
+		}
+	}
+	
+	private static class Histogram
+	{
+		private final AtomicLongArray _buckets = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+		private final LongAdder _sum = new LongAdder();
+		private final AtomicLong _max = new AtomicLong();
+		
+		public void record(long micros)
+		{
+			_buckets.incrementAndGet(getBucket(micros / 1000));
+			_sum.add(micros);
+			_max.accumulateAndGet(micros, Math::max);
+		}
+		
+		public void reset()
+		{
+			for (int i = 0; i < _buckets.length(); i++)
+			{
+				_buckets.set(i, 0);
+			}
+			_sum.reset();
+			_max.set(0);
+		}
+		
+		private static int getBucket(long millis)
+		{
+			for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++)
+			{
+				if (millis < HISTOGRAM_BOUNDS[i])
+				{
+					return i;
+				}
+			}
+			return HISTOGRAM_BOUNDS.length;
+		}
+		
+		/**
+		 * @param count the sample count
+		 * @param percentile the percentile, between 0 and 1
+		 * @return the upper bound of the bucket holding the percentile, or -1 if it is the last bucket.
+		 */
+		private int getPercentileBound(long count, double percentile)
+		{
+			final long rank = (long) Math.ceil(count * percentile);
+			long seen = 0;
+			for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++)
+			{
+				seen += _buckets.get(i);
+				if (seen >= rank)
+				{
+					return HISTOGRAM_BOUNDS[i];
+				}
+			}
+			return -1;
+		}
+		
+		private String formatPercentile(long count, double percentile)
+		{
+			final int bound = getPercentileBound(count, percentile);
+			return bound < 0 ? ">=" + HISTOGRAM_BOUNDS[HISTOGRAM_BOUNDS.length - 1] + "ms" : "<" + bound + "ms";
+		}
+		
+		@Override
+		public String toString()
+		{
+			long count = 0;
+			for (int i = 0; i < _buckets.length(); i++)
+			{
+				count += _buckets.get(i);
+			}
+			if (count == 0)
+			{
+				return "no samples";
+			}
+			
+			return String.format("%d samples, avg %.2fms, p50 %s, p95 %s, p99 %s, max %.2fms", count, _sum.sum() / 1000d / count, formatPercentile(count, 0.5), formatPercentile(count, 0.95), formatPercentile(count, 0.99), _max.get() / 1000d);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013 L2jMobius
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.l2jmobius.tools.loadtest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+
+import org.l2jmobius.commons.crypt.NewCrypt;
+import org.l2jmobius.commons.network.base.BaseReadablePacket;
+import org.l2jmobius.commons.network.base.BaseWritablePacket;
+import org.l2jmobius.loginserver.SessionKey;
+import org.l2jmobius.loginserver.network.loginserverpackets.InitLS;
+import org.l2jmobius.loginserver.network.loginserverpackets.PlayerAuthResponse;
+
+/**
+ * Stands in for the login server during a load test.<br>
+ * Accepts the registration of the game server and answers its player authentication requests with the session keys handed out to the bots, without any database.
+ * @author Mobius
+ */
+public class LoginServerStub extends Thread
+{
+	private static final Logger LOGGER = Logger.getLogger(LoginServerStub.class.getName());
+	
+	private static final String SERVER_NAME = "LoadTest";
+	
+	private final int _port;
+	private final KeyPair _keyPair;
+	private final Map<String, SessionKey> _sessionKeys = new ConcurrentHashMap<>();
+	private final CountDownLatch _registered = new CountDownLatch(1);
+	private OutputStream _out;
+	private NewCrypt _blowfish;
+	
+	public LoginServerStub(int port) throws GeneralSecurityException
+	{
+		super("LoginServerStub");
+		setDaemon(true);
+		_port = port;
+		
+		final KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+		keyGen.initialize(new RSAKeyGenParameterSpec(512, RSAKeyGenParameterSpec.F4));
+		_keyPair = keyGen.generateKeyPair();
+	}
+	
+	@Override
+	public void run()
+	{
+		try (ServerSocket serverSocket = new ServerSocket(_port, 1, InetAddress.getLoopbackAddress()))
+		{
+			while (!isInterrupted())
+			{
+				try (Socket socket = serverSocket.accept())
+				{
+					handleGameServer(socket);
+				}
+				catch (IOException e)
+				{
+					LOGGER.warning(getClass().getSimpleName() + ": Game server connection lost: " + e.getMessage());
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.severe(getClass().getSimpleName() + ": Could not listen on port " + _port + ": " + e.getMessage());
+		}
+	}
+	
+	private void handleGameServer(Socket socket) throws IOException
+	{
+		final DataInputStream in = new DataInputStream(socket.getInputStream());
+		_out = new BufferedOutputStream(socket.getOutputStream());
+		_blowfish = new NewCrypt("_;v.]05-31!|+-%xT!^[$\00");
+		sendPacket(new InitLS(((RSAPublicKey) _keyPair.getPublic()).getModulus().toByteArray()));
+		
+		while (!isInterrupted())
+		{
+			final int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8);
+			final byte[] data = new byte[length - 2];
+			in.readFully(data);
+			
+			_blowfish.decrypt(data, 0, data.length);
+			if (!NewCrypt.verifyChecksum(data))
+			{
+				LOGGER.warning(getClass().getSimpleName() + ": Incorrect packet checksum, closing connection.");
+				return;
+			}
+			
+			final BaseReadablePacket packet = new BaseReadablePacket(data);
+			switch (packet.readByte())
+			{
+				case 0x00: // BlowFishKey
+				{
+					setBlowfishKey(packet.readBytes(packet.readInt()));
+					break;
+				}
+				case 0x01: // AuthRequest
+				{
+					final int serverId = packet.readByte();
+					sendPacket(new AuthResponse(serverId));
+					LOGGER.info(getClass().getSimpleName() + ": Game server registered as server " + serverId + ".");
+					_registered.countDown();
+					break;
+				}
+				case 0x05: // PlayerAuthRequest
+				{
+					final String account = packet.readString();
+					final int playKey1 = packet.readInt();
+					final int playKey2 = packet.readInt();
+					final int loginKey1 = packet.readInt();
+					final int loginKey2 = packet.readInt();
+					final SessionKey key = _sessionKeys.get(account);
+					sendPacket(new PlayerAuthResponse(account, (key != null) && key.equals(new SessionKey(loginKey1, loginKey2, playKey1, playKey2))));
+					break;
+				}
+				// Player in game, logout, server status and the other notifications are not needed.
+			}
+		}
+	}
+	
+	private void setBlowfishKey(byte[] encryptedKey)
+	{
+		try
+		{
+			final Cipher rsaCipher = Cipher.getInstance("RSA/ECB/nopadding");
+			rsaCipher.init(Cipher.DECRYPT_MODE, _keyPair.getPrivate());
+			final byte[] key = rsaCipher.doFinal(encryptedKey);
+			
+			// There are nulls before the key we must remove them.
+			int i = 0;
+			while ((i < key.length) && (key[i] == 0))
+			{
+				i++;
+			}
+			_blowfish = new NewCrypt(Arrays.copyOfRange(key, i, key.length));
+		}
+		catch (GeneralSecurityException e)
+		{
+			LOGGER.severe(getClass().getSimpleName() + ": Error while decrypting blowfish key: " + e.getMessage());
+		}
+	}
+	
+	private void sendPacket(BaseWritablePacket packet) throws IOException
+	{
+		packet.write(); // Write initial data.
+		packet.writeInt(0); // Reserved for checksum.
+		int size = packet.getLength() - 2; // Size without header.
+		final int padding = size % 8; // Padding of 8 bytes.
+		if (padding != 0)
+		{
+			for (int i = padding; i < 8; i++)
+			{
+				packet.writeByte(0);
+			}
+		}
+		
+		// Size header + encrypted[data + checksum (int) + padding].
+		final byte[] data = packet.getSendableBytes();
+		size = data.length - 2; // Data size without header.
+		NewCrypt.appendChecksum(data, 2, size);
+		_blowfish.crypt(data, 2, size);
+		_out.write(data);
+		_out.flush();
+	}
+	
+	/**
+	 * Registers the session key a bot will present in its AuthLogin.
+	 * @param account the account name
+	 * @param key the session key
+	 */
+	public void addSessionKey(String account, SessionKey key)
+	{
+		_sessionKeys.put(account, key);
+	}
+	
+	/**
+	 * Waits until the game server has registered.
+	 * @param timeout the maximum time to wait, in seconds
+	 * @return {@code true} if the game server registered in time.
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 */
+	public boolean awaitRegistration(long timeout) throws InterruptedException
+	{
+		return _registered.await(timeout, TimeUnit.SECONDS);
+	}
+	
+	private static class AuthResponse extends BaseWritablePacket
+	{
+		public AuthResponse(int serverId)
+		{
+			writeByte(0x02);
+			writeByte(serverId);
+			writeString(SERVER_NAME);
+		}
+	}
+}